@@ -0,0 +1,79 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import com.ahmednts.googlevisiontest.R;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the bundled sample photo through the still-image batch, copied {@value #IMAGES} times, on
+ * one worker and on one worker per core.  The results of both runs, throughput included, are
+ * written to logcat under the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StillImageBatchHarness {
+  private static final String TAG = "StillImageBatchHarness";
+  private static final int IMAGES = 24;
+
+  @Test
+  public void processesEveryImage() throws IOException, InterruptedException {
+    Context context = InstrumentationRegistry.getTargetContext();
+    File input = new File(context.getCacheDir(), "batch-input");
+    File output = new File(context.getCacheDir(), "batch-output");
+    copySamples(context, input);
+
+    int[] workerCounts = {1, BatchPipeline.getDefaultWorkers()};
+    for (int workers : workerCounts) {
+      delete(output);
+      BatchPipeline.Result result =
+          new StillImageBatch(context, output, workers).process(input);
+
+      Log.i(TAG, workers + " workers: " + result);
+      assertEquals(IMAGES, result.getImages());
+      assertEquals(String.valueOf(result.getFirstError()), 0, result.getFailed());
+      assertEquals(IMAGES, output.list().length);
+    }
+    delete(input);
+    delete(output);
+  }
+
+  private static void copySamples(Context context, File directory) throws IOException {
+    delete(directory);
+    assertTrue(directory.mkdirs());
+    byte[] buffer = new byte[16 * 1024];
+    for (int i = 0; i < IMAGES; ++i) {
+      InputStream in = context.getResources().openRawResource(R.raw.face);
+      OutputStream out = new FileOutputStream(new File(directory, "face" + i + ".jpg"));
+      try {
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          out.write(buffer, 0, read);
+        }
+      } finally {
+        in.close();
+        out.close();
+      }
+    }
+  }
+
+  private static void delete(File directory) {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+}
@@ -0,0 +1,112 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Detector-thread writes against UI-thread draws on a {@link GraphicOverlay}.
+ *
+ * A writer thread replays the {@code FaceTracker} call pattern (three {@code add} calls per face
+ * per frame, with every fourth frame dropping the faces as {@code onMissing} would) while a draw
+ * thread keeps redrawing the overlay into a software canvas.  The time each writer call takes is
+ * what the detector thread loses to the overlay; with the snapshot list it should stay flat as
+ * the number of faces, and therefore the draw time, grows.  Results are written to logcat under
+ * the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GraphicOverlayContentionBenchmark {
+  private static final String TAG = "OverlayContention";
+
+  private static final int[] FACE_COUNTS = { 1, 5, 10, 25, 50 };
+  private static final int FRAMES = 600;
+  private static final int GRAPHICS_PER_FACE = 3;
+
+  @Test
+  public void writerLatencyVsFaceCount() throws Exception {
+    for (int faces : FACE_COUNTS) {
+      run(faces);
+    }
+  }
+
+  private void run(int faceCount) throws Exception {
+    final GraphicOverlay overlay =
+        new GraphicOverlay(InstrumentationRegistry.getTargetContext(), null);
+    final BusyGraphic[] graphics = new BusyGraphic[faceCount * GRAPHICS_PER_FACE];
+    for (int i = 0; i < graphics.length; ++i) {
+      graphics[i] = new BusyGraphic(overlay);
+    }
+
+    final AtomicBoolean writing = new AtomicBoolean(true);
+    final CountDownLatch drawerDone = new CountDownLatch(1);
+    final long[] drawCount = new long[1];
+    Thread drawer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Canvas canvas = new Canvas(Bitmap.createBitmap(480, 640, Bitmap.Config.ARGB_8888));
+        while (writing.get()) {
+          overlay.draw(canvas);
+          drawCount[0]++;
+        }
+        drawerDone.countDown();
+      }
+    }, "overlay-draw");
+    drawer.start();
+
+    long[] writeNanos = new long[FRAMES * graphics.length];
+    int writes = 0;
+    for (int frame = 0; frame < FRAMES; ++frame) {
+      boolean missing = frame % 4 == 3;
+      for (BusyGraphic graphic : graphics) {
+        long start = System.nanoTime();
+        if (missing) {
+          overlay.remove(graphic);
+        } else {
+          overlay.add(graphic);
+        }
+        writeNanos[writes++] = System.nanoTime() - start;
+      }
+    }
+    writing.set(false);
+    drawerDone.await();
+
+    for (BusyGraphic graphic : graphics) {
+      overlay.add(graphic);
+    }
+    assertEquals(graphics.length, overlay.getGraphicCount());
+
+    Arrays.sort(writeNanos, 0, writes);
+    Log.i(TAG, String.format("faces=%d draws=%d write p50=%dns p99=%dns max=%dns", faceCount,
+        drawCount[0], writeNanos[writes / 2], writeNanos[(int) (writes * 0.99)],
+        writeNanos[writes - 1]));
+  }
+
+  /**
+   * Graphic with a draw cost in the same range as a bitmap sticker.
+   */
+  private static class BusyGraphic extends GraphicOverlay.Graphic {
+    private final Paint mPaint = new Paint();
+
+    BusyGraphic(GraphicOverlay overlay) {
+      super(overlay);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+      for (int i = 0; i < 8; ++i) {
+        canvas.drawRect(translateX(10 * i), translateY(10 * i), translateX(10 * i + 40),
+            translateY(10 * i + 40), mPaint);
+      }
+    }
+  }
+}
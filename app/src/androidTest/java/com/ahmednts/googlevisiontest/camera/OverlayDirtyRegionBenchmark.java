@@ -0,0 +1,149 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
+import com.ahmednts.googlevisiontest.metrics.Histogram;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.google.android.gms.vision.CameraSource;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Pixels redrawn per overlay frame when every change redraws the whole overlay, as before, and
+ * when only the changed region is redrawn, at 1, 10 and 30 faces that drift slowly across a
+ * 720x960 surface.<p>
+ *
+ * Frames are driven by hand the way {@link OverlayRenderer} draws them, clearing and drawing into
+ * a software bitmap clipped to the dirty region, so the runs are repeatable.  For each run the
+ * share of the overlay redrawn and the draw time are written to logcat under the {@value #TAG}
+ * tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OverlayDirtyRegionBenchmark {
+  private static final String TAG = "OverlayDirtyRegion";
+
+  private static final int[] FACE_COUNTS = { 1, 10, 30 };
+  private static final int WIDTH = 720;
+  private static final int HEIGHT = 960;
+  private static final int WARM_UP_FRAMES = 100;
+  private static final int FRAMES = 600;
+  private static final long FRAME_NANOS = 16666667L;
+
+  @Test
+  public void fullVsDirtyRegion() {
+    for (int faces : FACE_COUNTS) {
+      run(faces, false);
+      run(faces, true);
+    }
+  }
+
+  private void run(int faceCount, boolean dirtyRegions) {
+    GraphicOverlay overlay = new GraphicOverlay(InstrumentationRegistry.getTargetContext(), null);
+    overlay.setCameraInfo(480, 640, CameraSource.CAMERA_FACING_FRONT);
+    FaceBoxGraphic[] graphics = new FaceBoxGraphic[faceCount];
+    for (int i = 0; i < graphics.length; ++i) {
+      graphics[i] = new FaceBoxGraphic(overlay, i, dirtyRegions);
+      overlay.add(graphics[i]);
+    }
+
+    Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    Bounds dirty = new Bounds();
+    long timeNanos = 0;
+    for (int frame = -WARM_UP_FRAMES; frame < FRAMES; ++frame) {
+      if (frame == 0) {
+        overlay.getMetrics().reset();
+      }
+      // Detections arrive at 30 Hz, every other frame.
+      if ((frame & 1) == 0) {
+        overlay.beginFrame();
+        for (FaceBoxGraphic graphic : graphics) {
+          graphic.move(frame);
+        }
+        overlay.commitFrame();
+      }
+
+      timeNanos += FRAME_NANOS;
+      boolean partial = overlay.onRenderFrame(timeNanos, WIDTH, HEIGHT, dirty);
+      if (partial && dirty.isEmpty()) {
+        continue;
+      }
+      canvas.save();
+      if (partial) {
+        canvas.clipRect(dirty.getLeft(), dirty.getTop(), dirty.getRight(), dirty.getBottom());
+      }
+      canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+      overlay.drawGraphics(canvas, timeNanos, partial ? dirty : null);
+      canvas.restore();
+    }
+
+    PipelineMetrics metrics = overlay.getMetrics();
+    Histogram redrawn = metrics.getRedrawnPercent();
+    Histogram draw = metrics.getStage(PipelineMetrics.STAGE_OVERLAY_DRAW);
+    Log.i(TAG, String.format("%s faces=%d redrawn mean=%.1f%% p90<=%d%% (%.0f px/frame)"
+            + " draw p50=%.3fms p99=%.3fms",
+        dirtyRegions ? "dirty-region" : "full", faceCount, redrawn.getMean(),
+        redrawn.getPercentile(0.9), redrawn.getMean() / 100 * WIDTH * HEIGHT,
+        draw.getPercentile(0.5) / 1e6, draw.getPercentile(0.99) / 1e6));
+  }
+
+  /**
+   * A face-sized box that drifts a few preview pixels per detection, optionally telling the
+   * overlay its bounds.
+   */
+  private static class FaceBoxGraphic extends GraphicOverlay.Graphic {
+    private static final float SIZE = 60;
+
+    private final Paint mPaint = new Paint();
+    private final Bounds mBounds = new Bounds();
+    private final int mIndex;
+    private final boolean mHasBounds;
+    private volatile float mX;
+    private volatile float mY;
+
+    FaceBoxGraphic(GraphicOverlay overlay, int index, boolean hasBounds) {
+      super(overlay);
+      mIndex = index;
+      mHasBounds = hasBounds;
+      mPaint.setColor(Color.RED);
+    }
+
+    void move(int frame) {
+      // Spread over a 6x5 grid, each face circling within its cell.
+      double angle = (frame + mIndex * 7) * 0.05;
+      mX = (mIndex % 6) * 80 + 10 + (float) (5 * Math.cos(angle));
+      mY = (mIndex / 6) * 120 + 20 + (float) (5 * Math.sin(angle));
+      postInvalidate();
+    }
+
+    @Override
+    protected boolean computeBounds(PreviewTransform transform, long frameTimeNanos, Bounds out) {
+      if (!mHasBounds) {
+        return false;
+      }
+      layout(transform, out);
+      return true;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+      layout(getTransform(), mBounds);
+      addDrawnBounds(mBounds);
+      canvas.drawRect(mBounds.getLeft(), mBounds.getTop(), mBounds.getRight(),
+          mBounds.getBottom(), mPaint);
+    }
+
+    private void layout(PreviewTransform transform, Bounds out) {
+      out.set(transform.mapX(mX), transform.mapY(mY), transform.mapX(mX + SIZE),
+          transform.mapY(mY + SIZE));
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.Choreographer;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import com.ahmednts.googlevisiontest.metrics.Histogram;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.google.android.gms.vision.CameraSource;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Overlay frame times with the graphics drawn on the UI thread and on a dedicated render thread,
+ * at 1, 10 and 30 faces, while the UI thread spends part of every frame on other work, as it does
+ * with layout and input.<p>
+ *
+ * Both modes draw through an {@link OverlayRenderer} into a software bitmap, one on the main
+ * looper and one on a render thread, so the comparison isolates the thread the overlay is drawn
+ * on; surface composition is not measured.  A writer thread commits an update for every face at
+ * 30 Hz.  For each run the display latency (commit to draw), the draw time, and the number of
+ * frames drawn are written to logcat under the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OverlayRenderModeBenchmark {
+  private static final String TAG = "OverlayRenderMode";
+
+  private static final int[] FACE_COUNTS = { 1, 10, 30 };
+  private static final int GRAPHICS_PER_FACE = 3;
+  private static final int UPDATES = 300;
+  private static final long UPDATE_INTERVAL_MILLIS = 33;
+
+  // UI thread work per vsync: about half of a 60 Hz frame.
+  private static final long UI_WORK_NANOS = 8000000L;
+
+  @Test
+  public void uiThreadVsRenderThread() throws Exception {
+    for (int faces : FACE_COUNTS) {
+      run(faces, false);
+      run(faces, true);
+    }
+  }
+
+  private void run(int faceCount, boolean renderThread) throws Exception {
+    GraphicOverlay overlay = new GraphicOverlay(InstrumentationRegistry.getTargetContext(), null);
+    overlay.setCameraInfo(480, 640, CameraSource.CAMERA_FACING_FRONT);
+    final BoxGraphic[] graphics = new BoxGraphic[faceCount * GRAPHICS_PER_FACE];
+    for (int i = 0; i < graphics.length; ++i) {
+      graphics[i] = new BoxGraphic(overlay, i);
+      overlay.add(graphics[i]);
+    }
+
+    HandlerThread thread = null;
+    Looper looper = Looper.getMainLooper();
+    if (renderThread) {
+      thread = new HandlerThread("OverlayRender", Process.THREAD_PRIORITY_DISPLAY);
+      thread.start();
+      looper = thread.getLooper();
+    }
+    final Bitmap bitmap = Bitmap.createBitmap(720, 960, Bitmap.Config.ARGB_8888);
+    OverlayRenderer renderer = new OverlayRenderer(overlay, looper,
+        new OverlayRenderer.CanvasSurface() {
+          private final Canvas mCanvas = new Canvas(bitmap);
+
+          @Override
+          public int getWidth() {
+            return bitmap.getWidth();
+          }
+
+          @Override
+          public int getHeight() {
+            return bitmap.getHeight();
+          }
+
+          @Override
+          public Canvas lockCanvas(Bounds dirty) {
+            mCanvas.save();
+            if (dirty != null) {
+              mCanvas.clipRect(dirty.getLeft(), dirty.getTop(), dirty.getRight(),
+                  dirty.getBottom());
+            }
+            return mCanvas;
+          }
+
+          @Override
+          public void unlockCanvasAndPost(Canvas canvas) {
+            canvas.restore();
+          }
+        });
+
+    UiLoad load = new UiLoad();
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(load);
+    renderer.start();
+    // Let the renderer attach before measuring.
+    Thread.sleep(100);
+    overlay.getMetrics().reset();
+    long issued = overlay.getInvalidationsIssued();
+
+    for (int update = 0; update < UPDATES; ++update) {
+      overlay.beginFrame();
+      for (BoxGraphic graphic : graphics) {
+        graphic.move(update);
+      }
+      overlay.commitFrame();
+      Thread.sleep(UPDATE_INTERVAL_MILLIS);
+    }
+
+    renderer.stop();
+    load.stop();
+    if (thread != null) {
+      thread.quit();
+      thread.join();
+    }
+
+    PipelineMetrics metrics = overlay.getMetrics();
+    Histogram display = metrics.getStage(PipelineMetrics.STAGE_DISPLAY);
+    Histogram draw = metrics.getStage(PipelineMetrics.STAGE_OVERLAY_DRAW);
+    Log.i(TAG, String.format("%s faces=%d frames=%d display p50=%.2fms p90=%.2fms p99=%.2fms"
+            + " draw p50=%.2fms p99=%.2fms",
+        renderThread ? "render-thread" : "ui-thread", faceCount,
+        overlay.getInvalidationsIssued() - issued, display.getPercentile(0.5) / 1e6,
+        display.getPercentile(0.9) / 1e6, display.getPercentile(0.99) / 1e6,
+        draw.getPercentile(0.5) / 1e6, draw.getPercentile(0.99) / 1e6));
+  }
+
+  /**
+   * Keeps the UI thread busy for part of every vsync until stopped.
+   */
+  private static class UiLoad implements Runnable, Choreographer.FrameCallback {
+    private final AtomicBoolean mRunning = new AtomicBoolean(true);
+
+    @Override
+    public void run() {
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      if (!mRunning.get()) {
+        return;
+      }
+      long end = System.nanoTime() + UI_WORK_NANOS;
+      while (System.nanoTime() < end) {
+        // Spin, like a long layout pass.
+      }
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop() {
+      mRunning.set(false);
+    }
+  }
+
+  /**
+   * A graphic with a draw cost in the same range as a bitmap sticker, moved on every update.
+   */
+  private static class BoxGraphic extends GraphicOverlay.Graphic {
+    private final Paint mPaint = new Paint();
+    private final int mIndex;
+    private volatile float mOffset;
+
+    BoxGraphic(GraphicOverlay overlay, int index) {
+      super(overlay);
+      mIndex = index;
+    }
+
+    void move(int update) {
+      mOffset = (update * 3 + mIndex * 17) % 200;
+      postInvalidate();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+      float offset = mOffset;
+      for (int i = 0; i < 8; ++i) {
+        canvas.drawRect(translateX(offset + 10 * i), translateY(offset + 10 * i),
+            translateX(offset + 10 * i + 40), translateY(offset + 10 * i + 40), mPaint);
+      }
+    }
+  }
+}
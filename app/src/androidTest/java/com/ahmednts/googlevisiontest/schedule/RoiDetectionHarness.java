@@ -0,0 +1,132 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.util.SparseArray;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import com.ahmednts.googlevisiontest.replay.LumaRecordingReader;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.FaceDetector;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks region-of-interest detection against whole-frame detection on recorded camera frames.
+ * Every frame of the recording goes through two detectors built alike, one of them wrapped in a
+ * {@link RoiFaceDetector}, and the faces they find are compared with a
+ * {@link DetectionComparison}.  The comparison and the detection time of both are written to
+ * logcat under the {@value #TAG} tag.<p>
+ *
+ * Record the frames first with {@code RECORD_FRAMES} in {@code FaceTrackingActivity}, pointing
+ * the camera at a few people moving about; the test is skipped when there is no recording.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RoiDetectionHarness {
+  private static final String TAG = "RoiDetectionHarness";
+  private static final String RECORDING_FILE_NAME = "frames.lrec";
+
+  // The settings of the rear camera at the start quality level.
+  private static final float MIN_FACE_SIZE = 0.15f;
+  private static final int FULL_SCAN_INTERVAL = 10;
+  private static final float MARGIN = 0.5f;
+  private static final float MAX_AREA_SHARE = 0.5f;
+
+  // Boxes that overlap this much are the same face; a few faces may be missed for as long as
+  // it takes to the next full scan.
+  private static final float MIN_OVERLAP = 0.5f;
+  private static final double MIN_RECALL = 0.95;
+  private static final double MIN_PRECISION = 0.95;
+
+  @Test
+  public void roiMatchesFullFrame() throws IOException {
+    Context context = InstrumentationRegistry.getTargetContext();
+    File file = new File(context.getExternalFilesDir(null), RECORDING_FILE_NAME);
+    Assume.assumeTrue("No frame recording at " + file, file.exists());
+
+    Detector<Face> reference = createDetector(context);
+    RoiFaceDetector roi = new RoiFaceDetector(createDetector(context),
+        new RegionOfInterest(FULL_SCAN_INTERVAL, MARGIN, MAX_AREA_SHARE, MIN_FACE_SIZE));
+    DetectionComparison comparison = new DetectionComparison(MIN_OVERLAP);
+    FrameRecord expected = new FrameRecord();
+    FrameRecord actual = new FrameRecord();
+    long referenceNanos = 0;
+    long roiNanos = 0;
+
+    LumaRecordingReader reader = new LumaRecordingReader(new FileInputStream(file));
+    try {
+      byte[] nv21 = new byte[0];
+      while (reader.read()) {
+        int width = reader.getWidth();
+        int height = reader.getHeight();
+        int lumaSize = width * height;
+        if (nv21.length != lumaSize + lumaSize / 2) {
+          nv21 = new byte[lumaSize + lumaSize / 2];
+          Arrays.fill(nv21, lumaSize, nv21.length, (byte) 128);
+        }
+        System.arraycopy(reader.getLuma(), 0, nv21, 0, lumaSize);
+        Frame frame = new Frame.Builder()
+            .setImageData(ByteBuffer.wrap(nv21), width, height, ImageFormat.NV21)
+            .setId(reader.getFrameId())
+            .setTimestampMillis(reader.getTimestampMillis())
+            .setRotation(reader.getRotation())
+            .build();
+
+        long start = System.nanoTime();
+        SparseArray<Face> faces = reference.detect(frame);
+        referenceNanos += System.nanoTime() - start;
+        copy(faces, frame, expected);
+
+        start = System.nanoTime();
+        faces = roi.detect(frame);
+        roiNanos += System.nanoTime() - start;
+        copy(faces, frame, actual);
+
+        comparison.add(expected, actual);
+      }
+    } finally {
+      reader.close();
+      reference.release();
+      roi.release();
+    }
+
+    long frames = Math.max(1, comparison.getFrames());
+    Log.i(TAG, comparison.toString());
+    Log.i(TAG, String.format("whole frame: %.2f ms/frame, region of interest: %.2f ms/frame (%s)",
+        referenceNanos / 1e6 / frames, roiNanos / 1e6 / frames, roi.getSummary()));
+    assertTrue(comparison.toString(), comparison.getRecall() >= MIN_RECALL);
+    assertTrue(comparison.toString(), comparison.getPrecision() >= MIN_PRECISION);
+  }
+
+  private static Detector<Face> createDetector(Context context) {
+    return new FaceDetector.Builder(context)
+        .setLandmarkType(FaceDetector.NO_LANDMARKS)
+        .setClassificationType(FaceDetector.NO_CLASSIFICATIONS)
+        .setTrackingEnabled(true)
+        .setMode(FaceDetector.FAST_MODE)
+        .setMinFaceSize(MIN_FACE_SIZE)
+        .build();
+  }
+
+  private static void copy(SparseArray<Face> faces, Frame frame, FrameRecord out) {
+    Frame.Metadata metadata = frame.getMetadata();
+    out.reset(metadata.getId(), metadata.getTimestampMillis(), metadata.getWidth(),
+        metadata.getHeight());
+    for (int i = 0; i < faces.size(); ++i) {
+      GmsFaces.copy(faces.valueAt(i), out.addFace());
+    }
+  }
+}
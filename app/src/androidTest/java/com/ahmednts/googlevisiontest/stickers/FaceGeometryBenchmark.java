@@ -0,0 +1,133 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.PointF;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Per-detection cost of the shared {@link FaceGeometry} against the path it replaces, where the
+ * eyes sticker kept landmark proportions in a {@code HashMap<Integer, PointF>} and the face and hat
+ * stickers each recomputed the face centre and extents.  Results are written to logcat under the
+ * {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FaceGeometryBenchmark {
+  private static final String TAG = "FaceGeometryBenchmark";
+
+  private static final int WARM_UP_ITERATIONS = 20000;
+  private static final int ITERATIONS = 200000;
+
+  // Sinks that keep the computed values alive.
+  private float mSink;
+
+  @Test
+  public void geometryVsHashMap() {
+    Face[] faces = {
+        face(true), face(false)
+    };
+
+    HashMapPath hashMapPath = new HashMapPath();
+    FaceGeometry geometry = new FaceGeometry();
+    FaceRecord record = new FaceRecord();
+
+    for (int i = 0; i < WARM_UP_ITERATIONS; ++i) {
+      hashMapPath.update(faces[i & 1]);
+      updateGeometry(geometry, record, faces[i & 1]);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; ++i) {
+      hashMapPath.update(faces[i & 1]);
+    }
+    long hashMapNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; ++i) {
+      updateGeometry(geometry, record, faces[i & 1]);
+    }
+    long geometryNanos = System.nanoTime() - start;
+
+    Log.i(TAG, String.format("HashMap path: %.1f ns/update, FaceGeometry: %.1f ns/update (%f)",
+        (double) hashMapNanos / ITERATIONS, (double) geometryNanos / ITERATIONS, mSink));
+  }
+
+  /**
+   * What the tracker and the three stickers now do per detection, including the conversion from
+   * the Play Services face.
+   */
+  private void updateGeometry(FaceGeometry geometry, FaceRecord record, Face face) {
+    geometry.update(GmsFaces.copy(face, record));
+    mSink += geometry.getCenterX() + geometry.getCenterY() + geometry.getHalfWidth()
+        + geometry.getHalfHeight() + geometry.getLandmarkX(Landmark.LEFT_EYE)
+        + geometry.getLandmarkX(Landmark.RIGHT_EYE);
+  }
+
+  /**
+   * A face with all eight fast-mode landmarks, or with the eyes missing so that their positions
+   * have to be estimated.
+   */
+  private static Face face(boolean withEyes) {
+    int[] types = withEyes
+        ? new int[] {
+            Landmark.LEFT_EYE, Landmark.RIGHT_EYE, Landmark.NOSE_BASE, Landmark.LEFT_CHEEK,
+            Landmark.RIGHT_CHEEK, Landmark.LEFT_MOUTH, Landmark.RIGHT_MOUTH, Landmark.BOTTOM_MOUTH
+        }
+        : new int[] {
+            Landmark.NOSE_BASE, Landmark.LEFT_CHEEK, Landmark.RIGHT_CHEEK, Landmark.LEFT_MOUTH,
+            Landmark.RIGHT_MOUTH, Landmark.BOTTOM_MOUTH
+        };
+    Landmark[] landmarks = new Landmark[types.length];
+    for (int i = 0; i < types.length; ++i) {
+      landmarks[i] = new Landmark(new PointF(60 + 10 * i, 70 + 5 * i), types[i]);
+    }
+    return new Face(1, new PointF(40, 30), 100, 120, 0, 0, landmarks, 0.5f, 0.5f, 0.5f);
+  }
+
+  /**
+   * The per-detection work of the previous sticker implementation.
+   */
+  private class HashMapPath {
+    private final Map<Integer, PointF> mPreviousProportions = new HashMap<>();
+
+    void update(Face face) {
+      // StickerEyesGraphic: proportions and both eye positions.
+      for (Landmark landmark : face.getLandmarks()) {
+        PointF position = landmark.getPosition();
+        float xProp = (position.x - face.getPosition().x) / face.getWidth();
+        float yProp = (position.y - face.getPosition().y) / face.getHeight();
+        mPreviousProportions.put(landmark.getType(), new PointF(xProp, yProp));
+      }
+      PointF left = getLandmarkPosition(face, Landmark.LEFT_EYE);
+      PointF right = getLandmarkPosition(face, Landmark.RIGHT_EYE);
+
+      // StickerFaceGraphic and StickerHatGraphic: centre and extents, once each.
+      for (int i = 0; i < 2; ++i) {
+        mSink += face.getPosition().x + face.getWidth() / 2;
+        mSink += face.getPosition().y + face.getHeight() / 2;
+        mSink += face.getWidth() / 2.0f + face.getHeight() / 2.0f;
+      }
+      mSink += left.x + right.x;
+    }
+
+    private PointF getLandmarkPosition(Face face, int landmarkId) {
+      for (Landmark landmark : face.getLandmarks()) {
+        if (landmark.getType() == landmarkId) {
+          return landmark.getPosition();
+        }
+      }
+      PointF prop = mPreviousProportions.get(landmarkId);
+      float x = face.getPosition().x + (prop.x * face.getWidth());
+      float y = face.getPosition().y + (prop.y * face.getHeight());
+      return new PointF(x, y);
+    }
+  }
+}
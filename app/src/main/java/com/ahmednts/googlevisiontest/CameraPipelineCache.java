@@ -0,0 +1,131 @@
+package com.ahmednts.googlevisiontest;
+
+/**
+ * Keeps the camera pipeline of each camera facing once it is built: the camera source with its
+ * native detector, processor and trackers.  Switching back to a facing used before then only
+ * restarts the camera stream, instead of building all of that again.<p>
+ *
+ * The pipeline of the facing not in use stays warm until memory runs low and
+ * {@link #releaseInactive()} frees it; it is built again the next time its facing is used.  Hits
+ * and misses are counted so that switches can be told apart in the logs.  Meant to be used on
+ * the UI thread only.
+ *
+ * @param <P> the pipeline type
+ */
+final class CameraPipelineCache<P> {
+  /**
+   * Builds and frees the pipeline of a facing.
+   */
+  interface Factory<P> {
+    P create(int facing);
+
+    void release(P pipeline);
+  }
+
+  // Facings follow CameraSource.CAMERA_FACING_BACK (0) and CAMERA_FACING_FRONT (1).
+  private static final int FACINGS = 2;
+
+  private final Factory<P> mFactory;
+  private final Object[] mPipelines = new Object[FACINGS];
+  private int mActiveFacing = -1;
+
+  private int mHits;
+  private int mMisses;
+  private int mReleased;
+
+  CameraPipelineCache(Factory<P> factory) {
+    mFactory = factory;
+  }
+
+  /**
+   * Returns the pipeline of {@code facing}, building it if it is not cached, and makes it the
+   * active one.
+   */
+  P activate(int facing) {
+    P pipeline = get(facing);
+    if (pipeline != null) {
+      mHits++;
+    } else {
+      mMisses++;
+      pipeline = mFactory.create(facing);
+      mPipelines[facing] = pipeline;
+    }
+    mActiveFacing = facing;
+    return pipeline;
+  }
+
+  /**
+   * Returns whether {@code facing} has a pipeline ready to start.
+   */
+  boolean isWarm(int facing) {
+    return get(facing) != null;
+  }
+
+  /**
+   * Returns the facing last activated, or -1 if there is none.
+   */
+  int getActiveFacing() {
+    return mActiveFacing;
+  }
+
+  /**
+   * Frees the pipeline of {@code facing}, e.g., to rebuild it with another configuration.  If it
+   * was the active one, no pipeline is active until the next {@link #activate(int)}.
+   */
+  void invalidate(int facing) {
+    P pipeline = get(facing);
+    if (pipeline != null) {
+      mPipelines[facing] = null;
+      mReleased++;
+      mFactory.release(pipeline);
+    }
+    if (facing == mActiveFacing) {
+      mActiveFacing = -1;
+    }
+  }
+
+  /**
+   * Frees every pipeline but the active one.
+   *
+   * @return how many pipelines were freed
+   */
+  int releaseInactive() {
+    int released = 0;
+    for (int facing = 0; facing < FACINGS; ++facing) {
+      if (facing != mActiveFacing && mPipelines[facing] != null) {
+        invalidate(facing);
+        released++;
+      }
+    }
+    return released;
+  }
+
+  /**
+   * Frees every pipeline, the active one included.
+   */
+  void releaseAll() {
+    for (int facing = 0; facing < FACINGS; ++facing) {
+      invalidate(facing);
+    }
+  }
+
+  int getHits() {
+    return mHits;
+  }
+
+  int getMisses() {
+    return mMisses;
+  }
+
+  int getReleased() {
+    return mReleased;
+  }
+
+  @SuppressWarnings("unchecked")
+  private P get(int facing) {
+    if (facing < 0 || facing >= FACINGS) {
+      throw new IllegalArgumentException("Unknown camera facing " + facing);
+    }
+    return (P) mPipelines[facing];
+  }
+}
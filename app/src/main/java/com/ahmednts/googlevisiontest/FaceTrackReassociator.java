@@ -0,0 +1,347 @@
+package com.ahmednts.googlevisiontest;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import com.ahmednts.googlevisiontest.face.FrameClock;
+import java.util.ArrayDeque;
+
+/**
+ * Carries trackers over brief occlusions.  When a face is hidden for a moment the detector ends
+ * its track and starts a new id once the face is back, which would start the stickers over
+ * without their smoothing and landmark state.  Instead, a track that ends is parked, with its
+ * stickers hidden, for up to a TTL; a new track that starts close to a parked one, with a similar
+ * size, takes over its tracker as if the face had never gone.<p>
+ *
+ * Parked tracks are kept in a hashed uniform grid of {@code cellSize} preview pixels, so matching
+ * a new face only looks at the parked faces in the cells around it, and the work per frame stays
+ * proportional to the number of faces even with a hundred or more of them.  Parked tracks whose
+ * TTL has passed are ended on the next callback, oldest first.<p>
+ *
+ * Track handles, their Play Services adapters and the grid entries are all recycled.  Not
+ * thread-safe; all tracks are driven from the detector thread.
+ */
+final class FaceTrackReassociator {
+  // A new face matches a parked one whose centre is within this share of the face width...
+  private static final float MATCH_DISTANCE = 0.5f;
+  // ...and whose width differs by less than this factor.
+  private static final float MAX_SIZE_RATIO = 1.5f;
+
+  // Grid buckets, a power of two.  Cells hash into them, so collisions only cost extra checks.
+  private static final int BUCKET_COUNT = 256;
+  // A search spanning more cells than this per axis scans the parked tracks instead.
+  private static final int MAX_SEARCH_CELLS = 8;
+
+  /**
+   * Creates the tracker for a face that does not continue a parked track.
+   */
+  interface Factory {
+    FaceTrackListener create(FaceRecord face);
+  }
+
+  private final Factory mFactory;
+  private final long mTtlNanos;
+  private final float mCellSize;
+
+  private final Parked[] mBuckets = new Parked[BUCKET_COUNT];
+  // Parked tracks in the order they were parked, for expiry.
+  private Parked mOldest;
+  private Parked mNewest;
+  private int mParkedCount;
+
+  private final ArrayDeque<Track> mFreeTracks = new ArrayDeque<>();
+  private Parked mFreeParked;
+
+  private long mReassociations;
+  private long mCandidatesChecked;
+
+  FaceTrackReassociator(Factory factory, long ttlNanos, float cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+    }
+    mFactory = factory;
+    mTtlNanos = ttlNanos;
+    mCellSize = cellSize;
+  }
+
+  /**
+   * Returns a listener for a new detector track.
+   */
+  FaceTrackListener newTrack() {
+    Track track = mFreeTracks.poll();
+    return track != null ? track : new Track();
+  }
+
+  /**
+   * Returns a Play Services tracker for a new detector track, stamping records with
+   * {@code clock}.
+   */
+  GmsFaceTracker newGmsTrack(FrameClock clock) {
+    Track track = (Track) newTrack();
+    if (track.mGmsTracker == null || track.mGmsClock != clock) {
+      track.mGmsTracker = new GmsFaceTracker(track, clock);
+      track.mGmsClock = clock;
+    }
+    return track.mGmsTracker;
+  }
+
+  /**
+   * Ends every parked track, e.g., when the preview coordinates are about to change.
+   */
+  void endAll() {
+    while (mOldest != null) {
+      Parked parked = mOldest;
+      FaceTrackListener listener = parked.listener;
+      unpark(parked);
+      listener.onDone();
+    }
+  }
+
+  int getParkedCount() {
+    return mParkedCount;
+  }
+
+  /**
+   * Returns how many new tracks took over a parked tracker.
+   */
+  long getReassociations() {
+    return mReassociations;
+  }
+
+  /**
+   * Returns how many parked tracks were compared against new faces, to show that the grid keeps
+   * this independent of the number of faces.
+   */
+  long getCandidatesChecked() {
+    return mCandidatesChecked;
+  }
+
+  /**
+   * Ends the parked tracks last seen more than the TTL before {@code nowNanos}.
+   */
+  private void expire(long nowNanos) {
+    while (mOldest != null && nowNanos - mOldest.lastSeenNanos > mTtlNanos) {
+      Parked parked = mOldest;
+      FaceTrackListener listener = parked.listener;
+      unpark(parked);
+      listener.onDone();
+    }
+  }
+
+  /**
+   * Returns the parked track closest to {@code face} that it may continue, or null.
+   */
+  private Parked findMatch(FaceRecord face) {
+    if (mParkedCount == 0) {
+      return null;
+    }
+    float x = face.getLeft() + face.getWidth() / 2;
+    float y = face.getTop() + face.getHeight() / 2;
+    float radius = MATCH_DISTANCE * face.getWidth();
+
+    int minCellX = cell(x - radius);
+    int maxCellX = cell(x + radius);
+    int minCellY = cell(y - radius);
+    int maxCellY = cell(y + radius);
+    Parked best = null;
+    float bestDistance = radius * radius;
+    if (maxCellX - minCellX >= MAX_SEARCH_CELLS || maxCellY - minCellY >= MAX_SEARCH_CELLS) {
+      for (Parked parked = mOldest; parked != null; parked = parked.newer) {
+        float distance = matchDistance(parked, face, x, y);
+        if (distance <= bestDistance) {
+          best = parked;
+          bestDistance = distance;
+        }
+      }
+      return best;
+    }
+
+    for (int cellY = minCellY; cellY <= maxCellY; ++cellY) {
+      for (int cellX = minCellX; cellX <= maxCellX; ++cellX) {
+        for (Parked parked = mBuckets[bucket(cellX, cellY)]; parked != null;
+            parked = parked.nextInBucket) {
+          // Other cells share the bucket; skip them so each track is looked at once.
+          if (parked.cellX != cellX || parked.cellY != cellY) {
+            continue;
+          }
+          float distance = matchDistance(parked, face, x, y);
+          if (distance <= bestDistance) {
+            best = parked;
+            bestDistance = distance;
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Returns the squared centre distance between a parked track and a face, or infinity if their
+   * sizes are too different.
+   */
+  private float matchDistance(Parked parked, FaceRecord face, float x, float y) {
+    ++mCandidatesChecked;
+    float ratio = parked.width / face.getWidth();
+    if (!(ratio < MAX_SIZE_RATIO && ratio > 1 / MAX_SIZE_RATIO)) {
+      return Float.POSITIVE_INFINITY;
+    }
+    float dx = parked.centerX - x;
+    float dy = parked.centerY - y;
+    return dx * dx + dy * dy;
+  }
+
+  private void park(FaceTrackListener listener, Track track) {
+    Parked parked = mFreeParked;
+    if (parked != null) {
+      mFreeParked = parked.newer;
+    } else {
+      parked = new Parked();
+    }
+    parked.listener = listener;
+    parked.centerX = track.mCenterX;
+    parked.centerY = track.mCenterY;
+    parked.width = track.mWidth;
+    parked.lastSeenNanos = track.mLastSeenNanos;
+    parked.cellX = cell(parked.centerX);
+    parked.cellY = cell(parked.centerY);
+
+    int bucket = bucket(parked.cellX, parked.cellY);
+    parked.previousInBucket = null;
+    parked.nextInBucket = mBuckets[bucket];
+    if (parked.nextInBucket != null) {
+      parked.nextInBucket.previousInBucket = parked;
+    }
+    mBuckets[bucket] = parked;
+
+    parked.older = mNewest;
+    parked.newer = null;
+    if (mNewest != null) {
+      mNewest.newer = parked;
+    } else {
+      mOldest = parked;
+    }
+    mNewest = parked;
+    ++mParkedCount;
+  }
+
+  private void unpark(Parked parked) {
+    if (parked.previousInBucket != null) {
+      parked.previousInBucket.nextInBucket = parked.nextInBucket;
+    } else {
+      mBuckets[bucket(parked.cellX, parked.cellY)] = parked.nextInBucket;
+    }
+    if (parked.nextInBucket != null) {
+      parked.nextInBucket.previousInBucket = parked.previousInBucket;
+    }
+
+    if (parked.older != null) {
+      parked.older.newer = parked.newer;
+    } else {
+      mOldest = parked.newer;
+    }
+    if (parked.newer != null) {
+      parked.newer.older = parked.older;
+    } else {
+      mNewest = parked.older;
+    }
+    --mParkedCount;
+
+    parked.listener = null;
+    parked.previousInBucket = null;
+    parked.nextInBucket = null;
+    parked.older = null;
+    parked.newer = mFreeParked;
+    mFreeParked = parked;
+  }
+
+  private int cell(float coordinate) {
+    return (int) Math.floor(coordinate / mCellSize);
+  }
+
+  private static int bucket(int cellX, int cellY) {
+    return (cellX * 73856093 ^ cellY * 19349663) & (BUCKET_COUNT - 1);
+  }
+
+  private static long timeOf(FaceRecord face) {
+    long timestampNanos = face.getTimestampNanos();
+    return timestampNanos != 0 ? timestampNanos : System.nanoTime();
+  }
+
+  /**
+   * A tracker waiting for its face to come back.  Free entries are chained through
+   * {@code newer}.
+   */
+  private static final class Parked {
+    FaceTrackListener listener;
+    float centerX;
+    float centerY;
+    float width;
+    long lastSeenNanos;
+    int cellX;
+    int cellY;
+    Parked previousInBucket;
+    Parked nextInBucket;
+    Parked older;
+    Parked newer;
+  }
+
+  /**
+   * One detector track, forwarding to the tracker it created or took over.
+   */
+  private final class Track implements FaceTrackListener {
+    private FaceTrackListener mTarget;
+    private boolean mSeen;
+    private float mCenterX;
+    private float mCenterY;
+    private float mWidth;
+    private long mLastSeenNanos;
+
+    private GmsFaceTracker mGmsTracker;
+    private FrameClock mGmsClock;
+
+    @Override
+    public void onNewItem(int id, FaceRecord face) {
+      expire(timeOf(face));
+      mSeen = false;
+      Parked match = findMatch(face);
+      if (match != null) {
+        // Carry the stickers and their state over; the first update shows them again.
+        mTarget = match.listener;
+        unpark(match);
+        ++mReassociations;
+      } else {
+        mTarget = mFactory.create(face);
+        mTarget.onNewItem(id, face);
+      }
+    }
+
+    @Override
+    public void onUpdate(FaceRecord face) {
+      long nowNanos = timeOf(face);
+      expire(nowNanos);
+      mSeen = true;
+      mCenterX = face.getLeft() + face.getWidth() / 2;
+      mCenterY = face.getTop() + face.getHeight() / 2;
+      mWidth = face.getWidth();
+      mLastSeenNanos = nowNanos;
+      mTarget.onUpdate(face);
+    }
+
+    @Override
+    public void onMissing() {
+      mTarget.onMissing();
+    }
+
+    @Override
+    public void onDone() {
+      FaceTrackListener target = mTarget;
+      mTarget = null;
+      if (mSeen && mWidth > 0 && mTtlNanos > 0) {
+        target.onMissing();
+        park(target, this);
+      } else {
+        target.onDone();
+      }
+      mFreeTracks.push(this);
+    }
+  }
+}
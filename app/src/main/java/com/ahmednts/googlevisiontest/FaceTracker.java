@@ -15,50 +15,97 @@
  */
 package com.ahmednts.googlevisiontest;
 
-import android.graphics.Bitmap;
 import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import com.ahmednts.googlevisiontest.metrics.Tracing;
+import com.ahmednts.googlevisiontest.stickers.FaceGeometry;
+import com.ahmednts.googlevisiontest.stickers.StickerAssets;
 import com.ahmednts.googlevisiontest.stickers.StickerEyesGraphic;
 import com.ahmednts.googlevisiontest.stickers.StickerFaceGraphic;
 import com.ahmednts.googlevisiontest.stickers.StickerHatGraphic;
-import com.google.android.gms.vision.Tracker;
-import com.google.android.gms.vision.face.Face;
-import com.google.android.gms.vision.face.FaceDetector;
+import com.ahmednts.googlevisiontest.stickers.StickerSet;
 
-class FaceTracker extends Tracker<Face> {
-  private Bitmap[] mBitmaps;
+/**
+ * Keeps the stickers of one tracked face on the overlay.  Driven by a {@link GmsFaceTracker} when
+ * running on the camera, or directly by a recording when replayed off-device.<p>
+ *
+ * The stickers are created once, with the tracker, and reset with the face geometry at the end of
+ * every track, so the same tracker can follow one face after another.  Trackers that come from a
+ * {@link FaceTrackerPool} return to it when their track is done.<p>
+ *
+ * Only the stickers selected in the shared {@link StickerSet} are shown; a change of selection
+ * takes effect with the next update.
+ */
+class FaceTracker implements FaceTrackListener {
+  private StickerAssets mAssets;
 
   private GraphicOverlay mOverlay;
-  private StickerEyesGraphic mEyesGraphic;
-  private StickerFaceGraphic mFaceGraphic;
-  private StickerHatGraphic mHatGraphic;
+  private final FaceTrackerPool mPool;
+  private final StickerSet mStickers;
+  private final FaceGeometry mGeometry =
+      new FaceGeometry(FaceGeometry.DEFAULT_MIN_CUTOFF, FaceGeometry.DEFAULT_BETA);
+  private final StickerEyesGraphic mEyesGraphic;
+  private final StickerFaceGraphic mFaceGraphic;
+  private final StickerHatGraphic mHatGraphic;
 
-  FaceTracker(GraphicOverlay overlay, Bitmap[] bitmaps) {
+  // The stickers on the overlay as of the last update.
+  private int mShownStickers;
+
+  FaceTracker(GraphicOverlay overlay, StickerAssets assets) {
+    this(overlay, assets, new StickerSet(StickerSet.ALL), null);
+  }
+
+  FaceTracker(GraphicOverlay overlay, StickerAssets assets, StickerSet stickers,
+      FaceTrackerPool pool) {
     mOverlay = overlay;
-    mBitmaps = bitmaps;
+    mAssets = assets;
+    mStickers = stickers;
+    mPool = pool;
+    mEyesGraphic = new StickerEyesGraphic(mOverlay);
+    mFaceGraphic = new StickerFaceGraphic(mOverlay, mAssets);
+    mHatGraphic = new StickerHatGraphic(mOverlay, mAssets);
   }
 
   /**
-   * Resets the underlying googly eyes graphic and associated physics state.
+   * Returns the geometry that the stickers are drawn from.
+   */
+  FaceGeometry getGeometry() {
+    return mGeometry;
+  }
+
+  /**
+   * Resets the face geometry, and with it what the stickers show, for a new face.
    */
   @Override
-  public void onNewItem(int id, Face face) {
-    mEyesGraphic = new StickerEyesGraphic(mOverlay);
-    mFaceGraphic = new StickerFaceGraphic(mOverlay, mBitmaps[0]);
-    mHatGraphic = new StickerHatGraphic(mOverlay, mBitmaps[1]);
+  public void onNewItem(int id, FaceRecord face) {
+    mGeometry.reset();
   }
 
   /**
-   * Update each graphic item info like position/sticker
+   * Update each graphic item info like position/sticker.  The face geometry is computed once here
+   * and shared by all of the stickers.
    */
   @Override
-  public void onUpdate(FaceDetector.Detections<Face> detectionResults, Face face) {
-    mOverlay.add(mEyesGraphic);
-    mOverlay.add(mFaceGraphic);
-    mOverlay.add(mHatGraphic);
+  public void onUpdate(FaceRecord face) {
+    Tracing.beginSection("FaceTracker.onUpdate");
+    mOverlay.getMetrics().onTrackerUpdate(System.nanoTime());
+    int stickers = mStickers.getStickers();
+    showStickers(stickers);
+
+    long timestampNanos = face.getTimestampNanos();
+    mGeometry.update(face, timestampNanos != 0 ? timestampNanos : System.nanoTime());
 
-    mEyesGraphic.updateEyes(face);
-    mFaceGraphic.updateEyes(face);
-    mHatGraphic.updateEyes(face);
+    if ((stickers & StickerSet.EYES) != 0) {
+      mEyesGraphic.updateEyes(mGeometry);
+    }
+    if ((stickers & StickerSet.FACE) != 0) {
+      mFaceGraphic.updateEyes(mGeometry);
+    }
+    if ((stickers & StickerSet.HAT) != 0) {
+      mHatGraphic.updateEyes(mGeometry);
+    }
+    Tracing.endSection();
   }
 
   /**
@@ -67,20 +114,43 @@ class FaceTracker extends Tracker<Face> {
    * view).
    */
   @Override
-  public void onMissing(FaceDetector.Detections<Face> detectionResults) {
-    mOverlay.remove(mEyesGraphic);
-    mOverlay.remove(mFaceGraphic);
-    mOverlay.remove(mHatGraphic);
+  public void onMissing() {
+    showStickers(0);
   }
 
   /**
    * Called when the face is assumed to be gone for good. Remove graphic item from
-   * the overlay.
+   * the overlay, reset the tracker and hand it back to its pool, if it has one.
    */
   @Override
   public void onDone() {
-    mOverlay.remove(mEyesGraphic);
-    mOverlay.remove(mFaceGraphic);
-    mOverlay.remove(mHatGraphic);
+    showStickers(0);
+    mGeometry.reset();
+    if (mPool != null) {
+      mPool.release(this);
+    }
+  }
+
+  /**
+   * Adds the given stickers to the overlay and removes the others that were shown.
+   */
+  private void showStickers(int stickers) {
+    int hidden = mShownStickers & ~stickers;
+    mShownStickers = stickers;
+    if ((stickers & StickerSet.EYES) != 0) {
+      mOverlay.add(mEyesGraphic);
+    } else if ((hidden & StickerSet.EYES) != 0) {
+      mOverlay.remove(mEyesGraphic);
+    }
+    if ((stickers & StickerSet.FACE) != 0) {
+      mOverlay.add(mFaceGraphic);
+    } else if ((hidden & StickerSet.FACE) != 0) {
+      mOverlay.remove(mFaceGraphic);
+    }
+    if ((stickers & StickerSet.HAT) != 0) {
+      mOverlay.add(mHatGraphic);
+    } else if ((hidden & StickerSet.HAT) != 0) {
+      mOverlay.remove(mHatGraphic);
+    }
   }
-}
\ No newline at end of file
+}
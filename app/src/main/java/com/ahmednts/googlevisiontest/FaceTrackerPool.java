@@ -0,0 +1,75 @@
+package com.ahmednts.googlevisiontest;
+
+import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.ahmednts.googlevisiontest.stickers.StickerAssets;
+import com.ahmednts.googlevisiontest.stickers.StickerSet;
+import java.util.ArrayDeque;
+
+/**
+ * Keeps the trackers of faces that have left, stickers and all, for the next faces to arrive.  In
+ * a crowd faces come and go many times a second, and building three stickers with their paints
+ * for every new face turns into a steady stream of garbage.<p>
+ *
+ * A tracker returns itself from {@link FaceTracker#onDone()}, already reset.  At most
+ * {@code maxIdle} trackers are kept; any more are left to the garbage collector.  Hits and misses
+ * are counted in the overlay's {@link PipelineMetrics}.  Thread-safe.
+ */
+final class FaceTrackerPool {
+  private final GraphicOverlay mOverlay;
+  private final StickerAssets mAssets;
+  private final StickerSet mStickers;
+  private final PipelineMetrics mMetrics;
+  private final int mMaxIdle;
+
+  // Most recently released first, guarded by this.
+  private final ArrayDeque<FaceTracker> mIdle;
+
+  FaceTrackerPool(GraphicOverlay overlay, StickerAssets assets, int maxIdle) {
+    this(overlay, assets, new StickerSet(StickerSet.ALL), maxIdle);
+  }
+
+  /**
+   * Creates a pool whose trackers show the stickers selected in {@code stickers}.
+   */
+  FaceTrackerPool(GraphicOverlay overlay, StickerAssets assets, StickerSet stickers,
+      int maxIdle) {
+    if (maxIdle < 0) {
+      throw new IllegalArgumentException("maxIdle must not be negative: " + maxIdle);
+    }
+    mOverlay = overlay;
+    mAssets = assets;
+    mStickers = stickers;
+    mMetrics = overlay.getMetrics();
+    mMaxIdle = maxIdle;
+    mIdle = new ArrayDeque<>(Math.max(1, maxIdle));
+  }
+
+  /**
+   * Returns an idle tracker, or a new one if there is none.  The tracker goes back to the pool
+   * when its track is done.
+   */
+  FaceTracker acquire() {
+    FaceTracker tracker;
+    synchronized (this) {
+      tracker = mIdle.poll();
+    }
+    mMetrics.onTrackerAcquired(tracker != null);
+    return tracker != null ? tracker : new FaceTracker(mOverlay, mAssets, mStickers, this);
+  }
+
+  /**
+   * Takes back a tracker whose track is done.  Releasing a tracker twice keeps it only once.
+   */
+  void release(FaceTracker tracker) {
+    synchronized (this) {
+      if (mIdle.size() < mMaxIdle && !mIdle.contains(tracker)) {
+        mIdle.push(tracker);
+      }
+    }
+  }
+
+  synchronized int getIdleCount() {
+    return mIdle.size();
+  }
+}
@@ -8,27 +8,54 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.View;
 import android.widget.Toast;
 import com.ahmednts.googlevisiontest.camera.CameraSourcePreview;
 import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
+import com.ahmednts.googlevisiontest.camera.OverlayFrameProcessor;
+import com.ahmednts.googlevisiontest.camera.RenderThreadOverlay;
+import com.ahmednts.googlevisiontest.camera.SnapshotCapture;
+import com.ahmednts.googlevisiontest.face.DetectorFeatures;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import com.ahmednts.googlevisiontest.frame.DownscalingFaceDetector;
+import com.ahmednts.googlevisiontest.frame.FramePool;
+import com.ahmednts.googlevisiontest.metrics.MetricsReporter;
+import com.ahmednts.googlevisiontest.quality.QualityController;
+import com.ahmednts.googlevisiontest.quality.QualityLevel;
+import com.ahmednts.googlevisiontest.replay.DetectionRecorder;
+import com.ahmednts.googlevisiontest.replay.FaceRecordingWriter;
+import com.ahmednts.googlevisiontest.replay.FrameRecorder;
+import com.ahmednts.googlevisiontest.replay.LumaRecordingWriter;
+import com.ahmednts.googlevisiontest.schedule.RegionOfInterest;
+import com.ahmednts.googlevisiontest.schedule.RoiFaceDetector;
+import com.ahmednts.googlevisiontest.schedule.ScheduledFaceDetector;
+import com.ahmednts.googlevisiontest.stickers.StickerAssetLoader;
+import com.ahmednts.googlevisiontest.stickers.StickerAssets;
+import com.ahmednts.googlevisiontest.stickers.StickerSet;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.vision.CameraSource;
 import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
 import com.google.android.gms.vision.MultiProcessor;
 import com.google.android.gms.vision.Tracker;
 import com.google.android.gms.vision.face.Face;
 import com.google.android.gms.vision.face.FaceDetector;
 import com.google.android.gms.vision.face.LargestFaceFocusingProcessor;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FaceTrackingActivity extends AppCompatActivity {
   private static final String TAG = FaceTrackingActivity.class.getSimpleName();
@@ -38,40 +65,285 @@ public class FaceTrackingActivity extends AppCompatActivity {
   // permission request codes need to be < 256
   private static final int RC_HANDLE_CAMERA_PERM = 2;
 
-  private CameraSource mCameraSource = null;
   private CameraSourcePreview mPreview;
   private GraphicOverlay mGraphicOverlay;
 
   private boolean mIsFrontFacing = true;
 
-  private Bitmap[] mBitmaps = new Bitmap[2];
+  // The camera and detector chain of each facing, kept warm once built so that switching cameras
+  // only restarts the camera stream, and the one in use.  The other facing's pipeline is
+  // released when memory runs low.
+  private final CameraPipelineCache<CameraPipeline> mPipelines = new CameraPipelineCache<>(
+      new CameraPipelineCache.Factory<CameraPipeline>() {
+        @Override
+        public CameraPipeline create(int facing) {
+          return createCameraSource(facing == CameraSource.CAMERA_FACING_FRONT);
+        }
+
+        @Override
+        public void release(final CameraPipeline pipeline) {
+          // Releases the detector, its processor and trackers with the camera.  A detector that
+          // may still be warming up is released once it is done.
+          if (!pipeline.warming) {
+            pipeline.cameraSource.release();
+            return;
+          }
+          mStartupPipeline.afterWarmUps(new Runnable() {
+            @Override
+            public void run() {
+              pipeline.cameraSource.release();
+            }
+          });
+        }
+      });
+  private CameraPipeline mPipeline;
+
+  // When the camera was last switched, until the new camera's first detections arrive, and
+  // whether its pipeline was still warm.
+  private final AtomicLong mSwitchStartNanos = new AtomicLong();
+  private volatile boolean mSwitchWarm;
+
+  // Upper bound for all cached sticker atlases together.
+  private static final int STICKER_CACHE_BYTES = 8 * 1024 * 1024;
+
+  // The sticker selections that the sticker button steps through.  Only the eyes need landmarks
+  // and classification, so the detector is rebuilt going to the face alone and back to all
+  // stickers, and kept for every other step.
+  private static final int[] STICKER_CYCLE = {
+      StickerSet.ALL, StickerSet.EYES, StickerSet.FACE, StickerSet.FACE | StickerSet.HAT,
+      StickerSet.HAT
+  };
+
+  // Writes every frame of detection results to detections.frec in the app's external files
+  // directory, for replaying through the tracker and sticker code off-device.
+  private static final boolean RECORD_DETECTIONS = false;
+  private static final String RECORDING_FILE_NAME = "detections.frec";
+
+  // Writes the luma of the first RECORDED_FRAMES camera frames to frames.lrec in the same
+  // directory, for checking region-of-interest detection against whole-frame detection.
+  private static final boolean RECORD_FRAMES = false;
+  private static final String FRAME_RECORDING_FILE_NAME = "frames.lrec";
+  private static final int RECORDED_FRAMES = 300;
+
+  private final StickerAssets mStickerAssets = new StickerAssets(STICKER_CACHE_BYTES);
+  private StickerAssetLoader mStickerAssetLoader;
+
+  // The stickers shown on every face.  Each pipeline records the detector features it was built
+  // with to serve them.
+  private final StickerSet mStickerSet = new StickerSet(STICKER_CYCLE[0]);
+  private int mStickerIndex;
+
+  // Alternates the detector between the features the stickers need and the ones it was always
+  // built with before, every DETECTOR_COMPARISON_MILLIS, so that the pipeline metrics report the
+  // detection latency saved.
+  private static final boolean COMPARE_DETECTOR_FEATURES = false;
+  private static final long DETECTOR_COMPARISON_MILLIS = 10000;
+
+  private boolean mUseLegacyDetectorFeatures;
+
+  private StartupTimer mStartupTimer;
+
+  // Checks Play Services and each new detector, and warms the detector up, in the background
+  // before its camera starts.
+  private StartupPipeline mStartupPipeline;
+
+  // Detection runs on at most every MAX_DETECTION_INTERVAL-th frame, aiming to keep the detector
+  // busy for DETECTION_FRAME_SHARE of the frame time.  A mean luma change above MOTION_THRESHOLD
+  // between two frames forces a detection.  A detection is skipped, and the last one reused, when
+  // the frame's luma signature is within REUSE_THRESHOLD of the last detected frame's.
+  private static final int MAX_DETECTION_INTERVAL = 6;
+  private static final float DETECTION_FRAME_SHARE = 0.5f;
+  private static final int MOTION_THRESHOLD = 12;
+  private static final int REUSE_THRESHOLD = 3;
+
+  // Detection looks at the region around the faces it found last, widened by ROI_MARGIN face
+  // sizes on each side, and scans the whole frame every ROI_FULL_SCAN_INTERVAL detections or
+  // when the region would cover more than ROI_MAX_AREA_SHARE of it.
+  private static final int ROI_FULL_SCAN_INTERVAL = 10;
+  private static final float ROI_MARGIN = 0.5f;
+  private static final float ROI_MAX_AREA_SHARE = 0.5f;
+
+  // Frames wider than MAX_DETECTOR_WIDTH upright are shrunk before detection, into one of
+  // FRAME_POOL_SIZE direct buffers kept across camera rebuilds: one for each camera's detector
+  // thread, since the last frame of one camera may still be in detection when the other starts.
+  private static final int MAX_DETECTOR_WIDTH = 640;
+  private static final int FRAME_POOL_SIZE = 2;
+
+  private final FramePool mFramePool = new FramePool(FRAME_POOL_SIZE);
+
+  // A long press on the preview saves the camera frame with the stickers on top, encoded in the
+  // background.
+  private static final int SNAPSHOT_QUALITY = 90;
+
+  private SnapshotCapture mSnapshotCapture;
+
+  // Trackers of faces that have left the rear camera's view, kept with their stickers for the
+  // faces that arrive next.
+  private static final int TRACKER_POOL_SIZE = 16;
+
+  private FaceTrackerPool mTrackerPool;
+
+  // How long the tracker of a face that disappeared waits for the face to come back under a new
+  // track id, and the grid cell size, in preview pixels, used to find it again.
+  private static final long REASSOCIATION_TTL_NANOS = 500000000L;
+  private static final float REASSOCIATION_CELL_SIZE = 32.0f;
+
+  private FaceTrackReassociator mReassociator;
+
+  // Period of the pipeline latency summaries in logcat.  The same summary is available at any
+  // time from "adb shell dumpsys activity <this activity>".
+  private static final long METRICS_REPORT_MILLIS = 10000;
+
+  private MetricsReporter mMetricsReporter;
+
+  // Preview configurations to choose from, cheapest first, and the detector latency that still
+  // counts as real-time.  Larger previews let the detector find smaller faces, so the minimum face
+  // size goes down as the resolution goes up.  Both cameras start at 320x240 at 60 fps.
+  private static final QualityLevel[] FRONT_QUALITY_LEVELS = {
+      new QualityLevel(320, 240, 30.0f, 0.35f),
+      new QualityLevel(320, 240, 60.0f, 0.35f),
+      new QualityLevel(640, 480, 30.0f, 0.3f),
+      new QualityLevel(1280, 720, 30.0f, 0.25f)
+  };
+  private static final QualityLevel[] BACK_QUALITY_LEVELS = {
+      new QualityLevel(320, 240, 30.0f, 0.15f),
+      new QualityLevel(320, 240, 60.0f, 0.15f),
+      new QualityLevel(640, 480, 30.0f, 0.1f),
+      new QualityLevel(1280, 720, 30.0f, 0.07f)
+  };
+  private static final int START_QUALITY_LEVEL = 1;
+  private static final long QUALITY_LATENCY_BUDGET_NANOS = 33000000L;
+
+  // One controller per facing, indexed by CameraSource.CAMERA_FACING_*, kept across rebuilds.
+  private final QualityController[] mQualityControllers = new QualityController[2];
+  private boolean mIsResumed;
+
+  // Rebuilds the active camera and detector for the level the quality controller switched to, or
+  // for the detector features of the selected stickers.  Nothing is rebuilt if the pipeline
+  // already matches them, e.g., when the camera was switched in the meantime.
+  private final Runnable mRebuildCameraSource = new Runnable() {
+    @Override
+    public void run() {
+      if (mPipeline == null || !isStale(mPipeline)) {
+        return;
+      }
+      Log.i(TAG, "Rebuilding camera at quality " + getQualityController(mIsFrontFacing).getLevel()
+          + ", detector features "
+          + DetectorFeatures.toString(getDetectorFeatures(mIsFrontFacing)));
+      mPreview.stop();
+      // Parked faces are in the old preview's coordinates.
+      mReassociator.endAll();
+      mGraphicOverlay.clear();
+      activatePipeline();
+      if (mIsResumed) {
+        startCameraSource();
+      }
+    }
+  };
+
+  /**
+   * The camera source of one facing, with the detector chain that feeds its processor, and the
+   * configuration they were built for.
+   */
+  private static final class CameraPipeline {
+    final boolean frontFacing;
+    QualityLevel quality;
+    int detectorFeatures;
+    FaceDetector faceDetector;
+    ScheduledFaceDetector detector;
+    RoiFaceDetector roiDetector;
+    DownscalingFaceDetector downscalingDetector;
+    CameraSource cameraSource;
+
+    // Whether the startup pipeline is getting the detector ready, and whether it is.  The camera
+    // only starts once it is ready.
+    boolean warming;
+    boolean ready;
+    int playServicesStatus = ConnectionResult.SUCCESS;
+
+    CameraPipeline(boolean frontFacing) {
+      this.frontFacing = frontFacing;
+    }
+  }
+
+  private final Runnable mCompareDetectorFeatures = new Runnable() {
+    @Override
+    public void run() {
+      mUseLegacyDetectorFeatures = !mUseLegacyDetectorFeatures;
+      mRebuildCameraSource.run();
+      mPreview.postDelayed(this, DETECTOR_COMPARISON_MILLIS);
+    }
+  };
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
+    mStartupTimer = new StartupTimer();
+    mStartupPipeline = StartupPipeline.getInstance(this);
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_face_tracking);
 
     mPreview = (CameraSourcePreview) findViewById(R.id.preview);
     mGraphicOverlay = (GraphicOverlay) findViewById(R.id.faceOverlay);
-
-    InputStream stream = getResources().openRawResource(R.raw.image_lion);
-    Bitmap bitmap = BitmapFactory.decodeStream(stream);
-    stream = getResources().openRawResource(R.raw.image_hat);
-    Bitmap hat = BitmapFactory.decodeStream(stream);
-    mBitmaps[0] = bitmap;
-    mBitmaps[1] = hat;
-
-    try {
-      stream.close();
-    } catch (IOException e) {
-      e.printStackTrace();
+    if (mGraphicOverlay.getRenderMode() == GraphicOverlay.RENDER_MODE_RENDER_THREAD) {
+      // The preview lays out every child like the camera surface, so this ends up exactly over
+      // the (now empty) overlay view.
+      mPreview.addView(new RenderThreadOverlay(this, mGraphicOverlay));
     }
+    mSnapshotCapture = new SnapshotCapture(mGraphicOverlay, SNAPSHOT_QUALITY);
+    mPreview.setSnapshotCapture(mSnapshotCapture);
+    mPreview.setOnLongClickListener(new View.OnLongClickListener() {
+      @Override
+      public boolean onLongClick(View view) {
+        takeSnapshot();
+        return true;
+      }
+    });
+    mTrackerPool = new FaceTrackerPool(mGraphicOverlay, mStickerAssets, mStickerSet,
+        TRACKER_POOL_SIZE);
+    mReassociator = new FaceTrackReassociator(new FaceTrackReassociator.Factory() {
+      @Override
+      public FaceTrackListener create(FaceRecord face) {
+        return mTrackerPool.acquire();
+      }
+    }, REASSOCIATION_TTL_NANOS, REASSOCIATION_CELL_SIZE);
+    mMetricsReporter = new MetricsReporter(mGraphicOverlay.getMetrics(), METRICS_REPORT_MILLIS);
+    findViewById(R.id.switchCamera).setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        switchCamera();
+      }
+    });
+    findViewById(R.id.switchStickers).setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        mStickerIndex = (mStickerIndex + 1) % STICKER_CYCLE.length;
+        setStickers(STICKER_CYCLE[mStickerIndex]);
+      }
+    });
+
+    // Build the sticker atlas in the background while the camera and detector are set up.  A face
+    // typically covers about half of the shorter side of the display; other sizes are built the
+    // first time they are drawn.
+    DisplayMetrics metrics = getResources().getDisplayMetrics();
+    mStickerAssetLoader = new StickerAssetLoader(getResources(), mStickerAssets);
+    mStickerAssetLoader.load(Math.min(metrics.widthPixels, metrics.heightPixels) / 2,
+        new StickerAssetLoader.Listener() {
+          @Override
+          public void onAssetsLoaded(StickerAssets assets) {
+            mStartupTimer.mark("sticker assets decoded");
+          }
+
+          @Override
+          public void onAssetsFailed(StickerAssets assets) {
+            Log.w(TAG, "Unable to decode the sticker assets");
+          }
+        });
 
     // Check for the camera permission before accessing the camera.  If the
     // permission is not granted yet, request permission.
     int rc = ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA);
     if (rc == PackageManager.PERMISSION_GRANTED) {
-      createCameraSource();
+      activatePipeline();
     } else {
       requestCameraPermission();
     }
@@ -82,21 +354,96 @@ public class FaceTrackingActivity extends AppCompatActivity {
   @Override
   protected void onResume() {
     super.onResume();
+    mIsResumed = true;
 
+    if (mPipeline != null && mPipeline.playServicesStatus != ConnectionResult.SUCCESS) {
+      // Check again, in case Play Services was fixed while the app was away.
+      mPipeline.ready = false;
+    }
     startCameraSource();
+    mMetricsReporter.start();
+    if (COMPARE_DETECTOR_FEATURES) {
+      mPreview.postDelayed(mCompareDetectorFeatures, DETECTOR_COMPARISON_MILLIS);
+    }
   }
 
   @Override
   protected void onPause() {
     super.onPause();
+    mIsResumed = false;
     mPreview.stop();
+    mMetricsReporter.stop();
+    mPreview.removeCallbacks(mCompareDetectorFeatures);
+    Log.d(TAG, "Overlay invalidations requested: " + mGraphicOverlay.getInvalidationsRequested()
+        + ", issued: " + mGraphicOverlay.getInvalidationsIssued());
+    if (mPipeline != null) {
+      Log.d(TAG, "Detection schedule: " + mPipeline.detector.getSummary());
+      Log.d(TAG, "Detection regions: " + mPipeline.roiDetector.getSummary());
+      Log.d(TAG, "Detector input scaling: " + mPipeline.downscalingDetector.getSummary());
+    }
+    Log.d(TAG, "Camera pipelines: " + mPipelines.getHits() + " reused, "
+        + mPipelines.getMisses() + " built, " + mPipelines.getReleased() + " released");
   }
 
   @Override
   protected void onDestroy() {
     super.onDestroy();
-    if (mCameraSource != null) {
-      mCameraSource.release();
+    mStickerAssetLoader.shutdown();
+    mSnapshotCapture.release();
+    mPipelines.releaseAll();
+    mPipeline = null;
+  }
+
+  /**
+   * Frees the pipeline of the camera not in use once memory runs low.  Hiding the UI alone is
+   * not reason enough; switching back would then have to rebuild it.
+   */
+  @Override
+  public void onTrimMemory(int level) {
+    super.onTrimMemory(level);
+    if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN
+        && mPipelines.releaseInactive() > 0) {
+      Log.i(TAG, "Released the idle camera pipeline at memory trim level " + level);
+    }
+  }
+
+  /**
+   * Adds the pipeline latency metrics to "adb shell dumpsys activity".
+   */
+  @Override
+  public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+    super.dump(prefix, fd, writer, args);
+    if (mStartupTimer != null) {
+      writer.print(prefix);
+      writer.println("Startup phases:");
+      mStartupTimer.dump(writer, prefix + "  ");
+    }
+    if (mGraphicOverlay != null) {
+      writer.print(prefix);
+      writer.println("Pipeline metrics:");
+      mGraphicOverlay.getMetrics().dump(writer, prefix + "  ");
+    }
+  }
+
+  /**
+   * Saves the next camera frame, with the stickers on top, to the app's external files.
+   */
+  private void takeSnapshot() {
+    File file = new File(getExternalFilesDir(null),
+        "snapshot-" + System.currentTimeMillis() + ".jpg");
+    boolean started = mPreview.takeSnapshot(file, new SnapshotCapture.Listener() {
+      @Override
+      public void onSnapshotSaved(File file, long latencyNanos) {
+        Log.i(TAG, "Saved snapshot to " + file + " in " + latencyNanos / 1000000 + " ms");
+      }
+
+      @Override
+      public void onSnapshotFailed(File file, IOException e) {
+        Log.e(TAG, "Unable to save snapshot to " + file, e);
+      }
+    });
+    if (!started) {
+      Log.d(TAG, "Snapshot already in progress");
     }
   }
 
@@ -123,7 +470,7 @@ public class FaceTrackingActivity extends AppCompatActivity {
     if (grantResults.length != 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
       Log.d(TAG, "Camera permission granted - initialize the camera source");
       // we have permission, so create the camerasource
-      createCameraSource();
+      activatePipeline();
       return;
     }
 
@@ -143,11 +490,169 @@ public class FaceTrackingActivity extends AppCompatActivity {
         .show();
   }
 
+  /**
+   * Shows the given {@link StickerSet} stickers on every face.  The camera and detector are only
+   * rebuilt if the new stickers need other detector features than the current detector has.
+   */
+  private void setStickers(int stickers) {
+    if (mStickerSet.setStickers(stickers)) {
+      mRebuildCameraSource.run();
+    }
+  }
+
+  /**
+   * Switches between the front and back cameras.  The other camera's pipeline is reused if it is
+   * still warm and still fits the selected stickers and its quality level, so that usually only
+   * the camera stream restarts.  The time to the first detections of the new camera goes to the
+   * pipeline metrics.
+   */
+  private void switchCamera() {
+    if (mPipeline == null) {
+      // No camera permission yet.
+      return;
+    }
+    long start = System.nanoTime();
+    mPreview.stop();
+    // Faces seen by one camera have nothing to do with the other one's.
+    mReassociator.endAll();
+    mGraphicOverlay.clear();
+    mIsFrontFacing = !mIsFrontFacing;
+    mSwitchWarm = activatePipeline();
+    mSwitchStartNanos.set(start);
+    if (mIsResumed) {
+      startCameraSource();
+    }
+  }
+
+  /**
+   * Makes the pipeline of the current facing the active one, rebuilding it if it no longer fits.
+   *
+   * @return whether it was warm, i.e., neither built nor rebuilt
+   */
+  private boolean activatePipeline() {
+    int facing = mIsFrontFacing
+        ? CameraSource.CAMERA_FACING_FRONT
+        : CameraSource.CAMERA_FACING_BACK;
+    boolean warm = mPipelines.isWarm(facing);
+    CameraPipeline pipeline = mPipelines.activate(facing);
+    if (isStale(pipeline)) {
+      mPipelines.invalidate(facing);
+      pipeline = mPipelines.activate(facing);
+      warm = false;
+    }
+    mPipeline = pipeline;
+    // A warm pipeline keeps the detector it was built with, which may be configured unlike the
+    // one it takes over from.
+    mGraphicOverlay.getMetrics().onDetectorConfigured(
+        DetectorFeatures.toString(pipeline.detectorFeatures));
+    prepare(pipeline);
+    return warm;
+  }
+
+  /**
+   * Has the startup pipeline get a pipeline's detector ready, unless it is already.  Its camera
+   * is started from {@link #onPipelineReady} if it is the active one by then.
+   */
+  private void prepare(final CameraPipeline pipeline) {
+    if (pipeline.ready || pipeline.warming) {
+      return;
+    }
+    pipeline.warming = true;
+    mStartupPipeline.prepare(pipeline.faceDetector, pipeline.quality.getPreviewWidth(),
+        pipeline.quality.getPreviewHeight(), mStartupTimer, new StartupPipeline.Listener() {
+          @Override
+          public void onReady(int playServicesStatus, boolean operational) {
+            onPipelineReady(pipeline, playServicesStatus, operational);
+          }
+        });
+  }
+
+  /**
+   * Called on the UI thread once a pipeline's detector has been checked and warmed up.
+   */
+  private void onPipelineReady(CameraPipeline pipeline, int playServicesStatus,
+      boolean operational) {
+    pipeline.warming = false;
+    pipeline.ready = true;
+    pipeline.playServicesStatus = playServicesStatus;
+    if (pipeline != mPipeline) {
+      // Switched away from or rebuilt in the meantime; it stays ready for next time.
+      return;
+    }
+    mStartupTimer.mark("detector ready");
+
+    if (playServicesStatus != ConnectionResult.SUCCESS && mIsResumed) {
+      Dialog dlg = GoogleApiAvailability.getInstance().getErrorDialog(this, playServicesStatus,
+          RC_HANDLE_GMS);
+      dlg.show();
+    }
+
+    if (!operational) {
+      // Note: The first time that an app using face API is installed on a device, GMS will
+      // download a native library to the device in order to do detection.  Usually this
+      // completes before the app is run for the first time.  But if that download has not yet
+      // completed, then the above call will not detect any faces.
+      //
+      // isOperational() can be used to check if the required native library is currently
+      // available.  The detector will automatically become operational once the library
+      // download completes on device.
+      Log.w(TAG, "Face detector dependencies are not yet available.");
+
+      // Check for low storage.  If there is low storage, the native library will not be
+      // downloaded, so detection will not become operational.
+      IntentFilter lowStorageFilter = new IntentFilter(Intent.ACTION_DEVICE_STORAGE_LOW);
+      boolean hasLowStorage = registerReceiver(null, lowStorageFilter) != null;
+
+      if (hasLowStorage) {
+        Toast.makeText(this, R.string.low_storage_error, Toast.LENGTH_LONG).show();
+        Log.w(TAG, getString(R.string.low_storage_error));
+      }
+    }
+    if (mIsResumed) {
+      startCameraSource();
+    }
+  }
+
+  /**
+   * Returns whether a pipeline was built for another quality level or other detector features
+   * than its facing needs now.
+   */
+  private boolean isStale(CameraPipeline pipeline) {
+    return pipeline.quality != getQualityController(pipeline.frontFacing).getLevel()
+        || pipeline.detectorFeatures != getDetectorFeatures(pipeline.frontFacing);
+  }
+
+  private QualityController getQualityController(boolean frontFacing) {
+    int facing = frontFacing ? CameraSource.CAMERA_FACING_FRONT : CameraSource.CAMERA_FACING_BACK;
+    if (mQualityControllers[facing] == null) {
+      mQualityControllers[facing] = new QualityController(
+          frontFacing ? FRONT_QUALITY_LEVELS : BACK_QUALITY_LEVELS, START_QUALITY_LEVEL,
+          QUALITY_LATENCY_BUDGET_NANOS);
+    }
+    return mQualityControllers[facing];
+  }
+
+  /**
+   * Returns the detector features for the selected stickers and the given camera.
+   */
+  private int getDetectorFeatures(boolean frontFacing) {
+    int features = mUseLegacyDetectorFeatures
+        ? DetectorFeatures.LEGACY
+        : mStickerSet.getDetectorFeatures();
+    // Only the largest face is tracked on the front camera, whatever the stickers would allow.
+    return frontFacing ? features | DetectorFeatures.PROMINENT_FACE_ONLY : features;
+  }
+
+  /**
+   * Builds the detector chain of a pipeline.
+   */
   @NonNull
-  private FaceDetector createFaceDetector(Context context) {
-    // For both front facing and rear facing modes, the detector is initialized to do landmark
-    // detection (to find the eyes), classification (to determine if the eyes are open), and
-    // tracking.
+  private ScheduledFaceDetector createFaceDetector(Context context,
+      final CameraPipeline pipeline) {
+    // For both front facing and rear facing modes, the detector is initialized to do tracking,
+    // and only does landmark detection (to find the eyes) and classification (to determine if
+    // the eyes are open) if the selected stickers need them.  Each of these is a pass over
+    // every face found, so leaving them out lowers the detection latency with many faces.
     //
     // Use of "fast mode" enables faster detection for frontward faces, at the expense of not
     // attempting to detect faces at more varied angles (e.g., faces in profile).  Therefore,
@@ -163,24 +668,74 @@ public class FaceTrackingActivity extends AppCompatActivity {
     // we increase the minimum face size for the rear facing mode a little bit in order to make
     // tracking faster (at the expense of missing smaller faces).  But this optimization is less
     // important for the front facing case, because when "prominent face only" is enabled, the
-    // detector stops scanning for faces after it has found the first (large) face.
-    FaceDetector detector =
-        new FaceDetector.Builder(context).setLandmarkType(FaceDetector.ALL_LANDMARKS)
-            .setClassificationType(FaceDetector.ALL_CLASSIFICATIONS)
-            .setTrackingEnabled(true)
-            .setMode(FaceDetector.FAST_MODE)
-            .setProminentFaceOnly(mIsFrontFacing)
-            .setMinFaceSize(mIsFrontFacing ? 0.35f : 0.15f)
-            .build();
+    // detector stops scanning for faces after it has found the first (large) face.  The size
+    // comes from the current quality level.
+    final QualityController qualityController = getQualityController(pipeline.frontFacing);
+    QualityLevel quality = qualityController.getLevel();
+    int features = getDetectorFeatures(pipeline.frontFacing);
+    FaceDetector faceDetector = new FaceDetector.Builder(context)
+        .setLandmarkType(DetectorFeatures.needsLandmarks(features)
+            ? FaceDetector.ALL_LANDMARKS
+            : FaceDetector.NO_LANDMARKS)
+        .setClassificationType(DetectorFeatures.needsClassifications(features)
+            ? FaceDetector.ALL_CLASSIFICATIONS
+            : FaceDetector.NO_CLASSIFICATIONS)
+        .setTrackingEnabled(true)
+        .setMode(DetectorFeatures.needsAccurateMode(features)
+            ? FaceDetector.ACCURATE_MODE
+            : FaceDetector.FAST_MODE)
+        .setProminentFaceOnly(DetectorFeatures.allowsProminentFaceOnly(features))
+        .setMinFaceSize(quality.getMinFaceSize())
+        .build();
+    pipeline.quality = quality;
+    pipeline.detectorFeatures = features;
+    pipeline.faceDetector = faceDetector;
+
+    // At the highest quality levels the detector would scan more pixels than it needs to find
+    // faces of the minimum size, so large frames are shrunk first.
+    pipeline.downscalingDetector = new DownscalingFaceDetector(faceDetector, mFramePool,
+        MAX_DETECTOR_WIDTH, mGraphicOverlay.getMetrics());
+
+    // Faces move little between two detections, so most detections only need to look at the
+    // region around the faces found last time.
+    pipeline.roiDetector = new RoiFaceDetector(pipeline.downscalingDetector,
+        new RegionOfInterest(ROI_FULL_SCAN_INTERVAL, ROI_MARGIN, ROI_MAX_AREA_SHARE,
+            quality.getMinFaceSize()));
+    Detector<Face> regionDetector = pipeline.roiDetector;
+    if (RECORD_FRAMES) {
+      regionDetector = createFrameRecorder(regionDetector);
+    }
+
+    // Running the detector on every frame at 60 fps saturates a core on mid-range devices.  The
+    // scheduled detector runs it on every few frames, more often when the picture changes, and
+    // moves the faces forward in between so that the stickers still update on every frame.
+    final ScheduledFaceDetector detector = new ScheduledFaceDetector(regionDetector,
+        MAX_DETECTION_INTERVAL, DETECTION_FRAME_SHARE, MOTION_THRESHOLD, REUSE_THRESHOLD,
+        mGraphicOverlay.getMetrics());
+    pipeline.detector = detector;
+
+    // Feed the detector latency to the quality controller, and rebuild the camera on the UI
+    // thread when it picks another level.  Releasing the camera source from its own detector
+    // thread would deadlock.
+    detector.setDetectionListener(new ScheduledFaceDetector.DetectionListener() {
+      @Override
+      public void onDetection(long latencyNanos, int faces) {
+        if (qualityController.onDetection(latencyNanos, faces)) {
+          runOnUiThread(mRebuildCameraSource);
+        }
+      }
+    });
 
     Detector.Processor<Face> processor;
-    if (mIsFrontFacing) {
+    if (pipeline.frontFacing) {
       // For front facing mode, a single tracker instance is used with an associated focusing
       // processor.  This configuration allows the face detector to take some shortcuts to
       // speed up detection, in that it can quit after finding a single face and can assume
       // that the nextIrisPosition face position is usually relatively close to the last seen
       // face position.
-      Tracker<Face> tracker = new FaceTracker(mGraphicOverlay, mBitmaps);
+      Tracker<Face> tracker =
+          new GmsFaceTracker(new FaceTracker(mGraphicOverlay, mStickerAssets, mStickerSet, null),
+              detector);
       processor = new LargestFaceFocusingProcessor.Builder(detector, tracker).build();
     } else {
       // For rear facing mode, a factory is used to create per-face tracker instances.  A
@@ -194,38 +749,34 @@ public class FaceTrackingActivity extends AppCompatActivity {
       // between these cases is the choice of Processor: one that is specialized for tracking
       // a single face or one that can handle multiple faces.  Here, we use MultiProcessor,
       // which is a standard component of the mobile vision API for managing multiple items.
+      // Trackers come from a pool and go back to it when their face is done, so that a crowd
+      // with faces constantly coming and going does not build new stickers for each of them.  A
+      // face that is only hidden for a moment gets its tracker back under its new track id.
       MultiProcessor.Factory<Face> factory = new MultiProcessor.Factory<Face>() {
         @Override
         public Tracker<Face> create(Face face) {
-          return new FaceTracker(mGraphicOverlay, mBitmaps);
+          return mReassociator.newGmsTrack(detector);
         }
       };
       processor = new MultiProcessor.Builder<>(factory).build();
     }
 
-    detector.setProcessor(processor);
-
-    if (!detector.isOperational()) {
-      // Note: The first time that an app using face API is installed on a device, GMS will
-      // download a native library to the device in order to do detection.  Usually this
-      // completes before the app is run for the first time.  But if that download has not yet
-      // completed, then the above call will not detect any faces.
-      //
-      // isOperational() can be used to check if the required native library is currently
-      // available.  The detector will automatically become operational once the library
-      // download completes on device.
-      Log.w(TAG, "Face detector dependencies are not yet available.");
-
-      // Check for low storage.  If there is low storage, the native library will not be
-      // downloaded, so detection will not become operational.
-      IntentFilter lowStorageFilter = new IntentFilter(Intent.ACTION_DEVICE_STORAGE_LOW);
-      boolean hasLowStorage = registerReceiver(null, lowStorageFilter) != null;
+    if (RECORD_DETECTIONS) {
+      processor = createRecorder(processor);
+    }
 
-      if (hasLowStorage) {
-        Toast.makeText(this, R.string.low_storage_error, Toast.LENGTH_LONG).show();
-        Log.w(TAG, getString(R.string.low_storage_error));
+    // Snapshots copy their camera frame here, the only place the frame buffers can be read.
+    detector.setFrameListener(new ScheduledFaceDetector.FrameListener() {
+      @Override
+      public void onFrame(Frame frame) {
+        mSnapshotCapture.onFrame(frame);
       }
-    }
+    });
+
+    // Commit each detector frame to the overlay as a single update, so that all trackers share
+    // one snapshot publish and one invalidation instead of several per face.
+    detector.setProcessor(mStartupTimer.watchFirstFrame(
+        watchCameraSwitch(new OverlayFrameProcessor<>(processor, mGraphicOverlay))));
     return detector;
   }
 
@@ -234,50 +785,116 @@ public class FaceTrackingActivity extends AppCompatActivity {
   //==============================================================================================
 
   /**
-   * Creates the face detector and the camera.
+   * Creates the face detector and the camera of one facing.
    */
-  private void createCameraSource() {
+  private CameraPipeline createCameraSource(boolean frontFacing) {
     Context context = getApplicationContext();
-    FaceDetector detector = createFaceDetector(context);
+    CameraPipeline pipeline = new CameraPipeline(frontFacing);
+    Detector<Face> detector = createFaceDetector(context, pipeline);
 
     int facing = CameraSource.CAMERA_FACING_FRONT;
-    if (!mIsFrontFacing) {
+    if (!frontFacing) {
       facing = CameraSource.CAMERA_FACING_BACK;
     }
 
-    // The camera source is initialized to use either the front or rear facing camera.  We use a
-    // relatively low resolution for the camera preview, since this is sufficient for this app
-    // and the face detector will run faster at lower camera resolutions.
+    // The camera source is initialized to use either the front or rear facing camera.  The
+    // preview size and frame rate come from the quality controller.
     //
-    // However, note that there is a speed/accuracy trade-off with respect to choosing the
-    // camera resolution.  The face detector will run faster with lower camera resolutions,
-    // but may miss smaller faces, landmarks, or may not correctly detect eyes open/closed in
-    // comparison to using higher camera resolutions.  If you have any of these issues, you may
-    // want to increase the resolution.
-    mCameraSource = new CameraSource.Builder(context, detector).setFacing(facing)
-        .setRequestedPreviewSize(320, 240)
-        .setRequestedFps(60.0f)
+    // There is a speed/accuracy trade-off with respect to choosing the camera resolution.  The
+    // face detector will run faster with lower camera resolutions, but may miss smaller faces,
+    // landmarks, or may not correctly detect eyes open/closed in comparison to using higher
+    // camera resolutions.  The controller starts low and moves up only while the detector keeps
+    // up, and back down when it does not.
+    QualityLevel quality = pipeline.quality;
+    pipeline.cameraSource = new CameraSource.Builder(context, detector).setFacing(facing)
+        .setRequestedPreviewSize(quality.getPreviewWidth(), quality.getPreviewHeight())
+        .setRequestedFps(quality.getFps())
         .setAutoFocusEnabled(true)
         .build();
+    mStartupTimer.mark((frontFacing ? "front" : "back") + " camera source created");
+    return pipeline;
   }
 
+  /**
+   * Wraps a processor so that the first detections after a camera switch report how long the
+   * switch took.
+   */
+  private <T> Detector.Processor<T> watchCameraSwitch(final Detector.Processor<T> delegate) {
+    return new Detector.Processor<T>() {
+      @Override
+      public void receiveDetections(Detector.Detections<T> detections) {
+        long start = mSwitchStartNanos.getAndSet(0);
+        if (start != 0) {
+          long nanos = System.nanoTime() - start;
+          boolean warm = mSwitchWarm;
+          mGraphicOverlay.getMetrics().onCameraSwitched(nanos, warm);
+          Log.i(TAG, "Camera switch to first detections in " + nanos / 1000000 + " ms ("
+              + (warm ? "warm" : "cold") + " detector)");
+        }
+        delegate.receiveDetections(detections);
+      }
+
+      @Override
+      public void release() {
+        delegate.release();
+      }
+    };
+  }
+
+  /**
+   * Wraps the processor so that the detections of every frame are also written to a recording.
+   * Detection goes on unrecorded if the recording file cannot be opened.
+   */
+  private Detector.Processor<Face> createRecorder(Detector.Processor<Face> processor) {
+    File file = new File(getExternalFilesDir(null), RECORDING_FILE_NAME);
+    try {
+      FaceRecordingWriter writer =
+          new FaceRecordingWriter(new BufferedOutputStream(new FileOutputStream(file)));
+      Log.i(TAG, "Recording detections to " + file);
+      return new DetectionRecorder(processor, writer);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to record detections to " + file, e);
+      return processor;
+    }
+  }
+
+  /**
+   * Wraps the detector so that the luma of the first frames is also written to a recording.
+   * Detection goes on unrecorded if the recording file cannot be opened.
+   */
+  private Detector<Face> createFrameRecorder(Detector<Face> detector) {
+    File file = new File(getExternalFilesDir(null), FRAME_RECORDING_FILE_NAME);
+    try {
+      LumaRecordingWriter writer = new LumaRecordingWriter(new FileOutputStream(file));
+      Log.i(TAG, "Recording frames to " + file);
+      return new FrameRecorder(detector, writer, RECORDED_FRAMES);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to record frames to " + file, e);
+      return detector;
+    }
+  }
+
+  /**
+   * Starts the active pipeline's camera, once the startup pipeline has its detector ready.
+   */
   private void startCameraSource() {
-    // check that the device has play services available.
-    int code =
-        GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(getApplicationContext());
-    if (code != ConnectionResult.SUCCESS) {
-      Dialog dlg = GoogleApiAvailability.getInstance().getErrorDialog(this, code, RC_HANDLE_GMS);
-      dlg.show();
+    if (mPipeline == null) {
+      return;
+    }
+    if (!mPipeline.ready) {
+      prepare(mPipeline);
+      return;
     }
 
-    if (mCameraSource != null) {
-      try {
-        mPreview.start(mCameraSource, mGraphicOverlay);
-      } catch (IOException e) {
-        Log.e(TAG, "Unable to start camera source.", e);
-        mCameraSource.release();
-        mCameraSource = null;
-      }
+    // Frame ids carry on from where this camera source last stopped, not from the camera
+    // streamed before it.
+    mGraphicOverlay.getMetrics().onStreamStarted();
+    try {
+      mPreview.start(mPipeline.cameraSource, mGraphicOverlay);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to start camera source.", e);
+      mPipelines.invalidate(mPipelines.getActiveFacing());
+      mPipeline = null;
     }
   }
 }
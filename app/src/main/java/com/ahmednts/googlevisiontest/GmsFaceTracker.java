@@ -0,0 +1,53 @@
+package com.ahmednts.googlevisiontest;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import com.ahmednts.googlevisiontest.face.FrameClock;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Tracker;
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Adapts a Play Services face tracker to a {@link FaceTrackListener}, converting each detected
+ * {@link Face} into a {@link FaceRecord} that is reused from frame to frame.  Records are stamped
+ * with the frame time from the {@link FrameClock}, if there is one.
+ */
+class GmsFaceTracker extends Tracker<Face> {
+  private final FaceTrackListener mListener;
+  private final FrameClock mClock;
+  private final FaceRecord mRecord = new FaceRecord();
+
+  GmsFaceTracker(FaceTrackListener listener, FrameClock clock) {
+    mListener = listener;
+    mClock = clock;
+  }
+
+  @Override
+  public void onNewItem(int id, Face face) {
+    mListener.onNewItem(id, copy(face));
+  }
+
+  @Override
+  public void onUpdate(Detector.Detections<Face> detections, Face face) {
+    mListener.onUpdate(copy(face));
+  }
+
+  @Override
+  public void onMissing(Detector.Detections<Face> detections) {
+    mListener.onMissing();
+  }
+
+  @Override
+  public void onDone() {
+    mListener.onDone();
+  }
+
+  private FaceRecord copy(Face face) {
+    GmsFaces.copy(face, mRecord);
+    if (mClock != null) {
+      mRecord.setTimestampNanos(mClock.getFrameTimeNanos());
+    }
+    return mRecord;
+  }
+}
@@ -0,0 +1,188 @@
+package com.ahmednts.googlevisiontest;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets a newly built face detector ready off the main thread, before the camera preview starts:
+ * checks that Play Services is available, that the detector's native library is operational,
+ * and runs the detector once on a blank frame.  The first detection loads the detector's models
+ * and allocates its buffers, which would otherwise hold up the first camera frames.<p>
+ *
+ * Play Services availability and detector readiness are cached once they are good, for as long
+ * as the process lives, so that a resumed activity or a rebuilt detector does not pay for the
+ * checks again.  A failed check is repeated next time.  Every phase is timed with the
+ * activity's {@link StartupTimer}.<p>
+ *
+ * All work runs in order on a single background thread, which goes away when idle.  Callers may
+ * queue work behind the warm-ups with {@link #afterWarmUps(Runnable)}, e.g., to release a
+ * detector that might still be warming up.
+ */
+final class StartupPipeline {
+  private static final long IDLE_MILLIS = 10000;
+
+  // Luma and chroma of the warm-up frame: a flat grey picture.
+  private static final byte GREY = (byte) 128;
+
+  /**
+   * Tells whether Play Services is usable, as a {@link ConnectionResult} code.
+   */
+  interface PlayServicesCheck {
+    int check();
+  }
+
+  /**
+   * Told on the main thread how getting a detector ready went.
+   */
+  interface Listener {
+    /**
+     * @param playServicesStatus {@link ConnectionResult#SUCCESS} or the reason Play Services
+     *     cannot be used
+     * @param operational whether the detector can detect yet; it was only warmed up if so
+     */
+    void onReady(int playServicesStatus, boolean operational);
+  }
+
+  private static StartupPipeline sInstance;
+
+  private final Executor mBackground;
+  private final Executor mMain;
+  private final PlayServicesCheck mPlayServicesCheck;
+
+  // Results cached once good.
+  private volatile boolean mPlayServicesAvailable;
+  private volatile boolean mDetectorOperational;
+
+  // Only used on the background thread.
+  private byte[] mWarmUpFrame = new byte[0];
+  private int mWarmUps;
+
+  StartupPipeline(Executor background, Executor main, PlayServicesCheck playServicesCheck) {
+    mBackground = background;
+    mMain = main;
+    mPlayServicesCheck = playServicesCheck;
+  }
+
+  /**
+   * Returns the process-wide pipeline, whose cached results outlive the activity.
+   */
+  static synchronized StartupPipeline getInstance(Context context) {
+    if (sInstance == null) {
+      final Context appContext = context.getApplicationContext();
+      ThreadPoolExecutor background = new ThreadPoolExecutor(1, 1, IDLE_MILLIS,
+          TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              return new Thread(runnable, "StartupPipeline");
+            }
+          });
+      background.allowCoreThreadTimeOut(true);
+      final Handler mainHandler = new Handler(Looper.getMainLooper());
+      sInstance = new StartupPipeline(background, new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+          mainHandler.post(runnable);
+        }
+      }, new PlayServicesCheck() {
+        @Override
+        public int check() {
+          return GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(appContext);
+        }
+      });
+    }
+    return sInstance;
+  }
+
+  /**
+   * Checks Play Services and the detector, and warms the detector up with a blank frame of the
+   * given size, the size of the camera frames it is about to see.
+   */
+  void prepare(final Detector<?> detector, final int width, final int height,
+      final StartupTimer timer, final Listener listener) {
+    mBackground.execute(new Runnable() {
+      @Override
+      public void run() {
+        final int playServicesStatus = checkPlayServices(timer);
+        final boolean operational = checkOperational(detector, timer);
+        if (operational) {
+          warmUp(detector, width, height, timer);
+        }
+        mMain.execute(new Runnable() {
+          @Override
+          public void run() {
+            listener.onReady(playServicesStatus, operational);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Runs {@code task} on the background thread once every warm-up queued so far is done.
+   */
+  void afterWarmUps(Runnable task) {
+    mBackground.execute(task);
+  }
+
+  /**
+   * Returns how many detectors have been warmed up.  Only meaningful on the background thread,
+   * or once it is idle.
+   */
+  int getWarmUps() {
+    return mWarmUps;
+  }
+
+  private int checkPlayServices(StartupTimer timer) {
+    if (mPlayServicesAvailable) {
+      return ConnectionResult.SUCCESS;
+    }
+    long start = System.nanoTime();
+    int status = mPlayServicesCheck.check();
+    mPlayServicesAvailable = status == ConnectionResult.SUCCESS;
+    timer.time("Play Services check (status " + status + ")", System.nanoTime() - start);
+    return status;
+  }
+
+  private boolean checkOperational(Detector<?> detector, StartupTimer timer) {
+    // The native library is shared by every detector in the process, so once one detector is
+    // operational, all of them are.
+    if (mDetectorOperational) {
+      return true;
+    }
+    long start = System.nanoTime();
+    boolean operational = detector.isOperational();
+    mDetectorOperational = operational;
+    timer.time(operational ? "detector readiness check" : "detector readiness check (not ready)",
+        System.nanoTime() - start);
+    return operational;
+  }
+
+  private void warmUp(Detector<?> detector, int width, int height, StartupTimer timer) {
+    int size = width * height * 3 / 2;
+    if (mWarmUpFrame.length != size) {
+      mWarmUpFrame = new byte[size];
+      Arrays.fill(mWarmUpFrame, GREY);
+    }
+    Frame frame = new Frame.Builder()
+        .setImageData(ByteBuffer.wrap(mWarmUpFrame), width, height, ImageFormat.NV21)
+        .setRotation(Frame.ROTATION_0)
+        .build();
+    long start = System.nanoTime();
+    detector.detect(frame);
+    mWarmUps++;
+    timer.time("detector warm-up at " + width + "x" + height, System.nanoTime() - start);
+  }
+}
@@ -0,0 +1,81 @@
+package com.ahmednts.googlevisiontest;
+
+import android.os.SystemClock;
+import android.util.Log;
+import com.google.android.gms.vision.Detector;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records how long the cold-start path takes, from {@code onCreate} to the first camera frame
+ * reaching the detector's processor.  Each phase is logged as it completes so that startup
+ * changes can be compared from logcat, and kept for {@link #dump(PrintWriter, String)}.  Phases
+ * may be marked from any thread.
+ */
+class StartupTimer {
+  private static final String TAG = "StartupTimer";
+
+  private final long mStartMillis = SystemClock.elapsedRealtime();
+  private volatile boolean mFirstFrameSeen;
+
+  // Guarded by itself.
+  private final List<String> mPhases = new ArrayList<>();
+
+  /**
+   * Logs the time elapsed since the timer was created for the named phase.
+   */
+  void mark(String phase) {
+    record(phase + " at +" + (SystemClock.elapsedRealtime() - mStartMillis) + "ms");
+  }
+
+  /**
+   * Logs how long the named phase took, and when it ended.
+   */
+  void time(String phase, long nanos) {
+    record(String.format(Locale.US, "%s took %.1fms, done at +%dms", phase, nanos / 1e6,
+        SystemClock.elapsedRealtime() - mStartMillis));
+  }
+
+  /**
+   * Writes the phases recorded so far, in the order they completed.
+   */
+  void dump(PrintWriter writer, String prefix) {
+    synchronized (mPhases) {
+      for (String phase : mPhases) {
+        writer.print(prefix);
+        writer.println(phase);
+      }
+    }
+  }
+
+  private void record(String phase) {
+    synchronized (mPhases) {
+      mPhases.add(phase);
+    }
+    Log.i(TAG, phase);
+  }
+
+  /**
+   * Wraps a processor so that the first detector frame it receives is marked as the end of the
+   * cold start.
+   */
+  <T> Detector.Processor<T> watchFirstFrame(final Detector.Processor<T> delegate) {
+    return new Detector.Processor<T>() {
+      @Override
+      public void receiveDetections(Detector.Detections<T> detections) {
+        if (!mFirstFrameSeen) {
+          mFirstFrameSeen = true;
+          mark("first preview frame");
+        }
+        delegate.receiveDetections(detections);
+      }
+
+      @Override
+      public void release() {
+        delegate.release();
+      }
+    };
+  }
+}
@@ -0,0 +1,420 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts still images through decode, face detection, sticker compositing and encode, with the
+ * four stages running side by side on a fixed set of worker threads.  Stages hand images on
+ * through bounded queues, so a stage that falls behind holds the ones before it back, and no more
+ * than {@link #getMaxImagesInFlight()} images are decoded at any time, however many there are to
+ * process.<p>
+ *
+ * Each stage gets an even share of the workers, at least one, and detection, usually the slowest,
+ * gets whatever is left over.  Every stage needs a thread of its own, so a pipeline asked for
+ * fewer workers than there are stages still runs one per stage: on one or two cores, that is four
+ * threads, most of them waiting on a queue at any time.  An image that fails in any stage, running out of memory included,
+ * is counted and skipped; the rest carry on.  Should every worker of a stage die all the same,
+ * the images waiting for it and those still coming are dropped as failed rather than blocking the
+ * stages before it.  The stages are interfaces, so the pipeline can be run on a plain JVM.
+ *
+ * @param <I> the decoded image type
+ */
+public class BatchPipeline<I> {
+  public static final int DECODE = 0;
+  public static final int DETECT = 1;
+  public static final int COMPOSITE = 2;
+  public static final int ENCODE = 3;
+
+  private static final int STAGES = 4;
+  private static final String[] STAGE_NAMES = {"decode", "detect", "composite", "encode"};
+
+  // How often a worker waiting to hand an image on checks that the next stage is still running.
+  private static final long HAND_OFF_CHECK_MILLIS = 100;
+
+  /**
+   * Reads an image, and frees it once the pipeline is done with it.
+   */
+  public interface Decoder<I> {
+    I decode(String source) throws IOException;
+
+    void recycle(I image);
+  }
+
+  /**
+   * Draws the stickers for the detected faces onto an image, returning the image to encode.
+   */
+  public interface Compositor<I> {
+    I composite(I image, FrameRecord faces);
+  }
+
+  /**
+   * Writes a finished image.
+   */
+  public interface Encoder<I> {
+    void encode(I image, String source) throws IOException;
+  }
+
+  /**
+   * What a run did and how long each stage was busy.
+   */
+  public static final class Result {
+    private final int mImages;
+    private final int mFailed;
+    private final long mFaces;
+    private final long mElapsedNanos;
+    private final long[] mBusyNanos;
+    private final Exception mFirstError;
+
+    Result(int images, int failed, long faces, long elapsedNanos, long[] busyNanos,
+        Exception firstError) {
+      mImages = images;
+      mFailed = failed;
+      mFaces = faces;
+      mElapsedNanos = elapsedNanos;
+      mBusyNanos = busyNanos;
+      mFirstError = firstError;
+    }
+
+    public int getImages() {
+      return mImages;
+    }
+
+    public int getFailed() {
+      return mFailed;
+    }
+
+    public long getFaces() {
+      return mFaces;
+    }
+
+    public long getElapsedNanos() {
+      return mElapsedNanos;
+    }
+
+    /**
+     * Returns the time the workers of a stage spent working, summed over the workers.
+     */
+    public long getBusyNanos(int stage) {
+      return mBusyNanos[stage];
+    }
+
+    /**
+     * Returns the first failure, or null if every image made it through.
+     */
+    public Exception getFirstError() {
+      return mFirstError;
+    }
+
+    public double getImagesPerSecond() {
+      return mElapsedNanos == 0 ? 0 : (mImages - mFailed) * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder busy = new StringBuilder();
+      for (int i = 0; i < STAGES; ++i) {
+        busy.append(i == 0 ? "" : ", ").append(STAGE_NAMES[i])
+            .append(String.format(Locale.US, " %.0f", mBusyNanos[i] / 1e6));
+      }
+      return String.format(Locale.US,
+          "%d images in %.0f ms (%.1f/s), %d failed, %d faces; busy ms: %s",
+          mImages, mElapsedNanos / 1e6, getImagesPerSecond(), mFailed, mFaces, busy);
+    }
+  }
+
+  private static final class Job<I> {
+    final String source;
+    final FrameRecord faces = new FrameRecord();
+    I image;
+
+    Job(String source) {
+      this.source = source;
+    }
+  }
+
+  private final Decoder<I> mDecoder;
+  private final StillFaceDetector<I> mDetector;
+  private final Compositor<I> mCompositor;
+  private final Encoder<I> mEncoder;
+  private final int[] mWorkers = new int[STAGES];
+  private final int mQueueCapacity;
+
+  // The state of the current run.
+  private final Job<I> mEnd = new Job<>(null);
+  private List<String> mSources;
+  private AtomicInteger mNextSource;
+  private AtomicInteger[] mRunning;
+  private AtomicLong[] mBusyNanos;
+  private AtomicInteger mFailed;
+  private AtomicLong mFaces;
+  private volatile Exception mFirstError;
+
+  /**
+   * @param workers how many worker threads to share between the stages, usually the number of
+   *     cores; see {@link #getDefaultWorkers()}.  There is at least one per stage, however few
+   *     are asked for
+   * @param queueCapacity how many images may wait between two stages
+   */
+  public BatchPipeline(Decoder<I> decoder, StillFaceDetector<I> detector,
+      Compositor<I> compositor, Encoder<I> encoder, int workers, int queueCapacity) {
+    if (workers < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException(
+          "Invalid pipeline: " + workers + " workers, queue capacity " + queueCapacity);
+    }
+    mDecoder = decoder;
+    mDetector = detector;
+    mCompositor = compositor;
+    mEncoder = encoder;
+    int share = Math.max(1, workers / STAGES);
+    for (int i = 0; i < STAGES; ++i) {
+      mWorkers[i] = share;
+    }
+    mWorkers[DETECT] += Math.max(0, workers - share * STAGES);
+    mQueueCapacity = queueCapacity;
+  }
+
+  public static int getDefaultWorkers() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  public int getWorkers(int stage) {
+    return mWorkers[stage];
+  }
+
+  /**
+   * Returns how many worker threads a run uses, at least one per stage.
+   */
+  public int getTotalWorkers() {
+    int workers = 0;
+    for (int i = 0; i < STAGES; ++i) {
+      workers += mWorkers[i];
+    }
+    return workers;
+  }
+
+  /**
+   * Returns the most images that are decoded at once: one per worker, and a full queue between
+   * each two stages.  With fewer workers than stages, that is one per stage.
+   */
+  public int getMaxImagesInFlight() {
+    return getTotalWorkers() + (STAGES - 1) * mQueueCapacity;
+  }
+
+  /**
+   * Puts every source through the pipeline, and returns once all of them are done.  Not
+   * reentrant; the caller waits on its own thread while the workers run.
+   */
+  public synchronized Result run(List<String> sources) throws InterruptedException {
+    mSources = sources;
+    mNextSource = new AtomicInteger();
+    mRunning = new AtomicInteger[STAGES];
+    mBusyNanos = new AtomicLong[STAGES];
+    for (int i = 0; i < STAGES; ++i) {
+      mRunning[i] = new AtomicInteger(mWorkers[i]);
+      mBusyNanos[i] = new AtomicLong();
+    }
+    mFailed = new AtomicInteger();
+    mFaces = new AtomicLong();
+    mFirstError = null;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    BlockingQueue<Job<I>>[] queues = new BlockingQueue[STAGES];
+    for (int i = DETECT; i < STAGES; ++i) {
+      queues[i] = new ArrayBlockingQueue<>(mQueueCapacity);
+    }
+    final CountDownLatch done = new CountDownLatch(getTotalWorkers());
+    ExecutorService executor = Executors.newFixedThreadPool(getTotalWorkers(),
+        new ThreadFactory() {
+          private final AtomicInteger mCount = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "BatchPipeline-" + mCount.incrementAndGet());
+          }
+        });
+
+    long start = System.nanoTime();
+    try {
+      for (int stage = 0; stage < STAGES; ++stage) {
+        final int workerStage = stage;
+        final BlockingQueue<Job<I>> input = queues[stage];
+        final BlockingQueue<Job<I>> output = stage + 1 < STAGES ? queues[stage + 1] : null;
+        for (int i = 0; i < mWorkers[stage]; ++i) {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                work(workerStage, input, output);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              } finally {
+                done.countDown();
+              }
+            }
+          });
+        }
+      }
+      done.await();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long[] busyNanos = new long[STAGES];
+    for (int i = 0; i < STAGES; ++i) {
+      busyNanos[i] = mBusyNanos[i].get();
+    }
+    return new Result(sources.size(), mFailed.get(), mFaces.get(), System.nanoTime() - start,
+        busyNanos, mFirstError);
+  }
+
+  /**
+   * Runs one worker of a stage until its input runs out.  The last worker of a stage to finish
+   * tells each worker of the next stage to stop.
+   */
+  private void work(int stage, BlockingQueue<Job<I>> input, BlockingQueue<Job<I>> output)
+      throws InterruptedException {
+    try {
+      while (true) {
+        Job<I> job = next(stage, input);
+        if (job == mEnd) {
+          return;
+        }
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+          ok = process(stage, job);
+        } catch (Error e) {
+          fail(stage, job, e);
+          throw e;
+        }
+        mBusyNanos[stage].addAndGet(System.nanoTime() - start);
+        if (ok && output != null) {
+          handOff(stage + 1, output, job);
+        }
+      }
+    } finally {
+      if (mRunning[stage].decrementAndGet() == 0) {
+        // Only left over if the stage's workers died; nobody is going to take them now.
+        if (input != null) {
+          drain(stage, input);
+        }
+        if (output != null) {
+          for (int i = 0; i < mWorkers[stage + 1]; ++i) {
+            handOff(stage + 1, output, mEnd);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Queues a job for the next stage, waiting for room unless that stage is no longer running, in
+   * which case the job is dropped as failed.
+   */
+  private void handOff(int stage, BlockingQueue<Job<I>> queue, Job<I> job)
+      throws InterruptedException {
+    while (!queue.offer(job, HAND_OFF_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+      if (mRunning[stage].get() == 0) {
+        if (job != mEnd) {
+          fail(stage, job, null);
+        }
+        return;
+      }
+    }
+    // The stage may have stopped, and drained its queue, just before the job went in.
+    if (mRunning[stage].get() == 0) {
+      drain(stage, queue);
+    }
+  }
+
+  /**
+   * Drops every job left in the queue of a stage that is no longer running.
+   */
+  private void drain(int stage, BlockingQueue<Job<I>> queue) {
+    Job<I> job;
+    while ((job = queue.poll()) != null) {
+      if (job != mEnd) {
+        fail(stage, job, null);
+      }
+    }
+  }
+
+  private Job<I> next(int stage, BlockingQueue<Job<I>> input) throws InterruptedException {
+    if (stage != DECODE) {
+      return input.take();
+    }
+    int index = mNextSource.getAndIncrement();
+    return index < mSources.size() ? new Job<I>(mSources.get(index)) : mEnd;
+  }
+
+  /**
+   * Runs one stage on an image.
+   *
+   * @return false if the image failed and was dropped
+   */
+  private boolean process(int stage, Job<I> job) {
+    try {
+      switch (stage) {
+        case DECODE:
+          job.image = mDecoder.decode(job.source);
+          break;
+        case DETECT:
+          job.faces.reset(0, 0, 0, 0);
+          mDetector.detect(job.image, job.faces);
+          mFaces.addAndGet(job.faces.getFaceCount());
+          break;
+        case COMPOSITE:
+          I composited = mCompositor.composite(job.image, job.faces);
+          if (composited != job.image) {
+            mDecoder.recycle(job.image);
+            job.image = composited;
+          }
+          break;
+        case ENCODE:
+          mEncoder.encode(job.image, job.source);
+          recycle(job);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown stage " + stage);
+      }
+      return true;
+    } catch (IOException | RuntimeException | OutOfMemoryError e) {
+      fail(stage, job, e);
+      return false;
+    }
+  }
+
+  /**
+   * Counts a job as failed in a stage and frees its image.
+   *
+   * @param cause why it failed, or null if the stage was no longer running
+   */
+  private void fail(int stage, Job<I> job, Throwable cause) {
+    if (mFailed.getAndIncrement() == 0) {
+      String message = "Unable to " + STAGE_NAMES[stage] + " " + job.source;
+      mFirstError = cause != null
+          ? new Exception(message, cause)
+          : new Exception(message + ": the " + STAGE_NAMES[stage] + " stage stopped");
+    }
+    recycle(job);
+  }
+
+  private void recycle(Job<I> job) {
+    if (job.image != null) {
+      mDecoder.recycle(job.image);
+      job.image = null;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import java.io.IOException;
+
+/**
+ * Decodes image files into mutable bitmaps for stickers to be drawn on.  Images whose longest side
+ * is above a maximum are decoded at the smallest power-of-two reduction that brings it within the
+ * maximum, so that no decoded image is larger than about {@code maxSize * maxSize} pixels and
+ * the pipeline's bound on images in flight also bounds its memory.
+ */
+public class BitmapDecoder implements BatchPipeline.Decoder<Bitmap> {
+  private final int mMaxSize;
+
+  /**
+   * @param maxSize the longest side, in pixels, of a decoded image
+   */
+  public BitmapDecoder(int maxSize) {
+    mMaxSize = maxSize;
+  }
+
+  @Override
+  public Bitmap decode(String source) throws IOException {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeFile(source, options);
+    if (options.outWidth <= 0 || options.outHeight <= 0) {
+      throw new IOException("Not an image: " + source);
+    }
+
+    options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, mMaxSize);
+    options.inJustDecodeBounds = false;
+    options.inMutable = true;
+    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    Bitmap bitmap = BitmapFactory.decodeFile(source, options);
+    if (bitmap == null) {
+      throw new IOException("Unable to decode " + source);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns the smallest power-of-two sample size at which the longest side of an image is no
+   * more than {@code maxSize}, counting a partly sampled edge as a whole pixel.
+   */
+  static int getSampleSize(int width, int height, int maxSize) {
+    int longest = Math.max(width, height);
+    int sampleSize = 1;
+    while ((longest + sampleSize - 1) / sampleSize > maxSize) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  @Override
+  public void recycle(Bitmap image) {
+    image.recycle();
+  }
+}
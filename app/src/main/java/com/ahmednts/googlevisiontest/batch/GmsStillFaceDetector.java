@@ -0,0 +1,106 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.FaceDetector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Detects faces in bitmaps with the Play Services face detector.  A detector is not meant to be
+ * shared between threads, so each concurrent caller borrows one of a fixed set, built on first
+ * use; callers beyond the set wait for one to come back.<p>
+ *
+ * Stills are detected one at a time with no motion to follow, so tracking is off and the
+ * detector runs in accurate mode, finding faces at more angles than the camera pipeline does.
+ */
+public class GmsStillFaceDetector implements StillFaceDetector<Bitmap> {
+  private final Context mContext;
+  private final float mMinFaceSize;
+  private final int mMaxDetectors;
+  private final BlockingQueue<FaceDetector> mIdle;
+  private final List<FaceDetector> mDetectors = new ArrayList<>();
+
+  /**
+   * @param maxDetectors how many detectors may run at once, usually the number of detection
+   *     workers of the pipeline
+   */
+  public GmsStillFaceDetector(Context context, float minFaceSize, int maxDetectors) {
+    mContext = context.getApplicationContext();
+    mMinFaceSize = minFaceSize;
+    mMaxDetectors = maxDetectors;
+    mIdle = new ArrayBlockingQueue<>(maxDetectors);
+  }
+
+  @Override
+  public void detect(Bitmap image, FrameRecord out) {
+    FaceDetector detector = borrow();
+    try {
+      Frame frame = new Frame.Builder().setBitmap(image).build();
+      SparseArray<Face> faces = detector.detect(frame);
+      out.reset(0, 0, image.getWidth(), image.getHeight());
+      for (int i = 0; i < faces.size(); ++i) {
+        GmsFaces.copy(faces.valueAt(i), out.addFace());
+      }
+    } finally {
+      mIdle.add(detector);
+    }
+  }
+
+  private FaceDetector borrow() {
+    FaceDetector detector = mIdle.poll();
+    if (detector != null) {
+      return detector;
+    }
+    synchronized (mDetectors) {
+      if (mDetectors.size() < mMaxDetectors) {
+        detector = new FaceDetector.Builder(mContext)
+            .setLandmarkType(FaceDetector.ALL_LANDMARKS)
+            .setClassificationType(FaceDetector.NO_CLASSIFICATIONS)
+            .setTrackingEnabled(false)
+            .setMode(FaceDetector.ACCURATE_MODE)
+            .setMinFaceSize(mMinFaceSize)
+            .build();
+        mDetectors.add(detector);
+        return detector;
+      }
+    }
+    try {
+      return mIdle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a face detector", e);
+    }
+  }
+
+  /**
+   * Returns whether the detector's native library is available yet; until it is, no faces are
+   * found.
+   */
+  public boolean isOperational() {
+    FaceDetector detector = borrow();
+    try {
+      return detector.isOperational();
+    } finally {
+      mIdle.add(detector);
+    }
+  }
+
+  @Override
+  public void release() {
+    synchronized (mDetectors) {
+      for (FaceDetector detector : mDetectors) {
+        detector.release();
+      }
+      mDetectors.clear();
+      mIdle.clear();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import android.graphics.Bitmap;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes finished images as JPEG files into an output directory, named after their source files.
+ */
+public class JpegEncoder implements BatchPipeline.Encoder<Bitmap> {
+  private final File mDirectory;
+  private final int mQuality;
+
+  /**
+   * @param quality the JPEG quality, from 0 to 100
+   */
+  public JpegEncoder(File directory, int quality) {
+    mDirectory = directory;
+    mQuality = quality;
+  }
+
+  @Override
+  public void encode(Bitmap image, String source) throws IOException {
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(getOutputFile(source)));
+    try {
+      if (!image.compress(Bitmap.CompressFormat.JPEG, mQuality, out)) {
+        throw new IOException("Unable to encode " + source);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns where the image read from {@code source} is written: its file name with the
+   * extension replaced by {@code .jpg}, in the output directory.
+   */
+  public File getOutputFile(String source) {
+    String name = new File(source).getName();
+    int dot = name.lastIndexOf('.');
+    return new File(mDirectory, (dot > 0 ? name.substring(0, dot) : name) + ".jpg");
+  }
+}
@@ -0,0 +1,25 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+
+/**
+ * Finds the faces in a still image, for the detection stage of a {@link BatchPipeline}.  Kept
+ * apart from the Play Services detector so that the pipeline can be run, and its throughput
+ * measured, on a plain JVM with a stand-in.<p>
+ *
+ * The pipeline calls {@link #detect} from several worker threads at once.
+ *
+ * @param <I> the decoded image type
+ */
+public interface StillFaceDetector<I> {
+  /**
+   * Fills {@code out}, already reset to the image's size, with the faces found in the image, in
+   * image coordinates.
+   */
+  void detect(I image, FrameRecord out);
+
+  /**
+   * Frees the detector once the pipeline has finished with it.
+   */
+  void release();
+}
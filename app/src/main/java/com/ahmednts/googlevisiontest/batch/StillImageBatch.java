@@ -0,0 +1,138 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import com.ahmednts.googlevisiontest.stickers.StickerAssetLoader;
+import com.ahmednts.googlevisiontest.stickers.StickerAssets;
+import com.ahmednts.googlevisiontest.stickers.StickerCompositor;
+import com.ahmednts.googlevisiontest.stickers.StickerSet;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Puts the stickers on the faces of a batch of image files, off the camera: builds a
+ * {@link BatchPipeline} of bitmap decoding, Play Services face detection, sticker compositing and
+ * JPEG encoding, sized to the device's cores, and writes the results to an output directory.
+ * Blocks until the batch is done, so it must not be run on the UI thread.
+ */
+public class StillImageBatch {
+  private static final String TAG = "StillImageBatch";
+
+  // Images are decoded at up to MAX_IMAGE_SIZE pixels on their longest side, and at most
+  // QUEUE_CAPACITY of them wait between two stages.
+  private static final int MAX_IMAGE_SIZE = 2048;
+  private static final int QUEUE_CAPACITY = 2;
+  private static final int JPEG_QUALITY = 90;
+
+  // Faces in photos are usually smaller than in front of the camera.
+  private static final float MIN_FACE_SIZE = 0.05f;
+
+  // Big enough for the largest atlas, which is loaded before the first image.
+  private static final int STICKER_CACHE_BYTES = 8 * 1024 * 1024;
+  private static final int STICKER_SIZE = 1024;
+
+  private static final String[] EXTENSIONS = {".jpg", ".jpeg", ".png", ".webp"};
+
+  private final Context mContext;
+  private final File mOutputDirectory;
+  private final int mWorkers;
+
+  public StillImageBatch(Context context, File outputDirectory) {
+    this(context, outputDirectory, BatchPipeline.getDefaultWorkers());
+  }
+
+  public StillImageBatch(Context context, File outputDirectory, int workers) {
+    mContext = context.getApplicationContext();
+    mOutputDirectory = outputDirectory;
+    mWorkers = workers;
+  }
+
+  /**
+   * Processes every image file directly in a directory, in name order.
+   */
+  public BatchPipeline.Result process(File directory) throws IOException, InterruptedException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      throw new IOException("Unable to list " + directory);
+    }
+    Arrays.sort(files);
+    List<String> sources = new ArrayList<>();
+    for (File file : files) {
+      if (file.isFile() && isImage(file.getName())) {
+        sources.add(file.getPath());
+      }
+    }
+    return process(sources);
+  }
+
+  /**
+   * Processes the given image files.
+   */
+  public BatchPipeline.Result process(List<String> sources)
+      throws IOException, InterruptedException {
+    if (!mOutputDirectory.isDirectory() && !mOutputDirectory.mkdirs()) {
+      throw new IOException("Unable to create " + mOutputDirectory);
+    }
+
+    StickerAssets assets = new StickerAssets(STICKER_CACHE_BYTES);
+    StickerAssetLoader loader = new StickerAssetLoader(mContext.getResources(), assets);
+    final CountDownLatch loaded = new CountDownLatch(1);
+    final AtomicBoolean failed = new AtomicBoolean();
+    loader.load(STICKER_SIZE, new StickerAssetLoader.Listener() {
+      @Override
+      public void onAssetsLoaded(StickerAssets loadedAssets) {
+        loaded.countDown();
+      }
+
+      @Override
+      public void onAssetsFailed(StickerAssets loadedAssets) {
+        failed.set(true);
+        loaded.countDown();
+      }
+    });
+
+    // Detectors are built as the detection workers first need them, so no more than there are
+    // detection workers ever exist.
+    GmsStillFaceDetector detector = new GmsStillFaceDetector(mContext, MIN_FACE_SIZE, mWorkers);
+    try {
+      loaded.await();
+      if (failed.get()) {
+        throw new IOException("Unable to decode the sticker assets");
+      }
+      BatchPipeline<Bitmap> pipeline = new BatchPipeline<>(new BitmapDecoder(MAX_IMAGE_SIZE),
+          detector, new StickerCompositor(assets, new StickerSet(StickerSet.ALL)),
+          new JpegEncoder(mOutputDirectory, JPEG_QUALITY), mWorkers, QUEUE_CAPACITY);
+      if (!detector.isOperational()) {
+        Log.w(TAG, "Face detector dependencies are not yet available; no faces will be found.");
+      }
+      BatchPipeline.Result result = pipeline.run(sources);
+      Log.i(TAG, String.format(Locale.US, "%s with %d/%d/%d/%d workers", result,
+          pipeline.getWorkers(BatchPipeline.DECODE), pipeline.getWorkers(BatchPipeline.DETECT),
+          pipeline.getWorkers(BatchPipeline.COMPOSITE), pipeline.getWorkers(BatchPipeline.ENCODE)));
+      if (result.getFirstError() != null) {
+        Log.w(TAG, "First failure", result.getFirstError());
+      }
+      return result;
+    } finally {
+      loader.shutdown();
+      detector.release();
+    }
+  }
+
+  private static boolean isImage(String name) {
+    String lower = name.toLowerCase(Locale.US);
+    for (String extension : EXTENSIONS) {
+      if (lower.endsWith(extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -24,6 +24,7 @@ import android.view.SurfaceView;
 import android.view.ViewGroup;
 import com.google.android.gms.common.images.Size;
 import com.google.android.gms.vision.CameraSource;
+import java.io.File;
 import java.io.IOException;
 
 public class CameraSourcePreview extends ViewGroup {
@@ -36,6 +37,7 @@ public class CameraSourcePreview extends ViewGroup {
     private CameraSource mCameraSource;
 
     private GraphicOverlay mOverlay;
+    private SnapshotCapture mSnapshotCapture;
 
     public CameraSourcePreview(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -67,6 +69,10 @@ public class CameraSourcePreview extends ViewGroup {
     }
 
     public void stop() {
+        if (mSnapshotCapture != null) {
+            // No more frames will come to a capture waiting for one.
+            mSnapshotCapture.cancel();
+        }
         if (mCameraSource != null) {
             mCameraSource.stop();
         }
@@ -79,6 +85,24 @@ public class CameraSourcePreview extends ViewGroup {
         }
     }
 
+    /**
+     * Sets where {@link #takeSnapshot(File, SnapshotCapture.Listener)} gets its frames from; the
+     * capture must be fed the camera frames by the detector.
+     */
+    public void setSnapshotCapture(SnapshotCapture snapshotCapture) {
+        mSnapshotCapture = snapshotCapture;
+    }
+
+    /**
+     * Saves the next camera frame, with the overlay's graphics on top, to {@code file} in the
+     * background.
+     *
+     * @return false if there is no snapshot capture, or it is busy with another snapshot
+     */
+    public boolean takeSnapshot(File file, SnapshotCapture.Listener listener) {
+        return mSnapshotCapture != null && mSnapshotCapture.capture(file, listener);
+    }
+
     private void startIfReady() throws IOException {
         if (mStartRequested && mSurfaceAvailable) {
             mCameraSource.start(mSurfaceView.getHolder());
@@ -96,6 +120,8 @@ public class CameraSourcePreview extends ViewGroup {
                 mOverlay.clear();
             }
             mStartRequested = false;
+            // The camera may have been switched to one with another preview size.
+            requestLayout();
         }
     }
 
@@ -16,12 +16,23 @@
 package com.ahmednts.googlevisiontest.camera;
 
 import android.content.Context;
+import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.os.Looper;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
+import com.ahmednts.googlevisiontest.R;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.ahmednts.googlevisiontest.metrics.Tracing;
 import com.google.android.gms.vision.CameraSource;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A view which renders a series of custom graphics to be overlayed on top of an associated preview
@@ -32,23 +43,129 @@ import java.util.Set;
  * idea is that detection items are expressed in terms of a preview size, but need to be scaled up
  * to the full view size, and also mirrored in the case of the front-facing camera.<p>
  *
- * Associated {@link Graphic} items should use the following methods to convert to view coordinates
- * for the graphics that are drawn:
- * <ol>
- * <li>{@link Graphic#scaleX(float)} and {@link Graphic#scaleY(float)} adjust the size of the
- * supplied value from the preview scale to the view scale.</li>
- * <li>{@link Graphic#translateX(float)} and {@link Graphic#translateY(float)} adjust the coordinate
- * from the preview's coordinate system to the view coordinate system.</li>
- * </ol>
+ * Associated {@link Graphic} items convert to view coordinates with the {@link PreviewTransform}
+ * returned by {@link Graphic#getTransform()}, which is fixed for the duration of a draw pass and
+ * can map whole coordinate buffers at once.  {@link Graphic#translateX(float)} and friends map
+ * single values with the same transform.<p>
+ *
+ * The set of graphics is published as an immutable snapshot: writers (typically the detector
+ * thread) copy the current array under {@code mLock} and swap in the new one, while
+ * {@link #onDraw(Canvas)} iterates whatever snapshot is current without taking the lock.  Drawing
+ * therefore never blocks detection, and detection never waits for a draw pass to finish.<p>
+ *
+ * Redraw requests are coalesced.  Updates made between {@link #beginFrame()} and
+ * {@link #commitFrame()} are staged and published as a single snapshot when the frame is
+ * committed, and at most one invalidation is issued per display vsync no matter how many graphics
+ * asked for a redraw.  {@link #getInvalidationsRequested()} and {@link #getInvalidationsIssued()}
+ * report how well this is working.<p>
+ *
+ * By default the overlay draws its graphics itself, on the UI thread.  With a
+ * {@link RenderTarget} set, it stays empty and hands every redraw to the target instead, which
+ * lets the same graphics be drawn on a dedicated render thread; see {@link RenderThreadOverlay}.
+ * The {@code renderMode} layout attribute records which of the two the layout asks for.<p>
+ *
+ * Graphics that implement {@link Graphic#computeBounds} let the overlay work out, once per vsync
+ * on the drawing thread, the union of what changed: where invalidated graphics were last drawn,
+ * where they are about to be drawn, and where removed graphics used to be.  Only that region is
+ * invalidated, and a render target only clears and redraws that part of its surface.  A change
+ * to a graphic that cannot tell its bounds, to the camera info or to the view size still redraws
+ * everything.<p>
+ *
+ * {@link #drawSnapshot(Canvas, long)} draws the same graphics onto an offscreen canvas, e.g., a
+ * copy of the camera frame being saved, from any thread.  Draw passes, dirty-region passes and
+ * snapshots are serialized on {@code mDrawLock}, since graphics keep per-draw scratch state.
  */
 public class GraphicOverlay extends View {
+    /**
+     * The overlay draws its graphics in {@link #onDraw(Canvas)}.
+     */
+    public static final int RENDER_MODE_UI_THREAD = 0;
+
+    /**
+     * The graphics should be drawn on a render thread, through a {@link RenderTarget}.
+     */
+    public static final int RENDER_MODE_RENDER_THREAD = 1;
+
+    private static final Graphic[] EMPTY_GRAPHICS = new Graphic[0];
+
+    // A vsync time older than this is not the frame being drawn.
+    private static final long STALE_VSYNC_NANOS = 20000000L;
+
+    // Added around the dirty region for antialiased and filtered edges.
+    private static final float DIRTY_MARGIN = 2.0f;
+
     private final Object mLock = new Object();
+    private final Object mDrawLock = new Object();
     private int mPreviewWidth;
-    private float mWidthScaleFactor = 1.0f;
     private int mPreviewHeight;
-    private float mHeightScaleFactor = 1.0f;
     private int mFacing = CameraSource.CAMERA_FACING_BACK;
-    private Set<Graphic> mGraphics = new HashSet<>();
+
+    // The preview-to-view mapping of the current draw pass.  Replaced, never modified, when the
+    // camera info or canvas size changes.
+    private volatile PreviewTransform mTransform = PreviewTransform.IDENTITY;
+    private volatile Graphic[] mGraphics = EMPTY_GRAPHICS;
+
+    // Frame staging state, guarded by mLock.
+    private int mFrameDepth;
+    private boolean mFrameDirty;
+    private List<Graphic> mStagedGraphics;
+
+    private final PipelineMetrics mMetrics = new PipelineMetrics();
+
+    private final int mRenderMode;
+    private volatile RenderTarget mRenderTarget;
+
+    private final Choreographer mChoreographer;
+    private final AtomicBoolean mInvalidatePending = new AtomicBoolean();
+    private final AtomicLong mInvalidationsRequested = new AtomicLong();
+    private final AtomicLong mInvalidationsIssued = new AtomicLong();
+
+    // Choreographer time of the last vsync that issued an invalidation, and the time that the
+    // current draw pass renders for.  The latter is only used on the drawing thread.
+    private volatile long mVsyncTimeNanos;
+    private long mDrawTimeNanos;
+
+    // The snapshot of the last draw pass, and scratch bounds for the dirty region.  Only used on
+    // the drawing thread.
+    private Graphic[] mDrawnGraphics = EMPTY_GRAPHICS;
+    private final Bounds mGraphicBounds = new Bounds();
+    private final Bounds mUiDirty = new Bounds();
+    private final AtomicBoolean mFullRedrawPending = new AtomicBoolean(true);
+
+    // Set, under mDrawLock, while a snapshot is drawn, so that it is not taken for what the
+    // overlay shows.
+    private boolean mDrawingSnapshot;
+
+    private final Choreographer.FrameCallback mInvalidateCallback =
+            new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    // A hardware-accelerated view re-records its whole display list either way,
+                    // but the region still limits what gets composited and redrawn in software.
+                    if (onRenderFrame(frameTimeNanos, getWidth(), getHeight(), mUiDirty)) {
+                        if (!mUiDirty.isEmpty()) {
+                            invalidate(mUiDirty.getLeft(), mUiDirty.getTop(), mUiDirty.getRight(),
+                                    mUiDirty.getBottom());
+                        }
+                    } else {
+                        invalidate();
+                    }
+                }
+            };
+
+    /**
+     * Draws the overlay's graphics somewhere other than the overlay view, such as a surface of
+     * its own on a render thread.
+     */
+    public interface RenderTarget {
+        /**
+         * Asks for the graphics to be drawn at the next vsync.  Called on any thread, at most once
+         * until the target calls {@link GraphicOverlay#onRenderFrame(long, int, int, Bounds)},
+         * which it must do from the frame callback before drawing with
+         * {@link GraphicOverlay#drawGraphics(Canvas, long, Bounds)}.
+         */
+        void requestRender();
+    }
 
     /**
      * Base class for a custom graphics object to be rendered within the graphic overlay.  Subclass
@@ -58,37 +175,71 @@ public class GraphicOverlay extends View {
     public static abstract class Graphic {
         private GraphicOverlay mOverlay;
 
+        // Dirty-region state, only used on the drawing thread except for mInvalidated: what the
+        // last draw covered, and whether computeBounds() could tell last time it was asked.
+        private final Bounds mDrawnBounds = new Bounds();
+        private boolean mBoundsKnown;
+        private volatile boolean mInvalidated = true;
+
         public Graphic(GraphicOverlay overlay) {
             mOverlay = overlay;
         }
 
         /**
-         * Draw the graphic on the supplied canvas.  Drawing should use the following methods to
-         * convert to view coordinates for the graphics that are drawn:
-         * <ol>
-         * <li>{@link Graphic#scaleX(float)} and {@link Graphic#scaleY(float)} adjust the size of
-         * the supplied value from the preview scale to the view scale.</li>
-         * <li>{@link Graphic#translateX(float)} and {@link Graphic#translateY(float)} adjust the
-         * coordinate from the preview's coordinate system to the view coordinate system.</li>
-         * </ol>
+         * Draw the graphic on the supplied canvas.  Drawing should convert from preview to view
+         * coordinates with {@link #getTransform()}, or with {@link Graphic#translateX(float)},
+         * {@link Graphic#translateY(float)}, {@link Graphic#scaleX(float)} and
+         * {@link Graphic#scaleY(float)} for single values.
          *
          * @param canvas drawing canvas
          */
         public abstract void draw(Canvas canvas);
 
+        /**
+         * Computes the view-space area that {@link #draw(Canvas)} would cover at
+         * {@code frameTimeNanos} with {@code transform}, so that the overlay can redraw only what
+         * changed.  Called on the drawing thread, just before a draw pass, for graphics that asked
+         * for a redraw.  Graphics that implement it must report what they actually draw with
+         * {@link #addDrawnBounds(Bounds)}.
+         *
+         * @return false if the area is unknown, which redraws the whole overlay; the default
+         */
+        protected boolean computeBounds(PreviewTransform transform, long frameTimeNanos,
+                Bounds out) {
+            return false;
+        }
+
+        /**
+         * Records that the current {@link #draw(Canvas)} call covers {@code bounds}, in view
+         * coordinates.  Only meaningful from within {@link #draw(Canvas)}.
+         */
+        protected void addDrawnBounds(Bounds bounds) {
+            if (!mOverlay.mDrawingSnapshot) {
+                mDrawnBounds.union(bounds);
+            }
+        }
+
+        /**
+         * Returns the preview-to-view transform of the frame being drawn.  Only meaningful from
+         * within {@link #draw(Canvas)}.
+         */
+        protected PreviewTransform getTransform() {
+            return mOverlay.mTransform;
+        }
+
         /**
          * Adjusts a horizontal value of the supplied value from the preview scale to the view
          * scale.
          */
         public float scaleX(float horizontal) {
-            return horizontal * mOverlay.mWidthScaleFactor;
+            return mOverlay.mTransform.scaleX(horizontal);
         }
 
         /**
          * Adjusts a vertical value of the supplied value from the preview scale to the view scale.
          */
         public float scaleY(float vertical) {
-            return vertical * mOverlay.mHeightScaleFactor;
+            return mOverlay.mTransform.scaleY(vertical);
         }
 
         /**
@@ -96,11 +247,7 @@ public class GraphicOverlay extends View {
          * system.
          */
         public float translateX(float x) {
-            if (mOverlay.mFacing == CameraSource.CAMERA_FACING_FRONT) {
-                return mOverlay.getWidth() - scaleX(x);
-            } else {
-                return scaleX(x);
-            }
+            return mOverlay.mTransform.mapX(x);
         }
 
         /**
@@ -108,16 +255,104 @@ public class GraphicOverlay extends View {
          * system.
          */
         public float translateY(float y) {
-            return scaleY(y);
+            return mOverlay.mTransform.mapY(y);
+        }
+
+        /**
+         * Returns the time, on the {@link System#nanoTime()} clock, that the frame being drawn
+         * shows: the Choreographer frame time when the draw was scheduled by a vsync.  Only
+         * meaningful from within {@link #draw(Canvas)}.
+         */
+        protected long getFrameTimeNanos() {
+            return mOverlay.mDrawTimeNanos;
         }
 
+        /**
+         * Requests a redraw of the graphic.  The request is coalesced with any others made in the
+         * same frame, so it is cheap to call on every update.
+         */
         public void postInvalidate() {
-            mOverlay.postInvalidate();
+            mInvalidated = true;
+            mOverlay.requestInvalidate(true);
         }
     }
 
     public GraphicOverlay(Context context, AttributeSet attrs) {
         super(context, attrs);
+        // Views are inflated on the UI thread, so this is the UI thread's Choreographer.
+        // Without a looper (e.g., when constructed from a test thread) invalidations fall back
+        // to plain postInvalidate() calls.
+        mChoreographer = Looper.myLooper() != null ? Choreographer.getInstance() : null;
+
+        int renderMode = RENDER_MODE_UI_THREAD;
+        if (attrs != null) {
+            TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.GraphicOverlay);
+            renderMode = a.getInt(R.styleable.GraphicOverlay_renderMode, RENDER_MODE_UI_THREAD);
+            a.recycle();
+        }
+        mRenderMode = renderMode;
+    }
+
+    /**
+     * Returns where the layout asked for the graphics to be drawn, {@link #RENDER_MODE_UI_THREAD}
+     * or {@link #RENDER_MODE_RENDER_THREAD}.
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Sends all further redraws to {@code target}, or back to this view if null.  May be called
+     * on any thread.
+     */
+    public void setRenderTarget(RenderTarget target) {
+        mRenderTarget = target;
+        // A redraw scheduled with the previous target may never come, and the new one starts
+        // from a blank surface.
+        mInvalidatePending.set(false);
+        mFullRedrawPending.set(true);
+        // Clear or restore what this view shows, and draw the graphics where they now belong.
+        postInvalidate();
+        requestInvalidate(true);
+    }
+
+    /**
+     * Starts a batch of updates, typically all tracker callbacks for one detector frame.  Until
+     * the matching {@link #commitFrame()}, {@link #add(Graphic)} and {@link #remove(Graphic)}
+     * only stage their changes and redraw requests are deferred.  Calls may be nested.
+     */
+    public void beginFrame() {
+        synchronized (mLock) {
+            mFrameDepth++;
+        }
+    }
+
+    /**
+     * Ends a batch of updates started by {@link #beginFrame()}.  The outermost commit publishes
+     * the staged graphics as one snapshot and, if anything asked for a redraw during the frame,
+     * schedules a single invalidation for the next vsync.
+     */
+    public void commitFrame() {
+        synchronized (mLock) {
+            if (mFrameDepth == 0) {
+                throw new IllegalStateException("commitFrame() called without beginFrame()");
+            }
+            if (--mFrameDepth > 0) {
+                return;
+            }
+            if (mStagedGraphics != null && mFrameDirty) {
+                mGraphics = mStagedGraphics.isEmpty()
+                        ? EMPTY_GRAPHICS
+                        : mStagedGraphics.toArray(new Graphic[mStagedGraphics.size()]);
+            }
+            mStagedGraphics = null;
+            if (!mFrameDirty) {
+                return;
+            }
+            mFrameDirty = false;
+        }
+        mMetrics.onFrameCommitted();
+        scheduleInvalidate();
     }
 
     /**
@@ -125,29 +360,232 @@ public class GraphicOverlay extends View {
      */
     public void clear() {
         synchronized (mLock) {
-            mGraphics.clear();
+            if (mFrameDepth > 0) {
+                stagedGraphics().clear();
+                mFrameDirty = true;
+            } else {
+                mGraphics = EMPTY_GRAPHICS;
+            }
         }
-        postInvalidate();
+        requestInvalidate(true);
     }
 
     /**
-     * Adds a graphic to the overlay.
+     * Adds a graphic to the overlay.  Adding a graphic that is already present is a no-op and
+     * does not publish a new snapshot.
      */
     public void add(Graphic graphic) {
+        boolean changed = false;
         synchronized (mLock) {
-            mGraphics.add(graphic);
+            if (mFrameDepth > 0) {
+                // Only copy the snapshot into the staging list once something really changes;
+                // re-adding graphics that are already shown is the common case.
+                if (mStagedGraphics == null
+                        ? indexOf(mGraphics, graphic) < 0
+                        : !mStagedGraphics.contains(graphic)) {
+                    stagedGraphics().add(graphic);
+                    mFrameDirty = true;
+                    changed = true;
+                }
+            } else {
+                Graphic[] current = mGraphics;
+                if (indexOf(current, graphic) < 0) {
+                    Graphic[] next = new Graphic[current.length + 1];
+                    System.arraycopy(current, 0, next, 0, current.length);
+                    next[current.length] = graphic;
+                    mGraphics = next;
+                    changed = true;
+                }
+            }
         }
-        postInvalidate();
+        requestInvalidate(changed);
     }
 
     /**
      * Removes a graphic from the overlay.
      */
     public void remove(Graphic graphic) {
+        boolean changed = false;
         synchronized (mLock) {
-            mGraphics.remove(graphic);
+            if (mFrameDepth > 0) {
+                if (mStagedGraphics != null || indexOf(mGraphics, graphic) >= 0) {
+                    changed = stagedGraphics().remove(graphic);
+                    mFrameDirty |= changed;
+                }
+            } else {
+                Graphic[] current = mGraphics;
+                int index = indexOf(current, graphic);
+                if (index >= 0) {
+                    if (current.length == 1) {
+                        mGraphics = EMPTY_GRAPHICS;
+                    } else {
+                        Graphic[] next = new Graphic[current.length - 1];
+                        System.arraycopy(current, 0, next, 0, index);
+                        System.arraycopy(current, index + 1, next, index,
+                                current.length - index - 1);
+                        mGraphics = next;
+                    }
+                    changed = true;
+                }
+            }
         }
-        postInvalidate();
+        requestInvalidate(changed);
+    }
+
+    /**
+     * Returns the number of graphics in the current snapshot.
+     */
+    public int getGraphicCount() {
+        return mGraphics.length;
+    }
+
+    /**
+     * Returns how many redraws have been asked for, by graphics or by changes to the graphic set.
+     */
+    public long getInvalidationsRequested() {
+        return mInvalidationsRequested.get();
+    }
+
+    /**
+     * Returns how many invalidations the overlay actually issued after coalescing.
+     */
+    public long getInvalidationsIssued() {
+        return mInvalidationsIssued.get();
+    }
+
+    /**
+     * Returns the latency metrics of the pipeline that feeds this overlay.  The overlay records
+     * its commits and draws; the detector and trackers record the earlier stages.
+     */
+    public PipelineMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Returns the staged copy of the graphic set for the current frame.  Must be called with
+     * {@code mLock} held.
+     */
+    private List<Graphic> stagedGraphics() {
+        if (mStagedGraphics == null) {
+            mStagedGraphics = new ArrayList<>(Arrays.asList(mGraphics));
+        }
+        return mStagedGraphics;
+    }
+
+    /**
+     * Counts a redraw request and, if it reflects an actual change, either defers it to the end
+     * of the current frame or schedules an invalidation.
+     */
+    private void requestInvalidate(boolean changed) {
+        mInvalidationsRequested.incrementAndGet();
+        if (!changed) {
+            return;
+        }
+        synchronized (mLock) {
+            if (mFrameDepth > 0) {
+                mFrameDirty = true;
+                return;
+            }
+        }
+        scheduleInvalidate();
+    }
+
+    /**
+     * Issues at most one invalidation per vsync, however many requests arrive before it runs.
+     */
+    private void scheduleInvalidate() {
+        if (!mInvalidatePending.compareAndSet(false, true)) {
+            return;
+        }
+        RenderTarget target = mRenderTarget;
+        if (target != null) {
+            target.requestRender();
+        } else if (mChoreographer != null) {
+            mChoreographer.postFrameCallback(mInvalidateCallback);
+        } else {
+            mInvalidatePending.set(false);
+            mInvalidationsIssued.incrementAndGet();
+            postInvalidate();
+        }
+    }
+
+    /**
+     * Marks the start of the frame that a scheduled redraw was waiting for and works out what it
+     * has to redraw on a {@code width} by {@code height} canvas.  Called from the vsync callback
+     * of whoever draws the graphics, before drawing them.
+     *
+     * @param dirty set to the region to redraw, possibly empty, if the result is true
+     * @return false if the whole overlay has to be redrawn
+     */
+    boolean onRenderFrame(long frameTimeNanos, int width, int height, Bounds dirty) {
+        mVsyncTimeNanos = frameTimeNanos;
+        mInvalidatePending.set(false);
+        mInvalidationsIssued.incrementAndGet();
+
+        boolean partial;
+        synchronized (mDrawLock) {
+            partial = computeDirtyRegion(frameTimeNanos, width, height, dirty);
+        }
+        mMetrics.onRegionRedrawn(partial ? dirty.getPixelArea() : (long) width * height,
+                (long) width * height);
+        return partial;
+    }
+
+    /**
+     * Collects the region that changed since the last draw pass.  Must be called on the drawing
+     * thread.
+     */
+    private boolean computeDirtyRegion(long frameTimeNanos, int width, int height, Bounds dirty) {
+        dirty.setEmpty();
+        PreviewTransform previous = mTransform;
+        PreviewTransform transform;
+        synchronized (mLock) {
+            transform = previous.update(mPreviewWidth, mPreviewHeight, width, height,
+                    mFacing == CameraSource.CAMERA_FACING_FRONT);
+            mTransform = transform;
+        }
+        boolean partial = !mFullRedrawPending.getAndSet(false) && transform == previous;
+
+        // Graphics removed since the last pass leave behind what they drew.
+        Graphic[] graphics = mGraphics;
+        Graphic[] drawn = mDrawnGraphics;
+        if (graphics != drawn) {
+            for (int i = 0; i < drawn.length && partial; ++i) {
+                Graphic graphic = drawn[i];
+                if (indexOf(graphics, graphic) < 0) {
+                    partial = graphic.mBoundsKnown;
+                    dirty.union(graphic.mDrawnBounds);
+                }
+            }
+        }
+
+        // Invalidated graphics cover both where they were and where they are going.  Their bounds
+        // are asked for even when everything is redrawn, so that later frames know which
+        // graphics can tell.
+        for (int i = 0; i < graphics.length; ++i) {
+            Graphic graphic = graphics[i];
+            if (graphic.mInvalidated) {
+                graphic.mBoundsKnown = graphic.computeBounds(transform, frameTimeNanos,
+                        mGraphicBounds.setEmpty());
+                partial &= graphic.mBoundsKnown;
+                dirty.union(graphic.mDrawnBounds).union(mGraphicBounds);
+            }
+        }
+
+        if (!partial) {
+            return false;
+        }
+        dirty.outset(DIRTY_MARGIN).intersect(0, 0, width, height);
+        return true;
+    }
+
+    private static int indexOf(Graphic[] graphics, Graphic graphic) {
+        for (int i = 0; i < graphics.length; ++i) {
+            if (graphics[i] == graphic) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -160,25 +598,130 @@ public class GraphicOverlay extends View {
             mPreviewHeight = previewHeight;
             mFacing = facing;
         }
-        postInvalidate();
+        requestInvalidate(true);
     }
 
     /**
-     * Draws the overlay with its associated graphic objects.
+     * Returns the facing of the camera the graphics were detected in, as set by
+     * {@link #setCameraInfo(int, int, int)}.
+     */
+    public int getCameraFacing() {
+        synchronized (mLock) {
+            return mFacing;
+        }
+    }
+
+    /**
+     * Draws the overlay with its associated graphic objects.  Only the camera info is read under
+     * the lock; the graphics are drawn from the current snapshot so that concurrent
+     * {@link #add(Graphic)}/{@link #remove(Graphic)} calls are never held up by drawing.
      */
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        if (mRenderTarget == null) {
+            drawGraphics(canvas);
+        }
+    }
 
+    /**
+     * Draws the current graphics onto the canvas, scaled from preview to canvas coordinates, for
+     * the current vsync.  The overlay draws itself this way.
+     */
+    public void drawGraphics(Canvas canvas) {
+        long now = System.nanoTime();
+        long vsync = mVsyncTimeNanos;
+        drawGraphics(canvas, now - vsync < STALE_VSYNC_NANOS ? vsync : now);
+    }
+
+    /**
+     * Draws the current graphics as they should appear at {@code frameTimeNanos}.  Headless replay
+     * uses this to render recorded frames without a window.
+     */
+    public void drawGraphics(Canvas canvas, long frameTimeNanos) {
+        drawGraphics(canvas, frameTimeNanos, null);
+    }
+
+    /**
+     * Draws the graphics that touch {@code clip}, a region returned by
+     * {@link #onRenderFrame(long, int, int, Bounds)} that the canvas is clipped to, or all of
+     * them if it is null.
+     */
+    void drawGraphics(Canvas canvas, long frameTimeNanos, Bounds clip) {
+        synchronized (mDrawLock) {
+            drawGraphicsLocked(canvas, frameTimeNanos, clip);
+        }
+    }
+
+    private void drawGraphicsLocked(Canvas canvas, long frameTimeNanos, Bounds clip) {
+        Tracing.beginSection("GraphicOverlay.draw");
+        long start = System.nanoTime();
+        mDrawTimeNanos = frameTimeNanos;
         synchronized (mLock) {
-            if ((mPreviewWidth != 0) && (mPreviewHeight != 0)) {
-                mWidthScaleFactor = (float) canvas.getWidth() / (float) mPreviewWidth;
-                mHeightScaleFactor = (float) canvas.getHeight() / (float) mPreviewHeight;
+            mTransform = mTransform.update(mPreviewWidth, mPreviewHeight, canvas.getWidth(),
+                    canvas.getHeight(), mFacing == CameraSource.CAMERA_FACING_FRONT);
+        }
+
+        Graphic[] graphics = mGraphics;
+        boolean escaped = false;
+        long graphicStart = start;
+        for (int i = 0; i < graphics.length; ++i) {
+            Graphic graphic = graphics[i];
+            if (clip != null && graphic.mBoundsKnown && !graphic.mInvalidated
+                    && !graphic.mDrawnBounds.intersects(clip)) {
+                // Unchanged and outside the clip: its pixels are still on the surface.
+                continue;
+            }
+            graphic.mInvalidated = false;
+            graphic.mDrawnBounds.setEmpty();
+            graphic.draw(canvas);
+            if (clip != null && graphic.mBoundsKnown && !clip.contains(graphic.mDrawnBounds)) {
+                // Updated after the region was computed; part of it was clipped away.
+                graphic.mInvalidated = true;
+                escaped = true;
             }
+            long graphicEnd = System.nanoTime();
+            mMetrics.onGraphicDrawn(graphic.getClass(), graphicEnd - graphicStart);
+            graphicStart = graphicEnd;
+        }
+        mDrawnGraphics = graphics;
+        mMetrics.onOverlayDrawn(start, graphicStart);
+        Tracing.endSection();
+        if (escaped) {
+            requestInvalidate(true);
+        }
+    }
 
-            for (Graphic graphic : mGraphics) {
-                graphic.draw(canvas);
+    /**
+     * Draws the current graphics onto an offscreen canvas that shows the whole camera preview,
+     * upright and mirrored like the view, as they should appear at {@code frameTimeNanos}.
+     * Graphics are scaled to the canvas rather than the view.  May be called on any thread; a
+     * draw pass waits for it to finish, but the overlay's redraw state, metrics and dirty region
+     * are left as they were.
+     */
+    public void drawSnapshot(Canvas canvas, long frameTimeNanos) {
+        Tracing.beginSection("GraphicOverlay.drawSnapshot");
+        synchronized (mDrawLock) {
+            PreviewTransform transform = mTransform;
+            long drawTimeNanos = mDrawTimeNanos;
+            synchronized (mLock) {
+                mTransform = PreviewTransform.create(mPreviewWidth, mPreviewHeight,
+                        canvas.getWidth(), canvas.getHeight(),
+                        mFacing == CameraSource.CAMERA_FACING_FRONT);
+            }
+            mDrawTimeNanos = frameTimeNanos;
+            mDrawingSnapshot = true;
+            try {
+                Graphic[] graphics = mGraphics;
+                for (int i = 0; i < graphics.length; ++i) {
+                    graphics[i].draw(canvas);
+                }
+            } finally {
+                mDrawingSnapshot = false;
+                mDrawTimeNanos = drawTimeNanos;
+                mTransform = transform;
             }
         }
+        Tracing.endSection();
     }
 }
@@ -0,0 +1,34 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import com.google.android.gms.vision.Detector;
+
+/**
+ * Wraps a detector's processor so that everything the trackers do with a single detector frame is
+ * committed to the {@link GraphicOverlay} as one update.  This turns the per-tracker
+ * {@code add}/{@code postInvalidate} calls into a single snapshot publish and at most one
+ * invalidation per frame.
+ */
+public class OverlayFrameProcessor<T> implements Detector.Processor<T> {
+    private final Detector.Processor<T> mDelegate;
+    private final GraphicOverlay mOverlay;
+
+    public OverlayFrameProcessor(Detector.Processor<T> delegate, GraphicOverlay overlay) {
+        mDelegate = delegate;
+        mOverlay = overlay;
+    }
+
+    @Override
+    public void receiveDetections(Detector.Detections<T> detections) {
+        mOverlay.beginFrame();
+        try {
+            mDelegate.receiveDetections(detections);
+        } finally {
+            mOverlay.commitFrame();
+        }
+    }
+
+    @Override
+    public void release() {
+        mDelegate.release();
+    }
+}
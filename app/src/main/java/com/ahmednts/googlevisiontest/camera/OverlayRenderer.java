@@ -0,0 +1,139 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws the graphics of a {@link GraphicOverlay} onto a {@link CanvasSurface} from the thread of
+ * a given looper, paced by that thread's {@link Choreographer}: at most one frame per vsync,
+ * rendered for the vsync time.  Nothing about it is tied to the UI thread, so the overlay can be
+ * drawn on a dedicated render thread while layout and input keep the UI thread busy.<p>
+ *
+ * Each frame only clears and redraws the region of the surface that the overlay reports as
+ * changed, leaving the rest of the previous frame in place.
+ */
+final class OverlayRenderer implements GraphicOverlay.RenderTarget {
+    /**
+     * Where frames are drawn, e.g., a {@link android.view.Surface}.
+     */
+    interface CanvasSurface {
+        int getWidth();
+
+        int getHeight();
+
+        /**
+         * Returns a canvas for the next frame, or null if the surface cannot be drawn right now.
+         * With a {@code dirty} region, the rest of the previous frame is kept and the canvas is
+         * clipped to the region, which the surface may grow to what it really has to redraw.
+         *
+         * @param dirty the region to redraw, or null for the whole surface
+         */
+        Canvas lockCanvas(Bounds dirty);
+
+        void unlockCanvasAndPost(Canvas canvas);
+    }
+
+    private final GraphicOverlay mOverlay;
+    private final CanvasSurface mSurface;
+    private final Handler mHandler;
+    private final AtomicBoolean mFramePending = new AtomicBoolean();
+
+    // Only used on the renderer's thread.
+    private final Bounds mDirty = new Bounds();
+
+    // Set on the renderer's thread by start(); only read afterwards.
+    private volatile Choreographer mChoreographer;
+    private volatile boolean mStopped;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFramePending.set(false);
+            if (mStopped) {
+                return;
+            }
+            Bounds dirty = mOverlay.onRenderFrame(frameTimeNanos, mSurface.getWidth(),
+                    mSurface.getHeight(), mDirty) ? mDirty : null;
+            if (dirty != null && dirty.isEmpty()) {
+                return;
+            }
+            Canvas canvas = mSurface.lockCanvas(dirty);
+            if (canvas == null) {
+                return;
+            }
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                mOverlay.drawGraphics(canvas, frameTimeNanos, dirty);
+            } finally {
+                mSurface.unlockCanvasAndPost(canvas);
+            }
+        }
+    };
+
+    OverlayRenderer(GraphicOverlay overlay, Looper looper, CanvasSurface surface) {
+        mOverlay = overlay;
+        mSurface = surface;
+        mHandler = new Handler(looper);
+    }
+
+    /**
+     * Starts drawing the overlay's graphics here instead of in the overlay view.
+     */
+    void start() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mChoreographer = Choreographer.getInstance();
+                mOverlay.setRenderTarget(OverlayRenderer.this);
+            }
+        });
+    }
+
+    /**
+     * Hands drawing back to the overlay view and waits until no frame of this renderer is being
+     * drawn or scheduled, so that the surface can be released afterwards.
+     */
+    void stop() {
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runnable stop = new Runnable() {
+            @Override
+            public void run() {
+                mStopped = true;
+                mOverlay.setRenderTarget(null);
+                if (mChoreographer != null) {
+                    mChoreographer.removeFrameCallback(mFrameCallback);
+                }
+                stopped.countDown();
+            }
+        };
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            stop.run();
+            return;
+        }
+        mHandler.post(stop);
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedules a frame for the next vsync of the renderer's thread.
+     */
+    @Override
+    public void requestRender() {
+        Choreographer choreographer = mChoreographer;
+        if (choreographer != null && !mStopped && mFramePending.compareAndSet(false, true)) {
+            // Choreographer accepts callbacks from any thread and runs them on its own.
+            choreographer.postFrameCallback(mFrameCallback);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.view.Surface;
+import android.view.TextureView;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+
+/**
+ * Shows the graphics of a {@link GraphicOverlay} in a {@link TextureView} drawn by a dedicated
+ * render thread, so that sticker drawing no longer competes with layout, input and everything
+ * else on the UI thread.  The overlay view itself stays in the layout, empty, and keeps
+ * receiving the camera info and graphics as before.<p>
+ *
+ * Add it above the camera preview, sized like the overlay; rendering runs while its surface
+ * exists.
+ */
+public class RenderThreadOverlay extends TextureView
+        implements TextureView.SurfaceTextureListener {
+    private static final String TAG = "RenderThreadOverlay";
+
+    private final GraphicOverlay mOverlay;
+
+    // Only touched on the UI thread.
+    private HandlerThread mThread;
+    private OverlayRenderer mRenderer;
+    private OverlaySurface mSurface;
+
+    public RenderThreadOverlay(Context context, GraphicOverlay overlay) {
+        super(context);
+        mOverlay = overlay;
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture texture, int width, int height) {
+        mSurface = new OverlaySurface(new Surface(texture), width, height);
+        mThread = new HandlerThread("OverlayRender", Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mRenderer = new OverlayRenderer(mOverlay, mThread.getLooper(), mSurface);
+        mRenderer.start();
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture texture, int width, int height) {
+        // Draws at the new size; the preview transform follows the canvas.
+        mSurface.setSize(width, height);
+        mRenderer.requestRender();
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture texture) {
+        mRenderer.stop();
+        mThread.quit();
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mSurface.mSurface.release();
+        mRenderer = null;
+        mThread = null;
+        mSurface = null;
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture texture) {
+    }
+
+    /**
+     * The texture's surface, as drawn by the renderer's thread.
+     */
+    private static final class OverlaySurface implements OverlayRenderer.CanvasSurface {
+        final Surface mSurface;
+        private volatile int mWidth;
+        private volatile int mHeight;
+
+        // Only used on the renderer's thread.
+        private final Rect mDirtyRect = new Rect();
+
+        OverlaySurface(Surface surface, int width, int height) {
+            mSurface = surface;
+            setSize(width, height);
+        }
+
+        void setSize(int width, int height) {
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public int getWidth() {
+            return mWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return mHeight;
+        }
+
+        @Override
+        public Canvas lockCanvas(Bounds dirty) {
+            try {
+                if (dirty == null) {
+                    return mSurface.lockCanvas(null);
+                }
+                mDirtyRect.set(dirty.getLeft(), dirty.getTop(), dirty.getRight(),
+                        dirty.getBottom());
+                Canvas canvas = mSurface.lockCanvas(mDirtyRect);
+                // The surface redraws everything when it cannot copy the previous frame back.
+                dirty.set(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+                return canvas;
+            } catch (IllegalArgumentException | Surface.OutOfResourcesException e) {
+                Log.w(TAG, "Unable to draw the overlay surface", e);
+                return null;
+            }
+        }
+
+        @Override
+        public void unlockCanvasAndPost(Canvas canvas) {
+            mSurface.unlockCanvasAndPost(canvas);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.os.Process;
+import com.ahmednts.googlevisiontest.frame.Nv21Converter;
+import com.ahmednts.googlevisiontest.metrics.Tracing;
+import com.google.android.gms.vision.CameraSource;
+import com.google.android.gms.vision.Frame;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves what the user sees, the camera frame with the overlay's graphics on top, as a JPEG file,
+ * without holding up the UI thread or the detector.<p>
+ *
+ * {@link #capture(File, Listener)} only marks a capture as pending.  The next camera frame handed
+ * to {@link #onFrame(Frame)} on the detector thread is copied out of the camera's buffer, which
+ * is all the work done there.  Everything else happens on a capture thread of its own: the frame
+ * is converted from NV21, turned upright and mirrored like the preview, the overlay replays its
+ * current graphics on top with {@link GraphicOverlay#drawSnapshot(Canvas, long)}, and the result
+ * is encoded and written out.<p>
+ *
+ * One capture runs at a time.  The frame copy, pixel array, bitmaps and encode buffer are kept
+ * from one capture to the next, so that repeated captures at the same preview size do not
+ * allocate them again.  The time from the request to the file being written is recorded in the
+ * overlay's {@link com.ahmednts.googlevisiontest.metrics.PipelineMetrics}.
+ */
+public class SnapshotCapture {
+    private static final byte NEUTRAL_CHROMA = (byte) 128;
+
+    /**
+     * Told how a capture went, on the capture thread.
+     */
+    public interface Listener {
+        void onSnapshotSaved(File file, long latencyNanos);
+
+        void onSnapshotFailed(File file, IOException e);
+    }
+
+    private static final class Request {
+        final File file;
+        final Listener listener;
+        final long requestNanos;
+
+        Request(File file, Listener listener, long requestNanos) {
+            this.file = file;
+            this.listener = listener;
+            this.requestNanos = requestNanos;
+        }
+    }
+
+    private final GraphicOverlay mOverlay;
+    private final int mQuality;
+    private final ExecutorService mExecutor;
+    private final AtomicBoolean mBusy = new AtomicBoolean();
+    private final AtomicReference<Request> mPending = new AtomicReference<>();
+
+    // The grabbed frame.  Written on the detector thread and handed to the capture thread through
+    // the executor; mBusy keeps the next grab away until the capture is done with it.
+    private byte[] mNv21 = new byte[0];
+    private int mFrameWidth;
+    private int mFrameHeight;
+    private int mFrameRotation;
+    private boolean mFrameMirrored;
+    private long mFrameNanos;
+
+    // Only used on the capture thread.
+    private int[] mArgb;
+    private Bitmap mFrameBitmap;
+    private Bitmap mOutput;
+    private final Canvas mCanvas = new Canvas();
+    private final Matrix mFrameMatrix = new Matrix();
+    private final Paint mFramePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final ByteArrayOutputStream mEncoded = new ByteArrayOutputStream();
+
+    /**
+     * @param quality the JPEG quality, from 0 to 100
+     */
+    public SnapshotCapture(GraphicOverlay overlay, int quality) {
+        mOverlay = overlay;
+        mQuality = quality;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "SnapshotCapture");
+            }
+        });
+    }
+
+    /**
+     * Asks for the next camera frame to be saved to {@code file}, with the graphics on top.
+     *
+     * @return false if a capture is already under way or the capture has been released
+     */
+    public boolean capture(File file, Listener listener) {
+        if (mExecutor.isShutdown() || !mBusy.compareAndSet(false, true)) {
+            return false;
+        }
+        mPending.set(new Request(file, listener, System.nanoTime()));
+        return true;
+    }
+
+    /**
+     * Drops a capture still waiting for a frame, e.g., because the camera is stopping.  A capture
+     * that already has its frame carries on.
+     */
+    public void cancel() {
+        if (mPending.getAndSet(null) != null) {
+            mBusy.set(false);
+        }
+    }
+
+    public boolean isBusy() {
+        return mBusy.get();
+    }
+
+    /**
+     * Hands a camera frame to a pending capture, if there is one.  Must be called on the detector
+     * thread, while the frame's buffer still holds its pixels.
+     */
+    public void onFrame(Frame frame) {
+        if (mPending.get() == null) {
+            return;
+        }
+        final Request request = mPending.getAndSet(null);
+        if (request == null) {
+            return;
+        }
+        Frame.Metadata metadata = frame.getMetadata();
+        ByteBuffer data = frame.getGrayscaleImageData();
+        if (data == null) {
+            mBusy.set(false);
+            request.listener.onSnapshotFailed(request.file,
+                    new IOException("Camera frame " + metadata.getId() + " has no pixels"));
+            return;
+        }
+
+        Tracing.beginSection("SnapshotCapture.grab");
+        mFrameWidth = metadata.getWidth();
+        mFrameHeight = metadata.getHeight();
+        mFrameRotation = metadata.getRotation();
+        mFrameMirrored = mOverlay.getCameraFacing() == CameraSource.CAMERA_FACING_FRONT;
+        mFrameNanos = System.nanoTime();
+        int size = Nv21Converter.getFrameSize(mFrameWidth, mFrameHeight);
+        if (mNv21.length != size) {
+            mNv21 = new byte[size];
+        }
+        // A frame that only carries its luma is saved in grey.
+        ByteBuffer source = data.duplicate();
+        int copied = Math.min(source.remaining(), size);
+        source.get(mNv21, 0, copied);
+        Arrays.fill(mNv21, copied, size, NEUTRAL_CHROMA);
+        Tracing.endSection();
+
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    save(request);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Released while the frame was being copied.
+            mBusy.set(false);
+        }
+    }
+
+    /**
+     * Stops the capture thread, and frees the bitmaps once a capture under way is done.
+     */
+    public void release() {
+        cancel();
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mFrameBitmap != null) {
+                    mFrameBitmap.recycle();
+                    mFrameBitmap = null;
+                }
+                if (mOutput != null) {
+                    mOutput.recycle();
+                    mOutput = null;
+                }
+            }
+        });
+        mExecutor.shutdown();
+    }
+
+    private void save(Request request) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        try {
+            compose();
+            write(request.file);
+            long latency = System.nanoTime() - request.requestNanos;
+            mOverlay.getMetrics().onSnapshotSaved(latency);
+            request.listener.onSnapshotSaved(request.file, latency);
+        } catch (IOException e) {
+            request.listener.onSnapshotFailed(request.file, e);
+        } finally {
+            mBusy.set(false);
+        }
+    }
+
+    /**
+     * Draws the grabbed frame upright, and mirrored for the front camera, with the graphics on
+     * top, into the output bitmap.
+     */
+    private void compose() {
+        Tracing.beginSection("SnapshotCapture.compose");
+        int width = mFrameWidth;
+        int height = mFrameHeight;
+        boolean sideways = (mFrameRotation & 1) != 0;
+        int uprightWidth = sideways ? height : width;
+        int uprightHeight = sideways ? width : height;
+        if (mFrameBitmap == null || mFrameBitmap.getWidth() != width
+                || mFrameBitmap.getHeight() != height) {
+            if (mFrameBitmap != null) {
+                mFrameBitmap.recycle();
+            }
+            mFrameBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mArgb = new int[width * height];
+        }
+        if (mOutput == null || mOutput.getWidth() != uprightWidth
+                || mOutput.getHeight() != uprightHeight) {
+            if (mOutput != null) {
+                mOutput.recycle();
+            }
+            mOutput = Bitmap.createBitmap(uprightWidth, uprightHeight, Bitmap.Config.ARGB_8888);
+            mCanvas.setBitmap(mOutput);
+        }
+
+        Nv21Converter.toArgb(mNv21, width, height, mArgb);
+        mFrameBitmap.setPixels(mArgb, 0, width, 0, 0, width, height);
+
+        // Turn the frame clockwise about its corner, then move it back into view.
+        mFrameMatrix.setRotate(90 * mFrameRotation);
+        switch (mFrameRotation) {
+            case Frame.ROTATION_90:
+                mFrameMatrix.postTranslate(height, 0);
+                break;
+            case Frame.ROTATION_180:
+                mFrameMatrix.postTranslate(width, height);
+                break;
+            case Frame.ROTATION_270:
+                mFrameMatrix.postTranslate(0, width);
+                break;
+            default:
+                break;
+        }
+        if (mFrameMirrored) {
+            mFrameMatrix.postScale(-1, 1);
+            mFrameMatrix.postTranslate(uprightWidth, 0);
+        }
+        mCanvas.drawBitmap(mFrameBitmap, mFrameMatrix, mFramePaint);
+        mOverlay.drawSnapshot(mCanvas, mFrameNanos);
+        Tracing.endSection();
+    }
+
+    private void write(File file) throws IOException {
+        Tracing.beginSection("SnapshotCapture.encode");
+        try {
+            mEncoded.reset();
+            if (!mOutput.compress(Bitmap.CompressFormat.JPEG, mQuality, mEncoded)) {
+                throw new IOException("Unable to encode " + file);
+            }
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                mEncoded.writeTo(out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            Tracing.endSection();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ahmednts.googlevisiontest.face;
+
+/**
+ * What a consumer of the detections needs from the face detector, as a bit set.  Each sticker
+ * declares its features, and the detector is built with the cheapest configuration covering the
+ * stickers on screen: landmark and classification passes run per face, and accurate mode scans
+ * the frame at more angles, so anything not asked for is worth leaving out.<p>
+ *
+ * {@link #LANDMARKS}, {@link #CLASSIFICATIONS} and {@link #EULER_ANGLES} are requirements, so
+ * combining two feature sets takes their union.  {@link #PROMINENT_FACE_ONLY} is a permission,
+ * kept only if both sets grant it: one sticker that has to follow every face rules it out.
+ */
+public final class DetectorFeatures {
+  public static final int NONE = 0;
+
+  /** Eye, nose, cheek and mouth positions. */
+  public static final int LANDMARKS = 1;
+
+  /** Smiling and eyes-open probabilities. */
+  public static final int CLASSIFICATIONS = 1 << 1;
+
+  /**
+   * Head rotation about the vertical axis.  The detector only reports it in accurate mode; the
+   * in-plane rotation comes with every mode.
+   */
+  public static final int EULER_ANGLES = 1 << 2;
+
+  /** Only the largest face is of interest, so detection may stop once it is found. */
+  public static final int PROMINENT_FACE_ONLY = 1 << 3;
+
+  /** What the detector was built with before the stickers declared their features. */
+  public static final int LEGACY = LANDMARKS | CLASSIFICATIONS;
+
+  private static final int REQUIREMENTS = LANDMARKS | CLASSIFICATIONS | EULER_ANGLES;
+
+  private DetectorFeatures() {
+  }
+
+  /**
+   * Returns the features that cover both {@code a} and {@code b}.
+   */
+  public static int combine(int a, int b) {
+    return ((a | b) & REQUIREMENTS) | (a & b & PROMINENT_FACE_ONLY);
+  }
+
+  public static boolean needsLandmarks(int features) {
+    return (features & LANDMARKS) != 0;
+  }
+
+  public static boolean needsClassifications(int features) {
+    return (features & CLASSIFICATIONS) != 0;
+  }
+
+  /**
+   * Returns whether the detector has to run in accurate rather than fast mode.
+   */
+  public static boolean needsAccurateMode(int features) {
+    return (features & EULER_ANGLES) != 0;
+  }
+
+  public static boolean allowsProminentFaceOnly(int features) {
+    return (features & PROMINENT_FACE_ONLY) != 0;
+  }
+
+  /**
+   * Returns the names of the features, such as {@code "landmarks+classifications"}, or
+   * {@code "none"}.
+   */
+  public static String toString(int features) {
+    StringBuilder builder = new StringBuilder();
+    append(builder, features, LANDMARKS, "landmarks");
+    append(builder, features, CLASSIFICATIONS, "classifications");
+    append(builder, features, EULER_ANGLES, "euler");
+    append(builder, features, PROMINENT_FACE_ONLY, "prominent");
+    return builder.length() == 0 ? "none" : builder.toString();
+  }
+
+  private static void append(StringBuilder builder, int features, int feature, String name) {
+    if ((features & feature) != 0) {
+      if (builder.length() > 0) {
+        builder.append('+');
+      }
+      builder.append(name);
+    }
+  }
+}
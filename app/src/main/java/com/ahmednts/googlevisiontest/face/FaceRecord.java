@@ -0,0 +1,167 @@
+package com.ahmednts.googlevisiontest.face;
+
+/**
+ * A detected face, independent of the Play Services {@code Face} type: track id, bounding box in
+ * preview coordinates, head Euler angles and landmarks.  Everything downstream of the detector
+ * works on this type, so the tracker, overlay and sticker code can also be driven from a recording
+ * on a plain JVM.<p>
+ *
+ * Records are mutable and meant to be reused from frame to frame; filling one in does not
+ * allocate.
+ */
+public class FaceRecord {
+  /**
+   * The most landmarks a face can carry, one per landmark type.
+   */
+  public static final int MAX_LANDMARKS = 12;
+
+  private int mId;
+  private float mLeft;
+  private float mTop;
+  private float mWidth;
+  private float mHeight;
+  private float mEulerY;
+  private float mEulerZ;
+  private long mTimestampNanos;
+
+  private int mLandmarkCount;
+  private final int[] mLandmarkTypes = new int[MAX_LANDMARKS];
+  private final float[] mLandmarkX = new float[MAX_LANDMARKS];
+  private final float[] mLandmarkY = new float[MAX_LANDMARKS];
+
+  /**
+   * Sets the face box and angles, and clears the landmarks and timestamp.
+   */
+  public FaceRecord set(int id, float left, float top, float width, float height, float eulerY,
+      float eulerZ) {
+    mId = id;
+    mLeft = left;
+    mTop = top;
+    mWidth = width;
+    mHeight = height;
+    mEulerY = eulerY;
+    mEulerZ = eulerZ;
+    mTimestampNanos = 0;
+    mLandmarkCount = 0;
+    return this;
+  }
+
+  /**
+   * Sets when the frame the face was detected in arrived from the camera, on the
+   * {@link System#nanoTime()} clock.
+   */
+  public FaceRecord setTimestampNanos(long timestampNanos) {
+    mTimestampNanos = timestampNanos;
+    return this;
+  }
+
+  /**
+   * Adds a landmark.  Landmarks beyond {@link #MAX_LANDMARKS} are dropped.
+   */
+  public FaceRecord addLandmark(int type, float x, float y) {
+    if (mLandmarkCount < MAX_LANDMARKS) {
+      mLandmarkTypes[mLandmarkCount] = type;
+      mLandmarkX[mLandmarkCount] = x;
+      mLandmarkY[mLandmarkCount] = y;
+      mLandmarkCount++;
+    }
+    return this;
+  }
+
+  /**
+   * Replaces the track id.
+   */
+  public FaceRecord setId(int id) {
+    mId = id;
+    return this;
+  }
+
+  /**
+   * Moves the box and landmarks by the given distance.
+   */
+  public FaceRecord offset(float dx, float dy) {
+    mLeft += dx;
+    mTop += dy;
+    for (int i = 0; i < mLandmarkCount; ++i) {
+      mLandmarkX[i] += dx;
+      mLandmarkY[i] += dy;
+    }
+    return this;
+  }
+
+  /**
+   * Scales the box and landmarks about the origin.
+   */
+  public FaceRecord scale(float factor) {
+    mLeft *= factor;
+    mTop *= factor;
+    mWidth *= factor;
+    mHeight *= factor;
+    for (int i = 0; i < mLandmarkCount; ++i) {
+      mLandmarkX[i] *= factor;
+      mLandmarkY[i] *= factor;
+    }
+    return this;
+  }
+
+  public void copyFrom(FaceRecord other) {
+    set(other.mId, other.mLeft, other.mTop, other.mWidth, other.mHeight, other.mEulerY,
+        other.mEulerZ);
+    mTimestampNanos = other.mTimestampNanos;
+    mLandmarkCount = other.mLandmarkCount;
+    System.arraycopy(other.mLandmarkTypes, 0, mLandmarkTypes, 0, mLandmarkCount);
+    System.arraycopy(other.mLandmarkX, 0, mLandmarkX, 0, mLandmarkCount);
+    System.arraycopy(other.mLandmarkY, 0, mLandmarkY, 0, mLandmarkCount);
+  }
+
+  public int getId() {
+    return mId;
+  }
+
+  public float getLeft() {
+    return mLeft;
+  }
+
+  public float getTop() {
+    return mTop;
+  }
+
+  public float getWidth() {
+    return mWidth;
+  }
+
+  public float getHeight() {
+    return mHeight;
+  }
+
+  public float getEulerY() {
+    return mEulerY;
+  }
+
+  public float getEulerZ() {
+    return mEulerZ;
+  }
+
+  /**
+   * Returns when the face's frame arrived from the camera, or 0 if that is not known.
+   */
+  public long getTimestampNanos() {
+    return mTimestampNanos;
+  }
+
+  public int getLandmarkCount() {
+    return mLandmarkCount;
+  }
+
+  public int getLandmarkType(int index) {
+    return mLandmarkTypes[index];
+  }
+
+  public float getLandmarkX(int index) {
+    return mLandmarkX[index];
+  }
+
+  public float getLandmarkY(int index) {
+    return mLandmarkY[index];
+  }
+}
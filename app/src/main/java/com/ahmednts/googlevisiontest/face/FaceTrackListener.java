@@ -0,0 +1,25 @@
+package com.ahmednts.googlevisiontest.face;
+
+/**
+ * Receives the life cycle of one tracked face: the same callbacks as a Play Services
+ * {@code Tracker<Face>}, but in terms of {@link FaceRecord} so that a recording can drive them as
+ * well as the live detector.  The record passed in is only valid for the duration of the call.
+ */
+public interface FaceTrackListener {
+  /**
+   * Called when the face is first seen, before the first {@link #onUpdate(FaceRecord)}.
+   */
+  void onNewItem(int id, FaceRecord face);
+
+  void onUpdate(FaceRecord face);
+
+  /**
+   * Called when the face was not detected in a frame, but may come back.
+   */
+  void onMissing();
+
+  /**
+   * Called when the face is assumed to be gone for good.
+   */
+  void onDone();
+}
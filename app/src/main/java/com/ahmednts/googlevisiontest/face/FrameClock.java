@@ -0,0 +1,13 @@
+package com.ahmednts.googlevisiontest.face;
+
+/**
+ * Tells when the frame currently being processed arrived from the camera.  Detection results are
+ * delivered on the thread that detected them, so during the tracker callbacks this is the time of
+ * the frame the faces were found in.
+ */
+public interface FrameClock {
+  /**
+   * Returns the arrival time of the current frame on the {@link System#nanoTime()} clock.
+   */
+  long getFrameTimeNanos();
+}
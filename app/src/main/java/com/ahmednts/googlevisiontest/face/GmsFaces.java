@@ -0,0 +1,49 @@
+package com.ahmednts.googlevisiontest.face;
+
+import android.graphics.PointF;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+import java.util.List;
+
+/**
+ * Conversion from and to the Play Services face type.  This is the only place that reads a
+ * {@link Face}.
+ */
+public final class GmsFaces {
+  private GmsFaces() {
+  }
+
+  /**
+   * Copies a detected face into a record.  {@link Face#getPosition()} and
+   * {@link Face#getLandmarks()} allocate on every call, so each is read only once.
+   */
+  public static FaceRecord copy(Face face, FaceRecord out) {
+    PointF position = face.getPosition();
+    out.set(face.getId(), position.x, position.y, face.getWidth(), face.getHeight(),
+        face.getEulerY(), face.getEulerZ());
+
+    List<Landmark> landmarks = face.getLandmarks();
+    for (int i = 0; i < landmarks.size(); ++i) {
+      Landmark landmark = landmarks.get(i);
+      PointF landmarkPosition = landmark.getPosition();
+      out.addLandmark(landmark.getType(), landmarkPosition.x, landmarkPosition.y);
+    }
+    return out;
+  }
+
+  /**
+   * Builds a Play Services face from a record, for handing faces that did not come straight from
+   * the detector to its processor.  Classification probabilities are not recorded, so they are
+   * left uncomputed.
+   */
+  public static Face toFace(FaceRecord face) {
+    Landmark[] landmarks = new Landmark[face.getLandmarkCount()];
+    for (int i = 0; i < landmarks.length; ++i) {
+      landmarks[i] = new Landmark(new PointF(face.getLandmarkX(i), face.getLandmarkY(i)),
+          face.getLandmarkType(i));
+    }
+    return new Face(face.getId(), new PointF(face.getLeft(), face.getTop()), face.getWidth(),
+        face.getHeight(), face.getEulerY(), face.getEulerZ(), landmarks,
+        Face.UNCOMPUTED_PROBABILITY, Face.UNCOMPUTED_PROBABILITY, Face.UNCOMPUTED_PROBABILITY);
+  }
+}
@@ -0,0 +1,155 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import android.graphics.ImageFormat;
+import android.util.SparseArray;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.ahmednts.googlevisiontest.metrics.Tracing;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Hands the wrapped face detector frames no wider than a maximum: a frame whose upright width is
+ * above it is shrunk by the smallest whole factor that fits, and turned upright in the same
+ * pass, into a direct buffer from a {@link FramePool}.  The detector's time grows with the pixel
+ * count, so this caps its cost at high preview sizes.  Faces are scaled back to whole-frame
+ * coordinates, so the processor cannot tell the difference.<p>
+ *
+ * Frames that fit are passed on untouched, and so are frames for which the pool has no buffer
+ * free, which are counted in the {@link PipelineMetrics}: detecting one frame at full size costs
+ * time, but dropping it would lose its faces.  Only the luma is scaled; the chroma of the scaled
+ * NV21 frame is left grey.  Classification probabilities are not carried over from scaled
+ * frames.  Meant to be called from the detector thread only.<p>
+ *
+ * The pixel buffer and the frame builder are reused, but each scaled frame still allocates the
+ * array of faces and one {@link Face} per face: faces cannot be changed once built, and the
+ * trackers keep them after detection returns.
+ */
+public class DownscalingFaceDetector extends Detector<Face> {
+  private static final byte NEUTRAL_CHROMA = (byte) 128;
+
+  private final Detector<Face> mDelegate;
+  private final FramePool mPool;
+  private final int mMaxWidth;
+  private final PipelineMetrics mMetrics;
+  private final FaceRecord mFace = new FaceRecord();
+  private final Frame.Builder mFrameBuilder = new Frame.Builder();
+
+  private long mFrames;
+  private long mScaledFrames;
+  private long mUnscaledFrames;
+  private long mFramePixels;
+  private long mScannedPixels;
+
+  /**
+   * @param maxWidth the widest upright frame, in pixels, passed on at full size
+   * @param metrics counts the frames passed on at full size for want of a buffer
+   */
+  public DownscalingFaceDetector(Detector<Face> delegate, FramePool pool, int maxWidth,
+      PipelineMetrics metrics) {
+    if (maxWidth < 2) {
+      throw new IllegalArgumentException("Invalid maximum width " + maxWidth);
+    }
+    mDelegate = delegate;
+    mPool = pool;
+    mMaxWidth = maxWidth;
+    mMetrics = metrics;
+  }
+
+  /**
+   * Returns the factor a frame of the given upright width is shrunk by, 1 if it fits.
+   */
+  static int getFactor(int uprightWidth, int maxWidth) {
+    return (uprightWidth + maxWidth - 1) / maxWidth;
+  }
+
+  @Override
+  public SparseArray<Face> detect(Frame frame) {
+    Frame.Metadata metadata = frame.getMetadata();
+    int width = metadata.getWidth();
+    int height = metadata.getHeight();
+    int rotation = metadata.getRotation();
+    int factor = getFactor((rotation & 1) != 0 ? height : width, mMaxWidth);
+    ByteBuffer luma = factor > 1 ? frame.getGrayscaleImageData() : null;
+    mFrames++;
+    mFramePixels += (long) width * height;
+    if (luma == null) {
+      mScannedPixels += (long) width * height;
+      return mDelegate.detect(frame);
+    }
+
+    int scaledWidth = LumaScaler.getScaledWidth(width, height, rotation, factor);
+    int scaledHeight = LumaScaler.getScaledHeight(width, height, rotation, factor);
+    int lumaSize = scaledWidth * scaledHeight;
+    FramePool.PooledFrame scaled = mPool.obtain(lumaSize + lumaSize / 2);
+    if (scaled == null) {
+      mUnscaledFrames++;
+      mScannedPixels += (long) width * height;
+      mMetrics.onFrameUnscaled();
+      return mDelegate.detect(frame);
+    }
+    try {
+      Tracing.beginSection("DownscalingFaceDetector.scale");
+      ByteBuffer data = scaled.getData();
+      LumaScaler.scale(luma, width, height, rotation, factor, data);
+      // The chroma stays grey from one frame to the next, so it is only written when the
+      // buffer last held a frame of another size.
+      if (scaled.getWidth() != scaledWidth || scaled.getHeight() != scaledHeight) {
+        for (int i = lumaSize; i < lumaSize + lumaSize / 2; ++i) {
+          data.put(i, NEUTRAL_CHROMA);
+        }
+      }
+      scaled.set(scaledWidth, scaledHeight, metadata.getId(), metadata.getTimestampMillis());
+      Tracing.endSection();
+      mScaledFrames++;
+      mScannedPixels += lumaSize;
+
+      SparseArray<Face> detected = mDelegate.detect(mFrameBuilder
+          .setImageData(data, scaledWidth, scaledHeight, ImageFormat.NV21)
+          .setId(scaled.getId())
+          .setTimestampMillis(scaled.getTimestampMillis())
+          .setRotation(Frame.ROTATION_0)
+          .build());
+      SparseArray<Face> faces = new SparseArray<>(detected.size());
+      for (int i = 0; i < detected.size(); ++i) {
+        GmsFaces.copy(detected.valueAt(i), mFace).scale(factor);
+        faces.put(detected.keyAt(i), GmsFaces.toFace(mFace));
+      }
+      return faces;
+    } finally {
+      mPool.recycle(scaled);
+    }
+  }
+
+  @Override
+  public boolean setFocus(int id) {
+    return mDelegate.setFocus(id);
+  }
+
+  @Override
+  public boolean isOperational() {
+    return mDelegate.isOperational();
+  }
+
+  @Override
+  public void release() {
+    mDelegate.release();
+    super.release();
+  }
+
+  /**
+   * Summarizes how much the detector's input was shrunk.
+   */
+  public String getSummary() {
+    return String.format(Locale.US,
+        "%d of %d frames scaled, %d left unscaled with no buffer free, %.0f%% of pixels scanned,"
+            + " %d buffer allocations",
+        mScaledFrames, mFrames, mUnscaledFrames,
+        mFramePixels == 0 ? 100 : 100.0 * mScannedPixels / mFramePixels,
+        mPool.getAllocations());
+  }
+}
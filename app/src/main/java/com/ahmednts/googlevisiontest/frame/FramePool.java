@@ -0,0 +1,134 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A fixed set of direct frame buffers, so that scaled frames are not allocated once the buffers
+ * have grown to the frame size.  A buffer is taken with {@link #obtain(int)}, filled, used and
+ * given back with {@link #recycle(PooledFrame)}.<p>
+ *
+ * The pool does not queue frames or drop them: frames come from the camera source, which keeps
+ * only the newest frame while its detector is busy, so a detector that falls behind already
+ * works on the newest frames.  The pool is meant to have a buffer for each thread using it at
+ * once; should it run out all the same, {@link #obtain(int)} returns null and the caller carries
+ * on without a buffer.  Thread-safe.
+ */
+public class FramePool {
+  /**
+   * A pooled frame: a direct buffer and the size and position of the picture it holds.
+   */
+  public static final class PooledFrame {
+    private ByteBuffer mData;
+    private int mWidth;
+    private int mHeight;
+    private int mId;
+    private long mTimestampMillis;
+    private boolean mOutstanding;
+
+    /**
+     * Returns the frame's buffer, cleared and at least as large as was asked for.
+     */
+    public ByteBuffer getData() {
+      return mData;
+    }
+
+    public PooledFrame set(int width, int height, int id, long timestampMillis) {
+      mWidth = width;
+      mHeight = height;
+      mId = id;
+      mTimestampMillis = timestampMillis;
+      return this;
+    }
+
+    public int getWidth() {
+      return mWidth;
+    }
+
+    public int getHeight() {
+      return mHeight;
+    }
+
+    public int getId() {
+      return mId;
+    }
+
+    public long getTimestampMillis() {
+      return mTimestampMillis;
+    }
+  }
+
+  private final ArrayDeque<PooledFrame> mFree;
+  private final int mSize;
+  private long mAllocations;
+  private long mShortages;
+
+  /**
+   * @param size how many buffers there are, one for each thread that may hold a frame at once
+   */
+  public FramePool(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Invalid pool size " + size);
+    }
+    mSize = size;
+    mFree = new ArrayDeque<>(size);
+    for (int i = 0; i < size; ++i) {
+      mFree.add(new PooledFrame());
+    }
+  }
+
+  /**
+   * Takes a free buffer of at least {@code capacity} bytes to fill.
+   *
+   * @return the frame, or null if every buffer is taken, i.e., more threads use the pool than it
+   *     was sized for
+   */
+  public synchronized PooledFrame obtain(int capacity) {
+    PooledFrame frame = mFree.pollFirst();
+    if (frame == null) {
+      mShortages++;
+      return null;
+    }
+    if (frame.mData == null || frame.mData.capacity() < capacity) {
+      frame.mData = ByteBuffer.allocateDirect(capacity);
+      mAllocations++;
+    }
+    frame.mData.clear();
+    frame.mOutstanding = true;
+    return frame;
+  }
+
+  /**
+   * Gives back a frame taken with {@link #obtain(int)}.
+   */
+  public synchronized void recycle(PooledFrame frame) {
+    checkOutstanding(frame);
+    frame.mOutstanding = false;
+    mFree.addLast(frame);
+  }
+
+  private static void checkOutstanding(PooledFrame frame) {
+    if (!frame.mOutstanding) {
+      throw new IllegalStateException("Frame " + frame.mId + " is not taken from the pool");
+    }
+  }
+
+  public int getSize() {
+    return mSize;
+  }
+
+  /**
+   * Returns how many times {@link #obtain(int)} found no free buffer.
+   */
+  public synchronized long getShortages() {
+    return mShortages;
+  }
+
+  /**
+   * Returns how many buffers were allocated, which stops growing once every buffer has reached
+   * the largest frame size.
+   */
+  public synchronized long getAllocations() {
+    return mAllocations;
+  }
+}
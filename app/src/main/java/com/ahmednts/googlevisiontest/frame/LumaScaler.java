@@ -0,0 +1,85 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Shrinks a luma plane by a whole factor and turns it upright in a single pass, writing straight
+ * into the buffer the detector will read.  Each output pixel is the mean of a factor by factor
+ * block, which keeps the downscaled picture free of aliasing that could break up small faces.<p>
+ *
+ * Rotations follow {@code Frame.ROTATION_*}: the number of quarter turns clockwise that make the
+ * camera image upright.  Output sizes are rounded down to even pixels, so that the result can
+ * carry NV21 chroma.
+ */
+public final class LumaScaler {
+  private LumaScaler() {
+  }
+
+  /**
+   * Returns the width of the scaled, upright picture.
+   */
+  public static int getScaledWidth(int width, int height, int rotation, int factor) {
+    return (((rotation & 1) != 0 ? height : width) / factor) & ~1;
+  }
+
+  /**
+   * Returns the height of the scaled, upright picture.
+   */
+  public static int getScaledHeight(int width, int height, int rotation, int factor) {
+    return (((rotation & 1) != 0 ? width : height) / factor) & ~1;
+  }
+
+  /**
+   * Writes the scaled, upright luma to the start of {@code out}, row by row.  The position of
+   * {@code luma} is taken as the start of the plane, and neither buffer's position is changed.
+   */
+  public static void scale(ByteBuffer luma, int width, int height, int rotation, int factor,
+      ByteBuffer out) {
+    int outWidth = getScaledWidth(width, height, rotation, factor);
+    int outHeight = getScaledHeight(width, height, rotation, factor);
+    byte[] array = luma.hasArray() ? luma.array() : null;
+    int base = luma.position() + (array != null ? luma.arrayOffset() : 0);
+    int area = factor * factor;
+
+    int index = 0;
+    for (int v = 0; v < outHeight; ++v) {
+      for (int u = 0; u < outWidth; ++u) {
+        // The top left corner of the block, in camera coordinates, that lands on (u, v).
+        int x;
+        int y;
+        switch (rotation) {
+          case 1:
+            x = v * factor;
+            y = height - (u + 1) * factor;
+            break;
+          case 2:
+            x = width - (u + 1) * factor;
+            y = height - (v + 1) * factor;
+            break;
+          case 3:
+            x = width - (v + 1) * factor;
+            y = u * factor;
+            break;
+          default:
+            x = u * factor;
+            y = v * factor;
+            break;
+        }
+        int sum = 0;
+        for (int row = 0; row < factor; ++row) {
+          int offset = base + (y + row) * width + x;
+          if (array != null) {
+            for (int column = 0; column < factor; ++column) {
+              sum += array[offset + column] & 0xff;
+            }
+          } else {
+            for (int column = 0; column < factor; ++column) {
+              sum += luma.get(offset + column) & 0xff;
+            }
+          }
+        }
+        out.put(index++, (byte) (sum / area));
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.ahmednts.googlevisiontest.frame;
+
+/**
+ * Turns NV21 camera frames into ARGB pixels, in fixed point so that a whole preview frame can be
+ * converted on a background thread without touching the UI thread's bitmap machinery.<p>
+ *
+ * NV21 is the luma plane followed by interleaved V and U samples, one pair per 2x2 block.  The
+ * colors use the full-range BT.601 matrix that camera frames are encoded with.
+ */
+public final class Nv21Converter {
+  // BT.601 full range coefficients, scaled by 1 << SHIFT.
+  private static final int SHIFT = 10;
+  private static final int V_TO_R = 1436;
+  private static final int U_TO_G = 352;
+  private static final int V_TO_G = 731;
+  private static final int U_TO_B = 1815;
+
+  private Nv21Converter() {
+  }
+
+  /**
+   * Returns the size in bytes of an NV21 frame of the given size.
+   */
+  public static int getFrameSize(int width, int height) {
+    return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+  }
+
+  /**
+   * Writes the opaque ARGB color of each pixel of {@code nv21} to {@code out}, row by row.
+   */
+  public static void toArgb(byte[] nv21, int width, int height, int[] out) {
+    int chromaStart = width * height;
+    int index = 0;
+    for (int y = 0; y < height; ++y) {
+      int chromaRow = chromaStart + (y >> 1) * ((width + 1) & ~1);
+      for (int x = 0; x < width; ++x) {
+        int luma = nv21[index] & 0xff;
+        int chroma = chromaRow + (x & ~1);
+        int v = (nv21[chroma] & 0xff) - 128;
+        int u = (nv21[chroma + 1] & 0xff) - 128;
+        int r = clamp(luma + ((V_TO_R * v) >> SHIFT));
+        int g = clamp(luma - ((U_TO_G * u + V_TO_G * v) >> SHIFT));
+        int b = clamp(luma + ((U_TO_B * u) >> SHIFT));
+        out[index++] = 0xff000000 | (r << 16) | (g << 8) | b;
+      }
+    }
+  }
+
+  private static int clamp(int value) {
+    return value < 0 ? 0 : value > 255 ? 255 : value;
+  }
+}
@@ -0,0 +1,134 @@
+package com.ahmednts.googlevisiontest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram with fixed bucket bounds, safe to record into from any thread without locking.
+ * Recording finds the bucket by a short linear scan and updates a handful of atomic counters; it
+ * never allocates.  Reads are not a consistent snapshot while recording goes on, which is fine
+ * for reporting.
+ */
+public class Histogram {
+  // Upper bounds of the latency buckets, doubling from a quarter of a millisecond.
+  private static final long[] LATENCY_BOUNDS_NANOS = {
+      250000L, 500000L, 1000000L, 2000000L, 4000000L, 8000000L, 16000000L, 32000000L,
+      64000000L, 128000000L, 256000000L
+  };
+
+  // Inclusive upper bound of each bucket but the last, which takes everything larger.
+  private final long[] mUpperBounds;
+  private final AtomicLongArray mBuckets;
+  private final AtomicLong mCount = new AtomicLong();
+  private final AtomicLong mSum = new AtomicLong();
+  private final AtomicLong mMax = new AtomicLong();
+
+  /**
+   * @param upperBounds ascending inclusive upper bounds; values above the last go into an extra
+   *     overflow bucket
+   */
+  public Histogram(long[] upperBounds) {
+    for (int i = 1; i < upperBounds.length; ++i) {
+      if (upperBounds[i] <= upperBounds[i - 1]) {
+        throw new IllegalArgumentException("Bucket bounds must be ascending");
+      }
+    }
+    mUpperBounds = upperBounds.clone();
+    mBuckets = new AtomicLongArray(upperBounds.length + 1);
+  }
+
+  /**
+   * Creates a histogram of durations in nanoseconds, from under 0.25 ms to over 256 ms.
+   */
+  public static Histogram forLatency() {
+    return new Histogram(LATENCY_BOUNDS_NANOS);
+  }
+
+  /**
+   * Creates a histogram with one bucket for each count from 0 to {@code max}, and one for more.
+   */
+  public static Histogram forCounts(int max) {
+    long[] bounds = new long[max + 1];
+    for (int i = 0; i <= max; ++i) {
+      bounds[i] = i;
+    }
+    return new Histogram(bounds);
+  }
+
+  public void record(long value) {
+    int bucket = 0;
+    while (bucket < mUpperBounds.length && value > mUpperBounds[bucket]) {
+      bucket++;
+    }
+    mBuckets.incrementAndGet(bucket);
+    mCount.incrementAndGet();
+    mSum.addAndGet(value);
+
+    long max = mMax.get();
+    while (value > max && !mMax.compareAndSet(max, value)) {
+      max = mMax.get();
+    }
+  }
+
+  public long getCount() {
+    return mCount.get();
+  }
+
+  public long getSum() {
+    return mSum.get();
+  }
+
+  public long getMax() {
+    return mMax.get();
+  }
+
+  public double getMean() {
+    long count = mCount.get();
+    return count == 0 ? 0 : (double) mSum.get() / count;
+  }
+
+  public int getBucketCount() {
+    return mBuckets.length();
+  }
+
+  public long getBucket(int index) {
+    return mBuckets.get(index);
+  }
+
+  /**
+   * Returns the upper bound of a bucket, or {@link Long#MAX_VALUE} for the overflow bucket.
+   */
+  public long getUpperBound(int index) {
+    return index < mUpperBounds.length ? mUpperBounds[index] : Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns an upper estimate of the value below which the given fraction of the samples lie:
+   * the upper bound of the bucket that holds that sample, or the maximum if it is in the overflow
+   * bucket.
+   */
+  public long getPercentile(double fraction) {
+    long count = mCount.get();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(fraction * count);
+    long seen = 0;
+    for (int i = 0; i < mUpperBounds.length; ++i) {
+      seen += mBuckets.get(i);
+      if (seen >= rank) {
+        return Math.min(mUpperBounds[i], mMax.get());
+      }
+    }
+    return mMax.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < mBuckets.length(); ++i) {
+      mBuckets.set(i, 0);
+    }
+    mCount.set(0);
+    mSum.set(0);
+    mMax.set(0);
+  }
+}
@@ -0,0 +1,47 @@
+package com.ahmednts.googlevisiontest.metrics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Logs a {@link PipelineMetrics} summary at a fixed period while started.
+ */
+public class MetricsReporter {
+  private static final String TAG = "PipelineMetrics";
+
+  private final PipelineMetrics mMetrics;
+  private final long mPeriodMillis;
+  private final Handler mHandler = new Handler(Looper.getMainLooper());
+  private final Runnable mReport = new Runnable() {
+    @Override
+    public void run() {
+      report();
+      mHandler.postDelayed(this, mPeriodMillis);
+    }
+  };
+
+  public MetricsReporter(PipelineMetrics metrics, long periodMillis) {
+    mMetrics = metrics;
+    mPeriodMillis = periodMillis;
+  }
+
+  public void start() {
+    mHandler.removeCallbacks(mReport);
+    mHandler.postDelayed(mReport, mPeriodMillis);
+  }
+
+  /**
+   * Stops the periodic reports and logs a final one.
+   */
+  public void stop() {
+    mHandler.removeCallbacks(mReport);
+    report();
+  }
+
+  private void report() {
+    for (String line : mMetrics.dump().split("\n")) {
+      Log.i(TAG, line);
+    }
+  }
+}
@@ -0,0 +1,411 @@
+package com.ahmednts.googlevisiontest.metrics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time goes between a camera frame reaching the detector and the overlay showing the
+ * stickers for it.  Each stage has a latency histogram:
+ * <ul>
+ * <li>{@link #STAGE_DETECT}: frame arrival to detector completion, for frames the detector ran
+ * on.</li>
+ * <li>{@link #STAGE_PREDICT}: the same for frames whose faces were predicted instead.</li>
+ * <li>{@link #STAGE_DELIVER}: detector completion to each tracker update.</li>
+ * <li>{@link #STAGE_DISPLAY}: the last tracker update of a frame to the first overlay draw that
+ * shows it.</li>
+ * <li>{@link #STAGE_END_TO_END}: frame arrival to that draw.</li>
+ * <li>{@link #STAGE_OVERLAY_DRAW}: one overlay draw pass.</li>
+ * </ul>
+ * Besides these, frames dropped before reaching the detector are counted from gaps in the frame
+ * ids, faces per frame are kept in a count histogram, and the draw time of each kind of graphic in
+ * a histogram of its own.  Snapshots record how long each took from the capture request to the
+ * file being written, and camera switches how long it took from the switch to the first
+ * detections of the new camera, apart for warm and cold detectors.<p>
+ *
+ * Recording is lock-free and does not allocate, except for the first draw of a new kind of
+ * graphic.  The frame-scoped hooks ({@link #onFrame}, {@link #onDetected},
+ * {@link #onTrackerUpdate} and {@link #onFrameCommitted}) must be called from the detector thread.
+ */
+public class PipelineMetrics {
+  public static final int STAGE_DETECT = 0;
+  public static final int STAGE_PREDICT = 1;
+  public static final int STAGE_DELIVER = 2;
+  public static final int STAGE_DISPLAY = 3;
+  public static final int STAGE_END_TO_END = 4;
+  public static final int STAGE_OVERLAY_DRAW = 5;
+  private static final String[] STAGE_NAMES = {
+      "detect", "predict", "deliver", "display", "end-to-end", "overlay draw"
+  };
+
+  private static final int MAX_COUNTED_FACES = 10;
+
+  private final Histogram[] mStages = new Histogram[STAGE_NAMES.length];
+  private final Histogram mFacesPerFrame = Histogram.forCounts(MAX_COUNTED_FACES);
+  private final Histogram mRedrawnPercent = Histogram.forCounts(100);
+  private final Histogram mSnapshotLatency = Histogram.forLatency();
+  private final Histogram mWarmSwitchLatency = Histogram.forLatency();
+  private final Histogram mColdSwitchLatency = Histogram.forLatency();
+  private final ConcurrentMap<Class<?>, Histogram> mGraphicDraws = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> mDetectorConfigurations =
+      new ConcurrentHashMap<>();
+  private volatile Histogram mConfigurationDetect;
+
+  private final AtomicLong mFrames = new AtomicLong();
+  private final AtomicLong mFramesDropped = new AtomicLong();
+  private final AtomicLong mDetectionsReused = new AtomicLong();
+  private final AtomicLong mFramesUnscaled = new AtomicLong();
+  private final AtomicLong mTrackerPoolHits = new AtomicLong();
+  private final AtomicLong mTrackerPoolMisses = new AtomicLong();
+
+  // Detector thread state.  mLastFrameId is also reset while no camera streams.
+  private volatile int mLastFrameId = -1;
+  private long mFrameNanos;
+  private long mDetectedNanos;
+  private long mLastUpdateNanos;
+
+  // Handed from the detector thread to the drawing thread on commit.  The two times may be torn
+  // if frames are committed faster than they are drawn; they only feed statistics.
+  private volatile long mCommittedFrameNanos;
+  private volatile long mCommittedUpdateNanos;
+  private final AtomicBoolean mDrawPending = new AtomicBoolean();
+
+  public PipelineMetrics() {
+    for (int i = 0; i < mStages.length; ++i) {
+      mStages[i] = Histogram.forLatency();
+    }
+  }
+
+  /**
+   * Called before a camera stream starts, while none is running.  The next frame's id is not
+   * compared with the last one's, which may come from another camera source with its own ids.
+   */
+  public void onStreamStarted() {
+    mLastFrameId = -1;
+  }
+
+  /**
+   * Called when a camera frame reaches the detector.
+   */
+  public void onFrame(int frameId, long arrivalNanos) {
+    mFrames.incrementAndGet();
+    if (mLastFrameId >= 0 && frameId > mLastFrameId + 1) {
+      mFramesDropped.addAndGet(frameId - mLastFrameId - 1);
+    }
+    mLastFrameId = frameId;
+    mFrameNanos = arrivalNanos;
+    mLastUpdateNanos = 0;
+  }
+
+  /**
+   * Called when the faces of the current frame are known.
+   *
+   * @param predicted whether the faces were predicted rather than detected
+   */
+  public void onDetected(long detectedNanos, int faces, boolean predicted) {
+    mDetectedNanos = detectedNanos;
+    mStages[predicted ? STAGE_PREDICT : STAGE_DETECT].record(detectedNanos - mFrameNanos);
+    Histogram configurationDetect = mConfigurationDetect;
+    if (!predicted && configurationDetect != null) {
+      configurationDetect.record(detectedNanos - mFrameNanos);
+    }
+    mFacesPerFrame.record(faces);
+  }
+
+  /**
+   * Called when the faces of the previous detection are reported again for a frame that shows
+   * the same scene, instead of running the detector.
+   */
+  public void onDetectionReused() {
+    mDetectionsReused.incrementAndGet();
+  }
+
+  /**
+   * Called when a frame that should have been shrunk before detection is detected at full size,
+   * because no buffer was free to shrink it into.
+   */
+  public void onFrameUnscaled() {
+    mFramesUnscaled.incrementAndGet();
+  }
+
+  /**
+   * Called at the start of each tracker update.
+   */
+  public void onTrackerUpdate(long nowNanos) {
+    if (mDetectedNanos != 0) {
+      mStages[STAGE_DELIVER].record(nowNanos - mDetectedNanos);
+    }
+    mLastUpdateNanos = nowNanos;
+  }
+
+  /**
+   * Called when the overlay publishes the updates of the current frame.
+   */
+  public void onFrameCommitted() {
+    if (mLastUpdateNanos == 0) {
+      return;
+    }
+    mCommittedFrameNanos = mFrameNanos;
+    mCommittedUpdateNanos = mLastUpdateNanos;
+    mDrawPending.set(true);
+  }
+
+  /**
+   * Called after each overlay draw pass.  The first pass after a commit completes the latency
+   * stages of that frame.
+   */
+  public void onOverlayDrawn(long startNanos, long endNanos) {
+    mStages[STAGE_OVERLAY_DRAW].record(endNanos - startNanos);
+    if (mDrawPending.compareAndSet(true, false)) {
+      if (mCommittedUpdateNanos != 0) {
+        mStages[STAGE_DISPLAY].record(startNanos - mCommittedUpdateNanos);
+      }
+      if (mCommittedFrameNanos != 0) {
+        mStages[STAGE_END_TO_END].record(startNanos - mCommittedFrameNanos);
+      }
+    }
+  }
+
+  /**
+   * Records how long one graphic took to draw.
+   */
+  public void onGraphicDrawn(Class<?> type, long nanos) {
+    Histogram histogram = mGraphicDraws.get(type);
+    if (histogram == null) {
+      Histogram created = Histogram.forLatency();
+      histogram = mGraphicDraws.putIfAbsent(type, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    histogram.record(nanos);
+  }
+
+  /**
+   * Records how much of the overlay a draw pass had to redraw, in pixels out of
+   * {@code totalPixels}.
+   */
+  public void onRegionRedrawn(long pixels, long totalPixels) {
+    if (totalPixels > 0) {
+      mRedrawnPercent.record(Math.min(100, (pixels * 100 + totalPixels - 1) / totalPixels));
+    }
+  }
+
+  /**
+   * Records the time from a snapshot being requested to its file being written.
+   */
+  public void onSnapshotSaved(long nanos) {
+    mSnapshotLatency.record(nanos);
+  }
+
+  /**
+   * Records the time from a camera switch to the first detections of the new camera.
+   *
+   * @param warm whether the new camera's detector was kept from before, rather than built
+   */
+  public void onCameraSwitched(long nanos, boolean warm) {
+    (warm ? mWarmSwitchLatency : mColdSwitchLatency).record(nanos);
+  }
+
+  /**
+   * Records whether the tracker for a new face came from the tracker pool or had to be built.
+   */
+  public void onTrackerAcquired(boolean pooled) {
+    (pooled ? mTrackerPoolHits : mTrackerPoolMisses).incrementAndGet();
+  }
+
+  /**
+   * Called when a detector starts being used, whether newly built or kept from before.  From then
+   * on, detection latency is also recorded under the name of its configuration, so that
+   * configurations can be compared in the summary.
+   */
+  public void onDetectorConfigured(String configuration) {
+    Histogram histogram = mDetectorConfigurations.get(configuration);
+    if (histogram == null) {
+      Histogram added = Histogram.forLatency();
+      histogram = mDetectorConfigurations.putIfAbsent(configuration, added);
+      if (histogram == null) {
+        histogram = added;
+      }
+    }
+    mConfigurationDetect = histogram;
+  }
+
+  /**
+   * Returns the detection latency under the given detector configuration, or null if no detector
+   * was built with it.
+   */
+  public Histogram getDetectLatency(String configuration) {
+    return mDetectorConfigurations.get(configuration);
+  }
+
+  public Histogram getStage(int stage) {
+    return mStages[stage];
+  }
+
+  public Histogram getFacesPerFrame() {
+    return mFacesPerFrame;
+  }
+
+  /**
+   * Returns the share of the overlay redrawn per draw pass, in whole percent rounded up.
+   */
+  public Histogram getRedrawnPercent() {
+    return mRedrawnPercent;
+  }
+
+  public Histogram getSnapshotLatency() {
+    return mSnapshotLatency;
+  }
+
+  public Histogram getCameraSwitchLatency(boolean warm) {
+    return warm ? mWarmSwitchLatency : mColdSwitchLatency;
+  }
+
+  public long getFrames() {
+    return mFrames.get();
+  }
+
+  public long getFramesDropped() {
+    return mFramesDropped.get();
+  }
+
+  public long getDetectionsReused() {
+    return mDetectionsReused.get();
+  }
+
+  public long getFramesUnscaled() {
+    return mFramesUnscaled.get();
+  }
+
+  public long getTrackerPoolHits() {
+    return mTrackerPoolHits.get();
+  }
+
+  public long getTrackerPoolMisses() {
+    return mTrackerPoolMisses.get();
+  }
+
+  public void reset() {
+    for (Histogram stage : mStages) {
+      stage.reset();
+    }
+    mFacesPerFrame.reset();
+    mRedrawnPercent.reset();
+    mSnapshotLatency.reset();
+    mWarmSwitchLatency.reset();
+    mColdSwitchLatency.reset();
+    mGraphicDraws.clear();
+    // The current configuration keeps its histogram.
+    for (Histogram histogram : mDetectorConfigurations.values()) {
+      histogram.reset();
+    }
+    mFrames.set(0);
+    mFramesDropped.set(0);
+    mDetectionsReused.set(0);
+    mFramesUnscaled.set(0);
+    mTrackerPoolHits.set(0);
+    mTrackerPoolMisses.set(0);
+  }
+
+  /**
+   * Writes a summary of every stage and counter, one line each.
+   */
+  public void dump(PrintWriter writer, String prefix) {
+    long frames = mFrames.get();
+    long dropped = mFramesDropped.get();
+    writer.printf(Locale.US, "%sframes %d, dropped before detection %d (%.1f%%), faces/frame %.2f"
+            + " (max %d)%n", prefix, frames, dropped,
+        frames + dropped == 0 ? 0 : 100.0 * dropped / (frames + dropped),
+        mFacesPerFrame.getMean(), mFacesPerFrame.getMax());
+    for (int i = 0; i < mStages.length; ++i) {
+      dumpLatency(writer, prefix, STAGE_NAMES[i], mStages[i]);
+    }
+    long reused = mDetectionsReused.get();
+    if (reused > 0) {
+      writer.printf(Locale.US, "%sdetections reused on a still scene: %d (%.1f%% of frames)%n",
+          prefix, reused, frames == 0 ? 0 : 100.0 * reused / frames);
+    }
+    long unscaled = mFramesUnscaled.get();
+    if (unscaled > 0) {
+      writer.printf(Locale.US, "%sframes detected unscaled with no buffer free: %d%n", prefix,
+          unscaled);
+    }
+    dumpDetectorConfigurations(writer, prefix);
+    long hits = mTrackerPoolHits.get();
+    long misses = mTrackerPoolMisses.get();
+    if (hits + misses > 0) {
+      writer.printf(Locale.US, "%stracker pool: hits %d, misses %d (%.1f%% reused)%n", prefix,
+          hits, misses, 100.0 * hits / (hits + misses));
+    }
+    if (mRedrawnPercent.getCount() > 0) {
+      writer.printf(Locale.US, "%sredrawn area: mean=%.1f%% p50<=%d%% p90<=%d%% max=%d%%%n", prefix,
+          mRedrawnPercent.getMean(), mRedrawnPercent.getPercentile(0.5),
+          mRedrawnPercent.getPercentile(0.9), mRedrawnPercent.getMax());
+    }
+    for (Map.Entry<Class<?>, Histogram> entry : mGraphicDraws.entrySet()) {
+      dumpLatency(writer, prefix, "draw " + entry.getKey().getSimpleName(), entry.getValue());
+    }
+    dumpLatency(writer, prefix, "snapshot to file", mSnapshotLatency);
+    dumpLatency(writer, prefix, "camera switch (warm)", mWarmSwitchLatency);
+    dumpLatency(writer, prefix, "camera switch (cold)", mColdSwitchLatency);
+  }
+
+  public String dump() {
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    dump(writer, "");
+    writer.flush();
+    return out.toString();
+  }
+
+  /**
+   * Writes the detection latency under each detector configuration, and how much each saves
+   * against the slowest, once more than one has been measured.
+   */
+  private void dumpDetectorConfigurations(PrintWriter writer, String prefix) {
+    String slowest = null;
+    double slowestMean = 0;
+    int measured = 0;
+    for (Map.Entry<String, Histogram> entry : mDetectorConfigurations.entrySet()) {
+      Histogram histogram = entry.getValue();
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      ++measured;
+      dumpLatency(writer, prefix, "detect [" + entry.getKey() + "]", histogram);
+      if (slowest == null || histogram.getMean() > slowestMean) {
+        slowest = entry.getKey();
+        slowestMean = histogram.getMean();
+      }
+    }
+    if (measured < 2) {
+      return;
+    }
+    for (Map.Entry<String, Histogram> entry : mDetectorConfigurations.entrySet()) {
+      Histogram histogram = entry.getValue();
+      if (histogram.getCount() == 0 || entry.getKey().equals(slowest)) {
+        continue;
+      }
+      double saved = slowestMean - histogram.getMean();
+      writer.printf(Locale.US, "%sdetect [%s] saves %.2fms (%.1f%%) over [%s]%n", prefix,
+          entry.getKey(), saved / 1e6, 100.0 * saved / slowestMean, slowest);
+    }
+  }
+
+  private static void dumpLatency(PrintWriter writer, String prefix, String name,
+      Histogram histogram) {
+    if (histogram.getCount() == 0) {
+      return;
+    }
+    writer.printf(Locale.US, "%s%s: n=%d mean=%.2fms p50<=%.2fms p90<=%.2fms p99<=%.2fms"
+            + " max=%.2fms%n", prefix, name, histogram.getCount(), histogram.getMean() / 1e6,
+        histogram.getPercentile(0.5) / 1e6, histogram.getPercentile(0.9) / 1e6,
+        histogram.getPercentile(0.99) / 1e6, histogram.getMax() / 1e6);
+  }
+}
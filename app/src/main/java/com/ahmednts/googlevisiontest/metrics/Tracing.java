@@ -0,0 +1,29 @@
+package com.ahmednts.googlevisiontest.metrics;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * {@link Trace} sections, so that pipeline stages show up in systrace and Perfetto.  Sections are
+ * skipped below API 18, where {@code Trace} does not exist.  As with {@code Trace}, every
+ * {@link #beginSection(String)} must be matched by an {@link #endSection()} on the same thread.
+ */
+public final class Tracing {
+  private static final boolean ENABLED =
+      Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+  private Tracing() {
+  }
+
+  public static void beginSection(String name) {
+    if (ENABLED) {
+      Trace.beginSection(name);
+    }
+  }
+
+  public static void endSection() {
+    if (ENABLED) {
+      Trace.endSection();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package com.ahmednts.googlevisiontest.quality;
+
+/**
+ * Picks the camera preview size, frame rate and minimum face size from a ladder of
+ * {@link QualityLevel}s, ordered from cheapest to best, by watching how long detection takes and
+ * how often it finds a face.  Weak devices step down until detection fits the latency budget;
+ * strong devices step up for more accurate landmarks.<p>
+ *
+ * Detections are judged in windows of {@link #WINDOW} samples.  The controller steps down after
+ * {@link #DOWNGRADE_WINDOWS} windows in a row over budget, and steps up only after
+ * {@link #UPGRADE_WINDOWS} windows in a row in which faces were found and the latency, scaled by
+ * the pixel count of the next level, would still fit well within budget.  Several mechanisms keep
+ * it from oscillating:
+ * <ul>
+ * <li>the thresholds for going down and up are far apart, and both need several windows;</li>
+ * <li>the first {@link #SETTLE_DETECTIONS} samples after a change are ignored, since a rebuilt
+ * camera and detector are slow at first;</li>
+ * <li>after a step down, stepping up is blocked for a number of windows that doubles every time a
+ * step up is immediately undone.</li>
+ * </ul>
+ * A pure state machine: it neither measures time nor touches the camera, so it can be driven by
+ * synthetic latency traces.  Not thread-safe.
+ */
+public class QualityController {
+  static final int WINDOW = 30;
+  static final int DOWNGRADE_WINDOWS = 2;
+  static final int UPGRADE_WINDOWS = 4;
+  static final int SETTLE_DETECTIONS = 15;
+
+  // Share of the budget that the predicted latency at the next level may take.
+  static final float UPGRADE_MARGIN = 0.75f;
+
+  // Share of detections that must find a face before more detail is worth paying for.
+  static final float MIN_HIT_RATE = 0.5f;
+
+  static final int INITIAL_BACKOFF_WINDOWS = 8;
+  static final int MAX_BACKOFF_WINDOWS = 128;
+
+  private final QualityLevel[] mLevels;
+  private final long mLatencyBudgetNanos;
+
+  private int mLevel;
+  private int mSettleRemaining;
+  private boolean mLastChangeWasUpgrade;
+  private int mBackoffWindows = INITIAL_BACKOFF_WINDOWS;
+  private int mUpgradeBlockedWindows;
+
+  // Current window.
+  private int mSamples;
+  private long mLatencySum;
+  private int mHits;
+
+  private int mSlowWindows;
+  private int mFastWindows;
+  private int mChanges;
+
+  /**
+   * @param levels the configurations to choose from, cheapest first
+   * @param startLevel index of the level to start with
+   * @param latencyBudgetNanos the mean detector latency that still counts as real-time
+   */
+  public QualityController(QualityLevel[] levels, int startLevel, long latencyBudgetNanos) {
+    if (levels.length == 0 || startLevel < 0 || startLevel >= levels.length) {
+      throw new IllegalArgumentException("Start level " + startLevel + " of " + levels.length);
+    }
+    mLevels = levels.clone();
+    mLevel = startLevel;
+    mLatencyBudgetNanos = latencyBudgetNanos;
+    mSettleRemaining = SETTLE_DETECTIONS;
+  }
+
+  /**
+   * Feeds one detection.
+   *
+   * @param latencyNanos how long the detector took
+   * @param faces how many faces it found
+   * @return whether the level changed, in which case the camera should be rebuilt with
+   *     {@link #getLevel()}
+   */
+  public boolean onDetection(long latencyNanos, int faces) {
+    if (mSettleRemaining > 0) {
+      mSettleRemaining--;
+      return false;
+    }
+
+    mSamples++;
+    mLatencySum += latencyNanos;
+    if (faces > 0) {
+      mHits++;
+    }
+    if (mSamples < WINDOW) {
+      return false;
+    }
+
+    long meanLatency = mLatencySum / mSamples;
+    float hitRate = (float) mHits / mSamples;
+    mSamples = 0;
+    mLatencySum = 0;
+    mHits = 0;
+    if (mUpgradeBlockedWindows > 0) {
+      mUpgradeBlockedWindows--;
+    }
+
+    if (meanLatency > mLatencyBudgetNanos) {
+      mFastWindows = 0;
+      if (++mSlowWindows >= DOWNGRADE_WINDOWS && mLevel > 0) {
+        stepDown();
+        return true;
+      }
+      return false;
+    }
+    mSlowWindows = 0;
+
+    if (canStepUp(meanLatency, hitRate)) {
+      if (++mFastWindows >= UPGRADE_WINDOWS) {
+        stepUp();
+        return true;
+      }
+    } else {
+      mFastWindows = 0;
+    }
+    return false;
+  }
+
+  private boolean canStepUp(long meanLatency, float hitRate) {
+    if (mLevel + 1 >= mLevels.length || mUpgradeBlockedWindows > 0 || hitRate < MIN_HIT_RATE) {
+      return false;
+    }
+    // Detection cost grows about linearly with the number of pixels scanned.
+    double scale = (double) mLevels[mLevel + 1].getPixels() / mLevels[mLevel].getPixels();
+    return meanLatency * scale <= mLatencyBudgetNanos * UPGRADE_MARGIN;
+  }
+
+  private void stepDown() {
+    if (mLastChangeWasUpgrade) {
+      mBackoffWindows = Math.min(MAX_BACKOFF_WINDOWS, mBackoffWindows * 2);
+    }
+    mUpgradeBlockedWindows = mBackoffWindows;
+    mLastChangeWasUpgrade = false;
+    changeLevel(mLevel - 1);
+  }
+
+  private void stepUp() {
+    mLastChangeWasUpgrade = true;
+    changeLevel(mLevel + 1);
+  }
+
+  private void changeLevel(int level) {
+    mLevel = level;
+    mChanges++;
+    mSlowWindows = 0;
+    mFastWindows = 0;
+    mSamples = 0;
+    mLatencySum = 0;
+    mHits = 0;
+    mSettleRemaining = SETTLE_DETECTIONS;
+  }
+
+  public QualityLevel getLevel() {
+    return mLevels[mLevel];
+  }
+
+  public int getLevelIndex() {
+    return mLevel;
+  }
+
+  /**
+   * Returns how many times the level has changed.
+   */
+  public int getChangeCount() {
+    return mChanges;
+  }
+}
@@ -0,0 +1,49 @@
+package com.ahmednts.googlevisiontest.quality;
+
+import java.util.Locale;
+
+/**
+ * One camera and detector configuration that the {@link QualityController} can switch to.
+ */
+public final class QualityLevel {
+  private final int mPreviewWidth;
+  private final int mPreviewHeight;
+  private final float mFps;
+  private final float mMinFaceSize;
+
+  /**
+   * @param minFaceSize smallest face to detect, as a proportion of the image width
+   */
+  public QualityLevel(int previewWidth, int previewHeight, float fps, float minFaceSize) {
+    mPreviewWidth = previewWidth;
+    mPreviewHeight = previewHeight;
+    mFps = fps;
+    mMinFaceSize = minFaceSize;
+  }
+
+  public int getPreviewWidth() {
+    return mPreviewWidth;
+  }
+
+  public int getPreviewHeight() {
+    return mPreviewHeight;
+  }
+
+  public float getFps() {
+    return mFps;
+  }
+
+  public float getMinFaceSize() {
+    return mMinFaceSize;
+  }
+
+  public int getPixels() {
+    return mPreviewWidth * mPreviewHeight;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US, "%dx%d@%.0ffps min face %.2f", mPreviewWidth, mPreviewHeight,
+        mFps, mMinFaceSize);
+  }
+}
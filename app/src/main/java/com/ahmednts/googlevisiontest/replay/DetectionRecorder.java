@@ -0,0 +1,65 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import android.util.Log;
+import android.util.SparseArray;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import java.io.IOException;
+
+/**
+ * Records the detection results of every frame in the face recording format, then hands the
+ * detections on to the wrapped processor.  A recording can be replayed off-device with
+ * {@link FaceReplayDriver}.  If writing fails, recording stops and detection carries on.
+ */
+public class DetectionRecorder implements Detector.Processor<Face> {
+  private static final String TAG = "DetectionRecorder";
+
+  private final Detector.Processor<Face> mDelegate;
+  private final FrameRecord mFrame = new FrameRecord();
+  private FaceRecordingWriter mWriter;
+
+  public DetectionRecorder(Detector.Processor<Face> delegate, FaceRecordingWriter writer) {
+    mDelegate = delegate;
+    mWriter = writer;
+  }
+
+  @Override
+  public void receiveDetections(Detector.Detections<Face> detections) {
+    if (mWriter != null) {
+      Frame.Metadata metadata = detections.getFrameMetadata();
+      mFrame.reset(metadata.getId(), metadata.getTimestampMillis(), metadata.getWidth(),
+          metadata.getHeight());
+      SparseArray<Face> faces = detections.getDetectedItems();
+      for (int i = 0; i < faces.size(); ++i) {
+        GmsFaces.copy(faces.valueAt(i), mFrame.addFace());
+      }
+      try {
+        mWriter.write(mFrame);
+      } catch (IOException e) {
+        Log.e(TAG, "Unable to write detections, recording stopped.", e);
+        closeWriter();
+      }
+    }
+    mDelegate.receiveDetections(detections);
+  }
+
+  @Override
+  public void release() {
+    mDelegate.release();
+    closeWriter();
+  }
+
+  private void closeWriter() {
+    if (mWriter == null) {
+      return;
+    }
+    try {
+      mWriter.close();
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to close the detection recording.", e);
+    }
+    mWriter = null;
+  }
+}
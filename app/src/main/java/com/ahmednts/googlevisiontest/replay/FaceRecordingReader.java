@@ -0,0 +1,60 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a face recording written by {@link FaceRecordingWriter}, one frame at a time into a
+ * caller-owned {@link FrameRecord}.
+ */
+public class FaceRecordingReader implements Closeable {
+  private final DataInputStream mIn;
+
+  public FaceRecordingReader(InputStream in) throws IOException {
+    mIn = new DataInputStream(new BufferedInputStream(in));
+    int magic = mIn.readInt();
+    if (magic != FaceRecordingWriter.MAGIC) {
+      throw new IOException("Not a face recording: bad magic 0x" + Integer.toHexString(magic));
+    }
+    int version = mIn.readInt();
+    if (version != FaceRecordingWriter.VERSION) {
+      throw new IOException("Unsupported face recording version " + version);
+    }
+  }
+
+  /**
+   * Reads the next frame into {@code frame}.
+   *
+   * @return false at the end of the recording
+   */
+  public boolean read(FrameRecord frame) throws IOException {
+    int frameId;
+    try {
+      frameId = mIn.readInt();
+    } catch (EOFException e) {
+      return false;
+    }
+    frame.reset(frameId, mIn.readLong(), mIn.readInt(), mIn.readInt());
+    int faceCount = mIn.readInt();
+    for (int i = 0; i < faceCount; ++i) {
+      FaceRecord face = frame.addFace();
+      face.set(mIn.readInt(), mIn.readFloat(), mIn.readFloat(), mIn.readFloat(),
+          mIn.readFloat(), mIn.readFloat(), mIn.readFloat());
+      int landmarkCount = mIn.readInt();
+      for (int j = 0; j < landmarkCount; ++j) {
+        face.addLandmark(mIn.readInt(), mIn.readFloat(), mIn.readFloat());
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mIn.close();
+  }
+}
@@ -0,0 +1,66 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes detection results in the face recording format, read back by
+ * {@link FaceRecordingReader}.<p>
+ *
+ * The format is a big-endian {@link DataOutputStream} stream: the {@link #MAGIC} and
+ * {@link #VERSION} ints, then one entry per frame:
+ * <pre>
+ * int frameId, long timestampMillis, int width, int height, int faceCount
+ * faceCount x { int id, float left, top, width, height, eulerY, eulerZ, int landmarkCount,
+ *               landmarkCount x { int type, float x, float y } }
+ * </pre>
+ */
+public class FaceRecordingWriter implements Closeable {
+  static final int MAGIC = 0x46524543; // "FREC"
+  static final int VERSION = 1;
+
+  private final DataOutputStream mOut;
+
+  public FaceRecordingWriter(OutputStream out) throws IOException {
+    mOut = new DataOutputStream(new BufferedOutputStream(out));
+    mOut.writeInt(MAGIC);
+    mOut.writeInt(VERSION);
+  }
+
+  public void write(FrameRecord frame) throws IOException {
+    mOut.writeInt(frame.getFrameId());
+    mOut.writeLong(frame.getTimestampMillis());
+    mOut.writeInt(frame.getWidth());
+    mOut.writeInt(frame.getHeight());
+    mOut.writeInt(frame.getFaceCount());
+    for (int i = 0; i < frame.getFaceCount(); ++i) {
+      FaceRecord face = frame.getFace(i);
+      mOut.writeInt(face.getId());
+      mOut.writeFloat(face.getLeft());
+      mOut.writeFloat(face.getTop());
+      mOut.writeFloat(face.getWidth());
+      mOut.writeFloat(face.getHeight());
+      mOut.writeFloat(face.getEulerY());
+      mOut.writeFloat(face.getEulerZ());
+      mOut.writeInt(face.getLandmarkCount());
+      for (int j = 0; j < face.getLandmarkCount(); ++j) {
+        mOut.writeInt(face.getLandmarkType(j));
+        mOut.writeFloat(face.getLandmarkX(j));
+        mOut.writeFloat(face.getLandmarkY(j));
+      }
+    }
+  }
+
+  public void flush() throws IOException {
+    mOut.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    mOut.close();
+  }
+}
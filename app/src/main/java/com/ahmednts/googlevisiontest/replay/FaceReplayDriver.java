@@ -0,0 +1,138 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Pushes recorded detection results through the post-detection pipeline without a camera or
+ * Play Services.  Track life cycles follow the rules of the Play Services {@code MultiProcessor}:
+ * a tracker is created for each new face id, updated while the face is visible, told about each
+ * frame it is missing from, and ended once it has been missing for more than the maximum gap.<p>
+ *
+ * Frames are replayed as fast as they are pushed; the driver never sleeps.  Each face is stamped
+ * with its frame's timestamp, converted to nanoseconds, so time-based smoothing and prediction see
+ * the recorded timing.
+ */
+public class FaceReplayDriver {
+  /**
+   * The {@code MultiProcessor} default for how many frames a face may be missing before its
+   * tracker is ended.
+   */
+  public static final int DEFAULT_MAX_GAP_FRAMES = 3;
+
+  /**
+   * Creates the tracker for a newly seen face.
+   */
+  public interface TrackerFactory {
+    FaceTrackListener create(FaceRecord face);
+  }
+
+  /**
+   * Brackets each replayed frame, e.g., to begin and commit an overlay frame or to draw it.
+   */
+  public interface FrameListener {
+    void onFrameStart(FrameRecord frame);
+
+    void onFrameEnd(FrameRecord frame);
+  }
+
+  private static class Track {
+    final FaceTrackListener listener;
+    int missingFrames;
+    boolean seen;
+
+    Track(FaceTrackListener listener) {
+      this.listener = listener;
+    }
+  }
+
+  private final TrackerFactory mFactory;
+  private final FrameListener mFrameListener;
+  private final int mMaxGapFrames;
+  private final Map<Integer, Track> mTracks = new HashMap<>();
+
+  public FaceReplayDriver(TrackerFactory factory, FrameListener frameListener,
+      int maxGapFrames) {
+    mFactory = factory;
+    mFrameListener = frameListener;
+    mMaxGapFrames = maxGapFrames;
+  }
+
+  /**
+   * Delivers one frame of detection results to the trackers.
+   */
+  public void push(FrameRecord frame) {
+    if (mFrameListener != null) {
+      mFrameListener.onFrameStart(frame);
+    }
+
+    for (Track track : mTracks.values()) {
+      track.seen = false;
+    }
+
+    for (int i = 0; i < frame.getFaceCount(); ++i) {
+      FaceRecord face = frame.getFace(i);
+      face.setTimestampNanos(frame.getTimestampMillis() * 1000000L);
+      Track track = mTracks.get(face.getId());
+      if (track == null) {
+        track = new Track(mFactory.create(face));
+        mTracks.put(face.getId(), track);
+        track.listener.onNewItem(face.getId(), face);
+      }
+      track.seen = true;
+      track.missingFrames = 0;
+      track.listener.onUpdate(face);
+    }
+
+    Iterator<Track> tracks = mTracks.values().iterator();
+    while (tracks.hasNext()) {
+      Track track = tracks.next();
+      if (track.seen) {
+        continue;
+      }
+      if (++track.missingFrames > mMaxGapFrames) {
+        track.listener.onDone();
+        tracks.remove();
+      } else {
+        track.listener.onMissing();
+      }
+    }
+
+    if (mFrameListener != null) {
+      mFrameListener.onFrameEnd(frame);
+    }
+  }
+
+  /**
+   * Replays every remaining frame of a recording.
+   *
+   * @return the number of frames replayed
+   */
+  public int replay(FaceRecordingReader reader) throws IOException {
+    FrameRecord frame = new FrameRecord();
+    int frames = 0;
+    while (reader.read(frame)) {
+      push(frame);
+      frames++;
+    }
+    return frames;
+  }
+
+  /**
+   * Ends every open track, as when the detector is released.
+   */
+  public void finish() {
+    for (Track track : mTracks.values()) {
+      track.listener.onDone();
+    }
+    mTracks.clear();
+  }
+
+  public int getTrackCount() {
+    return mTracks.size();
+  }
+}
@@ -0,0 +1,74 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The detection results for one camera frame.  Face records are pooled inside the frame, so a
+ * single instance can be refilled for every frame of a recording without allocating.
+ */
+public class FrameRecord {
+  private int mFrameId;
+  private long mTimestampMillis;
+  private int mWidth;
+  private int mHeight;
+
+  private final List<FaceRecord> mFaces = new ArrayList<>();
+  private int mFaceCount;
+
+  /**
+   * Starts a new frame with no faces.
+   */
+  public FrameRecord reset(int frameId, long timestampMillis, int width, int height) {
+    mFrameId = frameId;
+    mTimestampMillis = timestampMillis;
+    mWidth = width;
+    mHeight = height;
+    mFaceCount = 0;
+    return this;
+  }
+
+  /**
+   * Returns a record for the next face in this frame, to be filled in by the caller.
+   */
+  public FaceRecord addFace() {
+    if (mFaceCount == mFaces.size()) {
+      mFaces.add(new FaceRecord());
+    }
+    return mFaces.get(mFaceCount++);
+  }
+
+  /**
+   * Drops the face added last, keeping its record for the next {@link #addFace()}.
+   */
+  public void removeLastFace() {
+    if (mFaceCount > 0) {
+      mFaceCount--;
+    }
+  }
+
+  public int getFrameId() {
+    return mFrameId;
+  }
+
+  public long getTimestampMillis() {
+    return mTimestampMillis;
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public int getFaceCount() {
+    return mFaceCount;
+  }
+
+  public FaceRecord getFace(int index) {
+    return mFaces.get(index);
+  }
+}
@@ -0,0 +1,81 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import android.util.Log;
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Records the luma of the first frames that reach the detector in the luma recording format, then
+ * hands every frame on to the wrapped detector.  If writing fails, recording stops and detection
+ * carries on.
+ */
+public class FrameRecorder extends Detector<Face> {
+  private static final String TAG = "FrameRecorder";
+
+  private final Detector<Face> mDelegate;
+  private final int mMaxFrames;
+  private LumaRecordingWriter mWriter;
+  private int mFrames;
+
+  /**
+   * @param maxFrames how many frames to record before the recording is closed
+   */
+  public FrameRecorder(Detector<Face> delegate, LumaRecordingWriter writer, int maxFrames) {
+    mDelegate = delegate;
+    mWriter = writer;
+    mMaxFrames = maxFrames;
+  }
+
+  @Override
+  public SparseArray<Face> detect(Frame frame) {
+    if (mWriter != null) {
+      Frame.Metadata metadata = frame.getMetadata();
+      ByteBuffer luma = frame.getGrayscaleImageData();
+      try {
+        mWriter.write(metadata.getId(), metadata.getTimestampMillis(), metadata.getWidth(),
+            metadata.getHeight(), metadata.getRotation(), luma);
+        if (++mFrames >= mMaxFrames) {
+          Log.i(TAG, "Recorded " + mFrames + " frames.");
+          closeWriter();
+        }
+      } catch (IOException e) {
+        Log.e(TAG, "Unable to write frames, recording stopped.", e);
+        closeWriter();
+      }
+    }
+    return mDelegate.detect(frame);
+  }
+
+  @Override
+  public boolean isOperational() {
+    return mDelegate.isOperational();
+  }
+
+  @Override
+  public boolean setFocus(int id) {
+    return mDelegate.setFocus(id);
+  }
+
+  @Override
+  public void release() {
+    mDelegate.release();
+    closeWriter();
+    super.release();
+  }
+
+  private void closeWriter() {
+    if (mWriter == null) {
+      return;
+    }
+    try {
+      mWriter.close();
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to close the frame recording.", e);
+    }
+    mWriter = null;
+  }
+}
@@ -0,0 +1,92 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a luma recording written by {@link LumaRecordingWriter}, one frame at a time.  The luma
+ * of the current frame is kept in a buffer that is reused for every frame of the same size.
+ */
+public class LumaRecordingReader implements Closeable {
+  private final DataInputStream mIn;
+
+  private int mFrameId;
+  private long mTimestampMillis;
+  private int mWidth;
+  private int mHeight;
+  private int mRotation;
+  private byte[] mLuma = new byte[0];
+
+  public LumaRecordingReader(InputStream in) throws IOException {
+    mIn = new DataInputStream(new BufferedInputStream(in));
+    int magic = mIn.readInt();
+    if (magic != LumaRecordingWriter.MAGIC) {
+      throw new IOException("Not a luma recording: bad magic 0x" + Integer.toHexString(magic));
+    }
+    int version = mIn.readInt();
+    if (version != LumaRecordingWriter.VERSION) {
+      throw new IOException("Unsupported luma recording version " + version);
+    }
+  }
+
+  /**
+   * Reads the next frame.
+   *
+   * @return false at the end of the recording
+   */
+  public boolean read() throws IOException {
+    try {
+      mFrameId = mIn.readInt();
+    } catch (EOFException e) {
+      return false;
+    }
+    mTimestampMillis = mIn.readLong();
+    mWidth = mIn.readInt();
+    mHeight = mIn.readInt();
+    mRotation = mIn.readInt();
+    if (mWidth <= 0 || mHeight <= 0) {
+      throw new IOException("Bad frame size " + mWidth + "x" + mHeight);
+    }
+    if (mLuma.length != mWidth * mHeight) {
+      mLuma = new byte[mWidth * mHeight];
+    }
+    mIn.readFully(mLuma);
+    return true;
+  }
+
+  public int getFrameId() {
+    return mFrameId;
+  }
+
+  public long getTimestampMillis() {
+    return mTimestampMillis;
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public int getRotation() {
+    return mRotation;
+  }
+
+  /**
+   * Returns the luma of the current frame, {@link #getWidth()} x {@link #getHeight()} bytes.
+   */
+  public byte[] getLuma() {
+    return mLuma;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mIn.close();
+  }
+}
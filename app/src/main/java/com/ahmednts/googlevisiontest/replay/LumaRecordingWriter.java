@@ -0,0 +1,64 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the luma planes of camera frames, read back by {@link LumaRecordingReader}.  This is
+ * what the face detector looks at, so a luma recording can be run through the detector again
+ * on-device, e.g., to compare two ways of detecting on the same frames.<p>
+ *
+ * The format is a big-endian {@link DataOutputStream} stream: the {@link #MAGIC} and
+ * {@link #VERSION} ints, then one entry per frame:
+ * <pre>
+ * int frameId, long timestampMillis, int width, int height, int rotation
+ * width x height bytes of luma, row by row
+ * </pre>
+ */
+public class LumaRecordingWriter implements Closeable {
+  static final int MAGIC = 0x4c524543; // "LREC"
+  static final int VERSION = 1;
+
+  private final DataOutputStream mOut;
+  private byte[] mRow = new byte[0];
+
+  public LumaRecordingWriter(OutputStream out) throws IOException {
+    mOut = new DataOutputStream(new BufferedOutputStream(out));
+    mOut.writeInt(MAGIC);
+    mOut.writeInt(VERSION);
+  }
+
+  /**
+   * Writes a frame.  The position of {@code luma} is taken as the start of the plane and left
+   * unchanged.
+   */
+  public void write(int frameId, long timestampMillis, int width, int height, int rotation,
+      ByteBuffer luma) throws IOException {
+    mOut.writeInt(frameId);
+    mOut.writeLong(timestampMillis);
+    mOut.writeInt(width);
+    mOut.writeInt(height);
+    mOut.writeInt(rotation);
+    if (mRow.length < width) {
+      mRow = new byte[width];
+    }
+    ByteBuffer rows = luma.duplicate();
+    for (int row = 0; row < height; ++row) {
+      rows.get(mRow, 0, width);
+      mOut.write(mRow, 0, width);
+    }
+  }
+
+  public void flush() throws IOException {
+    mOut.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    mOut.close();
+  }
+}
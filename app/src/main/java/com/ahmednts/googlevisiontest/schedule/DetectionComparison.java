@@ -0,0 +1,129 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import java.util.Locale;
+
+/**
+ * Measures how closely one way of detecting faces agrees with a reference, frame by frame: how
+ * many reference faces it found, how many it made up, and how far the boxes it found are off.
+ * Used to check cheaper detection, such as {@link RoiFaceDetector}, against whole-frame detection
+ * on the same frames.<p>
+ *
+ * Faces are paired greedily by box overlap; ids are ignored, as the two sides number faces
+ * independently.
+ */
+public class DetectionComparison {
+  private final float mMinOverlap;
+
+  private boolean[] mPaired = new boolean[8];
+  private long mFrames;
+  private long mMatched;
+  private long mMissed;
+  private long mExtra;
+  private double mCenterErrorSum;
+  private double mOverlapSum;
+
+  /**
+   * @param minOverlap the least intersection over union for two boxes to count as the same face
+   */
+  public DetectionComparison(float minOverlap) {
+    mMinOverlap = minOverlap;
+  }
+
+  /**
+   * Compares the faces detected in one frame.
+   */
+  public void add(FrameRecord reference, FrameRecord candidate) {
+    mFrames++;
+    int candidates = candidate.getFaceCount();
+    if (mPaired.length < candidates) {
+      mPaired = new boolean[candidates];
+    }
+    for (int i = 0; i < candidates; ++i) {
+      mPaired[i] = false;
+    }
+
+    for (int i = 0; i < reference.getFaceCount(); ++i) {
+      FaceRecord expected = reference.getFace(i);
+      int best = -1;
+      float bestOverlap = mMinOverlap;
+      for (int j = 0; j < candidates; ++j) {
+        float overlap = RegionOfInterest.overlap(expected, candidate.getFace(j));
+        if (!mPaired[j] && overlap >= bestOverlap) {
+          best = j;
+          bestOverlap = overlap;
+        }
+      }
+      if (best < 0) {
+        mMissed++;
+        continue;
+      }
+      mPaired[best] = true;
+      mMatched++;
+      mOverlapSum += bestOverlap;
+      FaceRecord found = candidate.getFace(best);
+      mCenterErrorSum += Math.hypot(
+          found.getLeft() + found.getWidth() / 2 - expected.getLeft() - expected.getWidth() / 2,
+          found.getTop() + found.getHeight() / 2 - expected.getTop() - expected.getHeight() / 2);
+    }
+    mExtra += candidates - countPaired(candidates);
+  }
+
+  private int countPaired(int candidates) {
+    int paired = 0;
+    for (int i = 0; i < candidates; ++i) {
+      if (mPaired[i]) {
+        paired++;
+      }
+    }
+    return paired;
+  }
+
+  public long getFrames() {
+    return mFrames;
+  }
+
+  public long getMatched() {
+    return mMatched;
+  }
+
+  public long getMissed() {
+    return mMissed;
+  }
+
+  public long getExtra() {
+    return mExtra;
+  }
+
+  /**
+   * Returns the share of reference faces that were found, or 1 if there were none.
+   */
+  public double getRecall() {
+    return mMatched + mMissed == 0 ? 1 : (double) mMatched / (mMatched + mMissed);
+  }
+
+  /**
+   * Returns the share of found faces that are reference faces, or 1 if none were found.
+   */
+  public double getPrecision() {
+    return mMatched + mExtra == 0 ? 1 : (double) mMatched / (mMatched + mExtra);
+  }
+
+  public double getMeanCenterError() {
+    return mMatched == 0 ? 0 : mCenterErrorSum / mMatched;
+  }
+
+  public double getMeanOverlap() {
+    return mMatched == 0 ? 0 : mOverlapSum / mMatched;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US,
+        "%d frames: %d faces matched, %d missed, %d extra (recall %.3f, precision %.3f),"
+            + " mean centre error %.2f px, mean overlap %.3f",
+        mFrames, mMatched, mMissed, mExtra, getRecall(), getPrecision(), getMeanCenterError(),
+        getMeanOverlap());
+  }
+}
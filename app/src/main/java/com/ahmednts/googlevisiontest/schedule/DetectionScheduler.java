@@ -0,0 +1,129 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+/**
+ * Decides which camera frames the face detector runs on.  The detector runs every
+ * {@link #getInterval()} frames, and straight away when motion is reported or when no detection
+ * has been made yet.  The interval adapts to the measured detector latency, so that detection
+ * takes about a fixed share of the frame time whatever the device.<p>
+ *
+ * Latency and frame interval are tracked as exponential moving averages.  Not thread-safe; the
+ * scheduler is meant to be used from the detector thread only.
+ */
+public class DetectionScheduler {
+  // Weight of the newest sample in the moving averages.
+  private static final float SMOOTHING = 0.2f;
+
+  private final int mMaxInterval;
+  private final float mTargetShare;
+
+  private int mInterval = 1;
+  private int mFramesSinceDetection;
+  private boolean mHasDetected;
+
+  private long mLastTimestampMillis = -1;
+  private float mFrameMillis;
+  private float mLatencyMillis;
+
+  private long mFrames;
+  private long mDetections;
+  private long mReuses;
+  private long mDetectorNanos;
+
+  /**
+   * @param maxInterval the most frames to go between two detections
+   * @param targetShare the share of frame time, between 0 and 1, that detection should take
+   */
+  public DetectionScheduler(int maxInterval, float targetShare) {
+    if (maxInterval < 1 || targetShare <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid schedule: interval " + maxInterval + ", share " + targetShare);
+    }
+    mMaxInterval = maxInterval;
+    mTargetShare = targetShare;
+  }
+
+  /**
+   * Called once for every camera frame.
+   *
+   * @param motion whether the frame differs noticeably from the previous one
+   * @return whether the detector should run on this frame
+   */
+  public boolean shouldDetect(long timestampMillis, boolean motion) {
+    mFrames++;
+    if (mLastTimestampMillis >= 0 && timestampMillis > mLastTimestampMillis) {
+      mFrameMillis = average(mFrameMillis, timestampMillis - mLastTimestampMillis);
+    }
+    mLastTimestampMillis = timestampMillis;
+
+    mFramesSinceDetection++;
+    return !mHasDetected || motion || mFramesSinceDetection >= mInterval;
+  }
+
+  /**
+   * Records that the detector ran, and how long it took.
+   */
+  public void onDetected(long latencyNanos) {
+    mHasDetected = true;
+    mFramesSinceDetection = 0;
+    mDetections++;
+    mDetectorNanos += latencyNanos;
+    mLatencyMillis = average(mLatencyMillis, latencyNanos / 1e6f);
+    mInterval = intervalFor(mLatencyMillis, mFrameMillis, mTargetShare, mMaxInterval);
+  }
+
+  /**
+   * Records that a scheduled detection was skipped because the previous one still applies.  The
+   * next detection is scheduled a whole interval later, as after a detection, but the latency
+   * statistics are left alone.
+   */
+  public void onReused() {
+    mFramesSinceDetection = 0;
+    mReuses++;
+    mInterval = intervalFor(mLatencyMillis, mFrameMillis, mTargetShare, mMaxInterval);
+  }
+
+  /**
+   * Returns the smallest interval at which detection takes no more than the target share of the
+   * frame time.
+   */
+  static int intervalFor(float latencyMillis, float frameMillis, float targetShare,
+      int maxInterval) {
+    if (frameMillis <= 0) {
+      return 1;
+    }
+    int interval = (int) Math.ceil(latencyMillis / (frameMillis * targetShare));
+    return Math.max(1, Math.min(maxInterval, interval));
+  }
+
+  private static float average(float average, float sample) {
+    return average == 0 ? sample : average + SMOOTHING * (sample - average);
+  }
+
+  public int getInterval() {
+    return mInterval;
+  }
+
+  public float getLatencyMillis() {
+    return mLatencyMillis;
+  }
+
+  public float getFrameMillis() {
+    return mFrameMillis;
+  }
+
+  public long getFrames() {
+    return mFrames;
+  }
+
+  public long getDetections() {
+    return mDetections;
+  }
+
+  public long getReuses() {
+    return mReuses;
+  }
+
+  public long getDetectorNanos() {
+    return mDetectorNanos;
+  }
+}
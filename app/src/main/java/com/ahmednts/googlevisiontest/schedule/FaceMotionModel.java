@@ -0,0 +1,159 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Moves tracked faces forward between detections.  Each track keeps its last detected face and a
+ * smoothed velocity of the face box; a prediction extrapolates the box linearly in time and
+ * carries the landmarks along with it, keeping their position relative to the box.<p>
+ *
+ * Every detection is also used to measure how far off the prediction for that frame would have
+ * been, which is the positional error paid for skipping the frames in between.
+ */
+public class FaceMotionModel {
+  // Weight of the newest velocity sample.
+  private static final float SMOOTHING = 0.5f;
+
+  // Predictions stop moving after this long without a detection, rather than running away.
+  private static final long MAX_PREDICTION_MILLIS = 250;
+
+  private static class Track {
+    final FaceRecord face = new FaceRecord();
+    long timestampMillis;
+    float leftVelocity;
+    float topVelocity;
+    float widthVelocity;
+    float heightVelocity;
+    boolean seen;
+  }
+
+  private final Map<Integer, Track> mTracks = new HashMap<>();
+  private final FaceRecord mScratch = new FaceRecord();
+
+  private double mErrorSum;
+  private long mErrorCount;
+
+  /**
+   * Updates the tracks from a frame that went through the detector.  Tracks whose face was not
+   * detected are dropped.
+   */
+  public void observe(FrameRecord frame) {
+    long timestampMillis = frame.getTimestampMillis();
+    for (Track track : mTracks.values()) {
+      track.seen = false;
+    }
+
+    for (int i = 0; i < frame.getFaceCount(); ++i) {
+      FaceRecord face = frame.getFace(i);
+      Track track = mTracks.get(face.getId());
+      if (track == null) {
+        track = new Track();
+        mTracks.put(face.getId(), track);
+      } else {
+        predict(track, timestampMillis, mScratch);
+        mErrorSum += centerDistance(mScratch, face);
+        mErrorCount++;
+
+        long elapsed = timestampMillis - track.timestampMillis;
+        if (elapsed > 0) {
+          FaceRecord last = track.face;
+          track.leftVelocity = smooth(track.leftVelocity, face.getLeft() - last.getLeft(), elapsed);
+          track.topVelocity = smooth(track.topVelocity, face.getTop() - last.getTop(), elapsed);
+          track.widthVelocity =
+              smooth(track.widthVelocity, face.getWidth() - last.getWidth(), elapsed);
+          track.heightVelocity =
+              smooth(track.heightVelocity, face.getHeight() - last.getHeight(), elapsed);
+        }
+      }
+      track.face.copyFrom(face);
+      track.timestampMillis = timestampMillis;
+      track.seen = true;
+    }
+
+    Iterator<Track> tracks = mTracks.values().iterator();
+    while (tracks.hasNext()) {
+      if (!tracks.next().seen) {
+        tracks.remove();
+      }
+    }
+  }
+
+  /**
+   * Adds the predicted position of every track at the given time to {@code out}.
+   */
+  public void predict(long timestampMillis, FrameRecord out) {
+    for (Track track : mTracks.values()) {
+      predict(track, timestampMillis, out.addFace());
+    }
+  }
+
+  /**
+   * Stops every track where it was last detected, as of {@code timestampMillis}, e.g., because
+   * the scene is known not to have changed since.
+   */
+  public void hold(long timestampMillis) {
+    for (Track track : mTracks.values()) {
+      track.timestampMillis = timestampMillis;
+      track.leftVelocity = 0;
+      track.topVelocity = 0;
+      track.widthVelocity = 0;
+      track.heightVelocity = 0;
+    }
+  }
+
+  /**
+   * Forgets all tracks, keeping the error statistics.
+   */
+  public void clear() {
+    mTracks.clear();
+  }
+
+  public int getTrackCount() {
+    return mTracks.size();
+  }
+
+  /**
+   * Returns the mean distance, in preview pixels, between the predicted and the detected face
+   * centres over all detections of a face that was already being tracked.
+   */
+  public float getMeanErrorPixels() {
+    return mErrorCount == 0 ? 0 : (float) (mErrorSum / mErrorCount);
+  }
+
+  public long getErrorSamples() {
+    return mErrorCount;
+  }
+
+  private static void predict(Track track, long timestampMillis, FaceRecord out) {
+    FaceRecord last = track.face;
+    long elapsed = Math.max(0,
+        Math.min(MAX_PREDICTION_MILLIS, timestampMillis - track.timestampMillis));
+    float left = last.getLeft() + track.leftVelocity * elapsed;
+    float top = last.getTop() + track.topVelocity * elapsed;
+    float width = Math.max(1, last.getWidth() + track.widthVelocity * elapsed);
+    float height = Math.max(1, last.getHeight() + track.heightVelocity * elapsed);
+    out.set(last.getId(), left, top, width, height, last.getEulerY(), last.getEulerZ());
+
+    float scaleX = width / last.getWidth();
+    float scaleY = height / last.getHeight();
+    for (int i = 0; i < last.getLandmarkCount(); ++i) {
+      out.addLandmark(last.getLandmarkType(i),
+          left + (last.getLandmarkX(i) - last.getLeft()) * scaleX,
+          top + (last.getLandmarkY(i) - last.getTop()) * scaleY);
+    }
+  }
+
+  private static float smooth(float velocity, float distance, long elapsedMillis) {
+    return velocity + SMOOTHING * (distance / elapsedMillis - velocity);
+  }
+
+  private static float centerDistance(FaceRecord a, FaceRecord b) {
+    float dx = (a.getLeft() + a.getWidth() / 2) - (b.getLeft() + b.getWidth() / 2);
+    float dy = (a.getTop() + a.getHeight() / 2) - (b.getTop() + b.getHeight() / 2);
+    return (float) Math.sqrt(dx * dx + dy * dy);
+  }
+}
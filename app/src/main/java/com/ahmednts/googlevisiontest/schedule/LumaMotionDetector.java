@@ -0,0 +1,71 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flags frames that differ noticeably from the previous one, by comparing the luma of a sparse
+ * grid of samples.  A grid of a few hundred bytes is enough to catch a face entering, leaving or
+ * moving quickly, at a cost that is negligible next to detection.  Never allocates after
+ * construction.
+ */
+public class LumaMotionDetector {
+  private static final int GRID_COLUMNS = 16;
+  private static final int GRID_ROWS = 12;
+
+  private final int mThreshold;
+  private final int[] mSamples = new int[GRID_COLUMNS * GRID_ROWS];
+  private boolean mHasSamples;
+  private int mLastDifference;
+
+  /**
+   * @param threshold mean absolute luma difference, from 0 to 255, above which a frame counts as
+   *     motion
+   */
+  public LumaMotionDetector(int threshold) {
+    mThreshold = threshold;
+  }
+
+  /**
+   * Samples a frame and compares it with the previous one.  The buffer holds the frame's luma
+   * plane, e.g., the start of an NV21 buffer, and its position is left unchanged.
+   *
+   * @return whether the frame differs from the previous one by more than the threshold; the
+   *     first frame always does
+   */
+  public boolean update(ByteBuffer luma, int width, int height) {
+    if (luma == null || width <= 0 || height <= 0) {
+      return true;
+    }
+    int base = luma.position();
+    long difference = 0;
+    int i = 0;
+    for (int row = 0; row < GRID_ROWS; ++row) {
+      int y = (2 * row + 1) * height / (2 * GRID_ROWS);
+      for (int column = 0; column < GRID_COLUMNS; ++column) {
+        int x = (2 * column + 1) * width / (2 * GRID_COLUMNS);
+        int sample = luma.get(base + y * width + x) & 0xff;
+        difference += Math.abs(sample - mSamples[i]);
+        mSamples[i++] = sample;
+      }
+    }
+
+    mLastDifference = (int) (difference / mSamples.length);
+    boolean motion = !mHasSamples || mLastDifference > mThreshold;
+    mHasSamples = true;
+    return motion;
+  }
+
+  /**
+   * Returns the mean absolute luma difference measured by the last {@link #update}.
+   */
+  public int getLastDifference() {
+    return mLastDifference;
+  }
+
+  /**
+   * Forgets the previous frame, so that the next one counts as motion.
+   */
+  public void reset() {
+    mHasSamples = false;
+  }
+}
@@ -0,0 +1,112 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A thumbnail of a frame's luma: the mean brightness of each cell of a fixed grid.  Two frames
+ * whose signatures are close show the same scene, so the faces found in one still hold for the
+ * other.<p>
+ *
+ * Each cell is averaged over a sparse lattice of at most {@link #SAMPLES_PER_SIDE} squared
+ * pixels, so the cost depends on the grid and not on the frame size.  Averaging over a cell
+ * rather than reading single pixels keeps sensor noise from counting as change.  Never allocates
+ * after construction.
+ */
+public class LumaSignature {
+  public static final int DEFAULT_COLUMNS = 32;
+  public static final int DEFAULT_ROWS = 24;
+
+  // The most pixels sampled along each side of a cell.
+  static final int SAMPLES_PER_SIDE = 8;
+
+  private final int mColumns;
+  private final int mRows;
+  private final int[] mCells;
+  private boolean mValid;
+
+  public LumaSignature() {
+    this(DEFAULT_COLUMNS, DEFAULT_ROWS);
+  }
+
+  public LumaSignature(int columns, int rows) {
+    if (columns < 1 || rows < 1) {
+      throw new IllegalArgumentException("Invalid grid " + columns + "x" + rows);
+    }
+    mColumns = columns;
+    mRows = rows;
+    mCells = new int[columns * rows];
+  }
+
+  /**
+   * Computes the signature of a frame.  The buffer holds the frame's luma plane, e.g., the start
+   * of an NV21 buffer, and its position is left unchanged.  A frame smaller than the grid leaves
+   * the signature invalid.
+   */
+  public LumaSignature compute(ByteBuffer luma, int width, int height) {
+    mValid = luma != null && width >= mColumns && height >= mRows;
+    if (!mValid) {
+      return this;
+    }
+    byte[] array = luma.hasArray() ? luma.array() : null;
+    int base = luma.position() + (array != null ? luma.arrayOffset() : 0);
+
+    int cell = 0;
+    for (int row = 0; row < mRows; ++row) {
+      int top = row * height / mRows;
+      int bottom = (row + 1) * height / mRows;
+      int yStep = (bottom - top + SAMPLES_PER_SIDE - 1) / SAMPLES_PER_SIDE;
+      for (int column = 0; column < mColumns; ++column) {
+        int left = column * width / mColumns;
+        int right = (column + 1) * width / mColumns;
+        int xStep = (right - left + SAMPLES_PER_SIDE - 1) / SAMPLES_PER_SIDE;
+        int sum = 0;
+        int count = 0;
+        for (int y = top; y < bottom; y += yStep) {
+          int offset = base + y * width;
+          if (array != null) {
+            for (int x = left; x < right; x += xStep) {
+              sum += array[offset + x] & 0xff;
+            }
+          } else {
+            for (int x = left; x < right; x += xStep) {
+              sum += luma.get(offset + x) & 0xff;
+            }
+          }
+          count += (right - left + xStep - 1) / xStep;
+        }
+        mCells[cell++] = sum / count;
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Returns the mean absolute difference between the cells of two signatures, from 0 to 255, or
+   * {@link Integer#MAX_VALUE} if either is invalid or their grids differ.
+   */
+  public int distance(LumaSignature other) {
+    if (!mValid || !other.mValid || other.mCells.length != mCells.length) {
+      return Integer.MAX_VALUE;
+    }
+    int sum = 0;
+    for (int i = 0; i < mCells.length; ++i) {
+      sum += Math.abs(mCells[i] - other.mCells[i]);
+    }
+    return sum / mCells.length;
+  }
+
+  public boolean isValid() {
+    return mValid;
+  }
+
+  /**
+   * Forgets the frame, so that the signature is no longer close to any other.
+   */
+  public void invalidate() {
+    mValid = false;
+  }
+
+  int getCell(int column, int row) {
+    return mCells[row * mColumns + column];
+  }
+}
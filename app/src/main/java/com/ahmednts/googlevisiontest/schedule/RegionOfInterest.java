@@ -0,0 +1,347 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+
+/**
+ * Decides which part of each frame the face detector has to look at.  Faces do not move far
+ * between two detections, so the region around the faces found last time, widened by a margin,
+ * is enough; the rest of the frame is scanned every {@link #getFullScanInterval()} detections,
+ * and straight away when a face goes missing from the region or runs into its edge.<p>
+ *
+ * The detector reports faces in upright coordinates, while frames are cropped in the camera's
+ * own orientation.  Frame rotations follow {@code Frame.ROTATION_*}: the number of quarter turns
+ * clockwise that make the camera image upright.  Crops are aligned to even pixels, so that an
+ * NV21 crop keeps whole chroma samples.<p>
+ *
+ * The detector is free to number faces differently in each crop, so faces are given their own
+ * track ids here, carried over from the previous detection by overlap.  Not thread-safe; meant
+ * for the detector thread only.
+ */
+public class RegionOfInterest {
+  // Least overlap, as intersection over union, for a face to keep the id of a previous one.
+  private static final float MIN_MATCH_OVERLAP = 0.3f;
+
+  private final int mFullScanInterval;
+  private final float mMargin;
+  private final float mMaxAreaShare;
+  private final float mMinFaceSize;
+
+  // The faces of the last detection, in upright frame coordinates.
+  private final FrameRecord mTracked = new FrameRecord();
+  private boolean[] mMatched = new boolean[8];
+  private int mDetectionsSinceFullScan;
+  private boolean mRescan = true;
+  private int mNextId = 1;
+
+  // The frame being detected, and the crop of it in camera coordinates.
+  private int mFrameWidth;
+  private int mFrameHeight;
+  private int mRotation;
+  private boolean mCropped;
+  private int mCropLeft;
+  private int mCropTop;
+  private int mCropRight;
+  private int mCropBottom;
+  private float mOffsetX;
+  private float mOffsetY;
+
+  private long mFullScans;
+  private long mCroppedScans;
+  private long mScannedPixels;
+  private long mFramePixels;
+
+  /**
+   * @param fullScanInterval at most this many detections between two scans of the whole frame
+   * @param margin how far to widen the region around the faces on each side, in face sizes
+   * @param maxAreaShare the share of the frame, between 0 and 1, above which the whole frame is
+   *     scanned instead
+   * @param minFaceSize the detector's minimum face size, as a proportion of the upright frame
+   *     width; smaller faces found in a crop are dropped, as the full frame would not report them
+   */
+  public RegionOfInterest(int fullScanInterval, float margin, float maxAreaShare,
+      float minFaceSize) {
+    if (fullScanInterval < 1 || margin < 0 || maxAreaShare <= 0) {
+      throw new IllegalArgumentException("Invalid region: interval " + fullScanInterval
+          + ", margin " + margin + ", area share " + maxAreaShare);
+    }
+    mFullScanInterval = fullScanInterval;
+    mMargin = margin;
+    mMaxAreaShare = maxAreaShare;
+    mMinFaceSize = minFaceSize;
+  }
+
+  /**
+   * Plans the detection of a frame of the given size and rotation, in camera orientation.
+   *
+   * @return whether the frame should be cropped to {@link #getCropLeft()} and friends, rather
+   *     than detected whole
+   */
+  public boolean plan(int width, int height, int rotation) {
+    boolean resized = width != mFrameWidth || height != mFrameHeight || rotation != mRotation;
+    mFrameWidth = width;
+    mFrameHeight = height;
+    mRotation = rotation;
+    mCropped = !resized && !mRescan && mTracked.getFaceCount() > 0
+        && mDetectionsSinceFullScan + 1 < mFullScanInterval && planCrop();
+    if (!mCropped) {
+      mCropLeft = 0;
+      mCropTop = 0;
+      mCropRight = width;
+      mCropBottom = height;
+      mOffsetX = 0;
+      mOffsetY = 0;
+    }
+    return mCropped;
+  }
+
+  private boolean planCrop() {
+    float left = Float.MAX_VALUE;
+    float top = Float.MAX_VALUE;
+    float right = -Float.MAX_VALUE;
+    float bottom = -Float.MAX_VALUE;
+    for (int i = 0; i < mTracked.getFaceCount(); ++i) {
+      FaceRecord face = mTracked.getFace(i);
+      float margin = mMargin * Math.max(face.getWidth(), face.getHeight());
+      left = Math.min(left, face.getLeft() - margin);
+      top = Math.min(top, face.getTop() - margin);
+      right = Math.max(right, face.getLeft() + face.getWidth() + margin);
+      bottom = Math.max(bottom, face.getTop() + face.getHeight() + margin);
+    }
+
+    // Back to camera coordinates: both corners, then the box around them.
+    float x0 = toCameraX(left, top);
+    float y0 = toCameraY(left, top);
+    float x1 = toCameraX(right, bottom);
+    float y1 = toCameraY(right, bottom);
+    mCropLeft = clamp(floorEven(Math.min(x0, x1)), mFrameWidth);
+    mCropTop = clamp(floorEven(Math.min(y0, y1)), mFrameHeight);
+    mCropRight = clamp(ceilEven(Math.max(x0, x1)), mFrameWidth);
+    mCropBottom = clamp(ceilEven(Math.max(y0, y1)), mFrameHeight);
+
+    long area = (long) (mCropRight - mCropLeft) * (mCropBottom - mCropTop);
+    if (area <= 0 || area > mMaxAreaShare * mFrameWidth * mFrameHeight) {
+      return false;
+    }
+
+    // The detector sees the crop upright, so its origin is the upright corner of the crop.
+    mOffsetX = Math.min(toUprightX(mCropLeft, mCropTop), toUprightX(mCropRight, mCropBottom));
+    mOffsetY = Math.min(toUprightY(mCropLeft, mCropTop), toUprightY(mCropRight, mCropBottom));
+    return true;
+  }
+
+  /**
+   * Moves a face found in the crop to upright frame coordinates.
+   *
+   * @return false if the face is smaller than the detector would report in the whole frame
+   */
+  public boolean mapToFrame(FaceRecord face) {
+    if (!mCropped) {
+      return true;
+    }
+    face.offset(mOffsetX, mOffsetY);
+    return face.getWidth() >= mMinFaceSize * getUprightWidth();
+  }
+
+  /**
+   * Takes the faces of the planned frame, already in frame coordinates, as the faces to look
+   * around next time, and gives them their track ids.
+   */
+  public void onDetected(FrameRecord faces) {
+    int tracked = mTracked.getFaceCount();
+    boolean lost = faces.getFaceCount() < tracked;
+    if (mMatched.length < tracked) {
+      mMatched = new boolean[tracked];
+    }
+    for (int i = 0; i < tracked; ++i) {
+      mMatched[i] = false;
+    }
+
+    for (int i = 0; i < faces.getFaceCount(); ++i) {
+      FaceRecord face = faces.getFace(i);
+      int match = -1;
+      float bestOverlap = MIN_MATCH_OVERLAP;
+      for (int j = 0; j < tracked; ++j) {
+        float overlap = overlap(face, mTracked.getFace(j));
+        if (!mMatched[j] && overlap >= bestOverlap) {
+          match = j;
+          bestOverlap = overlap;
+        }
+      }
+      if (match >= 0) {
+        mMatched[match] = true;
+        face.setId(mTracked.getFace(match).getId());
+      } else {
+        face.setId(mNextId++);
+      }
+      lost |= mCropped && touchesCropEdge(face);
+    }
+
+    mTracked.reset(faces.getFrameId(), faces.getTimestampMillis(), faces.getWidth(),
+        faces.getHeight());
+    for (int i = 0; i < faces.getFaceCount(); ++i) {
+      mTracked.addFace().copyFrom(faces.getFace(i));
+    }
+
+    if (mCropped) {
+      mCroppedScans++;
+      mDetectionsSinceFullScan++;
+    } else {
+      mFullScans++;
+      mDetectionsSinceFullScan = 0;
+    }
+    mScannedPixels += (long) (mCropRight - mCropLeft) * (mCropBottom - mCropTop);
+    mFramePixels += (long) mFrameWidth * mFrameHeight;
+    mRescan = lost;
+  }
+
+  /**
+   * Forgets the tracked faces, so that the next frame is scanned whole.
+   */
+  public void reset() {
+    mTracked.reset(0, 0, 0, 0);
+    mRescan = true;
+  }
+
+  private boolean touchesCropEdge(FaceRecord face) {
+    float left = face.getLeft() - mOffsetX;
+    float top = face.getTop() - mOffsetY;
+    float right = left + face.getWidth();
+    float bottom = top + face.getHeight();
+    boolean quarterTurn = (mRotation & 1) != 0;
+    float width = quarterTurn ? mCropBottom - mCropTop : mCropRight - mCropLeft;
+    float height = quarterTurn ? mCropRight - mCropLeft : mCropBottom - mCropTop;
+    // An edge of the crop that is also an edge of the frame cuts nothing off.
+    float frameLeft = -mOffsetX;
+    float frameTop = -mOffsetY;
+    float frameRight = frameLeft + getUprightWidth();
+    float frameBottom = frameTop + getUprightHeight();
+    return (left <= 1 && frameLeft < 0)
+        || (top <= 1 && frameTop < 0)
+        || (right >= width - 1 && frameRight > width)
+        || (bottom >= height - 1 && frameBottom > height);
+  }
+
+  /**
+   * Returns the intersection over union of two face boxes.
+   */
+  static float overlap(FaceRecord a, FaceRecord b) {
+    float width = Math.min(a.getLeft() + a.getWidth(), b.getLeft() + b.getWidth())
+        - Math.max(a.getLeft(), b.getLeft());
+    float height = Math.min(a.getTop() + a.getHeight(), b.getTop() + b.getHeight())
+        - Math.max(a.getTop(), b.getTop());
+    if (width <= 0 || height <= 0) {
+      return 0;
+    }
+    float intersection = width * height;
+    return intersection
+        / (a.getWidth() * a.getHeight() + b.getWidth() * b.getHeight() - intersection);
+  }
+
+  private float toUprightX(float x, float y) {
+    switch (mRotation) {
+      case 1:
+        return mFrameHeight - y;
+      case 2:
+        return mFrameWidth - x;
+      case 3:
+        return y;
+      default:
+        return x;
+    }
+  }
+
+  private float toUprightY(float x, float y) {
+    switch (mRotation) {
+      case 1:
+        return x;
+      case 2:
+        return mFrameHeight - y;
+      case 3:
+        return mFrameWidth - x;
+      default:
+        return y;
+    }
+  }
+
+  private float toCameraX(float u, float v) {
+    switch (mRotation) {
+      case 1:
+        return v;
+      case 2:
+        return mFrameWidth - u;
+      case 3:
+        return mFrameWidth - v;
+      default:
+        return u;
+    }
+  }
+
+  private float toCameraY(float u, float v) {
+    switch (mRotation) {
+      case 1:
+        return mFrameHeight - u;
+      case 2:
+        return mFrameHeight - v;
+      case 3:
+        return u;
+      default:
+        return v;
+    }
+  }
+
+  private static int floorEven(float value) {
+    return (int) Math.floor(value / 2) * 2;
+  }
+
+  private static int ceilEven(float value) {
+    return (int) Math.ceil(value / 2) * 2;
+  }
+
+  private static int clamp(int value, int max) {
+    return Math.max(0, Math.min(max, value));
+  }
+
+  private int getUprightWidth() {
+    return (mRotation & 1) != 0 ? mFrameHeight : mFrameWidth;
+  }
+
+  private int getUprightHeight() {
+    return (mRotation & 1) != 0 ? mFrameWidth : mFrameHeight;
+  }
+
+  public int getFullScanInterval() {
+    return mFullScanInterval;
+  }
+
+  public int getCropLeft() {
+    return mCropLeft;
+  }
+
+  public int getCropTop() {
+    return mCropTop;
+  }
+
+  public int getCropWidth() {
+    return mCropRight - mCropLeft;
+  }
+
+  public int getCropHeight() {
+    return mCropBottom - mCropTop;
+  }
+
+  public long getFullScans() {
+    return mFullScans;
+  }
+
+  public long getCroppedScans() {
+    return mCroppedScans;
+  }
+
+  /**
+   * Returns the share of frame pixels that went through the detector, between 0 and 1.
+   */
+  public float getScannedShare() {
+    return mFramePixels == 0 ? 1 : (float) mScannedPixels / mFramePixels;
+  }
+}
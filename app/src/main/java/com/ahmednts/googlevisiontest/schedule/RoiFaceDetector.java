@@ -0,0 +1,144 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import android.graphics.ImageFormat;
+import android.util.SparseArray;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.ahmednts.googlevisiontest.metrics.Tracing;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Runs the wrapped face detector on the part of each frame picked by a {@link RegionOfInterest}:
+ * a crop around the faces of the previous detection, or the whole frame every few detections and
+ * whenever a face was lost.  Faces found in a crop are moved back to whole-frame coordinates, so
+ * the processor cannot tell the difference.<p>
+ *
+ * Only the luma of the crop is copied; the detector does not look at colour, so the chroma of
+ * the cropped NV21 frame is left grey.  Track ids come from the region, not from the wrapped
+ * detector, and classification probabilities are not carried over from crops.  Meant to be
+ * called from the detector thread only.
+ */
+public class RoiFaceDetector extends Detector<Face> {
+  private static final byte NEUTRAL_CHROMA = (byte) 128;
+
+  private final Detector<Face> mDelegate;
+  private final RegionOfInterest mRegion;
+  private final FrameRecord mFrame = new FrameRecord();
+  private byte[] mCrop = new byte[0];
+  private ByteBuffer mCropBuffer;
+
+  public RoiFaceDetector(Detector<Face> delegate, RegionOfInterest region) {
+    mDelegate = delegate;
+    mRegion = region;
+  }
+
+  @Override
+  public SparseArray<Face> detect(Frame frame) {
+    Frame.Metadata metadata = frame.getMetadata();
+    int width = metadata.getWidth();
+    int height = metadata.getHeight();
+    ByteBuffer luma = frame.getGrayscaleImageData();
+    boolean cropped = luma != null && mRegion.plan(width, height, metadata.getRotation());
+
+    Frame input = frame;
+    if (cropped) {
+      Tracing.beginSection("RoiFaceDetector.crop");
+      input = crop(luma, metadata);
+      Tracing.endSection();
+    }
+    SparseArray<Face> detected = mDelegate.detect(input);
+
+    mFrame.reset(metadata.getId(), metadata.getTimestampMillis(), width, height);
+    for (int i = 0; i < detected.size(); ++i) {
+      FaceRecord face = GmsFaces.copy(detected.valueAt(i), mFrame.addFace());
+      if (!mRegion.mapToFrame(face)) {
+        mFrame.removeLastFace();
+      }
+    }
+    mRegion.onDetected(mFrame);
+
+    SparseArray<Face> faces = new SparseArray<>(mFrame.getFaceCount());
+    for (int i = 0; i < mFrame.getFaceCount(); ++i) {
+      FaceRecord face = mFrame.getFace(i);
+      faces.put(face.getId(), GmsFaces.toFace(face));
+    }
+    return faces;
+  }
+
+  /**
+   * Builds an NV21 frame of the planned crop, with the same id, timestamp and rotation.
+   */
+  private Frame crop(ByteBuffer luma, Frame.Metadata metadata) {
+    int cropWidth = mRegion.getCropWidth();
+    int cropHeight = mRegion.getCropHeight();
+    int lumaSize = cropWidth * cropHeight;
+    int size = lumaSize + lumaSize / 2;
+    if (mCrop.length < size) {
+      mCrop = new byte[size];
+      mCropBuffer = ByteBuffer.wrap(mCrop);
+    }
+    cropLuma(luma, metadata.getWidth(), mRegion.getCropLeft(), mRegion.getCropTop(), cropWidth,
+        cropHeight, mCrop);
+    Arrays.fill(mCrop, lumaSize, size, NEUTRAL_CHROMA);
+    return new Frame.Builder()
+        .setImageData(mCropBuffer, cropWidth, cropHeight, ImageFormat.NV21)
+        .setId(metadata.getId())
+        .setTimestampMillis(metadata.getTimestampMillis())
+        .setRotation(metadata.getRotation())
+        .build();
+  }
+
+  /**
+   * Copies a rectangle of a luma plane, row by row, to the start of {@code out}.  The position
+   * of {@code luma} is taken as the start of the plane and left unchanged.
+   */
+  static void cropLuma(ByteBuffer luma, int width, int left, int top, int cropWidth,
+      int cropHeight, byte[] out) {
+    ByteBuffer rows = luma.duplicate();
+    int base = luma.position();
+    for (int row = 0; row < cropHeight; ++row) {
+      rows.position(base + (top + row) * width + left);
+      rows.get(out, row * cropWidth, cropWidth);
+    }
+  }
+
+  /**
+   * Returns whether the face with the given id is being tracked.  The region already keeps the
+   * detector on the tracked faces, so focus is not passed on; the wrapped detector numbers faces
+   * differently anyway.
+   */
+  @Override
+  public boolean setFocus(int id) {
+    for (int i = 0; i < mFrame.getFaceCount(); ++i) {
+      if (mFrame.getFace(i).getId() == id) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isOperational() {
+    return mDelegate.isOperational();
+  }
+
+  @Override
+  public void release() {
+    mDelegate.release();
+    super.release();
+  }
+
+  /**
+   * Summarizes how much of the frames the detector was spared.
+   */
+  public String getSummary() {
+    return String.format(Locale.US, "%d full scans, %d cropped, %.0f%% of pixels scanned",
+        mRegion.getFullScans(), mRegion.getCroppedScans(), mRegion.getScannedShare() * 100);
+  }
+}
@@ -0,0 +1,265 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import android.util.SparseArray;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FrameClock;
+import com.ahmednts.googlevisiontest.face.GmsFaces;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.ahmednts.googlevisiontest.metrics.Tracing;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Runs the wrapped face detector only on the frames picked by a {@link DetectionScheduler}, and
+ * reports faces moved forward by a {@link FaceMotionModel} for the frames in between.  The
+ * processor sees a result for every frame, so stickers keep moving at the full preview frame rate
+ * while the detector runs at a fraction of it.<p>
+ *
+ * Detection is forced when a {@link LumaMotionDetector} sees the picture change, so that faces
+ * entering or moving suddenly are not missed for a whole interval.  Predicted faces keep the ids
+ * of the detected ones, so trackers simply see another update.<p>
+ *
+ * Before the detector runs, the frame's {@link LumaSignature} is compared with that of the frame
+ * last detected.  If the scene has not changed, e.g., someone holding still in front of the
+ * camera, the faces of that detection are reported again instead, for up to
+ * {@link #MAX_REUSE_MILLIS}.
+ */
+public class ScheduledFaceDetector extends Detector<Face> implements FrameClock {
+  /**
+   * Notified on the detector thread after each frame the detector actually ran on.
+   */
+  public interface DetectionListener {
+    void onDetection(long latencyNanos, int faces);
+  }
+
+  /**
+   * Notified on the detector thread of every frame, detected or not, before anything else is
+   * done with it.  The frame's buffer goes back to the camera once detection returns, so a
+   * listener that keeps the pixels must copy them.
+   */
+  public interface FrameListener {
+    void onFrame(Frame frame);
+  }
+
+  // Longest time that the faces of one detection are reused for.  A slow drift that stays under
+  // the threshold from frame to frame is caught by comparing with the detected frame, but not a
+  // small face slowly coming in.
+  public static final long MAX_REUSE_MILLIS = 1000;
+
+  private final Detector<Face> mDelegate;
+  private final DetectionScheduler mScheduler;
+  private final LumaMotionDetector mMotionDetector;
+  private final FaceMotionModel mMotionModel = new FaceMotionModel();
+  private final PipelineMetrics mMetrics;
+  private final FrameRecord mFrame = new FrameRecord();
+  private final int mReuseThreshold;
+  private final FrameRecord mDetected = new FrameRecord();
+  private LumaSignature mSignature = new LumaSignature();
+  private LumaSignature mDetectedSignature = new LumaSignature();
+  private long mSignatures;
+  private volatile long mFrameTimeNanos;
+  private volatile DetectionListener mDetectionListener;
+  private volatile FrameListener mFrameListener;
+
+  /**
+   * @param maxInterval the most frames to go between two detections
+   * @param targetShare the share of frame time, between 0 and 1, that detection should take
+   * @param motionThreshold mean absolute luma difference above which detection is forced
+   * @param reuseThreshold mean absolute difference between {@link LumaSignature}s below which
+   *     the last detection is reused; 0 always runs the detector
+   * @param metrics receives the frame arrival and detection times
+   */
+  public ScheduledFaceDetector(Detector<Face> delegate, int maxInterval, float targetShare,
+      int motionThreshold, int reuseThreshold, PipelineMetrics metrics) {
+    mDelegate = delegate;
+    mReuseThreshold = reuseThreshold;
+    mMetrics = metrics;
+    mScheduler = new DetectionScheduler(maxInterval, targetShare);
+    mMotionDetector = new LumaMotionDetector(motionThreshold);
+  }
+
+  @Override
+  public SparseArray<Face> detect(Frame frame) {
+    Frame.Metadata metadata = frame.getMetadata();
+    return detect(frame, metadata.getId(), metadata.getTimestampMillis(), metadata.getWidth(),
+        metadata.getHeight(), frame.getGrayscaleImageData());
+  }
+
+  /**
+   * Handles a frame given its metadata and luma, which is all that is read from it; the frame
+   * itself is only handed on to the listener and the wrapped detector.
+   */
+  SparseArray<Face> detect(Frame frame, int id, long timestampMillis, int width, int height,
+      ByteBuffer luma) {
+    mFrameTimeNanos = System.nanoTime();
+    mMetrics.onFrame(id, mFrameTimeNanos);
+    FrameListener frameListener = mFrameListener;
+    if (frameListener != null) {
+      frameListener.onFrame(frame);
+    }
+    boolean motion = mMotionDetector.update(luma, width, height);
+    mFrame.reset(id, timestampMillis, width, height);
+
+    if (mScheduler.shouldDetect(timestampMillis, motion)) {
+      if (mReuseThreshold > 0) {
+        Tracing.beginSection("LumaSignature.compute");
+        mSignature.compute(luma, width, height);
+        mSignatures++;
+        Tracing.endSection();
+        if (!motion && timestampMillis - mDetected.getTimestampMillis() <= MAX_REUSE_MILLIS
+            && mSignature.distance(mDetectedSignature) < mReuseThreshold) {
+          return reuseDetection();
+        }
+      }
+
+      Tracing.beginSection("FaceDetector.detect");
+      long start = System.nanoTime();
+      SparseArray<Face> faces = runDetector(frame, mFrame);
+      long end = System.nanoTime();
+      Tracing.endSection();
+      mScheduler.onDetected(end - start);
+      mMetrics.onDetected(end, mFrame.getFaceCount(), false);
+      DetectionListener listener = mDetectionListener;
+      if (listener != null) {
+        listener.onDetection(end - start, mFrame.getFaceCount());
+      }
+
+      mDetected.reset(id, timestampMillis, width, height);
+      for (int i = 0; i < mFrame.getFaceCount(); ++i) {
+        mDetected.addFace().copyFrom(mFrame.getFace(i));
+      }
+      mMotionModel.observe(mFrame);
+      LumaSignature detectedSignature = mDetectedSignature;
+      mDetectedSignature = mSignature;
+      mSignature = detectedSignature;
+      return faces;
+    }
+
+    Tracing.beginSection("FaceMotionModel.predict");
+    mMotionModel.predict(timestampMillis, mFrame);
+    SparseArray<Face> faces = new SparseArray<>(mFrame.getFaceCount());
+    for (int i = 0; i < mFrame.getFaceCount(); ++i) {
+      FaceRecord face = mFrame.getFace(i);
+      faces.put(face.getId(), GmsFaces.toFace(face));
+    }
+    Tracing.endSection();
+    mMetrics.onDetected(System.nanoTime(), faces.size(), true);
+    return faces;
+  }
+
+  /**
+   * Runs the wrapped detector on a frame, and adds the faces it found to {@code out}.
+   */
+  SparseArray<Face> runDetector(Frame frame, FrameRecord out) {
+    SparseArray<Face> faces = mDelegate.detect(frame);
+    for (int i = 0; i < faces.size(); ++i) {
+      GmsFaces.copy(faces.valueAt(i), out.addFace());
+    }
+    return faces;
+  }
+
+  /**
+   * Reports the faces of the last detection again, for a frame that shows the same scene.  The
+   * faces are known to be still, so the frames until the next detection hold them there rather
+   * than moving them on at their last speed.
+   */
+  private SparseArray<Face> reuseDetection() {
+    mScheduler.onReused();
+    mMotionModel.hold(mFrame.getTimestampMillis());
+    SparseArray<Face> faces = new SparseArray<>(mDetected.getFaceCount());
+    for (int i = 0; i < mDetected.getFaceCount(); ++i) {
+      FaceRecord face = mDetected.getFace(i);
+      mFrame.addFace().copyFrom(face);
+      faces.put(face.getId(), GmsFaces.toFace(face));
+    }
+    mMetrics.onDetectionReused();
+    mMetrics.onDetected(System.nanoTime(), faces.size(), true);
+    return faces;
+  }
+
+  public void setDetectionListener(DetectionListener listener) {
+    mDetectionListener = listener;
+  }
+
+  public void setFrameListener(FrameListener listener) {
+    mFrameListener = listener;
+  }
+
+  /**
+   * Returns when the frame being detected, or last detected, was handed to this detector.
+   */
+  @Override
+  public long getFrameTimeNanos() {
+    return mFrameTimeNanos;
+  }
+
+  @Override
+  public boolean isOperational() {
+    return mDelegate.isOperational();
+  }
+
+  @Override
+  public boolean setFocus(int id) {
+    return mDelegate.setFocus(id);
+  }
+
+  @Override
+  public void release() {
+    mDelegate.release();
+    super.release();
+  }
+
+  /**
+   * Returns how many times the faces of the previous detection were reported again instead of
+   * running the detector.
+   */
+  public long getReusedDetections() {
+    return mScheduler.getReuses();
+  }
+
+  /**
+   * Returns the share of scheduled detections, between 0 and 1, that reused the previous one
+   * because the scene had not changed.
+   */
+  public float getReuseRate() {
+    long reuses = mScheduler.getReuses();
+    long scheduled = reuses + mScheduler.getDetections();
+    return scheduled == 0 ? 0 : (float) reuses / scheduled;
+  }
+
+  /**
+   * Returns the faces reported for the latest frame, detected, reused or predicted.
+   */
+  FrameRecord getFrame() {
+    return mFrame;
+  }
+
+  /**
+   * Returns how many frames had their {@link LumaSignature} computed.
+   */
+  long getSignatures() {
+    return mSignatures;
+  }
+
+  /**
+   * Summarizes the trade-off made so far: how often the detector ran, what it cost, how often the
+   * scene was still, and how far the predicted faces were from the next detection.
+   */
+  public String getSummary() {
+    long frames = mScheduler.getFrames();
+    long detections = mScheduler.getDetections();
+    float meanLatency = detections == 0 ? 0 : mScheduler.getDetectorNanos() / 1e6f / detections;
+    float frameMillis = mScheduler.getFrameMillis();
+    float detectorShare = frames == 0 || frameMillis == 0
+        ? 0 : mScheduler.getDetectorNanos() / 1e6f / (frames * frameMillis);
+    return String.format(Locale.US,
+        "detected %d of %d frames (interval %d), %.1f ms per detection, %.0f%% of frame time,"
+            + " %d reused (%.0f%%), mean prediction error %.1f px",
+        detections, frames, mScheduler.getInterval(), meanLatency, detectorShare * 100,
+        mScheduler.getReuses(), getReuseRate() * 100, mMotionModel.getMeanErrorPixels());
+  }
+}
@@ -0,0 +1,73 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+/**
+ * Packs rectangles into a texture atlas using shelves: rectangles are placed left to right, tallest
+ * first, and a new shelf is started whenever the current one is full.  This is close to optimal
+ * for the handful of similarly sized stickers in a pack and needs no search.
+ */
+final class AtlasPacker {
+  private AtlasPacker() {
+  }
+
+  /**
+   * Returns a reasonable atlas width for the given rectangles: wide enough for the widest one, and
+   * otherwise close to square.
+   */
+  static int chooseWidth(int[] widths, int[] heights, int padding) {
+    long area = 0;
+    int widest = 0;
+    for (int i = 0; i < widths.length; ++i) {
+      area += (long) (widths[i] + padding) * (heights[i] + padding);
+      widest = Math.max(widest, widths[i] + padding);
+    }
+    return Math.max(widest, (int) Math.ceil(Math.sqrt(area)));
+  }
+
+  /**
+   * Places each rectangle inside an atlas of the given width, leaving {@code padding} pixels
+   * between neighbours so that filtering does not bleed across stickers.
+   *
+   * @param outX receives the left edge of each rectangle
+   * @param outY receives the top edge of each rectangle
+   * @return the height of the atlas needed to hold every rectangle
+   */
+  static int pack(int atlasWidth, int[] widths, int[] heights, int padding, int[] outX,
+      int[] outY) {
+    int count = widths.length;
+    int[] order = new int[count];
+    for (int i = 0; i < count; ++i) {
+      order[i] = i;
+    }
+    // Insertion sort by decreasing height; sticker packs are small.
+    for (int i = 1; i < count; ++i) {
+      int index = order[i];
+      int j = i - 1;
+      while (j >= 0 && heights[order[j]] < heights[index]) {
+        order[j + 1] = order[j];
+        --j;
+      }
+      order[j + 1] = index;
+    }
+
+    int shelfTop = 0;
+    int shelfHeight = 0;
+    int x = 0;
+    for (int i = 0; i < count; ++i) {
+      int index = order[i];
+      if (widths[index] > atlasWidth) {
+        throw new IllegalArgumentException(
+            "Rectangle " + index + " is wider than the atlas: " + widths[index]);
+      }
+      if (x + widths[index] > atlasWidth) {
+        shelfTop += shelfHeight + padding;
+        shelfHeight = 0;
+        x = 0;
+      }
+      outX[index] = x;
+      outY[index] = shelfTop;
+      x += widths[index] + padding;
+      shelfHeight = Math.max(shelfHeight, heights[index]);
+    }
+    return shelfTop + shelfHeight;
+  }
+}
@@ -0,0 +1,346 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
+import com.google.android.gms.vision.face.Landmark;
+import java.util.Arrays;
+
+/**
+ * Per-face geometry shared by all of the stickers drawn on one tracked face.  The face centre,
+ * half-extents and landmark positions are computed once per detection by
+ * {@link #update(FaceRecord)}, instead of once per sticker per draw.<p>
+ *
+ * Landmark data is kept in primitive arrays indexed by landmark type.  Besides the positions
+ * reported for the current frame, the geometry remembers where each landmark was last seen
+ * relative to the face bounding box, and uses that proportion to estimate the position of a
+ * landmark that is missing from a later detection.<p>
+ *
+ * A geometry can smooth the face box and landmarks over time with a {@link OneEuroFilter}.  The
+ * filter also estimates how fast each value is changing, which {@link #predictFrom} uses to move
+ * the face forward to the time the frame will be drawn, hiding the delay between the detection
+ * and the display refresh.<p>
+ *
+ * The tracker updates the geometry on the detector thread.  Stickers take a consistent copy for
+ * drawing with {@link #copyFrom(FaceGeometry)} or {@link #predictFrom(FaceGeometry, long)}, and
+ * move the copy into view coordinates with {@link #mapToView(PreviewTransform)}.
+ */
+public class FaceGeometry {
+  /**
+   * One more than the largest landmark type reported by the face detector.
+   */
+  public static final int LANDMARK_TYPE_COUNT = Landmark.RIGHT_MOUTH + 1;
+
+  /**
+   * One Euro filter settings that suit face boxes in preview pixels: steady when the head is
+   * still, and little lag when it turns.
+   */
+  public static final float DEFAULT_MIN_CUTOFF = 1.0f;
+  public static final float DEFAULT_BETA = 0.05f;
+
+  // Cutoff frequency, in Hz, of the velocity estimate used for prediction.
+  private static final float DERIVATIVE_CUTOFF = 4.0f;
+
+  // Predictions never reach further ahead than this, so that a stalled detector does not send the
+  // stickers flying off along the last velocity.
+  private static final long MAX_PREDICTION_NANOS = 100000000L;
+
+  // Filter channels: the face box, then x and y of each landmark type.
+  private static final int CHANNEL_LEFT = 0;
+  private static final int CHANNEL_TOP = 1;
+  private static final int CHANNEL_WIDTH = 2;
+  private static final int CHANNEL_HEIGHT = 3;
+  private static final int CHANNEL_LANDMARKS = 4;
+  private static final int CHANNEL_COUNT = CHANNEL_LANDMARKS + 2 * LANDMARK_TYPE_COUNT;
+
+  private final OneEuroFilter mFilter;
+
+  private boolean mValid;
+  private float mLeft;
+  private float mTop;
+  private float mWidth;
+  private float mHeight;
+  private float mCenterX;
+  private float mCenterY;
+  private float mHalfWidth;
+  private float mHalfHeight;
+  private long mTimestampNanos;
+
+  // Rate of change of each filter channel, in preview pixels per second.  All zero when the
+  // geometry is not smoothed.
+  private final float[] mVelocity = new float[CHANNEL_COUNT];
+
+  // Detected or estimated landmark positions for the current frame, in preview coordinates, as
+  // interleaved x and y indexed by landmark type, so that they can be transformed in one pass.
+  private final boolean[] mHasLandmark = new boolean[LANDMARK_TYPE_COUNT];
+  private final float[] mLandmarks = new float[2 * LANDMARK_TYPE_COUNT];
+
+  // Last seen landmark positions relative to the face bounding box.  Only used by update(), so
+  // never copied.
+  private final boolean[] mDetected = new boolean[LANDMARK_TYPE_COUNT];
+  private final boolean[] mHasProportion = new boolean[LANDMARK_TYPE_COUNT];
+  private final float[] mProportionX = new float[LANDMARK_TYPE_COUNT];
+  private final float[] mProportionY = new float[LANDMARK_TYPE_COUNT];
+
+  /**
+   * Creates a geometry that reports each detection as is.
+   */
+  public FaceGeometry() {
+    mFilter = null;
+  }
+
+  /**
+   * Creates a geometry that smooths detections with a One Euro filter and can predict ahead.
+   *
+   * @param minCutoff cutoff frequency in Hz when the face is still; lower means less jitter
+   * @param beta how quickly the cutoff rises with speed; higher means less lag
+   */
+  public FaceGeometry(float minCutoff, float beta) {
+    mFilter = new OneEuroFilter(CHANNEL_COUNT, minCutoff, beta, DERIVATIVE_CUTOFF);
+  }
+
+  /**
+   * Updates the geometry from the detection of the most recent frame, taken to be current.
+   */
+  public void update(FaceRecord face) {
+    update(face, System.nanoTime());
+  }
+
+  /**
+   * Updates the geometry from the detection of the most recent frame.
+   *
+   * @param timestampNanos when the detected frame arrived from the camera, on the
+   *     {@link System#nanoTime()} clock
+   */
+  public void update(FaceRecord face, long timestampNanos) {
+    float width = face.getWidth();
+    float height = face.getHeight();
+
+    synchronized (this) {
+      mLeft = face.getLeft();
+      mTop = face.getTop();
+      mWidth = width;
+      mHeight = height;
+      updateCenter();
+
+      Arrays.fill(mDetected, false);
+      for (int i = 0; i < face.getLandmarkCount(); ++i) {
+        int type = face.getLandmarkType(i);
+        if (type < 0 || type >= LANDMARK_TYPE_COUNT) {
+          continue;
+        }
+        float x = face.getLandmarkX(i);
+        float y = face.getLandmarkY(i);
+        mLandmarks[2 * type] = x;
+        mLandmarks[2 * type + 1] = y;
+        mProportionX[type] = (x - mLeft) / width;
+        mProportionY[type] = (y - mTop) / height;
+        mHasProportion[type] = true;
+        mDetected[type] = true;
+      }
+
+      // Approximate the landmarks that were not detected this time from past observations.
+      for (int type = 0; type < LANDMARK_TYPE_COUNT; ++type) {
+        if (!mDetected[type] && mHasProportion[type]) {
+          mLandmarks[2 * type] = mLeft + (mProportionX[type] * width);
+          mLandmarks[2 * type + 1] = mTop + (mProportionY[type] * height);
+        }
+        mHasLandmark[type] = mHasProportion[type];
+      }
+
+      mTimestampNanos = timestampNanos;
+      if (mFilter != null) {
+        smooth();
+      }
+      mValid = true;
+    }
+  }
+
+  /**
+   * Forgets the current face and all remembered landmark proportions, e.g., when the tracker
+   * starts following a new face.
+   */
+  public synchronized void reset() {
+    mValid = false;
+    Arrays.fill(mHasLandmark, false);
+    Arrays.fill(mHasProportion, false);
+    Arrays.fill(mVelocity, 0);
+    if (mFilter != null) {
+      mFilter.reset();
+    }
+  }
+
+  /**
+   * Copies the current face box and landmark positions from {@code source}, holding its lock so
+   * that the copy is never torn by a concurrent {@link #update(FaceRecord)}.  Landmark proportions
+   * are not copied.
+   *
+   * @return whether the copied geometry describes a face
+   */
+  public boolean copyFrom(FaceGeometry source) {
+    synchronized (source) {
+      mValid = source.mValid;
+      mLeft = source.mLeft;
+      mTop = source.mTop;
+      mWidth = source.mWidth;
+      mHeight = source.mHeight;
+      mCenterX = source.mCenterX;
+      mCenterY = source.mCenterY;
+      mHalfWidth = source.mHalfWidth;
+      mHalfHeight = source.mHalfHeight;
+      mTimestampNanos = source.mTimestampNanos;
+      System.arraycopy(source.mHasLandmark, 0, mHasLandmark, 0, LANDMARK_TYPE_COUNT);
+      System.arraycopy(source.mLandmarks, 0, mLandmarks, 0, 2 * LANDMARK_TYPE_COUNT);
+      System.arraycopy(source.mVelocity, 0, mVelocity, 0, CHANNEL_COUNT);
+    }
+    return mValid;
+  }
+
+  /**
+   * Copies {@code source} like {@link #copyFrom(FaceGeometry)}, then moves the face box and
+   * landmarks along their estimated velocities to where they should be at {@code timeNanos},
+   * typically the Choreographer frame time of the frame being drawn.  Without smoothing this is a
+   * plain copy.
+   *
+   * @return whether the copied geometry describes a face
+   */
+  public boolean predictFrom(FaceGeometry source, long timeNanos) {
+    if (!copyFrom(source)) {
+      return false;
+    }
+    long ahead = Math.min(MAX_PREDICTION_NANOS, timeNanos - mTimestampNanos);
+    if (ahead <= 0) {
+      return true;
+    }
+
+    float seconds = ahead / 1e9f;
+    mLeft += mVelocity[CHANNEL_LEFT] * seconds;
+    mTop += mVelocity[CHANNEL_TOP] * seconds;
+    mWidth = Math.max(1, mWidth + mVelocity[CHANNEL_WIDTH] * seconds);
+    mHeight = Math.max(1, mHeight + mVelocity[CHANNEL_HEIGHT] * seconds);
+    updateCenter();
+    for (int type = 0; type < LANDMARK_TYPE_COUNT; ++type) {
+      if (mHasLandmark[type]) {
+        mLandmarks[2 * type] += mVelocity[CHANNEL_LANDMARKS + 2 * type] * seconds;
+        mLandmarks[2 * type + 1] += mVelocity[CHANNEL_LANDMARKS + 2 * type + 1] * seconds;
+      }
+    }
+    mTimestampNanos = timeNanos;
+    return true;
+  }
+
+  /**
+   * Moves the face box and all landmarks from preview to view coordinates, the landmarks in a
+   * single pass.  Meant for a draw copy, after {@link #copyFrom(FaceGeometry)} or
+   * {@link #predictFrom(FaceGeometry, long)}; the geometry must not be updated afterwards.
+   * When mirrored, the box left edge is still the smaller x.
+   */
+  public void mapToView(PreviewTransform transform) {
+    mCenterX = transform.mapX(mCenterX);
+    mCenterY = transform.mapY(mCenterY);
+    mHalfWidth = transform.scaleX(mHalfWidth);
+    mHalfHeight = transform.scaleY(mHalfHeight);
+    mWidth = 2.0f * mHalfWidth;
+    mHeight = 2.0f * mHalfHeight;
+    mLeft = mCenterX - mHalfWidth;
+    mTop = mCenterY - mHalfHeight;
+    transform.mapPoints(mLandmarks, 0, mLandmarks, 0, LANDMARK_TYPE_COUNT);
+  }
+
+  /**
+   * Replaces the raw values of the current detection with filtered ones.  Must be called with the
+   * lock held.
+   */
+  private void smooth() {
+    long time = mTimestampNanos;
+    mLeft = smooth(CHANNEL_LEFT, mLeft, time);
+    mTop = smooth(CHANNEL_TOP, mTop, time);
+    mWidth = smooth(CHANNEL_WIDTH, mWidth, time);
+    mHeight = smooth(CHANNEL_HEIGHT, mHeight, time);
+    updateCenter();
+
+    for (int type = 0; type < LANDMARK_TYPE_COUNT; ++type) {
+      int channel = CHANNEL_LANDMARKS + 2 * type;
+      if (mHasLandmark[type]) {
+        mLandmarks[2 * type] = smooth(channel, mLandmarks[2 * type], time);
+        mLandmarks[2 * type + 1] = smooth(channel + 1, mLandmarks[2 * type + 1], time);
+      } else {
+        mFilter.reset(channel);
+        mFilter.reset(channel + 1);
+        mVelocity[channel] = 0;
+        mVelocity[channel + 1] = 0;
+      }
+    }
+  }
+
+  private float smooth(int channel, float value, long timestampNanos) {
+    float filtered = mFilter.filter(channel, value, timestampNanos);
+    mVelocity[channel] = mFilter.getDerivative(channel);
+    return filtered;
+  }
+
+  private void updateCenter() {
+    mHalfWidth = mWidth / 2.0f;
+    mHalfHeight = mHeight / 2.0f;
+    mCenterX = mLeft + mHalfWidth;
+    mCenterY = mTop + mHalfHeight;
+  }
+
+  public boolean isValid() {
+    return mValid;
+  }
+
+  public float getLeft() {
+    return mLeft;
+  }
+
+  public float getTop() {
+    return mTop;
+  }
+
+  public float getWidth() {
+    return mWidth;
+  }
+
+  public float getHeight() {
+    return mHeight;
+  }
+
+  public float getCenterX() {
+    return mCenterX;
+  }
+
+  public float getCenterY() {
+    return mCenterY;
+  }
+
+  public float getHalfWidth() {
+    return mHalfWidth;
+  }
+
+  public float getHalfHeight() {
+    return mHalfHeight;
+  }
+
+  /**
+   * Returns the time the geometry describes, on the {@link System#nanoTime()} clock.
+   */
+  public long getTimestampNanos() {
+    return mTimestampNanos;
+  }
+
+  /**
+   * Returns whether a position is known for the landmark, either detected in the current frame
+   * or estimated from an earlier one.
+   */
+  public boolean hasLandmark(int type) {
+    return mHasLandmark[type];
+  }
+
+  public float getLandmarkX(int type) {
+    return mLandmarks[2 * type];
+  }
+
+  public float getLandmarkY(int type) {
+    return mLandmarks[2 * type + 1];
+  }
+}
@@ -0,0 +1,88 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+/**
+ * The One Euro filter of Casiez, Roussel and Vogel (CHI 2012), over several independent
+ * channels.  Each channel is a first-order low-pass filter whose cutoff frequency rises with the
+ * filtered speed of the signal: slow movements are smoothed heavily to remove jitter, fast ones
+ * lightly to keep lag down.  The filtered speed is kept as well, so that the signal can be
+ * extrapolated.<p>
+ *
+ * State is held in primitive arrays; filtering never allocates.
+ */
+final class OneEuroFilter {
+  private final float mMinCutoff;
+  private final float mBeta;
+  private final float mDerivativeCutoff;
+
+  private final boolean[] mHasValue;
+  private final float[] mValue;
+  private final float[] mDerivative;
+  private final long[] mTimestampNanos;
+
+  /**
+   * @param minCutoff cutoff frequency in Hz when the signal is still; lower means less jitter
+   * @param beta how quickly the cutoff rises with speed; higher means less lag
+   * @param derivativeCutoff cutoff frequency in Hz of the speed estimate
+   */
+  OneEuroFilter(int channels, float minCutoff, float beta, float derivativeCutoff) {
+    mMinCutoff = minCutoff;
+    mBeta = beta;
+    mDerivativeCutoff = derivativeCutoff;
+    mHasValue = new boolean[channels];
+    mValue = new float[channels];
+    mDerivative = new float[channels];
+    mTimestampNanos = new long[channels];
+  }
+
+  /**
+   * Filters a new sample of a channel.  The first sample, and any sample that is not newer than
+   * the previous one, is taken as is.
+   *
+   * @return the filtered value
+   */
+  float filter(int channel, float value, long timestampNanos) {
+    if (!mHasValue[channel] || timestampNanos <= mTimestampNanos[channel]) {
+      if (!mHasValue[channel]) {
+        mDerivative[channel] = 0;
+      }
+      mHasValue[channel] = true;
+      mValue[channel] = value;
+      mTimestampNanos[channel] = timestampNanos;
+      return value;
+    }
+
+    float elapsed = (timestampNanos - mTimestampNanos[channel]) / 1e9f;
+    float derivative = (value - mValue[channel]) / elapsed;
+    mDerivative[channel] +=
+        alpha(elapsed, mDerivativeCutoff) * (derivative - mDerivative[channel]);
+    float cutoff = mMinCutoff + mBeta * Math.abs(mDerivative[channel]);
+    mValue[channel] += alpha(elapsed, cutoff) * (value - mValue[channel]);
+    mTimestampNanos[channel] = timestampNanos;
+    return mValue[channel];
+  }
+
+  /**
+   * Returns the filtered rate of change of a channel, in units per second.
+   */
+  float getDerivative(int channel) {
+    return mDerivative[channel];
+  }
+
+  /**
+   * Forgets a channel, e.g., when a landmark has not been seen for a while.
+   */
+  void reset(int channel) {
+    mHasValue[channel] = false;
+  }
+
+  void reset() {
+    for (int channel = 0; channel < mHasValue.length; ++channel) {
+      mHasValue[channel] = false;
+    }
+  }
+
+  private static float alpha(float elapsedSeconds, float cutoff) {
+    float tau = 1.0f / (2.0f * (float) Math.PI * cutoff);
+    return 1.0f / (1.0f + tau / elapsedSeconds);
+  }
+}
@@ -0,0 +1,242 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Process;
+import android.util.Log;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds the sticker atlases on a background thread so that startup can go on with the camera
+ * and detector setup in the meantime, and so that drawing never waits for a decode.<p>
+ *
+ * Each sticker is decoded with {@link BitmapFactory.Options#inSampleSize} set to the smallest
+ * power-of-two reduction that still covers the bucket size, then scaled to the bucket and packed
+ * into the atlas.  The full-resolution image is never held in memory.  Stickers are never scaled
+ * up, so before the first atlas the sticker sizes are read and no bucket larger than they need is
+ * built.
+ */
+public class StickerAssetLoader implements StickerAssets.AtlasBuilder {
+  private static final String TAG = "StickerAssetLoader";
+
+  // Keeps filtering at the sticker edges from sampling a neighbouring sticker.
+  private static final int ATLAS_PADDING = 2;
+
+  /**
+   * Notified on the loader thread once the initial atlas has been built, or could not be.
+   */
+  public interface Listener {
+    void onAssetsLoaded(StickerAssets assets);
+
+    void onAssetsFailed(StickerAssets assets);
+  }
+
+  private final Resources mResources;
+  private final StickerAssets mAssets;
+  private final ExecutorService mExecutor;
+  private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+  public StickerAssetLoader(Resources resources, StickerAssets assets) {
+    mResources = resources;
+    mAssets = assets;
+    mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        return new Thread(runnable, "StickerAssetLoader");
+      }
+    });
+    mAssets.setAtlasBuilder(this);
+  }
+
+  /**
+   * Starts building the atlas for stickers of about {@code expectedSize} pixels, the size a
+   * sticker is expected to be drawn at before any face has been seen.  Other buckets are built on
+   * demand.
+   */
+  public void load(int expectedSize, final Listener listener) {
+    final int bucket = StickerAssets.bucketFor(expectedSize);
+    mExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        int stickerSize = readStickerSize();
+        if (stickerSize > 0) {
+          mAssets.setStickerSize(stickerSize);
+        }
+        boolean built = buildAtlas(bucket);
+        if (listener == null) {
+          return;
+        }
+        if (built) {
+          listener.onAssetsLoaded(mAssets);
+        } else {
+          listener.onAssetsFailed(mAssets);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void requestAtlas(final int bucket) {
+    if (mExecutor.isShutdown()) {
+      return;
+    }
+    mExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        buildAtlas(bucket);
+      }
+    });
+  }
+
+  /**
+   * Stops the loader thread.  A build that is already running is allowed to finish.
+   */
+  public void shutdown() {
+    mAssets.setAtlasBuilder(null);
+    mExecutor.shutdown();
+  }
+
+  /**
+   * Builds and publishes the atlas for a bucket, unless it is already there.
+   *
+   * @return false if a sticker could not be decoded, in which case the bucket is not asked for
+   *     again
+   */
+  private boolean buildAtlas(int bucket) {
+    // A bucket asked for before the sticker size was known may be larger than the stickers.
+    bucket = mAssets.capBucket(bucket);
+    if (mAssets.hasAtlas(bucket)) {
+      return true;
+    }
+    if (mAssets.hasFailed(bucket)) {
+      return false;
+    }
+    int size = StickerAssets.BUCKET_SIZES[bucket];
+    int count = mAssets.size();
+    Bitmap[] stickers = new Bitmap[count];
+    int[] widths = new int[count];
+    int[] heights = new int[count];
+    for (int id = 0; id < count; ++id) {
+      stickers[id] = decode(StickerAssets.RESOURCES[id], size);
+      if (stickers[id] == null) {
+        for (int decoded = 0; decoded < id; ++decoded) {
+          stickers[decoded].recycle();
+        }
+        mAssets.onAtlasFailed(bucket);
+        return false;
+      }
+      widths[id] = stickers[id].getWidth();
+      heights[id] = stickers[id].getHeight();
+    }
+
+    int[] xs = new int[count];
+    int[] ys = new int[count];
+    int atlasWidth = AtlasPacker.chooseWidth(widths, heights, ATLAS_PADDING);
+    int atlasHeight = AtlasPacker.pack(atlasWidth, widths, heights, ATLAS_PADDING, xs, ys);
+
+    Bitmap atlas = Bitmap.createBitmap(atlasWidth, atlasHeight, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(atlas);
+    Rect[] regions = new Rect[count];
+    for (int id = 0; id < count; ++id) {
+      canvas.drawBitmap(stickers[id], xs[id], ys[id], null);
+      regions[id] = new Rect(xs[id], ys[id], xs[id] + widths[id], ys[id] + heights[id]);
+      stickers[id].recycle();
+    }
+
+    mAssets.putAtlas(bucket, new StickerAtlas(atlas, regions, atlas.getByteCount()));
+    Log.d(TAG, "Built " + size + "px sticker atlas (" + atlasWidth + "x" + atlasHeight
+        + "), cache now " + mAssets.getByteCount() + " bytes");
+    return true;
+  }
+
+  /**
+   * Returns the longest side, in pixels, of the largest sticker, or 0 if a sticker's size cannot
+   * be read.  Only the image headers are decoded.
+   */
+  private int readStickerSize() {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    int size = 0;
+    for (int resourceId : StickerAssets.RESOURCES) {
+      options.outWidth = 0;
+      options.outHeight = 0;
+      decodeStream(resourceId, options);
+      if (options.outWidth <= 0 || options.outHeight <= 0) {
+        return 0;
+      }
+      size = Math.max(size, Math.max(options.outWidth, options.outHeight));
+    }
+    return size;
+  }
+
+  /**
+   * Decodes a sticker so that its longest side is {@code size} pixels, or its full size if that
+   * is smaller.
+   */
+  private Bitmap decode(int resourceId, int size) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    decodeStream(resourceId, options);
+    if (options.outWidth <= 0 || options.outHeight <= 0) {
+      Log.w(TAG, "Unable to read the size of sticker resource " + resourceId);
+      return null;
+    }
+
+    float scale = Math.min(1.0f, (float) size / Math.max(options.outWidth, options.outHeight));
+    int targetWidth = Math.max(1, Math.round(options.outWidth * scale));
+    int targetHeight = Math.max(1, Math.round(options.outHeight * scale));
+
+    options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+        targetWidth, targetHeight);
+    options.inJustDecodeBounds = false;
+    Bitmap decoded = decodeStream(resourceId, options);
+    if (decoded == null
+        || (decoded.getWidth() == targetWidth && decoded.getHeight() == targetHeight)) {
+      return decoded;
+    }
+
+    Bitmap scaled = Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+    new Canvas(scaled).drawBitmap(decoded, null, new Rect(0, 0, targetWidth, targetHeight),
+        mScalePaint);
+    decoded.recycle();
+    return scaled;
+  }
+
+  private Bitmap decodeStream(int resourceId, BitmapFactory.Options options) {
+    InputStream stream = mResources.openRawResource(resourceId);
+    try {
+      return BitmapFactory.decodeStream(stream, null, options);
+    } finally {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to close sticker resource " + resourceId, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the largest power-of-two sample size that keeps both dimensions of the decoded image
+   * at least as large as the target.
+   */
+  static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+    int sampleSize = 1;
+    if (targetWidth <= 0 || targetHeight <= 0) {
+      return sampleSize;
+    }
+    while ((width / (sampleSize * 2)) >= targetWidth
+        && (height / (sampleSize * 2)) >= targetHeight) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+}
@@ -0,0 +1,199 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import com.ahmednts.googlevisiontest.R;
+
+/**
+ * The sticker bitmaps shared by every tracker, kept as texture atlases.<p>
+ *
+ * All stickers are packed into one atlas per size bucket, each pre-scaled so that its longest side
+ * matches the bucket.  Drawing picks the smallest bucket that still covers the destination size,
+ * so bitmaps are never scaled down from their full resolution on every frame.  Atlases are built in
+ * the background by {@link StickerAssetLoader}; until the wanted bucket is ready the nearest
+ * loaded one is used, and nothing is drawn before the first atlas is published.<p>
+ *
+ * Stickers are never scaled up, so buckets larger than the one covering the stickers' own size
+ * would only hold copies of it; once {@link #setStickerSize(int)} is known, no larger bucket is
+ * used.<p>
+ *
+ * Memory is bounded by a byte budget rather than by the number of stickers: when a new atlas
+ * pushes the total over budget, the least recently drawn buckets are dropped and rebuilt if they
+ * are needed again.
+ */
+public class StickerAssets {
+  public static final int LION = 0;
+  public static final int HAT = 1;
+
+  /**
+   * Raw resource for each sticker id.
+   */
+  static final int[] RESOURCES = { R.raw.image_lion, R.raw.image_hat };
+
+  /**
+   * Longest side, in pixels, of a sticker in each size bucket.
+   */
+  static final int[] BUCKET_SIZES = { 64, 128, 256, 512, 1024 };
+
+  /**
+   * Builds the atlas for a size bucket, asynchronously.
+   */
+  interface AtlasBuilder {
+    void requestAtlas(int bucket);
+  }
+
+  private final int mByteBudget;
+
+  // Guarded by this.
+  private final StickerAtlas[] mAtlases = new StickerAtlas[BUCKET_SIZES.length];
+  private final long[] mLastUsed = new long[BUCKET_SIZES.length];
+  private final boolean[] mRequested = new boolean[BUCKET_SIZES.length];
+  private final boolean[] mFailed = new boolean[BUCKET_SIZES.length];
+  private int mLargestBucket = BUCKET_SIZES.length - 1;
+  private long mUseCounter;
+  private int mByteCount;
+  private AtlasBuilder mBuilder;
+
+  public StickerAssets(int byteBudget) {
+    mByteBudget = byteBudget;
+  }
+
+  public int size() {
+    return RESOURCES.length;
+  }
+
+  /**
+   * Finds where to draw a sticker from for a destination of the given size.  Never allocates.
+   *
+   * @return false if no atlas has been loaded yet
+   */
+  public synchronized boolean findRegion(int id, int destWidth, int destHeight,
+      StickerRegion out) {
+    int wanted = Math.min(bucketFor(Math.max(destWidth, destHeight)), mLargestBucket);
+    int bucket = wanted;
+    if (mAtlases[wanted] == null) {
+      requestAtlas(wanted);
+      bucket = nearestLoadedBucket(wanted);
+      if (bucket < 0) {
+        return false;
+      }
+    }
+
+    StickerAtlas atlas = mAtlases[bucket];
+    mLastUsed[bucket] = ++mUseCounter;
+    out.bitmap = atlas.bitmap;
+    out.source.set(atlas.regions[id]);
+    return true;
+  }
+
+  /**
+   * Sets the longest side, in pixels, of the largest sticker as decoded at full size.  Buckets
+   * above the smallest one that covers it are no longer used.
+   */
+  synchronized void setStickerSize(int size) {
+    mLargestBucket = bucketFor(size);
+  }
+
+  /**
+   * Returns {@code bucket}, or the largest bucket worth building if it is larger.
+   */
+  synchronized int capBucket(int bucket) {
+    return Math.min(bucket, mLargestBucket);
+  }
+
+  synchronized void setAtlasBuilder(AtlasBuilder builder) {
+    mBuilder = builder;
+  }
+
+  /**
+   * Publishes the atlas for a bucket, evicting the least recently used other buckets until the
+   * total fits the byte budget again.
+   */
+  synchronized void putAtlas(int bucket, StickerAtlas atlas) {
+    mRequested[bucket] = false;
+    if (mAtlases[bucket] != null) {
+      mByteCount -= mAtlases[bucket].byteCount;
+    }
+    mAtlases[bucket] = atlas;
+    mLastUsed[bucket] = ++mUseCounter;
+    mByteCount += atlas.byteCount;
+
+    while (mByteCount > mByteBudget) {
+      int victim = leastRecentlyUsedBucket(bucket);
+      if (victim < 0) {
+        break;
+      }
+      // The bitmap is not recycled; a draw on the UI thread may still be using it.
+      mByteCount -= mAtlases[victim].byteCount;
+      mAtlases[victim] = null;
+    }
+  }
+
+  /**
+   * Notes that the atlas for a bucket could not be built.  It is not asked for again, since a
+   * sticker that failed to decode would most likely fail again on every draw; draws fall back on
+   * the nearest bucket that was built.
+   */
+  synchronized void onAtlasFailed(int bucket) {
+    mRequested[bucket] = false;
+    mFailed[bucket] = true;
+  }
+
+  synchronized boolean hasFailed(int bucket) {
+    return mFailed[bucket];
+  }
+
+  synchronized boolean hasAtlas(int bucket) {
+    return mAtlases[bucket] != null;
+  }
+
+  synchronized int getByteCount() {
+    return mByteCount;
+  }
+
+  /**
+   * Returns the smallest bucket whose stickers are at least {@code size} pixels on their longest
+   * side, or the largest bucket if none is.
+   */
+  static int bucketFor(int size) {
+    for (int i = 0; i < BUCKET_SIZES.length; ++i) {
+      if (BUCKET_SIZES[i] >= size) {
+        return i;
+      }
+    }
+    return BUCKET_SIZES.length - 1;
+  }
+
+  private void requestAtlas(int bucket) {
+    if (mBuilder != null && !mRequested[bucket] && !mFailed[bucket]) {
+      mRequested[bucket] = true;
+      mBuilder.requestAtlas(bucket);
+    }
+  }
+
+  /**
+   * Prefers larger buckets, which only need to be scaled down, over smaller ones.
+   */
+  private int nearestLoadedBucket(int wanted) {
+    for (int i = wanted + 1; i < BUCKET_SIZES.length; ++i) {
+      if (mAtlases[i] != null) {
+        return i;
+      }
+    }
+    for (int i = wanted - 1; i >= 0; --i) {
+      if (mAtlases[i] != null) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int leastRecentlyUsedBucket(int exclude) {
+    int victim = -1;
+    for (int i = 0; i < BUCKET_SIZES.length; ++i) {
+      if (i != exclude && mAtlases[i] != null
+          && (victim < 0 || mLastUsed[i] < mLastUsed[victim])) {
+        victim = i;
+      }
+    }
+    return victim;
+  }
+}
@@ -0,0 +1,22 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * One atlas bitmap holding every sticker pre-scaled to a single size bucket.
+ */
+final class StickerAtlas {
+  final Bitmap bitmap;
+  /**
+   * The source rectangle of each sticker within {@link #bitmap}, indexed by sticker id.
+   */
+  final Rect[] regions;
+  final int byteCount;
+
+  StickerAtlas(Bitmap bitmap, Rect[] regions, int byteCount) {
+    this.bitmap = bitmap;
+    this.regions = regions;
+    this.byteCount = byteCount;
+  }
+}
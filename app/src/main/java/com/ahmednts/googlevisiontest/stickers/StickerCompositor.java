@@ -0,0 +1,55 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import com.ahmednts.googlevisiontest.batch.BatchPipeline;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+
+/**
+ * Draws the selected stickers straight onto a still image, laid out over each face the way the
+ * live overlay lays them out, for the compositing stage of a {@link BatchPipeline}.  Stickers
+ * come from the same atlases as on the overlay; drawing waits for nothing, so at least one atlas
+ * must have been loaded before the first image.  Safe to call from several threads at once.
+ */
+public class StickerCompositor implements BatchPipeline.Compositor<Bitmap> {
+  private final StickerAssets mAssets;
+  private final StickerSet mStickers;
+  private final Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+  public StickerCompositor(StickerAssets assets, StickerSet stickers) {
+    mAssets = assets;
+    mStickers = stickers;
+  }
+
+  @Override
+  public Bitmap composite(Bitmap image, FrameRecord faces) {
+    Canvas canvas = new Canvas(image);
+    FaceGeometry geometry = new FaceGeometry();
+    Bounds bounds = new Bounds();
+    Rect dest = new Rect();
+    StickerRegion region = new StickerRegion();
+    for (int i = 0; i < faces.getFaceCount(); ++i) {
+      geometry.reset();
+      geometry.update(faces.getFace(i), 0);
+      if (mStickers.contains(StickerSet.FACE)) {
+        StickerFaceGraphic.layout(geometry, bounds);
+        draw(canvas, StickerAssets.LION, bounds, dest, region);
+      }
+      if (mStickers.contains(StickerSet.HAT)) {
+        StickerHatGraphic.layout(geometry, bounds);
+        draw(canvas, StickerAssets.HAT, bounds, dest, region);
+      }
+    }
+    return image;
+  }
+
+  private void draw(Canvas canvas, int sticker, Bounds bounds, Rect dest, StickerRegion region) {
+    dest.set(bounds.getLeft(), bounds.getTop(), bounds.getRight(), bounds.getBottom());
+    if (mAssets.findRegion(sticker, dest.width(), dest.height(), region)) {
+      canvas.drawBitmap(region.bitmap, region.source, dest, mBitmapPaint);
+    }
+  }
+}
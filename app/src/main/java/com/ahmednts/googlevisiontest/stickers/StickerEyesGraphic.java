@@ -18,28 +18,31 @@ package com.ahmednts.googlevisiontest.stickers;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PointF;
 import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
-import com.google.android.gms.vision.face.Face;
+import com.ahmednts.googlevisiontest.face.DetectorFeatures;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
 import com.google.android.gms.vision.face.Landmark;
-import java.util.HashMap;
-import java.util.Map;
 
 public class StickerEyesGraphic extends GraphicOverlay.Graphic {
+  // The eyes are drawn over the eye landmarks, but drawing them is switched off.  While it is,
+  // the detector is not asked for landmarks and the graphic neither predicts the face nor
+  // invalidates any part of the overlay.
+  private static final boolean DRAW_EYES = false;
+  public static final int DETECTOR_FEATURES =
+      DRAW_EYES ? DetectorFeatures.LANDMARKS : DetectorFeatures.NONE;
+
   private static final float EYE_RADIUS_PROPORTION = 0.45f;
+  private static final float EYE_OUTLINE_WIDTH = 5.0f;
 
-  private volatile Face mFace;
+  private volatile FaceGeometry mGeometry;
 
   private Paint mEyeWhitesPaint;
   private Paint mEyeOutlinePaint;
 
-  private volatile PointF mLeftPosition;
-  private volatile PointF mRightPosition;
-
-  // Record the previously seen proportions of the landmark locations relative to the bounding box
-  // of the face.  These proportions can be used to approximate where the landmarks are within the
-  // face bounding box if the eye landmark is missing in a future update.
-  private Map<Integer, PointF> mPreviousProportions = new HashMap<>();
+  // Only used on the drawing thread, from computeBounds() and draw().
+  private final FaceGeometry mDrawGeometry = new FaceGeometry();
+  private final Bounds mLayoutBounds = new Bounds();
 
   public StickerEyesGraphic(GraphicOverlay overlay) {
     super(overlay);
@@ -51,52 +54,35 @@ public class StickerEyesGraphic extends GraphicOverlay.Graphic {
     mEyeOutlinePaint = new Paint();
     mEyeOutlinePaint.setColor(Color.BLACK);
     mEyeOutlinePaint.setStyle(Paint.Style.STROKE);
-    mEyeOutlinePaint.setStrokeWidth(5);
+    mEyeOutlinePaint.setStrokeWidth(EYE_OUTLINE_WIDTH);
   }
 
   /**
    * Updates the eye positions and state from the detection of the most recent frame.  Invalidates
-   * the relevant portions of the overlay to trigger a redraw.
+   * the relevant portions of the overlay to trigger a redraw.  Eyes that were not detected in the
+   * frame are placed where the geometry last saw them relative to the face bounding box.
    */
-  public void updateEyes(Face face) {
-    mFace = face;
-
-    updatePreviousProportions(face);
-
-    mLeftPosition = getLandmarkPosition(face, Landmark.LEFT_EYE);
-    mRightPosition = getLandmarkPosition(face, Landmark.RIGHT_EYE);
-
-    postInvalidate();
-  }
+  public void updateEyes(FaceGeometry geometry) {
+    mGeometry = geometry;
 
-  private void updatePreviousProportions(Face face) {
-    for (Landmark landmark : face.getLandmarks()) {
-      PointF position = landmark.getPosition();
-      float xProp = (position.x - face.getPosition().x) / face.getWidth();
-      float yProp = (position.y - face.getPosition().y) / face.getHeight();
-      mPreviousProportions.put(landmark.getType(), new PointF(xProp, yProp));
+    if (DRAW_EYES) {
+      postInvalidate();
     }
   }
 
-  /**
-   * Finds a specific landmark position, or approximates the position based on past observations
-   * if it is not present.
-   */
-  private PointF getLandmarkPosition(Face face, int landmarkId) {
-    for (Landmark landmark : face.getLandmarks()) {
-      if (landmark.getType() == landmarkId) {
-        return landmark.getPosition();
-      }
+  @Override
+  protected boolean computeBounds(PreviewTransform transform, long frameTimeNanos, Bounds out) {
+    if (!DRAW_EYES) {
+      return true;
     }
-
-    PointF prop = mPreviousProportions.get(landmarkId);
-    if (prop == null) {
-      return null;
+    FaceGeometry geometry = mGeometry;
+    if (geometry != null && mDrawGeometry.predictFrom(geometry, frameTimeNanos)
+        && hasEyes(mDrawGeometry)) {
+      mDrawGeometry.mapToView(transform);
+      layoutEye(mDrawGeometry, Landmark.LEFT_EYE, out);
+      layoutEye(mDrawGeometry, Landmark.RIGHT_EYE, out);
     }
-
-    float x = face.getPosition().x + (prop.x * face.getWidth());
-    float y = face.getPosition().y + (prop.y * face.getHeight());
-    return new PointF(x, y);
+    return true;
   }
 
   /**
@@ -106,37 +92,59 @@ public class StickerEyesGraphic extends GraphicOverlay.Graphic {
    */
   @Override
   public void draw(Canvas canvas) {
-    Face face = mFace;
-    if (face == null) {
+    if (!DRAW_EYES) {
+      return;
+    }
+    FaceGeometry geometry = mGeometry;
+    if (geometry == null || !mDrawGeometry.predictFrom(geometry, getFrameTimeNanos())) {
       return;
     }
 
-    PointF detectLeftPosition = mLeftPosition;
-    PointF detectRightPosition = mRightPosition;
-    if ((detectLeftPosition == null) || (detectRightPosition == null)) {
+    if (!hasEyes(mDrawGeometry)) {
       return;
     }
+    mDrawGeometry.mapToView(getTransform());
 
-    PointF leftPosition =
-        new PointF(translateX(detectLeftPosition.x), translateY(detectLeftPosition.y));
-    PointF rightPosition =
-        new PointF(translateX(detectRightPosition.x), translateY(detectRightPosition.y));
+    mLayoutBounds.setEmpty();
+    layoutEye(mDrawGeometry, Landmark.LEFT_EYE, mLayoutBounds);
+    layoutEye(mDrawGeometry, Landmark.RIGHT_EYE, mLayoutBounds);
+    addDrawnBounds(mLayoutBounds);
 
-    // Use the inter-eye distance to set the size of the eyes.
-    float distance = (float) Math.sqrt(Math.pow(rightPosition.x - leftPosition.x, 2) +
-        Math.pow(rightPosition.y - leftPosition.y, 2));
-    float eyeRadius = EYE_RADIUS_PROPORTION * distance;
+    drawEye(canvas, mDrawGeometry, Landmark.LEFT_EYE);
+    drawEye(canvas, mDrawGeometry, Landmark.RIGHT_EYE);
+  }
 
-    //drawEye(canvas, leftPosition, eyeRadius);
-    //drawEye(canvas, rightPosition, eyeRadius);
+  private static boolean hasEyes(FaceGeometry geometry) {
+    return geometry.hasLandmark(Landmark.LEFT_EYE) && geometry.hasLandmark(Landmark.RIGHT_EYE);
   }
 
   /**
-   * Draws the eye, either closed or open with the iris in the current position.
+   * Uses the inter-eye distance to set the size of the eyes.
    */
-  private void drawEye(Canvas canvas, PointF eyePosition, float eyeRadius) {
+  private static float eyeRadius(FaceGeometry geometry) {
+    float dx = geometry.getLandmarkX(Landmark.RIGHT_EYE) - geometry.getLandmarkX(Landmark.LEFT_EYE);
+    float dy = geometry.getLandmarkY(Landmark.RIGHT_EYE) - geometry.getLandmarkY(Landmark.LEFT_EYE);
+    return EYE_RADIUS_PROPORTION * (float) Math.sqrt(dx * dx + dy * dy);
+  }
 
-    canvas.drawCircle(eyePosition.x, eyePosition.y, eyeRadius, mEyeWhitesPaint);
-    canvas.drawCircle(eyePosition.x, eyePosition.y, eyeRadius, mEyeOutlinePaint);
+  /**
+   * Adds the area of one eye, outline included, to {@code out}.
+   */
+  private static void layoutEye(FaceGeometry geometry, int eye, Bounds out) {
+    float x = geometry.getLandmarkX(eye);
+    float y = geometry.getLandmarkY(eye);
+    float extent = eyeRadius(geometry) + EYE_OUTLINE_WIDTH / 2;
+    out.union(x - extent, y - extent, x + extent, y + extent);
+  }
+
+  /**
+   * Draws the eye, either closed or open with the iris in the current position.
+   */
+  private void drawEye(Canvas canvas, FaceGeometry geometry, int eye) {
+    float eyeX = geometry.getLandmarkX(eye);
+    float eyeY = geometry.getLandmarkY(eye);
+    float eyeRadius = eyeRadius(geometry);
+    canvas.drawCircle(eyeX, eyeY, eyeRadius, mEyeWhitesPaint);
+    canvas.drawCircle(eyeX, eyeY, eyeRadius, mEyeOutlinePaint);
   }
 }
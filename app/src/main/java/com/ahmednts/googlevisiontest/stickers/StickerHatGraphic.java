@@ -15,29 +15,40 @@
  */
 package com.ahmednts.googlevisiontest.stickers;
 
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
-import com.google.android.gms.vision.face.Face;
+import com.ahmednts.googlevisiontest.face.DetectorFeatures;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
 
 public class StickerHatGraphic extends GraphicOverlay.Graphic {
+  // Drawn from the face box alone.
+  public static final int DETECTOR_FEATURES = DetectorFeatures.NONE;
+
   private static final float FACE_POSITION_RADIUS = 10.0f;
   private static final float BOX_STROKE_WIDTH = 5.0f;
 
-  private volatile Face mFace;
+  private volatile FaceGeometry mGeometry;
 
   private Paint mFacePositionPaint;
   private Paint mBoxPaint;
+  private Paint mBitmapPaint;
+
+  private StickerAssets mAssets;
 
-  private Bitmap mBitmap;
+  // Only used on the drawing thread, from computeBounds() and draw().
+  private final FaceGeometry mDrawGeometry = new FaceGeometry();
+  private final Bounds mLayoutBounds = new Bounds();
+  private final Rect mDestBounds = new Rect();
+  private final StickerRegion mRegion = new StickerRegion();
 
-  public StickerHatGraphic(GraphicOverlay overlay, Bitmap bitmap) {
+  public StickerHatGraphic(GraphicOverlay overlay, StickerAssets assets) {
     super(overlay);
 
-    mBitmap = bitmap;
+    mAssets = assets;
 
     mFacePositionPaint = new Paint();
     mFacePositionPaint.setColor(Color.RED);
@@ -46,54 +57,67 @@ public class StickerHatGraphic extends GraphicOverlay.Graphic {
     mBoxPaint.setColor(Color.RED);
     mBoxPaint.setStyle(Paint.Style.STROKE);
     mBoxPaint.setStrokeWidth(BOX_STROKE_WIDTH);
+
+    mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
   }
 
-  public void updateEyes(Face face) {
-    mFace = face;
+  public void updateEyes(FaceGeometry geometry) {
+    mGeometry = geometry;
 
     postInvalidate();
   }
 
+  @Override
+  protected boolean computeBounds(PreviewTransform transform, long frameTimeNanos, Bounds out) {
+    FaceGeometry geometry = mGeometry;
+    if (geometry != null && mDrawGeometry.predictFrom(geometry, frameTimeNanos)) {
+      mDrawGeometry.mapToView(transform);
+      layout(mDrawGeometry, out);
+    }
+    return true;
+  }
+
   @Override
   public void draw(Canvas canvas) {
-    Face face = mFace;
-    if (face == null) {
+    FaceGeometry geometry = mGeometry;
+    if (geometry == null || !mDrawGeometry.predictFrom(geometry, getFrameTimeNanos())) {
       return;
     }
+    mDrawGeometry.mapToView(getTransform());
+    layout(mDrawGeometry, mLayoutBounds);
+    addDrawnBounds(mLayoutBounds);
+
+    mDestBounds.set(mLayoutBounds.getLeft(), mLayoutBounds.getTop(), mLayoutBounds.getRight(),
+        mLayoutBounds.getBottom());
+    // Draw from the pre-scaled atlas closest to the destination size.
+    if (!mAssets.findRegion(StickerAssets.HAT, mDestBounds.width(), mDestBounds.height(),
+        mRegion)) {
+      return;
+    }
+    canvas.drawBitmap(mRegion.bitmap, mRegion.source, mDestBounds, mBitmapPaint);
+  }
 
+  /**
+   * Places the sticker for a face in view coordinates.
+   */
+  static void layout(FaceGeometry geometry, Bounds out) {
     // Draws a circle at the position of the detected face, with the face's track id below.
-    float x = translateX(face.getPosition().x + face.getWidth() / 2);
-    float y = translateY(face.getPosition().y + face.getHeight() / 2);
+    float x = geometry.getCenterX();
+    float y = geometry.getCenterY();
     //canvas.drawCircle(x, y, FACE_POSITION_RADIUS, mFacePositionPaint);
 
     // Draws a bounding box around the face.
-    float xOffset = scaleX(face.getWidth() / 2.0f);
-    float yOffset = scaleY(face.getHeight() / 2.0f);
+    float xOffset = geometry.getHalfWidth();
+    float yOffset = geometry.getHalfHeight();
     float left = x - xOffset;
     float top = y - yOffset;
     float right = x + xOffset;
     float bottom = y + yOffset;
     //canvas.drawRect(left, top, right, bottom, mBoxPaint);
 
-    double viewWidth = canvas.getWidth();
-    double viewHeight = canvas.getHeight();
-    double imageWidth = mBitmap.getWidth();
-    double imageHeight = mBitmap.getHeight();
-    double scale = Math.min(viewWidth / imageWidth, viewHeight / imageHeight);
-
-    double finalWidth = imageWidth * scale / 2;
-    double finalHeight = imageHeight * scale / 2;
-
-    //Rect destBounds =
-    //    new Rect((int) (x - finalWidth / 2)
-    //        , (int) (y - finalHeight / 2)
-    //        , (int) (x + finalWidth / 2)
-    //        , (int) (y + finalHeight / 2));
-
     double newTop = top - (bottom / 3);
     double newBottom = top + 150;
 
-    Rect destBounds = new Rect((int) left, (int) newTop, (int) right, (int) newBottom);
-    canvas.drawBitmap(mBitmap, null, destBounds, null);
+    out.set(left, (float) newTop, right, (float) newBottom);
   }
 }
@@ -0,0 +1,14 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * Where to draw a sticker from: an atlas bitmap and the sticker's source rectangle within it.
+ * Filled in by {@link StickerAssets#findRegion(int, int, int, StickerRegion)} so that stickers can
+ * reuse a single instance across draws.
+ */
+final class StickerRegion {
+  Bitmap bitmap;
+  final Rect source = new Rect();
+}
@@ -0,0 +1,78 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import com.ahmednts.googlevisiontest.face.DetectorFeatures;
+
+/**
+ * The stickers shown on every face, as a bit set of {@link #EYES}, {@link #FACE} and {@link #HAT},
+ * shared between the activity, which switches them, and the face trackers, which show them.
+ * Thread-safe.<p>
+ *
+ * The detector features the selection needs are the combination of what each selected sticker
+ * declares; {@link #setStickers(int)} reports whether they changed, since only then does the
+ * detector have to be rebuilt.
+ */
+public final class StickerSet {
+  public static final int EYES = 1;
+  public static final int FACE = 1 << 1;
+  public static final int HAT = 1 << 2;
+  public static final int ALL = EYES | FACE | HAT;
+
+  private volatile int mStickers;
+
+  public StickerSet(int stickers) {
+    mStickers = checkStickers(stickers);
+  }
+
+  public int getStickers() {
+    return mStickers;
+  }
+
+  public boolean contains(int sticker) {
+    return (mStickers & sticker) != 0;
+  }
+
+  /**
+   * Selects other stickers.
+   *
+   * @return whether the new selection needs other detector features than the old one
+   */
+  public synchronized boolean setStickers(int stickers) {
+    int old = mStickers;
+    mStickers = checkStickers(stickers);
+    return getDetectorFeatures(old) != getDetectorFeatures(stickers);
+  }
+
+  public int getDetectorFeatures() {
+    return getDetectorFeatures(mStickers);
+  }
+
+  /**
+   * Returns the detector features that cover all of the given stickers.  No stickers need no
+   * features.
+   */
+  public static int getDetectorFeatures(int stickers) {
+    int features = -1;
+    if ((stickers & EYES) != 0) {
+      features = combine(features, StickerEyesGraphic.DETECTOR_FEATURES);
+    }
+    if ((stickers & FACE) != 0) {
+      features = combine(features, StickerFaceGraphic.DETECTOR_FEATURES);
+    }
+    if ((stickers & HAT) != 0) {
+      features = combine(features, StickerHatGraphic.DETECTOR_FEATURES);
+    }
+    return features == -1 ? DetectorFeatures.NONE : features;
+  }
+
+  // -1 stands for no sticker yet, which grants everything and requires nothing.
+  private static int combine(int features, int sticker) {
+    return features == -1 ? sticker : DetectorFeatures.combine(features, sticker);
+  }
+
+  private static int checkStickers(int stickers) {
+    if ((stickers & ~ALL) != 0) {
+      throw new IllegalArgumentException("Unknown stickers: " + stickers);
+    }
+    return stickers;
+  }
+}
@@ -0,0 +1,95 @@
+package com.ahmednts.googlevisiontest;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CameraPipelineCacheTest {
+  private static final int BACK = 0;
+  private static final int FRONT = 1;
+
+  private final List<String> mReleased = new ArrayList<>();
+  private CameraPipelineCache<String> mCache;
+  private int mCreated;
+
+  @Before
+  public void setUp() {
+    mCache = new CameraPipelineCache<>(new CameraPipelineCache.Factory<String>() {
+      @Override
+      public String create(int facing) {
+        return (facing == FRONT ? "front-" : "back-") + mCreated++;
+      }
+
+      @Override
+      public void release(String pipeline) {
+        mReleased.add(pipeline);
+      }
+    });
+  }
+
+  @Test
+  public void switchingBackReusesPipeline() {
+    String front = mCache.activate(FRONT);
+    String back = mCache.activate(BACK);
+
+    assertSame(front, mCache.activate(FRONT));
+    assertSame(back, mCache.activate(BACK));
+    assertEquals(2, mCreated);
+    assertEquals(2, mCache.getHits());
+    assertEquals(2, mCache.getMisses());
+    assertTrue(mReleased.isEmpty());
+  }
+
+  @Test
+  public void releasesOnlyInactivePipeline() {
+    String front = mCache.activate(FRONT);
+    String back = mCache.activate(BACK);
+
+    assertEquals(1, mCache.releaseInactive());
+    assertEquals(0, mCache.releaseInactive());
+    assertEquals(1, mReleased.size());
+    assertEquals(front, mReleased.get(0));
+    assertFalse(mCache.isWarm(FRONT));
+    assertTrue(mCache.isWarm(BACK));
+    assertSame(back, mCache.activate(BACK));
+
+    // The released facing is built again when it is next used.
+    assertNotSame(front, mCache.activate(FRONT));
+    assertEquals(3, mCreated);
+  }
+
+  @Test
+  public void invalidateRebuildsActivePipeline() {
+    String front = mCache.activate(FRONT);
+    mCache.invalidate(FRONT);
+
+    assertEquals(-1, mCache.getActiveFacing());
+    assertEquals(front, mReleased.get(0));
+    assertNotSame(front, mCache.activate(FRONT));
+    assertEquals(FRONT, mCache.getActiveFacing());
+  }
+
+  @Test
+  public void releaseAllFreesEveryPipeline() {
+    mCache.activate(FRONT);
+    mCache.activate(BACK);
+    mCache.releaseAll();
+
+    assertEquals(2, mReleased.size());
+    assertEquals(2, mCache.getReleased());
+    assertFalse(mCache.isWarm(FRONT));
+    assertFalse(mCache.isWarm(BACK));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownFacing() {
+    mCache.activate(2);
+  }
+}
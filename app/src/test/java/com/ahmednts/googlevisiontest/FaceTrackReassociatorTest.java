@@ -0,0 +1,228 @@
+package com.ahmednts.googlevisiontest;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FaceTrackReassociatorTest {
+  private static final long MILLIS = 1000000L;
+  private static final long TTL_NANOS = 500 * MILLIS;
+  private static final float CELL_SIZE = 32;
+
+  private final List<RecordingListener> mCreated = new ArrayList<>();
+  private FaceTrackReassociator mReassociator;
+  private final FaceRecord mRecord = new FaceRecord();
+
+  @Before
+  public void setUp() {
+    mReassociator = new FaceTrackReassociator(new FaceTrackReassociator.Factory() {
+      @Override
+      public FaceTrackListener create(FaceRecord face) {
+        RecordingListener listener = new RecordingListener();
+        mCreated.add(listener);
+        return listener;
+      }
+    }, TTL_NANOS, CELL_SIZE);
+  }
+
+  @Test
+  public void briefOcclusionKeepsTheTracker() {
+    FaceTrackListener first = startTrack(1, 100, 50, 60, 1000 * MILLIS);
+    first.onMissing();
+    first.onDone();
+
+    RecordingListener tracker = mCreated.get(0);
+    assertEquals(0, tracker.mDone);
+    // Once from the detector and once to hide the stickers while parked.
+    assertEquals(2, tracker.mMissing);
+    assertEquals(1, mReassociator.getParkedCount());
+
+    startTrack(2, 106, 48, 62, 1200 * MILLIS);
+
+    assertEquals(1, mCreated.size());
+    assertEquals(1, tracker.mNewItems);
+    assertEquals(2, tracker.mUpdates);
+    assertEquals(0, mReassociator.getParkedCount());
+    assertEquals(1, mReassociator.getReassociations());
+  }
+
+  @Test
+  public void distantFaceGetsItsOwnTracker() {
+    startTrack(1, 100, 50, 60, 1000 * MILLIS).onDone();
+
+    startTrack(2, 200, 50, 60, 1100 * MILLIS);
+
+    assertEquals(2, mCreated.size());
+    assertEquals(1, mReassociator.getParkedCount());
+  }
+
+  @Test
+  public void differentSizeGetsItsOwnTracker() {
+    startTrack(1, 100, 50, 60, 1000 * MILLIS).onDone();
+
+    startTrack(2, 90, 40, 100, 1100 * MILLIS);
+
+    assertEquals(2, mCreated.size());
+  }
+
+  @Test
+  public void parkedTrackEndsAfterTtl() {
+    startTrack(1, 100, 50, 60, 1000 * MILLIS).onDone();
+
+    // Far away, so it does not match, but its time expires the parked track.
+    startTrack(2, 300, 50, 60, 1000 * MILLIS + TTL_NANOS + 1);
+
+    assertEquals(1, mCreated.get(0).mDone);
+    assertEquals(0, mReassociator.getParkedCount());
+
+    startTrack(3, 100, 50, 60, 1000 * MILLIS + TTL_NANOS + 2);
+    assertEquals(3, mCreated.size());
+  }
+
+  @Test
+  public void picksTheNearestParkedTrack() {
+    FaceTrackListener first = startTrack(1, 100, 50, 60, 1000 * MILLIS);
+    FaceTrackListener second = startTrack(2, 125, 50, 60, 1000 * MILLIS);
+    first.onDone();
+    second.onDone();
+
+    startTrack(3, 120, 50, 60, 1100 * MILLIS);
+
+    assertEquals(2, mCreated.size());
+    assertEquals(2, mCreated.get(1).mUpdates);
+    assertEquals(1, mCreated.get(0).mUpdates);
+  }
+
+  @Test
+  public void trackThatNeverUpdatedEndsAtOnce() {
+    FaceTrackListener track = mReassociator.newTrack();
+    track.onNewItem(1, face(1, 100, 50, 60, 1000 * MILLIS));
+    track.onDone();
+
+    assertEquals(1, mCreated.get(0).mDone);
+    assertEquals(0, mReassociator.getParkedCount());
+  }
+
+  @Test
+  public void endAllEndsParkedTracks() {
+    startTrack(1, 100, 50, 60, 1000 * MILLIS).onDone();
+    startTrack(2, 300, 50, 60, 1000 * MILLIS).onDone();
+
+    mReassociator.endAll();
+
+    assertEquals(1, mCreated.get(0).mDone);
+    assertEquals(1, mCreated.get(1).mDone);
+    assertEquals(0, mReassociator.getParkedCount());
+  }
+
+  @Test
+  public void trackHandlesAreRecycled() {
+    FaceTrackListener first = startTrack(1, 100, 50, 60, 1000 * MILLIS);
+    first.onDone();
+    FaceTrackListener second = mReassociator.newTrack();
+
+    assertSame(first, second);
+    assertNotSame(first, mReassociator.newTrack());
+  }
+
+  /**
+   * 150 faces spread over a 1280x720 preview, where 20 are hidden and 20 come back on every frame
+   * under new ids, slightly moved.  Every face should get its tracker back, and matching should
+   * only look at a handful of parked faces per new track however many are parked.
+   */
+  @Test
+  public void crowdOcclusionsStayLinear() {
+    final int faces = 150;
+    final int occludedPerFrame = 20;
+    final int frames = 300;
+    Random random = new Random(7);
+    FaceTrackListener[] tracks = new FaceTrackListener[faces];
+    float[] lefts = new float[faces];
+    float[] tops = new float[faces];
+    int nextId = 0;
+    for (int i = 0; i < faces; ++i) {
+      lefts[i] = (i % 15) * 84 + 10;
+      tops[i] = (i / 15) * 70 + 10;
+      tracks[i] = startTrack(++nextId, lefts[i], tops[i], 40, 0);
+    }
+
+    List<Integer> hidden = new ArrayList<>();
+    long newTracks = 0;
+    for (int frame = 1; frame <= frames; ++frame) {
+      long timeNanos = frame * 33 * MILLIS;
+      for (int i : hidden) {
+        lefts[i] += random.nextFloat() * 6 - 3;
+        tracks[i] = startTrack(++nextId, lefts[i], tops[i], 40, timeNanos);
+        ++newTracks;
+      }
+      hidden.clear();
+      while (hidden.size() < occludedPerFrame) {
+        int i = random.nextInt(faces);
+        if (!hidden.contains(i)) {
+          hidden.add(i);
+          tracks[i].onDone();
+        }
+      }
+      for (int i = 0; i < faces; ++i) {
+        if (!hidden.contains(i)) {
+          tracks[i].onUpdate(face(i, lefts[i], tops[i], 40, timeNanos));
+        }
+      }
+    }
+
+    assertEquals(faces, mCreated.size());
+    assertEquals(newTracks, mReassociator.getReassociations());
+    assertTrue("candidates per new track: "
+            + (double) mReassociator.getCandidatesChecked() / newTracks,
+        mReassociator.getCandidatesChecked() <= 2 * newTracks);
+  }
+
+  private FaceTrackListener startTrack(int id, float left, float top, float size,
+      long timeNanos) {
+    FaceTrackListener track = mReassociator.newTrack();
+    track.onNewItem(id, face(id, left, top, size, timeNanos));
+    track.onUpdate(face(id, left, top, size, timeNanos));
+    return track;
+  }
+
+  private FaceRecord face(int id, float left, float top, float size, long timeNanos) {
+    // A zero timestamp would mean "now".
+    return mRecord.set(id, left, top, size, size, 0, 0).setTimestampNanos(timeNanos + 1);
+  }
+
+  private static class RecordingListener implements FaceTrackListener {
+    int mNewItems;
+    int mUpdates;
+    int mMissing;
+    int mDone;
+
+    @Override
+    public void onNewItem(int id, FaceRecord face) {
+      ++mNewItems;
+    }
+
+    @Override
+    public void onUpdate(FaceRecord face) {
+      ++mUpdates;
+    }
+
+    @Override
+    public void onMissing() {
+      ++mMissing;
+    }
+
+    @Override
+    public void onDone() {
+      ++mDone;
+    }
+  }
+}
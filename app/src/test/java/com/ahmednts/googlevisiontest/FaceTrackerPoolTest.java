@@ -0,0 +1,176 @@
+package com.ahmednts.googlevisiontest;
+
+import android.graphics.Canvas;
+import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.ahmednts.googlevisiontest.stickers.StickerAssets;
+import com.ahmednts.googlevisiontest.stickers.StickerSet;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FaceTrackerPoolTest {
+  private static final int POOL_SIZE = 16;
+  private static final long FRAME_NANOS = 33333333L;
+
+  private GraphicOverlay mOverlay;
+  private StickerAssets mAssets;
+  private FaceTrackerPool mPool;
+  private final FaceRecord mRecord = new FaceRecord();
+
+  @Before
+  public void setUp() {
+    mOverlay = new GraphicOverlay(null, null);
+    mAssets = new StickerAssets(Integer.MAX_VALUE);
+    mPool = new FaceTrackerPool(mOverlay, mAssets, POOL_SIZE);
+  }
+
+  @Test
+  public void doneTrackerIsReused() {
+    FaceTracker first = mPool.acquire();
+    first.onNewItem(1, face(1, 100, 0));
+    first.onUpdate(face(1, 100, 0));
+    first.onDone();
+
+    assertEquals(1, mPool.getIdleCount());
+    assertSame(first, mPool.acquire());
+    assertEquals(0, mPool.getIdleCount());
+
+    PipelineMetrics metrics = mOverlay.getMetrics();
+    assertEquals(1, metrics.getTrackerPoolHits());
+    assertEquals(1, metrics.getTrackerPoolMisses());
+  }
+
+  @Test
+  public void reusedTrackerForgetsThePreviousFace() {
+    FaceTracker tracker = mPool.acquire();
+    tracker.onNewItem(1, face(1, 0, 0));
+    for (int i = 0; i < 10; ++i) {
+      tracker.onUpdate(face(1, 0, i * FRAME_NANOS));
+    }
+    tracker.onDone();
+    assertFalse(tracker.getGeometry().isValid());
+    assertEquals(0, mOverlay.getGraphicCount());
+
+    FaceTracker reused = mPool.acquire();
+    assertSame(tracker, reused);
+    reused.onNewItem(2, face(2, 300, 20 * FRAME_NANOS));
+    reused.onUpdate(face(2, 300, 20 * FRAME_NANOS));
+
+    // Not filtered from where the last face was.
+    assertEquals(340, reused.getGeometry().getCenterX(), 1e-3);
+    assertEquals(3, mOverlay.getGraphicCount());
+  }
+
+  @Test
+  public void poolKeepsAtMostItsSize() {
+    List<FaceTracker> trackers = new ArrayList<>();
+    for (int i = 0; i < POOL_SIZE + 5; ++i) {
+      trackers.add(mPool.acquire());
+    }
+    for (FaceTracker tracker : trackers) {
+      tracker.onNewItem(1, face(1, 0, 0));
+      tracker.onDone();
+    }
+    trackers.get(0).onDone();
+
+    assertEquals(POOL_SIZE, mPool.getIdleCount());
+  }
+
+  @Test
+  public void trackerWithoutPoolIsNotKept() {
+    FaceTracker tracker = new FaceTracker(mOverlay, mAssets);
+    tracker.onNewItem(1, face(1, 0, 0));
+    tracker.onDone();
+
+    assertEquals(0, mPool.getIdleCount());
+  }
+
+  @Test
+  public void trackersFollowTheStickerSelection() {
+    StickerSet stickers = new StickerSet(StickerSet.ALL);
+    FaceTrackerPool pool = new FaceTrackerPool(mOverlay, mAssets, stickers, POOL_SIZE);
+    FaceTracker tracker = pool.acquire();
+    tracker.onNewItem(1, face(1, 0, 0));
+    tracker.onUpdate(face(1, 0, 0));
+    assertEquals(3, mOverlay.getGraphicCount());
+
+    stickers.setStickers(StickerSet.FACE);
+    tracker.onUpdate(face(1, 0, FRAME_NANOS));
+    assertEquals(1, mOverlay.getGraphicCount());
+
+    stickers.setStickers(StickerSet.EYES | StickerSet.HAT);
+    tracker.onUpdate(face(1, 0, 2 * FRAME_NANOS));
+    assertEquals(2, mOverlay.getGraphicCount());
+
+    tracker.onDone();
+    assertEquals(0, mOverlay.getGraphicCount());
+  }
+
+  /**
+   * A crowd of about 30 faces at 30 fps in which 10 faces leave and 10 arrive on every frame,
+   * 300 track births and deaths per second, for a minute.
+   */
+  @Test
+  public void crowdChurnStopsAllocatingTrackers() {
+    final int crowd = 30;
+    final int churnPerFrame = 10;
+    final int frames = 30 * 60;
+    Random random = new Random(42);
+    Canvas canvas = new Canvas();
+    List<FaceTracker> live = new ArrayList<>();
+    IdentityHashMap<FaceTracker, Boolean> liveSet = new IdentityHashMap<>();
+    int nextId = 0;
+    long births = 0;
+    long missesAfterFirstSecond = -1;
+
+    for (int frame = 0; frame < frames; ++frame) {
+      long timeNanos = frame * FRAME_NANOS;
+      mOverlay.beginFrame();
+      for (int i = 0; i < churnPerFrame && !live.isEmpty(); ++i) {
+        FaceTracker done = live.remove(random.nextInt(live.size()));
+        liveSet.remove(done);
+        done.onMissing();
+        done.onDone();
+      }
+      while (live.size() < crowd) {
+        FaceTracker tracker = mPool.acquire();
+        assertTrue("tracker handed out twice", liveSet.put(tracker, Boolean.TRUE) == null);
+        tracker.onNewItem(++nextId, face(nextId, random.nextInt(400), timeNanos));
+        live.add(tracker);
+        ++births;
+      }
+      for (int i = 0; i < live.size(); ++i) {
+        live.get(i).onUpdate(face(i, 10 * i + frame % 50, timeNanos));
+      }
+      mOverlay.commitFrame();
+      mOverlay.drawGraphics(canvas, timeNanos);
+
+      assertEquals(3 * crowd, mOverlay.getGraphicCount());
+      assertTrue(mPool.getIdleCount() <= POOL_SIZE);
+      if (frame == 30) {
+        missesAfterFirstSecond = mOverlay.getMetrics().getTrackerPoolMisses();
+      }
+    }
+
+    PipelineMetrics metrics = mOverlay.getMetrics();
+    assertEquals(births, metrics.getTrackerPoolHits() + metrics.getTrackerPoolMisses());
+    // Only the initial crowd and the first wave of churn need new trackers.
+    assertTrue(metrics.getTrackerPoolMisses() <= crowd + churnPerFrame);
+    assertEquals(missesAfterFirstSecond, metrics.getTrackerPoolMisses());
+    assertTrue(metrics.getTrackerPoolHits() > births / 2);
+  }
+
+  private FaceRecord face(int id, float left, long timestampNanos) {
+    return mRecord.set(id, left, 50, 80, 100, 0, 0).setTimestampNanos(timestampNanos);
+  }
+}
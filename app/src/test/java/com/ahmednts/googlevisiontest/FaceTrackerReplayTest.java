@@ -0,0 +1,78 @@
+package com.ahmednts.googlevisiontest;
+
+import android.graphics.Canvas;
+import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import com.ahmednts.googlevisiontest.replay.FaceRecordingReader;
+import com.ahmednts.googlevisiontest.replay.FaceRecordingWriter;
+import com.ahmednts.googlevisiontest.replay.FaceReplayDriver;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import com.ahmednts.googlevisiontest.stickers.StickerAssets;
+import com.google.android.gms.vision.face.Landmark;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Replays a recording through the same tracker, overlay and sticker code that runs on the camera.
+ */
+public class FaceTrackerReplayTest {
+  private static final int FRAMES = 30;
+
+  @Test
+  public void replaysRecordingThroughTrackersAndStickers() throws IOException {
+    final GraphicOverlay overlay = new GraphicOverlay(null, null);
+    final StickerAssets assets = new StickerAssets(Integer.MAX_VALUE);
+    final Canvas canvas = new Canvas();
+
+    FaceReplayDriver driver = new FaceReplayDriver(new FaceReplayDriver.TrackerFactory() {
+      @Override
+      public FaceTrackListener create(FaceRecord face) {
+        return new FaceTracker(overlay, assets);
+      }
+    }, new FaceReplayDriver.FrameListener() {
+      @Override
+      public void onFrameStart(FrameRecord frame) {
+        overlay.beginFrame();
+      }
+
+      @Override
+      public void onFrameEnd(FrameRecord frame) {
+        overlay.commitFrame();
+        overlay.drawGraphics(canvas, frame.getTimestampMillis() * 1000000L);
+      }
+    }, FaceReplayDriver.DEFAULT_MAX_GAP_FRAMES);
+
+    assertEquals(FRAMES, driver.replay(new FaceRecordingReader(
+        new ByteArrayInputStream(recordTwoFaces()))));
+    assertEquals(6, overlay.getGraphicCount());
+
+    driver.finish();
+    assertEquals(0, overlay.getGraphicCount());
+  }
+
+  /**
+   * Two faces drifting across a 320x240 preview for {@link #FRAMES} frames.
+   */
+  private static byte[] recordTwoFaces() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FaceRecordingWriter writer = new FaceRecordingWriter(bytes);
+    FrameRecord frame = new FrameRecord();
+    for (int i = 0; i < FRAMES; ++i) {
+      frame.reset(i, 33L * i, 320, 240);
+      for (int id = 1; id <= 2; ++id) {
+        float left = 100 * id + i;
+        frame.addFace().set(id, left, 40, 80, 100, 0, 0)
+            .addLandmark(Landmark.LEFT_EYE, left + 25, 75)
+            .addLandmark(Landmark.RIGHT_EYE, left + 55, 75);
+      }
+      writer.write(frame);
+    }
+    writer.close();
+    return bytes.toByteArray();
+  }
+}
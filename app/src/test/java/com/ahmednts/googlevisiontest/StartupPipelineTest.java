@@ -0,0 +1,141 @@
+package com.ahmednts.googlevisiontest;
+
+import android.util.SparseArray;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StartupPipelineTest {
+  private static final int SERVICE_MISSING = 1;
+
+  // Runs background and main thread work in the order it is queued, on the test thread.
+  private final List<Runnable> mQueue = new ArrayList<>();
+  private final Executor mExecutor = new Executor() {
+    @Override
+    public void execute(Runnable runnable) {
+      mQueue.add(runnable);
+    }
+  };
+
+  private final List<String> mResults = new ArrayList<>();
+  private final StartupPipeline.Listener mListener = new StartupPipeline.Listener() {
+    @Override
+    public void onReady(int playServicesStatus, boolean operational) {
+      mResults.add(playServicesStatus + (operational ? " operational" : " not operational"));
+    }
+  };
+
+  private int mPlayServicesStatus;
+  private int mPlayServicesChecks;
+  private StartupPipeline mPipeline;
+  private StartupTimer mTimer;
+
+  @Before
+  public void setUp() {
+    mPipeline = new StartupPipeline(mExecutor, mExecutor, new StartupPipeline.PlayServicesCheck() {
+      @Override
+      public int check() {
+        mPlayServicesChecks++;
+        return mPlayServicesStatus;
+      }
+    });
+    mTimer = new StartupTimer();
+  }
+
+  @Test
+  public void warmsEveryDetectorButChecksOnce() {
+    FakeDetector first = new FakeDetector(true);
+    FakeDetector second = new FakeDetector(true);
+    mPipeline.prepare(first, 320, 240, mTimer, mListener);
+    mPipeline.prepare(second, 640, 480, mTimer, mListener);
+    runQueue();
+
+    assertEquals(1, mPlayServicesChecks);
+    assertEquals(1, first.mOperationalChecks);
+    assertEquals(0, second.mOperationalChecks);
+    assertEquals(1, first.mDetections);
+    assertEquals(1, second.mDetections);
+    assertEquals(2, mPipeline.getWarmUps());
+    assertEquals(ConnectionResult.SUCCESS + " operational", mResults.get(0));
+    assertEquals(ConnectionResult.SUCCESS + " operational", mResults.get(1));
+  }
+
+  @Test
+  public void repeatsFailedChecksWithoutWarmingUp() {
+    mPlayServicesStatus = SERVICE_MISSING;
+    FakeDetector detector = new FakeDetector(false);
+    mPipeline.prepare(detector, 320, 240, mTimer, mListener);
+    runQueue();
+    mPlayServicesStatus = ConnectionResult.SUCCESS;
+    detector.mOperational = true;
+    mPipeline.prepare(detector, 320, 240, mTimer, mListener);
+    runQueue();
+
+    assertEquals(2, mPlayServicesChecks);
+    assertEquals(2, detector.mOperationalChecks);
+    assertEquals(1, detector.mDetections);
+    assertEquals(SERVICE_MISSING + " not operational", mResults.get(0));
+    assertEquals(ConnectionResult.SUCCESS + " operational", mResults.get(1));
+  }
+
+  @Test
+  public void runsTasksAfterQueuedWarmUps() {
+    final FakeDetector detector = new FakeDetector(true);
+    mPipeline.prepare(detector, 320, 240, mTimer, mListener);
+    mPipeline.afterWarmUps(new Runnable() {
+      @Override
+      public void run() {
+        assertEquals(1, detector.mDetections);
+        detector.release();
+        mResults.add("released");
+      }
+    });
+    runQueue();
+
+    assertTrue(detector.mReleased);
+    assertEquals("released", mResults.get(0));
+    assertEquals(ConnectionResult.SUCCESS + " operational", mResults.get(1));
+  }
+
+  private void runQueue() {
+    while (!mQueue.isEmpty()) {
+      mQueue.remove(0).run();
+    }
+  }
+
+  private static final class FakeDetector extends Detector<Object> {
+    boolean mOperational;
+    int mOperationalChecks;
+    int mDetections;
+    boolean mReleased;
+
+    FakeDetector(boolean operational) {
+      mOperational = operational;
+    }
+
+    @Override
+    public SparseArray<Object> detect(Frame frame) {
+      mDetections++;
+      return null;
+    }
+
+    @Override
+    public boolean isOperational() {
+      mOperationalChecks++;
+      return mOperational;
+    }
+
+    @Override
+    public void release() {
+      mReleased = true;
+    }
+  }
+}
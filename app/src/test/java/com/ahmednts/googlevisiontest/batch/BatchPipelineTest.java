@@ -0,0 +1,226 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the pipeline with stand-in stages on images that are just their source names.
+ */
+public class BatchPipelineTest {
+  private static final class Image {
+    final String source;
+    boolean composited;
+
+    Image(String source) {
+      this.source = source;
+    }
+  }
+
+  private final AtomicInteger mLive = new AtomicInteger();
+  private final AtomicInteger mMaxLive = new AtomicInteger();
+  private final Map<String, Image> mEncoded = new ConcurrentHashMap<>();
+
+  private final BatchPipeline.Decoder<Image> mDecoder = new BatchPipeline.Decoder<Image>() {
+    @Override
+    public Image decode(String source) throws IOException {
+      if (source.startsWith("bad")) {
+        throw new IOException("Not an image: " + source);
+      }
+      int live = mLive.incrementAndGet();
+      int max = mMaxLive.get();
+      while (live > max && !mMaxLive.compareAndSet(max, live)) {
+        max = mMaxLive.get();
+      }
+      return new Image(source);
+    }
+
+    @Override
+    public void recycle(Image image) {
+      mLive.decrementAndGet();
+    }
+  };
+
+  // Finds one face in every image, and fails on images whose name says so.
+  private final StillFaceDetector<Image> mDetector = new StillFaceDetector<Image>() {
+    @Override
+    public void detect(Image image, FrameRecord out) {
+      if (image.source.startsWith("faceless")) {
+        throw new IllegalStateException("Detector failed on " + image.source);
+      }
+      out.addFace().set(1, 10, 10, 50, 50, 0, 0);
+    }
+
+    @Override
+    public void release() {
+    }
+  };
+
+  private final BatchPipeline.Compositor<Image> mCompositor =
+      new BatchPipeline.Compositor<Image>() {
+        @Override
+        public Image composite(Image image, FrameRecord faces) {
+          image.composited = faces.getFaceCount() == 1;
+          return image;
+        }
+      };
+
+  private final BatchPipeline.Encoder<Image> mEncoder = new BatchPipeline.Encoder<Image>() {
+    @Override
+    public void encode(Image image, String source) {
+      mEncoded.put(source, image);
+    }
+  };
+
+  @Test
+  public void processesEveryImageOnce() throws InterruptedException {
+    BatchPipeline<Image> pipeline =
+        new BatchPipeline<>(mDecoder, mDetector, mCompositor, mEncoder, 4, 2);
+
+    BatchPipeline.Result result = pipeline.run(sources("image", 50));
+
+    assertEquals(50, result.getImages());
+    assertEquals(0, result.getFailed());
+    assertEquals(50, result.getFaces());
+    assertNull(result.getFirstError());
+    assertEquals(50, mEncoded.size());
+    for (Image image : mEncoded.values()) {
+      assertTrue(image.source, image.composited);
+    }
+    assertEquals(0, mLive.get());
+  }
+
+  @Test
+  public void keepsImagesInFlightBounded() throws InterruptedException {
+    BatchPipeline.Encoder<Image> slowEncoder = new BatchPipeline.Encoder<Image>() {
+      @Override
+      public void encode(Image image, String source) {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    BatchPipeline<Image> pipeline =
+        new BatchPipeline<>(mDecoder, mDetector, mCompositor, slowEncoder, 4, 2);
+
+    BatchPipeline.Result result = pipeline.run(sources("image", 200));
+
+    assertEquals(0, result.getFailed());
+    assertTrue("At most " + mMaxLive.get() + " images decoded at once",
+        mMaxLive.get() <= pipeline.getMaxImagesInFlight());
+    assertEquals(0, mLive.get());
+  }
+
+  @Test
+  public void skipsImagesThatFail() throws InterruptedException {
+    List<String> sources = sources("image", 10);
+    sources.add(3, "bad.jpg");
+    sources.add(7, "faceless.jpg");
+    BatchPipeline<Image> pipeline =
+        new BatchPipeline<>(mDecoder, mDetector, mCompositor, mEncoder, 2, 1);
+
+    BatchPipeline.Result result = pipeline.run(sources);
+
+    assertEquals(12, result.getImages());
+    assertEquals(2, result.getFailed());
+    assertNotNull(result.getFirstError());
+    assertEquals(10, mEncoded.size());
+    assertFalse(mEncoded.containsKey("faceless.jpg"));
+    assertEquals(0, mLive.get());
+  }
+
+  @Test(timeout = 10000)
+  public void skipsImagesThatRunOutOfMemory() throws InterruptedException {
+    BatchPipeline.Compositor<Image> compositor = new BatchPipeline.Compositor<Image>() {
+      @Override
+      public Image composite(Image image, FrameRecord faces) {
+        if (image.source.startsWith("huge")) {
+          throw new OutOfMemoryError("No room to composite " + image.source);
+        }
+        return image;
+      }
+    };
+    List<String> sources = sources("image", 10);
+    sources.add(2, "huge1.jpg");
+    sources.add(6, "huge2.jpg");
+    BatchPipeline<Image> pipeline =
+        new BatchPipeline<>(mDecoder, mDetector, compositor, mEncoder, 4, 1);
+
+    BatchPipeline.Result result = pipeline.run(sources);
+
+    assertEquals(2, result.getFailed());
+    assertEquals(10, mEncoded.size());
+    assertEquals(0, mLive.get());
+  }
+
+  @Test(timeout = 10000)
+  public void dropsImagesOnceStageHasNoWorkersLeft() throws InterruptedException {
+    // Kills the only compositing worker; decoding and detection must not block behind it.
+    BatchPipeline.Compositor<Image> compositor = new BatchPipeline.Compositor<Image>() {
+      @Override
+      public Image composite(Image image, FrameRecord faces) {
+        throw new StackOverflowError("Compositor crashed on " + image.source);
+      }
+    };
+    BatchPipeline<Image> pipeline =
+        new BatchPipeline<>(mDecoder, mDetector, compositor, mEncoder, 4, 1);
+
+    BatchPipeline.Result result = pipeline.run(sources("image", 20));
+
+    assertEquals(20, result.getFailed());
+    assertNotNull(result.getFirstError());
+    assertTrue(mEncoded.isEmpty());
+    assertEquals(0, mLive.get());
+  }
+
+  @Test
+  public void sharesWorkersBetweenStages() {
+    assertWorkers(1, 1, 1, 1, createPipeline(1));
+    assertWorkers(1, 3, 1, 1, createPipeline(6));
+    assertWorkers(2, 2, 2, 2, createPipeline(8));
+    assertEquals(8, createPipeline(8).getTotalWorkers());
+  }
+
+  @Test
+  public void runsOneWorkerPerStageAtLeast() {
+    BatchPipeline<Image> pipeline = createPipeline(2);
+
+    assertWorkers(1, 1, 1, 1, pipeline);
+    assertEquals(4, pipeline.getTotalWorkers());
+    // One image per worker, and one waiting between each two stages.
+    assertEquals(4 + 3, pipeline.getMaxImagesInFlight());
+  }
+
+  private BatchPipeline<Image> createPipeline(int workers) {
+    return new BatchPipeline<>(mDecoder, mDetector, mCompositor, mEncoder, workers, 1);
+  }
+
+  private static void assertWorkers(int decode, int detect, int composite, int encode,
+      BatchPipeline<?> pipeline) {
+    assertEquals(decode, pipeline.getWorkers(BatchPipeline.DECODE));
+    assertEquals(detect, pipeline.getWorkers(BatchPipeline.DETECT));
+    assertEquals(composite, pipeline.getWorkers(BatchPipeline.COMPOSITE));
+    assertEquals(encode, pipeline.getWorkers(BatchPipeline.ENCODE));
+  }
+
+  private static List<String> sources(String prefix, int count) {
+    List<String> sources = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      sources.add(prefix + i + ".jpg");
+    }
+    return sources;
+  }
+}
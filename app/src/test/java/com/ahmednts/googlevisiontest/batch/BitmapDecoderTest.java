@@ -0,0 +1,27 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BitmapDecoderTest {
+  @Test
+  public void reducesLargePhotoWithinMaxSize() {
+    // At a sample size of 1 a 4000x3000 photo would decode at full size, about 48 MB.
+    assertEquals(2, BitmapDecoder.getSampleSize(4000, 3000, 2048));
+    assertEquals(2, BitmapDecoder.getSampleSize(3000, 4000, 2048));
+  }
+
+  @Test
+  public void roundsReductionUp() {
+    assertEquals(2, BitmapDecoder.getSampleSize(2049, 100, 2048));
+    assertEquals(4, BitmapDecoder.getSampleSize(8000, 6000, 2048));
+    assertEquals(8, BitmapDecoder.getSampleSize(8193, 10, 2048));
+  }
+
+  @Test
+  public void keepsImagesWithinMaxSize() {
+    assertEquals(1, BitmapDecoder.getSampleSize(2048, 1536, 2048));
+    assertEquals(1, BitmapDecoder.getSampleSize(640, 480, 2048));
+  }
+}
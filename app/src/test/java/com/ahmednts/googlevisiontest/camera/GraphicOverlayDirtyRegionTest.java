@@ -0,0 +1,228 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.graphics.Canvas;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.geometry.Bounds;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
+import com.ahmednts.googlevisiontest.stickers.FaceGeometry;
+import com.ahmednts.googlevisiontest.stickers.StickerAssets;
+import com.ahmednts.googlevisiontest.stickers.StickerFaceGraphic;
+import com.google.android.gms.vision.CameraSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which part of the overlay a frame redraws, with the view the same size as the preview so
+ * that view and preview coordinates coincide.
+ */
+public class GraphicOverlayDirtyRegionTest {
+  private static final int WIDTH = 720;
+  private static final int HEIGHT = 960;
+  private static final long FRAME_NANOS = 16666667L;
+
+  private GraphicOverlay mOverlay;
+  private Canvas mCanvas;
+  private final Bounds mDirty = new Bounds();
+  private long mTimeNanos;
+
+  @Before
+  public void setUp() {
+    mOverlay = new GraphicOverlay(null, null);
+    mOverlay.setCameraInfo(WIDTH, HEIGHT, CameraSource.CAMERA_FACING_BACK);
+    mCanvas = new Canvas() {
+      @Override
+      public int getWidth() {
+        return WIDTH;
+      }
+
+      @Override
+      public int getHeight() {
+        return HEIGHT;
+      }
+    };
+  }
+
+  @Test
+  public void firstFrameRedrawsEverything() {
+    mOverlay.add(new BoxGraphic(mOverlay, true, 100, 100));
+
+    assertFalse(frame());
+  }
+
+  @Test
+  public void idleFrameRedrawsNothing() {
+    mOverlay.add(new BoxGraphic(mOverlay, true, 100, 100));
+    frame();
+
+    assertTrue(frame());
+    assertTrue(mDirty.isEmpty());
+  }
+
+  @Test
+  public void movedGraphicRedrawsOldAndNewBounds() {
+    BoxGraphic moved = new BoxGraphic(mOverlay, true, 100, 100);
+    BoxGraphic still = new BoxGraphic(mOverlay, true, 500, 500);
+    mOverlay.add(moved);
+    mOverlay.add(still);
+    frame();
+
+    moved.moveTo(110, 100);
+
+    assertTrue(frame());
+    assertEquals(98, mDirty.getLeft());
+    assertEquals(98, mDirty.getTop());
+    assertEquals(132, mDirty.getRight());
+    assertEquals(122, mDirty.getBottom());
+    assertEquals(2, moved.mDraws);
+    // Outside the region and unchanged, so left as it is on the surface.
+    assertEquals(1, still.mDraws);
+  }
+
+  @Test
+  public void removedGraphicRedrawsWhereItWas() {
+    BoxGraphic removed = new BoxGraphic(mOverlay, true, 200, 300);
+    mOverlay.add(removed);
+    frame();
+
+    mOverlay.remove(removed);
+
+    assertTrue(frame());
+    assertEquals(198, mDirty.getLeft());
+    assertEquals(298, mDirty.getTop());
+    assertEquals(222, mDirty.getRight());
+    assertEquals(322, mDirty.getBottom());
+  }
+
+  @Test
+  public void regionIsClippedToTheView() {
+    BoxGraphic graphic = new BoxGraphic(mOverlay, true, WIDTH - 10, 0);
+    mOverlay.add(graphic);
+    frame();
+
+    graphic.moveTo(WIDTH - 5, 0);
+
+    assertTrue(frame());
+    assertEquals(0, mDirty.getTop());
+    assertEquals(WIDTH, mDirty.getRight());
+  }
+
+  @Test
+  public void graphicWithoutBoundsRedrawsEverything() {
+    BoxGraphic graphic = new BoxGraphic(mOverlay, false, 100, 100);
+    mOverlay.add(graphic);
+    frame();
+
+    graphic.moveTo(110, 100);
+
+    assertFalse(frame());
+  }
+
+  @Test
+  public void cameraInfoChangeRedrawsEverything() {
+    mOverlay.add(new BoxGraphic(mOverlay, true, 100, 100));
+    frame();
+
+    mOverlay.setCameraInfo(HEIGHT, WIDTH, CameraSource.CAMERA_FACING_BACK);
+
+    assertFalse(frame());
+  }
+
+  @Test
+  public void graphicUpdatedDuringTheFrameIsRedrawnNext() {
+    BoxGraphic graphic = new BoxGraphic(mOverlay, true, 100, 100);
+    mOverlay.add(graphic);
+    frame();
+
+    graphic.moveTo(110, 100);
+    mTimeNanos += FRAME_NANOS;
+    assertTrue(mOverlay.onRenderFrame(mTimeNanos, WIDTH, HEIGHT, mDirty));
+    // Moves again after the region was computed, so it is drawn outside of it.
+    graphic.moveTo(300, 300);
+    long requested = mOverlay.getInvalidationsRequested();
+    mOverlay.drawGraphics(mCanvas, mTimeNanos, mDirty);
+
+    assertEquals(requested + 1, mOverlay.getInvalidationsRequested());
+    assertTrue(frame());
+    assertEquals(298, mDirty.getLeft());
+    assertEquals(322, mDirty.getRight());
+  }
+
+  @Test
+  public void stickerDrawsWithinItsBounds() {
+    StickerFaceGraphic sticker = new StickerFaceGraphic(mOverlay, new StickerAssets(0));
+    FaceGeometry geometry = new FaceGeometry();
+    geometry.update(new FaceRecord().set(1, 100, 100, 80, 100, 0, 0), mTimeNanos);
+    sticker.updateEyes(geometry);
+    mOverlay.add(sticker);
+    frame();
+
+    geometry.update(new FaceRecord().set(1, 110, 104, 80, 100, 0, 0), mTimeNanos + 33000000L);
+    sticker.updateEyes(geometry);
+    mTimeNanos += FRAME_NANOS;
+    assertTrue(mOverlay.onRenderFrame(mTimeNanos, WIDTH, HEIGHT, mDirty));
+    long requested = mOverlay.getInvalidationsRequested();
+    mOverlay.drawGraphics(mCanvas, mTimeNanos, mDirty);
+
+    assertFalse(mDirty.isEmpty());
+    assertEquals(requested, mOverlay.getInvalidationsRequested());
+  }
+
+  /**
+   * Runs the next vsync the way a render target does.
+   */
+  private boolean frame() {
+    mTimeNanos += FRAME_NANOS;
+    boolean partial = mOverlay.onRenderFrame(mTimeNanos, WIDTH, HEIGHT, mDirty);
+    mOverlay.drawGraphics(mCanvas, mTimeNanos, partial ? mDirty : null);
+    return partial;
+  }
+
+  /**
+   * A 20 pixel square.
+   */
+  private static class BoxGraphic extends GraphicOverlay.Graphic {
+    private static final float SIZE = 20;
+
+    private final boolean mHasBounds;
+    private final Bounds mBounds = new Bounds();
+    private volatile float mX;
+    private volatile float mY;
+    int mDraws;
+
+    BoxGraphic(GraphicOverlay overlay, boolean hasBounds, float x, float y) {
+      super(overlay);
+      mHasBounds = hasBounds;
+      mX = x;
+      mY = y;
+    }
+
+    void moveTo(float x, float y) {
+      mX = x;
+      mY = y;
+      postInvalidate();
+    }
+
+    @Override
+    protected boolean computeBounds(PreviewTransform transform, long frameTimeNanos, Bounds out) {
+      if (!mHasBounds) {
+        return false;
+      }
+      out.set(transform.mapX(mX), transform.mapY(mY), transform.mapX(mX + SIZE),
+          transform.mapY(mY + SIZE));
+      return true;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+      ++mDraws;
+      if (mHasBounds) {
+        mBounds.set(translateX(mX), translateY(mY), translateX(mX + SIZE), translateY(mY + SIZE));
+        addDrawnBounds(mBounds);
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.ahmednts.googlevisiontest.face;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorFeaturesTest {
+  @Test
+  public void combineTakesTheUnionOfRequirements() {
+    int features = DetectorFeatures.combine(DetectorFeatures.LANDMARKS,
+        DetectorFeatures.EULER_ANGLES);
+
+    assertTrue(DetectorFeatures.needsLandmarks(features));
+    assertTrue(DetectorFeatures.needsAccurateMode(features));
+    assertFalse(DetectorFeatures.needsClassifications(features));
+  }
+
+  @Test
+  public void prominentFaceOnlyNeedsBothSides() {
+    int prominent = DetectorFeatures.PROMINENT_FACE_ONLY;
+
+    assertTrue(DetectorFeatures.allowsProminentFaceOnly(
+        DetectorFeatures.combine(prominent, prominent | DetectorFeatures.LANDMARKS)));
+    assertFalse(DetectorFeatures.allowsProminentFaceOnly(
+        DetectorFeatures.combine(prominent, DetectorFeatures.NONE)));
+  }
+
+  @Test
+  public void legacyFeaturesAreTheFastModeDefaults() {
+    assertTrue(DetectorFeatures.needsLandmarks(DetectorFeatures.LEGACY));
+    assertTrue(DetectorFeatures.needsClassifications(DetectorFeatures.LEGACY));
+    assertFalse(DetectorFeatures.needsAccurateMode(DetectorFeatures.LEGACY));
+    assertFalse(DetectorFeatures.allowsProminentFaceOnly(DetectorFeatures.LEGACY));
+  }
+
+  @Test
+  public void namesFeatures() {
+    assertEquals("none", DetectorFeatures.toString(DetectorFeatures.NONE));
+    assertEquals("landmarks+prominent", DetectorFeatures.toString(
+        DetectorFeatures.LANDMARKS | DetectorFeatures.PROMINENT_FACE_ONLY));
+  }
+}
@@ -0,0 +1,16 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DownscalingFaceDetectorTest {
+  @Test
+  public void shrinksBySmallestFactorThatFits() {
+    assertEquals(1, DownscalingFaceDetector.getFactor(480, 640));
+    assertEquals(1, DownscalingFaceDetector.getFactor(640, 640));
+    assertEquals(2, DownscalingFaceDetector.getFactor(720, 640));
+    assertEquals(2, DownscalingFaceDetector.getFactor(1280, 640));
+    assertEquals(3, DownscalingFaceDetector.getFactor(1920, 640));
+  }
+}
@@ -0,0 +1,56 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FramePoolTest {
+  @Test
+  public void reusesBuffersOnceGrown() {
+    FramePool pool = new FramePool(2);
+    FramePool.PooledFrame frame = pool.obtain(100);
+    pool.recycle(frame);
+    FramePool.PooledFrame other = pool.obtain(100);
+    pool.recycle(other);
+
+    // Both buffers have grown; from here on nothing is allocated.
+    for (int i = 0; i < 10; ++i) {
+      FramePool.PooledFrame next = pool.obtain(80);
+      assertTrue(next.getData().isDirect());
+      assertEquals(0, next.getData().position());
+      pool.recycle(next);
+    }
+    assertEquals(2, pool.getAllocations());
+
+    pool.recycle(pool.obtain(200));
+    assertEquals(3, pool.getAllocations());
+  }
+
+  @Test
+  public void runsOutWithoutThrowing() {
+    FramePool pool = new FramePool(2);
+    FramePool.PooledFrame frame = pool.obtain(10);
+    pool.obtain(10);
+
+    assertNull(pool.obtain(10));
+    assertEquals(1, pool.getShortages());
+    pool.recycle(frame);
+    assertSame(frame, pool.obtain(10));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsFramesRecycledTwice() {
+    FramePool pool = new FramePool(2);
+    FramePool.PooledFrame frame = pool.obtain(10);
+    pool.recycle(frame);
+    pool.recycle(frame);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEmptyPools() {
+    new FramePool(0);
+  }
+}
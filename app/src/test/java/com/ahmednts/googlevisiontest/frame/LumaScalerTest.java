@@ -0,0 +1,83 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LumaScalerTest {
+  // A 4x2 plane whose pixels count up row by row.
+  private static final int WIDTH = 4;
+  private static final int HEIGHT = 2;
+
+  @Test
+  public void keepsPlaneWithoutRotation() {
+    assertArrayEquals(new byte[] {0, 1, 2, 3, 4, 5, 6, 7}, scaleCounting(0));
+  }
+
+  @Test
+  public void turnsPlaneUpright() {
+    assertArrayEquals(new byte[] {4, 0, 5, 1, 6, 2, 7, 3}, scaleCounting(1));
+    assertArrayEquals(new byte[] {7, 6, 5, 4, 3, 2, 1, 0}, scaleCounting(2));
+    assertArrayEquals(new byte[] {3, 7, 2, 6, 1, 5, 0, 4}, scaleCounting(3));
+  }
+
+  @Test
+  public void averagesBlocks() {
+    byte[] plane = {
+        0, 2, 10, 10,
+        2, 4, 10, 10,
+        100, 100, 50, 52,
+        100, 100, 50, 52};
+    ByteBuffer out = ByteBuffer.allocateDirect(4);
+
+    LumaScaler.scale(ByteBuffer.wrap(plane), 4, 4, 0, 2, out);
+    assertArrayEquals(new byte[] {2, 10, 100, 51}, toArray(out, 4));
+
+    LumaScaler.scale(ByteBuffer.wrap(plane), 4, 4, 1, 2, out);
+    assertArrayEquals(new byte[] {100, 2, 51, 10}, toArray(out, 4));
+  }
+
+  @Test
+  public void readsDirectBuffersFromTheirPosition() {
+    ByteBuffer luma = ByteBuffer.allocateDirect(WIDTH * HEIGHT + 2);
+    luma.position(2);
+    for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+      luma.put(2 + i, (byte) i);
+    }
+    ByteBuffer out = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+
+    LumaScaler.scale(luma, WIDTH, HEIGHT, 1, 1, out);
+
+    assertArrayEquals(new byte[] {4, 0, 5, 1, 6, 2, 7, 3}, toArray(out, WIDTH * HEIGHT));
+    assertEquals(2, luma.position());
+    assertEquals(0, out.position());
+  }
+
+  @Test
+  public void roundsScaledSizeDownToEvenPixels() {
+    assertEquals(2, LumaScaler.getScaledWidth(6, 4, 0, 2));
+    assertEquals(2, LumaScaler.getScaledHeight(6, 4, 0, 2));
+    assertEquals(360, LumaScaler.getScaledWidth(1280, 720, 1, 2));
+    assertEquals(640, LumaScaler.getScaledHeight(1280, 720, 1, 2));
+  }
+
+  private static byte[] scaleCounting(int rotation) {
+    byte[] plane = new byte[WIDTH * HEIGHT];
+    for (int i = 0; i < plane.length; ++i) {
+      plane[i] = (byte) i;
+    }
+    ByteBuffer out = ByteBuffer.allocateDirect(plane.length);
+    LumaScaler.scale(ByteBuffer.wrap(plane), WIDTH, HEIGHT, rotation, 1, out);
+    return toArray(out, plane.length);
+  }
+
+  private static byte[] toArray(ByteBuffer buffer, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      bytes[i] = buffer.get(i);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,43 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Nv21ConverterTest {
+  @Test
+  public void keepsGreyLuma() {
+    byte[] nv21 = {0, 64, (byte) 128, (byte) 255, (byte) 128, (byte) 128};
+
+    int[] out = new int[4];
+    Nv21Converter.toArgb(nv21, 2, 2, out);
+    assertArrayEquals(new int[] {0xff000000, 0xff404040, 0xff808080, 0xffffffff}, out);
+  }
+
+  @Test
+  public void sharesChromaWithinBlocks() {
+    // Two 2x2 blocks side by side: pure red on the left and pure blue on the right.
+    byte[] nv21 = {
+        76, 76, 29, 29,
+        76, 76, 29, 29,
+        (byte) 255, 85, 107, (byte) 255};
+    assertEquals(Nv21Converter.getFrameSize(4, 2), nv21.length);
+
+    int[] out = new int[8];
+    Nv21Converter.toArgb(nv21, 4, 2, out);
+    for (int i = 0; i < out.length; ++i) {
+      boolean red = i % 4 < 2;
+      assertColor(out[i], red ? 255 : 0, 0, red ? 0 : 255);
+    }
+  }
+
+  private static void assertColor(int argb, int r, int g, int b) {
+    String message = Integer.toHexString(argb);
+    assertEquals(message, 0xff, argb >>> 24);
+    assertTrue(message, Math.abs(((argb >> 16) & 0xff) - r) <= 2);
+    assertTrue(message, Math.abs(((argb >> 8) & 0xff) - g) <= 2);
+    assertTrue(message, Math.abs((argb & 0xff) - b) <= 2);
+  }
+}
@@ -0,0 +1,84 @@
+package com.ahmednts.googlevisiontest.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+  @Test
+  public void countsIntoBuckets() {
+    Histogram histogram = new Histogram(new long[] { 10, 20, 40 });
+    histogram.record(5);
+    histogram.record(10);
+    histogram.record(15);
+    histogram.record(100);
+
+    assertEquals(4, histogram.getBucketCount());
+    assertEquals(2, histogram.getBucket(0));
+    assertEquals(1, histogram.getBucket(1));
+    assertEquals(0, histogram.getBucket(2));
+    assertEquals(1, histogram.getBucket(3));
+    assertEquals(4, histogram.getCount());
+    assertEquals(130, histogram.getSum());
+    assertEquals(100, histogram.getMax());
+    assertEquals(Long.MAX_VALUE, histogram.getUpperBound(3));
+  }
+
+  @Test
+  public void percentilesReportBucketUpperBounds() {
+    Histogram histogram = new Histogram(new long[] { 10, 20, 40 });
+    for (int i = 0; i < 90; ++i) {
+      histogram.record(8);
+    }
+    for (int i = 0; i < 9; ++i) {
+      histogram.record(30);
+    }
+    histogram.record(55);
+
+    assertEquals(10, histogram.getPercentile(0.5));
+    assertEquals(10, histogram.getPercentile(0.9));
+    assertEquals(40, histogram.getPercentile(0.99));
+    assertEquals(55, histogram.getPercentile(1.0));
+  }
+
+  @Test
+  public void countHistogramHasBucketPerCount() {
+    Histogram histogram = Histogram.forCounts(3);
+    histogram.record(0);
+    histogram.record(3);
+    histogram.record(7);
+
+    assertEquals(5, histogram.getBucketCount());
+    assertEquals(1, histogram.getBucket(0));
+    assertEquals(1, histogram.getBucket(3));
+    assertEquals(1, histogram.getBucket(4));
+  }
+
+  @Test
+  public void recordsFromManyThreads() throws InterruptedException {
+    final Histogram histogram = Histogram.forLatency();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; ++t) {
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; ++i) {
+            histogram.record(i * 1000L);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    long total = 0;
+    for (int i = 0; i < histogram.getBucketCount(); ++i) {
+      total += histogram.getBucket(i);
+    }
+    assertEquals(40000, histogram.getCount());
+    assertEquals(40000, total);
+    assertEquals(9999000L, histogram.getMax());
+  }
+}
@@ -0,0 +1,185 @@
+package com.ahmednts.googlevisiontest.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineMetricsTest {
+  private static final long MILLIS = 1000000L;
+
+  @Test
+  public void recordsEachStageOfAFrame() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onFrame(1, 100 * MILLIS);
+    metrics.onDetected(130 * MILLIS, 2, false);
+    metrics.onTrackerUpdate(131 * MILLIS);
+    metrics.onTrackerUpdate(132 * MILLIS);
+    metrics.onFrameCommitted();
+    metrics.onOverlayDrawn(140 * MILLIS, 142 * MILLIS);
+    // A redraw without a new commit is not another display of the frame.
+    metrics.onOverlayDrawn(156 * MILLIS, 158 * MILLIS);
+
+    assertEquals(30 * MILLIS, metrics.getStage(PipelineMetrics.STAGE_DETECT).getMax());
+    assertEquals(2, metrics.getStage(PipelineMetrics.STAGE_DELIVER).getCount());
+    assertEquals(2 * MILLIS, metrics.getStage(PipelineMetrics.STAGE_DELIVER).getMax());
+    assertEquals(1, metrics.getStage(PipelineMetrics.STAGE_DISPLAY).getCount());
+    assertEquals(8 * MILLIS, metrics.getStage(PipelineMetrics.STAGE_DISPLAY).getMax());
+    assertEquals(40 * MILLIS, metrics.getStage(PipelineMetrics.STAGE_END_TO_END).getMax());
+    assertEquals(2, metrics.getStage(PipelineMetrics.STAGE_OVERLAY_DRAW).getCount());
+    assertEquals(2, metrics.getFacesPerFrame().getMax());
+  }
+
+  @Test
+  public void countsFramesDroppedBeforeDetection() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onFrame(10, 0);
+    metrics.onFrame(11, 0);
+    metrics.onFrame(15, 0);
+
+    assertEquals(3, metrics.getFrames());
+    assertEquals(3, metrics.getFramesDropped());
+  }
+
+  @Test
+  public void doesNotCountIdGapBetweenStreamsAsDropped() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onStreamStarted();
+    metrics.onFrame(10, 0);
+    metrics.onFrame(11, 0);
+    // Back to a warm camera source that numbered frames further on.
+    metrics.onStreamStarted();
+    metrics.onFrame(500, 0);
+    metrics.onFrame(502, 0);
+
+    assertEquals(4, metrics.getFrames());
+    assertEquals(1, metrics.getFramesDropped());
+  }
+
+  @Test
+  public void frameWithoutUpdatesIsNotTimedOnDraw() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onFrame(1, 0);
+    metrics.onDetected(MILLIS, 0, true);
+    metrics.onFrameCommitted();
+    metrics.onOverlayDrawn(2 * MILLIS, 3 * MILLIS);
+
+    assertEquals(1, metrics.getStage(PipelineMetrics.STAGE_PREDICT).getCount());
+    assertEquals(0, metrics.getStage(PipelineMetrics.STAGE_END_TO_END).getCount());
+  }
+
+  @Test
+  public void dumpListsStagesAndGraphics() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onFrame(1, 0);
+    metrics.onDetected(5 * MILLIS, 1, false);
+    metrics.onGraphicDrawn(String.class, MILLIS);
+
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("frames 1, dropped before detection 0"));
+    assertTrue(dump, dump.contains("detect: n=1 mean=5.00ms"));
+    assertTrue(dump, dump.contains("draw String: n=1"));
+  }
+
+  @Test
+  public void recordsRedrawnAreaInPercent() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onRegionRedrawn(100, 100);
+    metrics.onRegionRedrawn(1, 1000);
+    metrics.onRegionRedrawn(0, 1000);
+
+    assertEquals(3, metrics.getRedrawnPercent().getCount());
+    assertEquals(100, metrics.getRedrawnPercent().getMax());
+    assertEquals(101, metrics.getRedrawnPercent().getSum());
+
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("redrawn area: mean=33.7%"));
+  }
+
+  @Test
+  public void dumpsTrackerPoolReuse() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onTrackerAcquired(false);
+    metrics.onTrackerAcquired(true);
+    metrics.onTrackerAcquired(true);
+    metrics.onTrackerAcquired(true);
+
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("tracker pool: hits 3, misses 1 (75.0% reused)"));
+  }
+
+  @Test
+  public void dumpsLatencySavedByDetectorConfiguration() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onDetectorConfigured("landmarks+classifications");
+    metrics.onFrame(1, 0);
+    metrics.onDetected(20 * MILLIS, 3, false);
+    metrics.onDetectorConfigured("none");
+    metrics.onFrame(2, 0);
+    metrics.onDetected(15 * MILLIS, 3, false);
+    // Predictions are not detections under any configuration.
+    metrics.onFrame(3, 0);
+    metrics.onDetected(MILLIS, 3, true);
+
+    assertEquals(1, metrics.getDetectLatency("none").getCount());
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("detect [none]: n=1 mean=15.00ms"));
+    assertTrue(dump, dump.contains(
+        "detect [none] saves 5.00ms (25.0%) over [landmarks+classifications]"));
+  }
+
+  @Test
+  public void dumpsReusedDetections() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    for (int i = 0; i < 4; ++i) {
+      metrics.onFrame(i, 0);
+    }
+    metrics.onDetectionReused();
+
+    assertEquals(1, metrics.getDetectionsReused());
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("detections reused on a still scene: 1 (25.0% of frames)"));
+  }
+
+  @Test
+  public void dumpsUnscaledFrames() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    assertFalse(metrics.dump().contains("unscaled"));
+    metrics.onFrameUnscaled();
+    metrics.onFrameUnscaled();
+
+    assertEquals(2, metrics.getFramesUnscaled());
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("frames detected unscaled with no buffer free: 2"));
+    metrics.reset();
+    assertEquals(0, metrics.getFramesUnscaled());
+  }
+
+  @Test
+  public void dumpsSnapshotLatency() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    assertFalse(metrics.dump().contains("snapshot to file"));
+    metrics.onSnapshotSaved(40 * MILLIS);
+
+    assertEquals(1, metrics.getSnapshotLatency().getCount());
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("snapshot to file: n=1"));
+    metrics.reset();
+    assertEquals(0, metrics.getSnapshotLatency().getCount());
+  }
+
+  @Test
+  public void dumpsCameraSwitchesByDetectorWarmth() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    metrics.onCameraSwitched(400 * MILLIS, false);
+    metrics.onCameraSwitched(120 * MILLIS, true);
+    metrics.onCameraSwitched(100 * MILLIS, true);
+
+    assertEquals(2, metrics.getCameraSwitchLatency(true).getCount());
+    assertEquals(1, metrics.getCameraSwitchLatency(false).getCount());
+    String dump = metrics.dump();
+    assertTrue(dump, dump.contains("camera switch (warm): n=2"));
+    assertTrue(dump, dump.contains("camera switch (cold): n=1"));
+  }
+}
@@ -0,0 +1,168 @@
+package com.ahmednts.googlevisiontest.quality;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the controller with synthetic latency traces, where the detector latency of each level is
+ * a function of the level.
+ */
+public class QualityControllerTest {
+  private static final long BUDGET_NANOS = 33000000L;
+  private static final long MILLIS = 1000000L;
+
+  private static final QualityLevel[] LEVELS = {
+      new QualityLevel(320, 240, 30.0f, 0.35f),
+      new QualityLevel(320, 240, 60.0f, 0.35f),
+      new QualityLevel(640, 480, 30.0f, 0.3f),
+      new QualityLevel(1280, 720, 30.0f, 0.25f)
+  };
+
+  /**
+   * Detector latency at a level for the n-th detection.
+   */
+  private interface Trace {
+    long latencyNanos(int level, int detection);
+  }
+
+  @Test
+  public void weakDeviceStepsDownAndStays() {
+    QualityController controller = new QualityController(LEVELS, 1, BUDGET_NANOS);
+    run(controller, 5000, 1, new Trace() {
+      @Override
+      public long latencyNanos(int level, int detection) {
+        return 45 * MILLIS;
+      }
+    });
+
+    assertEquals(0, controller.getLevelIndex());
+    assertEquals(1, controller.getChangeCount());
+  }
+
+  @Test
+  public void strongDeviceStepsUpToWhatItCanAfford() {
+    QualityController controller = new QualityController(LEVELS, 1, BUDGET_NANOS);
+    // Linear in the pixel count: 4 ms at 320x240, 16 ms at 640x480, 48 ms at 1280x720.
+    int changes = run(controller, 5000, 1, new Trace() {
+      @Override
+      public long latencyNanos(int level, int detection) {
+        return 4 * MILLIS * LEVELS[level].getPixels() / LEVELS[0].getPixels();
+      }
+    });
+
+    assertEquals(2, controller.getLevelIndex());
+    assertEquals(1, changes);
+    assertEquals("640x480@30fps", controller.getLevel().getPreviewWidth() + "x"
+        + controller.getLevel().getPreviewHeight() + "@" + (int) controller.getLevel().getFps()
+        + "fps");
+  }
+
+  @Test
+  public void shortSpikesDoNotChangeLevel() {
+    QualityController controller = new QualityController(LEVELS, 1, BUDGET_NANOS);
+    run(controller, 5000, 1, new Trace() {
+      @Override
+      public long latencyNanos(int level, int detection) {
+        // A garbage collection or a busy UI thread every couple of seconds, and a short stall
+        // that straddles two windows.
+        if (detection % 60 == 0) {
+          return 100 * MILLIS;
+        }
+        if (detection >= 1003 && detection < 1007) {
+          return 150 * MILLIS;
+        }
+        return 20 * MILLIS;
+      }
+    });
+
+    assertEquals(1, controller.getLevelIndex());
+    assertEquals(0, controller.getChangeCount());
+  }
+
+  @Test
+  public void borderlineDeviceDoesNotOscillate() {
+    QualityController controller = new QualityController(LEVELS, 1, BUDGET_NANOS);
+    // 640x480 looks affordable from 320x240, but is much slower than the pixel count suggests.
+    Trace trace = new Trace() {
+      @Override
+      public long latencyNanos(int level, int detection) {
+        return level >= 2 ? 40 * MILLIS : 5 * MILLIS;
+      }
+    };
+    run(controller, 10000, 1, trace);
+
+    // Each failed step up doubles the wait before the next attempt, up to a limit, so the
+    // controller settles into an occasional retry and spends almost all of its time at 320x240.
+    int detections = 30000;
+    int changes = 0;
+    int slowDetections = 0;
+    for (int detection = 0; detection < detections; ++detection) {
+      int level = controller.getLevelIndex();
+      if (level >= 2) {
+        slowDetections++;
+      }
+      if (controller.onDetection(trace.latencyNanos(level, detection), 1)) {
+        changes++;
+      }
+    }
+
+    int maxRetries = detections
+        / (QualityController.MAX_BACKOFF_WINDOWS * QualityController.WINDOW) + 1;
+    assertTrue("changes: " + changes, changes <= 2 * maxRetries);
+    assertTrue("detections at 640x480: " + slowDetections, slowDetections < detections / 20);
+  }
+
+  @Test
+  public void noStepUpWithoutFaces() {
+    QualityController controller = new QualityController(LEVELS, 1, BUDGET_NANOS);
+    run(controller, 5000, 0, new Trace() {
+      @Override
+      public long latencyNanos(int level, int detection) {
+        return 2 * MILLIS;
+      }
+    });
+
+    assertEquals(1, controller.getLevelIndex());
+  }
+
+  @Test
+  public void slowStartAfterChangeIsIgnored() {
+    QualityController controller = new QualityController(LEVELS, 1, BUDGET_NANOS);
+    // The first detections after every (re)start are slow, then settle at 20 ms.
+    final int[] sinceChange = { 0 };
+    int changes = 0;
+    for (int detection = 0; detection < 5000; ++detection) {
+      long latency = sinceChange[0]++ < QualityController.SETTLE_DETECTIONS
+          ? 150 * MILLIS : 20 * MILLIS;
+      if (controller.onDetection(latency, 1)) {
+        changes++;
+        sinceChange[0] = 0;
+      }
+    }
+
+    assertEquals(0, changes);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidStartLevelThrows() {
+    new QualityController(LEVELS, LEVELS.length, BUDGET_NANOS);
+  }
+
+  /**
+   * Feeds {@code detections} samples from the trace, each finding {@code faces} faces.
+   *
+   * @return how many times the level changed
+   */
+  private static int run(QualityController controller, int detections, int faces, Trace trace) {
+    int changes = 0;
+    for (int detection = 0; detection < detections; ++detection) {
+      if (controller.onDetection(trace.latencyNanos(controller.getLevelIndex(), detection),
+          faces)) {
+        changes++;
+      }
+    }
+    return changes;
+  }
+}
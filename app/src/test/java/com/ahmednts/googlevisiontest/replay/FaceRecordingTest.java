@@ -0,0 +1,63 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FaceRecordingTest {
+  private static final float EPSILON = 1e-6f;
+
+  @Test
+  public void roundTripsFramesAndFaces() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FaceRecordingWriter writer = new FaceRecordingWriter(bytes);
+    FrameRecord frame = new FrameRecord();
+
+    frame.reset(7, 1234L, 320, 240);
+    frame.addFace().set(3, 10, 20, 100, 120, 15, -5)
+        .addLandmark(4, 40, 50)
+        .addLandmark(10, 60, 50);
+    frame.addFace().set(4, 150, 30, 80, 90, 0, 0);
+    writer.write(frame);
+
+    frame.reset(8, 1267L, 320, 240);
+    writer.write(frame);
+    writer.close();
+
+    FaceRecordingReader reader =
+        new FaceRecordingReader(new ByteArrayInputStream(bytes.toByteArray()));
+    FrameRecord read = new FrameRecord();
+
+    assertTrue(reader.read(read));
+    assertEquals(7, read.getFrameId());
+    assertEquals(1234L, read.getTimestampMillis());
+    assertEquals(320, read.getWidth());
+    assertEquals(240, read.getHeight());
+    assertEquals(2, read.getFaceCount());
+    assertEquals(3, read.getFace(0).getId());
+    assertEquals(20, read.getFace(0).getTop(), EPSILON);
+    assertEquals(15, read.getFace(0).getEulerY(), EPSILON);
+    assertEquals(-5, read.getFace(0).getEulerZ(), EPSILON);
+    assertEquals(2, read.getFace(0).getLandmarkCount());
+    assertEquals(10, read.getFace(0).getLandmarkType(1));
+    assertEquals(60, read.getFace(0).getLandmarkX(1), EPSILON);
+    assertEquals(0, read.getFace(1).getLandmarkCount());
+
+    assertTrue(reader.read(read));
+    assertEquals(8, read.getFrameId());
+    assertEquals(0, read.getFaceCount());
+
+    assertFalse(reader.read(read));
+    reader.close();
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    new FaceRecordingReader(new ByteArrayInputStream(new byte[] { 'J', 'P', 'E', 'G', 0, 1 }));
+  }
+}
@@ -0,0 +1,108 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.face.FaceTrackListener;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FaceReplayDriverTest {
+  private final List<String> mEvents = new ArrayList<>();
+
+  private final FaceReplayDriver.TrackerFactory mFactory = new FaceReplayDriver.TrackerFactory() {
+    @Override
+    public FaceTrackListener create(FaceRecord face) {
+      return new RecordingListener();
+    }
+  };
+
+  @Test
+  public void followsMultiProcessorLifeCycle() {
+    FaceReplayDriver driver = new FaceReplayDriver(mFactory, null, 1);
+    FrameRecord frame = new FrameRecord();
+
+    driver.push(frameWithFaces(frame, 1));
+    driver.push(frameWithFaces(frame, 1, 2));
+    driver.push(frameWithFaces(frame, 2));
+    driver.push(frameWithFaces(frame, 2));
+
+    List<String> expected = new ArrayList<>();
+    expected.add("new 1");
+    expected.add("update 1");
+    expected.add("update 1");
+    expected.add("new 2");
+    expected.add("update 2");
+    expected.add("update 2");
+    expected.add("missing 1");
+    expected.add("update 2");
+    expected.add("done 1");
+    assertEquals(expected, mEvents);
+    assertEquals(1, driver.getTrackCount());
+
+    mEvents.clear();
+    driver.finish();
+    assertEquals(1, mEvents.size());
+    assertEquals("done 2", mEvents.get(0));
+    assertEquals(0, driver.getTrackCount());
+  }
+
+  @Test
+  public void bracketsEachFrame() {
+    final int[] depth = new int[1];
+    final int[] updatesInsideFrame = new int[1];
+    FaceReplayDriver.FrameListener frameListener = new FaceReplayDriver.FrameListener() {
+      @Override
+      public void onFrameStart(FrameRecord frame) {
+        depth[0]++;
+      }
+
+      @Override
+      public void onFrameEnd(FrameRecord frame) {
+        depth[0]--;
+        updatesInsideFrame[0] = mEvents.size();
+      }
+    };
+
+    FaceReplayDriver driver = new FaceReplayDriver(mFactory, frameListener,
+        FaceReplayDriver.DEFAULT_MAX_GAP_FRAMES);
+    driver.push(frameWithFaces(new FrameRecord(), 5));
+
+    assertEquals(0, depth[0]);
+    assertEquals(2, updatesInsideFrame[0]);
+  }
+
+  private static FrameRecord frameWithFaces(FrameRecord frame, int... ids) {
+    frame.reset(0, 0, 320, 240);
+    for (int id : ids) {
+      frame.addFace().set(id, 10 * id, 10, 50, 50, 0, 0);
+    }
+    return frame;
+  }
+
+  private class RecordingListener implements FaceTrackListener {
+    private int mId;
+
+    @Override
+    public void onNewItem(int id, FaceRecord face) {
+      mId = id;
+      mEvents.add("new " + id);
+    }
+
+    @Override
+    public void onUpdate(FaceRecord face) {
+      mEvents.add("update " + face.getId());
+    }
+
+    @Override
+    public void onMissing() {
+      mEvents.add("missing " + mId);
+    }
+
+    @Override
+    public void onDone() {
+      mEvents.add("done " + mId);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.ahmednts.googlevisiontest.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LumaRecordingTest {
+  @Test
+  public void roundTripsTheLumaPlane() throws IOException {
+    // An NV21 frame: the chroma after the luma plane is not recorded.
+    byte[] nv21 = new byte[4 * 2 * 3 / 2];
+    for (int i = 0; i < nv21.length; ++i) {
+      nv21[i] = (byte) (i + 1);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    LumaRecordingWriter writer = new LumaRecordingWriter(bytes);
+    writer.write(5, 1000L, 4, 2, 3, ByteBuffer.wrap(nv21));
+    writer.close();
+
+    LumaRecordingReader reader =
+        new LumaRecordingReader(new ByteArrayInputStream(bytes.toByteArray()));
+    assertTrue(reader.read());
+    assertEquals(5, reader.getFrameId());
+    assertEquals(1000L, reader.getTimestampMillis());
+    assertEquals(4, reader.getWidth());
+    assertEquals(2, reader.getHeight());
+    assertEquals(3, reader.getRotation());
+    assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}, reader.getLuma());
+    assertFalse(reader.read());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    new LumaRecordingReader(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+  }
+}
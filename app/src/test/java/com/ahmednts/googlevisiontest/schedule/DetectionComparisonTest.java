@@ -0,0 +1,41 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DetectionComparisonTest {
+  private static final double EPSILON = 1e-6;
+
+  @Test
+  public void countsMatchedMissedAndExtraFaces() {
+    DetectionComparison comparison = new DetectionComparison(0.5f);
+    FrameRecord reference = new FrameRecord().reset(1, 0, 320, 240);
+    reference.addFace().set(1, 10, 10, 40, 40, 0, 0);
+    reference.addFace().set(2, 100, 10, 40, 40, 0, 0);
+    FrameRecord candidate = new FrameRecord().reset(1, 0, 320, 240);
+    candidate.addFace().set(9, 13, 14, 40, 40, 0, 0);
+    candidate.addFace().set(8, 200, 100, 40, 40, 0, 0);
+
+    comparison.add(reference, candidate);
+
+    assertEquals(1, comparison.getFrames());
+    assertEquals(1, comparison.getMatched());
+    assertEquals(1, comparison.getMissed());
+    assertEquals(1, comparison.getExtra());
+    assertEquals(0.5, comparison.getRecall(), EPSILON);
+    assertEquals(0.5, comparison.getPrecision(), EPSILON);
+    assertEquals(5, comparison.getMeanCenterError(), EPSILON);
+  }
+
+  @Test
+  public void emptyFramesAgree() {
+    DetectionComparison comparison = new DetectionComparison(0.5f);
+    FrameRecord empty = new FrameRecord().reset(1, 0, 320, 240);
+    comparison.add(empty, empty);
+
+    assertEquals(1, comparison.getRecall(), EPSILON);
+    assertEquals(1, comparison.getPrecision(), EPSILON);
+  }
+}
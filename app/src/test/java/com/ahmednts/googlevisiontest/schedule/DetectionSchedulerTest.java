@@ -0,0 +1,79 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DetectionSchedulerTest {
+  private static final long FRAME_MILLIS = 16;
+
+  @Test
+  public void intervalCoversLatencyAtTargetShare() {
+    assertEquals(1, DetectionScheduler.intervalFor(5, 16, 0.5f, 6));
+    assertEquals(4, DetectionScheduler.intervalFor(30, 16, 0.5f, 6));
+    assertEquals(6, DetectionScheduler.intervalFor(500, 16, 0.5f, 6));
+    assertEquals(1, DetectionScheduler.intervalFor(30, 0, 0.5f, 6));
+  }
+
+  @Test
+  public void slowDetectorRunsEveryFewFrames() {
+    DetectionScheduler scheduler = new DetectionScheduler(6, 0.5f);
+    int detections = 0;
+    for (int frame = 0; frame < 120; ++frame) {
+      if (scheduler.shouldDetect(frame * FRAME_MILLIS, false)) {
+        scheduler.onDetected(24000000L);
+        detections++;
+      }
+    }
+
+    // 24 ms of detection fits half of three 16 ms frames.
+    assertEquals(3, scheduler.getInterval());
+    assertEquals(120, scheduler.getFrames());
+    assertTrue("detections: " + detections, detections <= 120 / 3 + 2);
+  }
+
+  @Test
+  public void motionForcesDetection() {
+    DetectionScheduler scheduler = new DetectionScheduler(6, 0.5f);
+    long time = 0;
+    for (int frame = 0; frame < 10; ++frame) {
+      if (scheduler.shouldDetect(time += FRAME_MILLIS, false)) {
+        scheduler.onDetected(80000000L);
+      }
+    }
+    assertEquals(6, scheduler.getInterval());
+
+    assertTrue(scheduler.shouldDetect(time += FRAME_MILLIS, true));
+    scheduler.onDetected(80000000L);
+    assertFalse(scheduler.shouldDetect(time + FRAME_MILLIS, false));
+  }
+
+  @Test
+  public void reuseWaitsForNextIntervalWithoutCountingLatency() {
+    DetectionScheduler scheduler = new DetectionScheduler(6, 0.5f);
+    long time = 0;
+    for (int frame = 0; frame < 10; ++frame) {
+      if (scheduler.shouldDetect(time += FRAME_MILLIS, false)) {
+        scheduler.onDetected(24000000L);
+      }
+    }
+    long detections = scheduler.getDetections();
+    long detectorNanos = scheduler.getDetectorNanos();
+
+    scheduler.onReused();
+
+    assertFalse(scheduler.shouldDetect(time += FRAME_MILLIS, false));
+    assertFalse(scheduler.shouldDetect(time += FRAME_MILLIS, false));
+    assertTrue(scheduler.shouldDetect(time + FRAME_MILLIS, false));
+    assertEquals(1, scheduler.getReuses());
+    assertEquals(detections, scheduler.getDetections());
+    assertEquals(detectorNanos, scheduler.getDetectorNanos());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEmptyInterval() {
+    new DetectionScheduler(0, 0.5f);
+  }
+}
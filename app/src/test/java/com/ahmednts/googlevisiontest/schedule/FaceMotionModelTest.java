@@ -0,0 +1,97 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FaceMotionModelTest {
+  private static final float EPSILON = 1e-3f;
+  private static final long FRAME_MILLIS = 16;
+
+  @Test
+  public void extrapolatesConstantVelocity() {
+    FaceMotionModel model = new FaceMotionModel();
+    FrameRecord frame = new FrameRecord();
+    // 0.5 px/ms to the right, growing by 0.1 px/ms.
+    for (int i = 0; i < 10; ++i) {
+      long time = i * 100;
+      frame.reset(i, time, 320, 240);
+      float width = 100 + 0.1f * time;
+      frame.addFace().set(1, 0.5f * time, 20, width, width, 0, 0)
+          .addLandmark(4, 0.5f * time + width / 2, 20 + width / 4);
+      model.observe(frame);
+    }
+
+    frame.reset(10, 950, 320, 240);
+    model.predict(950, frame);
+    assertEquals(1, frame.getFaceCount());
+    FaceRecord predicted = frame.getFace(0);
+    assertEquals(475, predicted.getLeft(), 0.5f);
+    assertEquals(195, predicted.getWidth(), 0.5f);
+    assertEquals(475 + 195 / 2f, predicted.getLandmarkX(0), 0.5f);
+    assertEquals(20, predicted.getTop(), EPSILON);
+  }
+
+  @Test
+  public void dropsFacesNoLongerDetected() {
+    FaceMotionModel model = new FaceMotionModel();
+    FrameRecord frame = new FrameRecord();
+    frame.reset(0, 0, 320, 240);
+    frame.addFace().set(1, 0, 0, 50, 50, 0, 0);
+    frame.addFace().set(2, 100, 0, 50, 50, 0, 0);
+    model.observe(frame);
+
+    frame.reset(1, 16, 320, 240);
+    frame.addFace().set(2, 100, 0, 50, 50, 0, 0);
+    model.observe(frame);
+
+    assertEquals(1, model.getTrackCount());
+  }
+
+  /**
+   * Replays a face swaying back and forth at each fixed detection interval: the error grows with
+   * the interval, and moving faces forward beats holding them where they were last detected.
+   */
+  @Test
+  public void predictionBeatsHoldingPosition() {
+    float previousError = -1;
+    for (int interval = 2; interval <= 6; ++interval) {
+      FaceMotionModel model = new FaceMotionModel();
+      FrameRecord frame = new FrameRecord();
+      double predictedError = 0;
+      double heldError = 0;
+      float heldLeft = 0;
+      int samples = 0;
+
+      for (int i = 0; i < 600; ++i) {
+        long time = i * FRAME_MILLIS;
+        float left = swayingLeft(time);
+        frame.reset(i, time, 320, 240);
+        if (i % interval == 0) {
+          frame.addFace().set(1, left, 40, 80, 80, 0, 0);
+          model.observe(frame);
+          heldLeft = left;
+        } else {
+          model.predict(time, frame);
+          predictedError += Math.abs(frame.getFace(0).getLeft() - left);
+          heldError += Math.abs(heldLeft - left);
+          samples++;
+        }
+      }
+
+      float meanPredicted = (float) (predictedError / samples);
+      float meanHeld = (float) (heldError / samples);
+      assertTrue("interval " + interval + ": predicted " + meanPredicted + " px, held "
+          + meanHeld + " px", meanPredicted < meanHeld);
+      assertTrue(model.getMeanErrorPixels() > previousError);
+      previousError = model.getMeanErrorPixels();
+    }
+  }
+
+  private static float swayingLeft(long timeMillis) {
+    return 120 + 80 * (float) Math.sin(timeMillis / 400.0);
+  }
+}
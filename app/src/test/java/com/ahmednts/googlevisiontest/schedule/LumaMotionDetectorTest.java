@@ -0,0 +1,35 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LumaMotionDetectorTest {
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+
+  @Test
+  public void detectsChangedFrames() {
+    LumaMotionDetector detector = new LumaMotionDetector(10);
+    byte[] luma = new byte[WIDTH * HEIGHT * 3 / 2];
+    ByteBuffer buffer = ByteBuffer.wrap(luma);
+
+    assertTrue("first frame", detector.update(buffer, WIDTH, HEIGHT));
+    assertFalse("same frame", detector.update(buffer, WIDTH, HEIGHT));
+
+    Arrays.fill(luma, 0, WIDTH * HEIGHT, (byte) 5);
+    assertFalse("slight change", detector.update(buffer, WIDTH, HEIGHT));
+    assertEquals(5, detector.getLastDifference());
+
+    Arrays.fill(luma, 0, WIDTH * HEIGHT, (byte) 200);
+    assertTrue("large change", detector.update(buffer, WIDTH, HEIGHT));
+    assertEquals(0, buffer.position());
+
+    detector.reset();
+    assertTrue("after reset", detector.update(buffer, WIDTH, HEIGHT));
+  }
+}
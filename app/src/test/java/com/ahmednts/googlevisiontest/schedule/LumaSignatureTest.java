@@ -0,0 +1,96 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LumaSignatureTest {
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+
+  @Test
+  public void sameSceneIsClose() {
+    byte[] frame = scene(0);
+    byte[] noisy = scene(3);
+
+    LumaSignature a = new LumaSignature().compute(ByteBuffer.wrap(frame), WIDTH, HEIGHT);
+    LumaSignature b = new LumaSignature().compute(ByteBuffer.wrap(noisy), WIDTH, HEIGHT);
+
+    assertEquals(0, a.distance(a));
+    assertTrue("distance " + a.distance(b), a.distance(b) <= 1);
+  }
+
+  @Test
+  public void brighterSceneIsFar() {
+    byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+    Arrays.fill(frame, 0, WIDTH * HEIGHT, (byte) 100);
+    LumaSignature a = new LumaSignature().compute(ByteBuffer.wrap(frame), WIDTH, HEIGHT);
+    Arrays.fill(frame, 0, WIDTH * HEIGHT, (byte) 120);
+    LumaSignature b = new LumaSignature().compute(ByteBuffer.wrap(frame), WIDTH, HEIGHT);
+
+    assertEquals(20, a.distance(b));
+  }
+
+  @Test
+  public void cellsAverageTheirOwnArea() {
+    byte[] frame = new byte[WIDTH * HEIGHT];
+    // The right half is white.
+    for (int y = 0; y < HEIGHT; ++y) {
+      Arrays.fill(frame, y * WIDTH + WIDTH / 2, (y + 1) * WIDTH, (byte) 255);
+    }
+    LumaSignature signature = new LumaSignature(4, 2).compute(ByteBuffer.wrap(frame), WIDTH,
+        HEIGHT);
+
+    assertEquals(0, signature.getCell(1, 0));
+    assertEquals(255, signature.getCell(2, 1));
+  }
+
+  @Test
+  public void directBufferMatchesArray() {
+    byte[] frame = scene(0);
+    ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+    direct.put(frame);
+    direct.position(0);
+
+    LumaSignature a = new LumaSignature().compute(ByteBuffer.wrap(frame), WIDTH, HEIGHT);
+    LumaSignature b = new LumaSignature().compute(direct, WIDTH, HEIGHT);
+
+    assertEquals(0, a.distance(b));
+    assertEquals(0, direct.position());
+  }
+
+  @Test
+  public void invalidSignatureIsFarFromEverything() {
+    LumaSignature signature = new LumaSignature().compute(ByteBuffer.allocate(16), 4, 4);
+    assertFalse(signature.isValid());
+    assertEquals(Integer.MAX_VALUE, signature.distance(signature));
+
+    LumaSignature valid =
+        new LumaSignature().compute(ByteBuffer.wrap(scene(0)), WIDTH, HEIGHT);
+    valid.invalidate();
+    assertEquals(Integer.MAX_VALUE, valid.distance(valid));
+  }
+
+  /**
+   * A gradient under a checkerboard, plus random per-pixel noise of up to {@code noise} levels.
+   */
+  private static byte[] scene(int noise) {
+    byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+    Random noiseRandom = new Random(99);
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        int value = (x + y) / 3 + ((x / 40 + y / 40) % 2) * 40;
+        if (noise > 0) {
+          value += noiseRandom.nextInt(2 * noise + 1) - noise;
+        }
+        frame[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, value));
+      }
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,190 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RegionOfInterestTest {
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 480;
+  private static final float EPSILON = 1e-3f;
+
+  private final FrameRecord mFrame = new FrameRecord();
+
+  @Test
+  public void cropsAroundTheFacesFoundLast() {
+    RegionOfInterest region = new RegionOfInterest(10, 0.5f, 0.5f, 0);
+    assertFalse("nothing tracked yet", region.plan(WIDTH, HEIGHT, 0));
+    region.onDetected(frame(101, 151, 80, 80));
+
+    assertTrue(region.plan(WIDTH, HEIGHT, 0));
+    // 40 pixels of margin on each side, widened to even pixels.
+    assertEquals(60, region.getCropLeft());
+    assertEquals(110, region.getCropTop());
+    assertEquals(162, region.getCropWidth());
+    assertEquals(162, region.getCropHeight());
+
+    FaceRecord face = new FaceRecord().set(0, 41, 41, 80, 80, 0, 0).addLandmark(4, 60, 60);
+    assertTrue(region.mapToFrame(face));
+    assertEquals(101, face.getLeft(), EPSILON);
+    assertEquals(151, face.getTop(), EPSILON);
+    assertEquals(120, face.getLandmarkX(0), EPSILON);
+  }
+
+  @Test
+  public void scansTheWholeFrameEveryInterval() {
+    RegionOfInterest region = new RegionOfInterest(4, 0.5f, 0.5f, 0);
+    int full = 0;
+    for (int i = 0; i < 12; ++i) {
+      if (!region.plan(WIDTH, HEIGHT, 0)) {
+        full++;
+      }
+      region.onDetected(frame(300, 200, 60, 60));
+    }
+
+    assertEquals(3, full);
+    assertEquals(3, region.getFullScans());
+    assertEquals(9, region.getCroppedScans());
+    assertTrue(region.getScannedShare() < 0.5f);
+  }
+
+  @Test
+  public void lostFaceForcesAFullScan() {
+    RegionOfInterest region = new RegionOfInterest(10, 0.5f, 0.5f, 0);
+    region.plan(WIDTH, HEIGHT, 0);
+    region.onDetected(frame(300, 200, 60, 60));
+    assertTrue(region.plan(WIDTH, HEIGHT, 0));
+
+    region.onDetected(mFrame.reset(2, 0, WIDTH, HEIGHT));
+    assertFalse(region.plan(WIDTH, HEIGHT, 0));
+  }
+
+  @Test
+  public void faceAtTheCropEdgeForcesAFullScan() {
+    RegionOfInterest region = new RegionOfInterest(10, 0.5f, 0.5f, 0);
+    region.plan(WIDTH, HEIGHT, 0);
+    region.onDetected(frame(300, 200, 60, 60));
+    assertTrue(region.plan(WIDTH, HEIGHT, 0));
+
+    // Moved to the left edge of the crop, so it may continue outside of it.
+    FaceRecord face = new FaceRecord().set(0, 0, 30, 60, 60, 0, 0);
+    region.mapToFrame(face);
+    mFrame.reset(2, 0, WIDTH, HEIGHT).addFace().copyFrom(face);
+    region.onDetected(mFrame);
+    assertFalse(region.plan(WIDTH, HEIGHT, 0));
+  }
+
+  @Test
+  public void faceAtTheFrameEdgeKeepsTheCrop() {
+    RegionOfInterest region = new RegionOfInterest(10, 0.5f, 0.5f, 0);
+    region.plan(WIDTH, HEIGHT, 0);
+    region.onDetected(frame(0, 200, 60, 60));
+    assertTrue(region.plan(WIDTH, HEIGHT, 0));
+    assertEquals(0, region.getCropLeft());
+
+    region.onDetected(frame(0, 200, 60, 60));
+    assertTrue(region.plan(WIDTH, HEIGHT, 0));
+  }
+
+  @Test
+  public void largeRegionScansTheWholeFrame() {
+    RegionOfInterest region = new RegionOfInterest(10, 0.5f, 0.5f, 0);
+    region.plan(WIDTH, HEIGHT, 0);
+    region.onDetected(frame(200, 100, 300, 300));
+
+    assertFalse(region.plan(WIDTH, HEIGHT, 0));
+    assertEquals(WIDTH, region.getCropWidth());
+  }
+
+  @Test
+  public void mapsQuarterTurnedFramesBack() {
+    for (int rotation = 0; rotation < 4; ++rotation) {
+      RegionOfInterest region = new RegionOfInterest(10, 0.25f, 0.5f, 0);
+      boolean quarterTurn = (rotation & 1) != 0;
+      region.plan(WIDTH, HEIGHT, rotation);
+      region.onDetected(frame(100, 200, 80, 80));
+      assertTrue("rotation " + rotation, region.plan(WIDTH, HEIGHT, rotation));
+
+      // Where the upright crop starts in the upright frame: the camera crop turned upright.
+      int left = region.getCropLeft();
+      int top = region.getCropTop();
+      int right = left + region.getCropWidth();
+      int bottom = top + region.getCropHeight();
+      float originX;
+      float originY;
+      switch (rotation) {
+        case 1:
+          originX = HEIGHT - bottom;
+          originY = left;
+          break;
+        case 2:
+          originX = WIDTH - right;
+          originY = HEIGHT - bottom;
+          break;
+        case 3:
+          originX = top;
+          originY = WIDTH - right;
+          break;
+        default:
+          originX = left;
+          originY = top;
+      }
+      // The crop holds the face with its margin.
+      assertTrue(originX >= 0 && originX <= 80 && originY >= 0 && originY <= 180);
+      assertTrue(originX + (quarterTurn ? region.getCropHeight() : region.getCropWidth()) >= 200);
+      assertTrue(originY + (quarterTurn ? region.getCropWidth() : region.getCropHeight()) >= 300);
+
+      FaceRecord face = new FaceRecord().set(0, 100 - originX, 200 - originY, 80, 80, 0, 0);
+      region.mapToFrame(face);
+      assertEquals("rotation " + rotation, 100, face.getLeft(), EPSILON);
+      assertEquals("rotation " + rotation, 200, face.getTop(), EPSILON);
+    }
+  }
+
+  @Test
+  public void keepsIdsByOverlap() {
+    RegionOfInterest region = new RegionOfInterest(10, 0.5f, 0.9f, 0);
+    region.plan(WIDTH, HEIGHT, 0);
+    mFrame.reset(1, 0, WIDTH, HEIGHT);
+    mFrame.addFace().set(50, 100, 100, 60, 60, 0, 0);
+    mFrame.addFace().set(51, 300, 100, 60, 60, 0, 0);
+    region.onDetected(mFrame);
+    int first = mFrame.getFace(0).getId();
+    int second = mFrame.getFace(1).getId();
+    assertNotEquals(first, second);
+
+    region.plan(WIDTH, HEIGHT, 0);
+    mFrame.reset(2, 0, WIDTH, HEIGHT);
+    mFrame.addFace().set(7, 305, 102, 60, 60, 0, 0);
+    mFrame.addFace().set(8, 104, 98, 60, 60, 0, 0);
+    mFrame.addFace().set(9, 500, 300, 60, 60, 0, 0);
+    region.onDetected(mFrame);
+
+    assertEquals(second, mFrame.getFace(0).getId());
+    assertEquals(first, mFrame.getFace(1).getId());
+    int third = mFrame.getFace(2).getId();
+    assertNotEquals(first, third);
+    assertNotEquals(second, third);
+  }
+
+  @Test
+  public void dropsFacesTooSmallForTheWholeFrame() {
+    RegionOfInterest region = new RegionOfInterest(10, 0.5f, 0.5f, 0.1f);
+    region.plan(WIDTH, HEIGHT, 0);
+    region.onDetected(frame(300, 200, 80, 80));
+    assertTrue(region.plan(WIDTH, HEIGHT, 0));
+
+    assertFalse(region.mapToFrame(new FaceRecord().set(0, 10, 10, 40, 40, 0, 0)));
+    assertTrue(region.mapToFrame(new FaceRecord().set(0, 10, 10, 70, 70, 0, 0)));
+  }
+
+  private FrameRecord frame(float left, float top, float width, float height) {
+    mFrame.reset(1, 0, WIDTH, HEIGHT).addFace().set(0, left, top, width, height, 0, 0);
+    return mFrame;
+  }
+}
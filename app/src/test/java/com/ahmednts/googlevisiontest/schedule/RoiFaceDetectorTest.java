@@ -0,0 +1,25 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RoiFaceDetectorTest {
+  @Test
+  public void cropsLumaRows() {
+    int width = 6;
+    byte[] plane = new byte[width * 4];
+    for (int i = 0; i < plane.length; ++i) {
+      plane[i] = (byte) i;
+    }
+    ByteBuffer luma = ByteBuffer.wrap(plane);
+    byte[] out = new byte[6];
+
+    RoiFaceDetector.cropLuma(luma, width, 2, 1, 3, 2, out);
+
+    assertArrayEquals(new byte[] {8, 9, 10, 14, 15, 16}, out);
+    assertEquals(0, luma.position());
+  }
+}
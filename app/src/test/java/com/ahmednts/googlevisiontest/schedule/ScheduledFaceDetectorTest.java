@@ -0,0 +1,102 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import android.util.SparseArray;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.metrics.PipelineMetrics;
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduledFaceDetectorTest {
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+  private static final int FRAME_MILLIS = 33;
+
+  @Test
+  public void stillSceneOnlyComputesSignaturesAtInterval() {
+    SlowDetector delegate = new SlowDetector();
+    // 2 ms of detection is more than 1% of a 33 ms frame even at the longest interval of 4.
+    ScheduledFaceDetector detector =
+        new ScheduledFaceDetector(delegate, 4, 0.01f, 8, 4, new PipelineMetrics());
+    byte[] plane = new byte[WIDTH * HEIGHT];
+    Arrays.fill(plane, (byte) 100);
+    ByteBuffer luma = ByteBuffer.wrap(plane);
+
+    // Under a second of frames, so that the first detection may be reused throughout.
+    for (int frame = 0; frame < 30; ++frame) {
+      detector.detect(null, frame, frame * FRAME_MILLIS, WIDTH, HEIGHT, luma);
+    }
+
+    // The first frame is detected, with an interval of 1 as no frame time is known yet.  The
+    // second reuses it and sets the interval to 4, so frames 5, 9, ... 29 are the only others
+    // scheduled, and all of them reuse it too.
+    assertEquals(1, delegate.mDetections);
+    assertEquals(9, detector.getSignatures());
+    assertEquals(8, detector.getReusedDetections());
+    assertEquals(8 / 9f, detector.getReuseRate(), 1e-6f);
+  }
+
+  @Test
+  public void faceThatStopsIsHeldAtReusedBox() {
+    final float[] left = new float[1];
+    // The detected face is wherever the test last put it.
+    ScheduledFaceDetector detector = new ScheduledFaceDetector(new SlowDetector(), 4, 0.01f, 8,
+        4, new PipelineMetrics()) {
+      @Override
+      SparseArray<Face> runDetector(Frame frame, FrameRecord out) {
+        busyWait();
+        out.addFace().set(1, left[0], 50, 80, 80, 0, 0);
+        return new SparseArray<>();
+      }
+    };
+    byte[] plane = new byte[WIDTH * HEIGHT];
+    ByteBuffer luma = ByteBuffer.wrap(plane);
+
+    // The face moves 10 px a frame, and the picture changes enough for every frame to be
+    // detected.
+    int frame = 0;
+    for (; frame < 10; ++frame) {
+      left[0] = 10 * frame;
+      Arrays.fill(plane, (byte) (50 + 10 * frame));
+      detector.detect(null, frame, frame * FRAME_MILLIS, WIDTH, HEIGHT, luma);
+    }
+
+    // Then it stops, and the picture with it.  Until the next scheduled frame reuses the last
+    // detection, the face is still moved on at its last speed.
+    float stopped = left[0];
+    for (; detector.getReusedDetections() == 0; ++frame) {
+      detector.detect(null, frame, frame * FRAME_MILLIS, WIDTH, HEIGHT, luma);
+    }
+    for (; frame < 30; ++frame) {
+      detector.detect(null, frame, frame * FRAME_MILLIS, WIDTH, HEIGHT, luma);
+      FaceRecord face = detector.getFrame().getFace(0);
+      assertEquals("frame " + frame, stopped, face.getLeft(), 1e-3f);
+    }
+    assertTrue(detector.getReusedDetections() > 1);
+  }
+
+  private static void busyWait() {
+    long end = System.nanoTime() + 2000000L;
+    while (System.nanoTime() < end) {
+      // Busy wait, so that the measured latency is at least 2 ms.
+    }
+  }
+
+  private static final class SlowDetector extends Detector<Face> {
+    int mDetections;
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+      mDetections++;
+      busyWait();
+      return new SparseArray<>();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AtlasPackerTest {
+  @Test
+  public void packsWithoutOverlapInsideAtlas() {
+    int[] widths = { 256, 200, 90, 120, 256 };
+    int[] heights = { 256, 150, 90, 200, 60 };
+    int padding = 2;
+    int[] xs = new int[widths.length];
+    int[] ys = new int[widths.length];
+
+    int atlasWidth = AtlasPacker.chooseWidth(widths, heights, padding);
+    int atlasHeight = AtlasPacker.pack(atlasWidth, widths, heights, padding, xs, ys);
+
+    for (int i = 0; i < widths.length; ++i) {
+      assertTrue(xs[i] >= 0 && xs[i] + widths[i] <= atlasWidth);
+      assertTrue(ys[i] >= 0 && ys[i] + heights[i] <= atlasHeight);
+      for (int j = i + 1; j < widths.length; ++j) {
+        boolean separate = xs[i] + widths[i] + padding <= xs[j]
+            || xs[j] + widths[j] + padding <= xs[i]
+            || ys[i] + heights[i] + padding <= ys[j]
+            || ys[j] + heights[j] + padding <= ys[i];
+        assertTrue("rectangles " + i + " and " + j + " overlap", separate);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsRectangleWiderThanAtlas() {
+    AtlasPacker.pack(100, new int[] { 101 }, new int[] { 10 }, 0, new int[1], new int[1]);
+  }
+
+  @Test
+  public void singleStickerFillsAtlasExactly() {
+    int[] xs = new int[1];
+    int[] ys = new int[1];
+    int height = AtlasPacker.pack(64, new int[] { 64 }, new int[] { 48 }, 2, xs, ys);
+    assertEquals(48, height);
+    assertEquals(0, xs[0]);
+    assertEquals(0, ys[0]);
+  }
+}
@@ -0,0 +1,88 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
+import com.google.android.gms.vision.face.Landmark;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FaceGeometryTest {
+  private static final float EPSILON = 1e-4f;
+
+  @Test
+  public void computesCentreAndExtents() {
+    FaceGeometry geometry = new FaceGeometry();
+    geometry.update(face(40, 30, 100, 120));
+
+    assertTrue(geometry.isValid());
+    assertEquals(90, geometry.getCenterX(), EPSILON);
+    assertEquals(90, geometry.getCenterY(), EPSILON);
+    assertEquals(50, geometry.getHalfWidth(), EPSILON);
+    assertEquals(60, geometry.getHalfHeight(), EPSILON);
+  }
+
+  @Test
+  public void estimatesMissingLandmarkFromLastProportion() {
+    FaceGeometry geometry = new FaceGeometry();
+    geometry.update(face(0, 0, 100, 100).addLandmark(Landmark.LEFT_EYE, 30, 40));
+
+    // The eye is lost while the face moves and doubles in size.
+    geometry.update(face(50, 50, 200, 200));
+
+    assertTrue(geometry.hasLandmark(Landmark.LEFT_EYE));
+    assertEquals(110, geometry.getLandmarkX(Landmark.LEFT_EYE), EPSILON);
+    assertEquals(130, geometry.getLandmarkY(Landmark.LEFT_EYE), EPSILON);
+    assertFalse(geometry.hasLandmark(Landmark.RIGHT_EYE));
+  }
+
+  @Test
+  public void resetForgetsProportions() {
+    FaceGeometry geometry = new FaceGeometry();
+    geometry.update(face(0, 0, 100, 100).addLandmark(Landmark.LEFT_EYE, 30, 40));
+
+    geometry.reset();
+    assertFalse(geometry.isValid());
+
+    geometry.update(face(0, 0, 100, 100));
+    assertFalse(geometry.hasLandmark(Landmark.LEFT_EYE));
+  }
+
+  @Test
+  public void copyTakesFacePositionsButNotProportions() {
+    FaceGeometry source = new FaceGeometry();
+    source.update(face(0, 0, 100, 100).addLandmark(Landmark.NOSE_BASE, 50, 60));
+
+    FaceGeometry copy = new FaceGeometry();
+    assertTrue(copy.copyFrom(source));
+    assertEquals(50, copy.getLandmarkX(Landmark.NOSE_BASE), EPSILON);
+
+    // The copy never saw the landmark itself, so it cannot estimate it.
+    copy.update(face(0, 0, 100, 100));
+    assertFalse(copy.hasLandmark(Landmark.NOSE_BASE));
+  }
+
+  @Test
+  public void mapToViewMovesBoxAndLandmarks() {
+    FaceGeometry geometry = new FaceGeometry();
+    geometry.update(face(40, 30, 100, 120).addLandmark(Landmark.LEFT_EYE, 70, 70));
+
+    // Twice the preview size, mirrored into a 640 pixel wide view.
+    geometry.mapToView(PreviewTransform.create(320, 240, 640, 480, true));
+
+    assertEquals(640 - 180, geometry.getCenterX(), EPSILON);
+    assertEquals(180, geometry.getCenterY(), EPSILON);
+    assertEquals(100, geometry.getHalfWidth(), EPSILON);
+    assertEquals(120, geometry.getHalfHeight(), EPSILON);
+    assertEquals(640 - 280, geometry.getLeft(), EPSILON);
+    assertEquals(200, geometry.getWidth(), EPSILON);
+    assertEquals(640 - 140, geometry.getLandmarkX(Landmark.LEFT_EYE), EPSILON);
+    assertEquals(140, geometry.getLandmarkY(Landmark.LEFT_EYE), EPSILON);
+  }
+
+  private static FaceRecord face(float left, float top, float width, float height) {
+    return new FaceRecord().set(1, left, top, width, height, 0, 0);
+  }
+}
@@ -0,0 +1,111 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Offline evaluation of the smoothed, predicted geometry against the raw detections it replaces.
+ * A recorded track, a face swaying from side to side with detector noise, is fed in at the
+ * detector rate and drawn at the display rate.  Each drawn position is compared with where the
+ * face really was at that vsync: the mean error measures lag, and the mean frame-to-frame change
+ * in acceleration against the true path measures jitter.
+ */
+public class FacePredictionTest {
+  private static final float MIN_CUTOFF = FaceGeometry.DEFAULT_MIN_CUTOFF;
+  private static final float BETA = FaceGeometry.DEFAULT_BETA;
+
+  private static final long DETECTION_NANOS = 33333333L;
+  private static final long VSYNC_NANOS = 16666667L;
+  private static final long DETECTOR_LATENCY_NANOS = 20000000L;
+  private static final long DURATION_NANOS = 10000000000L;
+  private static final float NOISE_PIXELS = 1.5f;
+
+  @Test
+  public void predictionReducesLagAndJitter() {
+    Result raw = evaluate(new FaceGeometry());
+    Result predicted = evaluate(new FaceGeometry(MIN_CUTOFF, BETA));
+
+    assertTrue("lag: raw " + raw.meanError + " px, predicted " + predicted.meanError + " px",
+        predicted.meanError < raw.meanError * 0.7f);
+    assertTrue("jitter: raw " + raw.jitter + " px, predicted " + predicted.jitter + " px",
+        predicted.jitter < raw.jitter);
+  }
+
+  @Test
+  public void stillFaceStaysPut() {
+    FaceGeometry geometry = new FaceGeometry(MIN_CUTOFF, BETA);
+    FaceRecord face = new FaceRecord();
+    for (int i = 0; i < 30; ++i) {
+      geometry.update(face.set(1, 100, 80, 120, 140, 0, 0), i * DETECTION_NANOS);
+    }
+
+    FaceGeometry drawn = new FaceGeometry();
+    assertTrue(drawn.predictFrom(geometry, 30 * DETECTION_NANOS));
+    assertEquals(160, drawn.getCenterX(), 0.01f);
+    assertEquals(150, drawn.getCenterY(), 0.01f);
+  }
+
+  private static Result evaluate(FaceGeometry geometry) {
+    Random noise = new Random(7);
+    FaceRecord face = new FaceRecord();
+    FaceGeometry drawn = new FaceGeometry();
+
+    long nextCapture = 0;
+    double errorSum = 0;
+    double jitterSum = 0;
+    int samples = 0;
+    float previous = Float.NaN;
+    float previousDelta = Float.NaN;
+    float previousTruth = Float.NaN;
+    float previousTruthDelta = Float.NaN;
+
+    for (long vsync = 0; vsync < DURATION_NANOS; vsync += VSYNC_NANOS) {
+      // Deliver every detection whose result has arrived by this vsync.
+      while (nextCapture + DETECTOR_LATENCY_NANOS <= vsync) {
+        float left = trueLeft(nextCapture) + NOISE_PIXELS * (float) noise.nextGaussian();
+        geometry.update(face.set(1, left, 80, 120, 140, 0, 0), nextCapture);
+        nextCapture += DETECTION_NANOS;
+      }
+      if (!drawn.predictFrom(geometry, vsync)) {
+        continue;
+      }
+
+      float shown = drawn.getLeft();
+      float truth = trueLeft(vsync);
+      errorSum += Math.abs(shown - truth);
+      if (!Float.isNaN(previousDelta)) {
+        float acceleration = (shown - previous) - previousDelta;
+        float truthAcceleration = (truth - previousTruth) - previousTruthDelta;
+        jitterSum += Math.abs(acceleration - truthAcceleration);
+      }
+      if (!Float.isNaN(previous)) {
+        previousDelta = shown - previous;
+        previousTruthDelta = truth - previousTruth;
+      }
+      previous = shown;
+      previousTruth = truth;
+      samples++;
+    }
+
+    Result result = new Result();
+    result.meanError = (float) (errorSum / samples);
+    result.jitter = (float) (jitterSum / samples);
+    return result;
+  }
+
+  /**
+   * A face swaying 80 px either way about once every two seconds.
+   */
+  private static float trueLeft(long timeNanos) {
+    return 200 + 80 * (float) Math.sin(timeNanos / 1e9 * Math.PI);
+  }
+
+  private static class Result {
+    float meanError;
+    float jitter;
+  }
+}
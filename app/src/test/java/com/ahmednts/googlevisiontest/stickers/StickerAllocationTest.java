@@ -0,0 +1,112 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.google.android.gms.vision.face.Landmark;
+import java.lang.management.ManagementFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that the steady-state update and draw paths of the stickers do not allocate.  Allocation
+ * is measured per thread with the HotSpot {@code ThreadMXBean} extension.
+ */
+public class StickerAllocationTest {
+  private static final int WARM_UP_ITERATIONS = 20000;
+  private static final int ITERATIONS = 10000;
+  private static final int MEASUREMENT_ROUNDS = 3;
+
+  private GraphicOverlay mOverlay;
+  private Canvas mCanvas;
+  private FaceRecord mFace;
+  private FaceGeometry mGeometry;
+  private StickerAssets mAssets;
+
+  @Before
+  public void setUp() {
+    mOverlay = new GraphicOverlay(null, null);
+    mCanvas = new Canvas();
+    mFace = new FaceRecord().set(1, 40, 30, 100, 120, 0, 0)
+        .addLandmark(Landmark.LEFT_EYE, 70, 70)
+        .addLandmark(Landmark.RIGHT_EYE, 110, 70)
+        .addLandmark(Landmark.NOSE_BASE, 90, 100);
+    mGeometry = new FaceGeometry();
+    mAssets = new StickerAssets(Integer.MAX_VALUE);
+    mAssets.putAtlas(0, new StickerAtlas(mock(Bitmap.class), new Rect[] {
+        new Rect(), new Rect()
+    }, 0));
+  }
+
+  @Test
+  public void faceStickerDoesNotAllocate() {
+    final StickerFaceGraphic graphic = new StickerFaceGraphic(mOverlay, mAssets);
+    assertNoAllocation(new Runnable() {
+      @Override
+      public void run() {
+        mGeometry.update(mFace);
+        graphic.updateEyes(mGeometry);
+        graphic.draw(mCanvas);
+      }
+    });
+  }
+
+  @Test
+  public void hatStickerDoesNotAllocate() {
+    final StickerHatGraphic graphic = new StickerHatGraphic(mOverlay, mAssets);
+    assertNoAllocation(new Runnable() {
+      @Override
+      public void run() {
+        mGeometry.update(mFace);
+        graphic.updateEyes(mGeometry);
+        graphic.draw(mCanvas);
+      }
+    });
+  }
+
+  @Test
+  public void eyesStickerDoesNotAllocate() {
+    final StickerEyesGraphic graphic = new StickerEyesGraphic(mOverlay);
+    assertNoAllocation(new Runnable() {
+      @Override
+      public void run() {
+        mGeometry.update(mFace);
+        graphic.updateEyes(mGeometry);
+        graphic.draw(mCanvas);
+      }
+    });
+  }
+
+  private static void assertNoAllocation(Runnable frame) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    for (int i = 0; i < WARM_UP_ITERATIONS; ++i) {
+      frame.run();
+    }
+
+    // A per-frame allocation shows up in every round; the JIT occasionally allocates a few bytes
+    // on the test thread in one of them.
+    long allocated = Long.MAX_VALUE;
+    for (int round = 0; round < MEASUREMENT_ROUNDS && allocated != 0; ++round) {
+      // Calibrate for whatever the measurement itself costs.
+      long baseline = threads.getThreadAllocatedBytes(threadId);
+      baseline = threads.getThreadAllocatedBytes(threadId) - baseline;
+
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < ITERATIONS; ++i) {
+        frame.run();
+      }
+      allocated = Math.min(allocated,
+          threads.getThreadAllocatedBytes(threadId) - before - baseline);
+    }
+
+    assertEquals("bytes allocated over " + ITERATIONS + " frames", 0, allocated);
+  }
+}
@@ -0,0 +1,23 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StickerAssetLoaderTest {
+  @Test
+  public void keepsFullSizeWhenTargetIsLarger() {
+    assertEquals(1, StickerAssetLoader.calculateInSampleSize(512, 512, 1080, 1920));
+  }
+
+  @Test
+  public void halvesWhileBothDimensionsStillCoverTarget() {
+    assertEquals(2, StickerAssetLoader.calculateInSampleSize(2160, 4096, 1080, 1920));
+    assertEquals(4, StickerAssetLoader.calculateInSampleSize(4096, 4096, 720, 1024));
+  }
+
+  @Test
+  public void ignoresUnknownTargetSize() {
+    assertEquals(1, StickerAssetLoader.calculateInSampleSize(4096, 4096, 0, 0));
+  }
+}
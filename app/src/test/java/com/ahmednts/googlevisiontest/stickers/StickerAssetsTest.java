@@ -0,0 +1,103 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class StickerAssetsTest {
+  private static final int ATLAS_BYTES = 1000;
+
+  private StickerAssets mAssets;
+  private StickerRegion mRegion;
+  private final List<Integer> mRequested = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    mAssets = new StickerAssets(2 * ATLAS_BYTES);
+    mAssets.setAtlasBuilder(new StickerAssets.AtlasBuilder() {
+      @Override
+      public void requestAtlas(int bucket) {
+        mRequested.add(bucket);
+      }
+    });
+    mRegion = new StickerRegion();
+  }
+
+  @Test
+  public void picksSmallestBucketCoveringDestination() {
+    assertEquals(0, StickerAssets.bucketFor(10));
+    assertEquals(1, StickerAssets.bucketFor(65));
+    assertEquals(2, StickerAssets.bucketFor(256));
+    assertEquals(StickerAssets.BUCKET_SIZES.length - 1, StickerAssets.bucketFor(5000));
+  }
+
+  @Test
+  public void drawsNothingBeforeFirstAtlas() {
+    assertFalse(mAssets.findRegion(StickerAssets.LION, 200, 200, mRegion));
+    assertEquals(1, mRequested.size());
+  }
+
+  @Test
+  public void fallsBackToNearestLoadedBucketAndRequestsWantedOnce() {
+    StickerAtlas small = atlas();
+    mAssets.putAtlas(0, small);
+
+    assertTrue(mAssets.findRegion(StickerAssets.HAT, 200, 200, mRegion));
+    assertSame(small.bitmap, mRegion.bitmap);
+    assertTrue(mAssets.findRegion(StickerAssets.HAT, 200, 200, mRegion));
+    assertEquals(1, mRequested.size());
+    assertEquals(2, (int) mRequested.get(0));
+  }
+
+  @Test
+  public void doesNotRequestFailedBucketAgain() {
+    assertFalse(mAssets.findRegion(StickerAssets.LION, 200, 200, mRegion));
+    mAssets.onAtlasFailed(2);
+    StickerAtlas small = atlas();
+    mAssets.putAtlas(0, small);
+
+    assertTrue(mAssets.findRegion(StickerAssets.LION, 200, 200, mRegion));
+    assertSame(small.bitmap, mRegion.bitmap);
+    assertTrue(mAssets.hasFailed(2));
+    assertEquals(1, mRequested.size());
+  }
+
+  @Test
+  public void neverWantsBucketLargerThanStickers() {
+    mAssets.setStickerSize(128);
+    assertFalse(mAssets.findRegion(StickerAssets.LION, 600, 600, mRegion));
+
+    assertEquals(1, (int) mRequested.get(0));
+    assertEquals(1, mAssets.capBucket(StickerAssets.BUCKET_SIZES.length - 1));
+    assertEquals(0, mAssets.capBucket(0));
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedBucketOverBudget() {
+    mAssets.putAtlas(0, atlas());
+    mAssets.putAtlas(1, atlas());
+    // Touch bucket 0 so that bucket 1 becomes the least recently used.
+    mAssets.findRegion(StickerAssets.LION, 64, 64, mRegion);
+
+    mAssets.putAtlas(2, atlas());
+
+    assertTrue(mAssets.hasAtlas(0));
+    assertFalse(mAssets.hasAtlas(1));
+    assertTrue(mAssets.hasAtlas(2));
+    assertEquals(2 * ATLAS_BYTES, mAssets.getByteCount());
+  }
+
+  private static StickerAtlas atlas() {
+    return new StickerAtlas(mock(Bitmap.class), new Rect[] { new Rect(), new Rect() },
+        ATLAS_BYTES);
+  }
+}
@@ -0,0 +1,37 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import com.ahmednts.googlevisiontest.face.DetectorFeatures;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StickerSetTest {
+  @Test
+  public void noStickerNeedsLandmarksWhileTheEyesAreNotDrawn() {
+    assertEquals(DetectorFeatures.NONE, StickerSet.getDetectorFeatures(StickerSet.ALL));
+    assertEquals(DetectorFeatures.NONE, StickerSet.getDetectorFeatures(StickerSet.EYES));
+    assertEquals(DetectorFeatures.NONE,
+        StickerSet.getDetectorFeatures(StickerSet.FACE | StickerSet.HAT));
+    assertEquals(DetectorFeatures.NONE, StickerSet.getDetectorFeatures(0));
+  }
+
+  @Test
+  public void switchingReportsOnlyFeatureChanges() {
+    StickerSet stickers = new StickerSet(StickerSet.FACE);
+
+    assertFalse(stickers.setStickers(StickerSet.HAT));
+    assertFalse(stickers.setStickers(StickerSet.FACE | StickerSet.HAT));
+    assertFalse(stickers.setStickers(StickerSet.ALL));
+    assertFalse(stickers.setStickers(StickerSet.EYES));
+    assertFalse(stickers.setStickers(StickerSet.HAT));
+    assertTrue(stickers.contains(StickerSet.HAT));
+    assertFalse(stickers.contains(StickerSet.EYES));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownStickers() {
+    new StickerSet(StickerSet.ALL + 1);
+  }
+}
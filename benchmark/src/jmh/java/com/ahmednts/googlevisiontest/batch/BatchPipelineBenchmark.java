@@ -0,0 +1,90 @@
+package com.ahmednts.googlevisiontest.batch;
+
+import com.ahmednts.googlevisiontest.replay.FrameRecord;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the still-image {@link BatchPipeline} over a batch of {@value #IMAGES} images,
+ * with stand-in stages that burn about as much CPU, relative to each other, as decoding,
+ * detection, compositing and JPEG encoding do on a phone.  Comparing {@code workers} shows how
+ * well the stages overlap; with enough cores the batch time should approach the detection time
+ * alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchPipelineBenchmark {
+  private static final int IMAGES = 64;
+
+  // Relative stage costs, in Blackhole.consumeCPU tokens.
+  private static final long DECODE_TOKENS = 20000;
+  private static final long DETECT_TOKENS = 60000;
+  private static final long COMPOSITE_TOKENS = 5000;
+  private static final long ENCODE_TOKENS = 30000;
+
+  @Param({"1", "4", "8"})
+  public int workers;
+
+  private final List<String> mSources = new ArrayList<>();
+  private BatchPipeline<byte[]> mPipeline;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < IMAGES; ++i) {
+      mSources.add("image" + i + ".jpg");
+    }
+    mPipeline = new BatchPipeline<>(
+        new BatchPipeline.Decoder<byte[]>() {
+          @Override
+          public byte[] decode(String source) {
+            Blackhole.consumeCPU(DECODE_TOKENS);
+            return new byte[64 * 1024];
+          }
+
+          @Override
+          public void recycle(byte[] image) {
+          }
+        },
+        new StillFaceDetector<byte[]>() {
+          @Override
+          public void detect(byte[] image, FrameRecord out) {
+            Blackhole.consumeCPU(DETECT_TOKENS);
+            out.addFace().set(1, 10, 10, 50, 50, 0, 0);
+          }
+
+          @Override
+          public void release() {
+          }
+        },
+        new BatchPipeline.Compositor<byte[]>() {
+          @Override
+          public byte[] composite(byte[] image, FrameRecord faces) {
+            Blackhole.consumeCPU(COMPOSITE_TOKENS);
+            return image;
+          }
+        },
+        new BatchPipeline.Encoder<byte[]>() {
+          @Override
+          public void encode(byte[] image, String source) {
+            Blackhole.consumeCPU(ENCODE_TOKENS);
+          }
+        },
+        workers, 2);
+  }
+
+  @Benchmark
+  public BatchPipeline.Result runBatch() throws InterruptedException {
+    return mPipeline.run(mSources);
+  }
+}
@@ -0,0 +1,105 @@
+package com.ahmednts.googlevisiontest.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import com.ahmednts.googlevisiontest.geometry.PreviewTransform;
+import com.google.android.gms.vision.CameraSource;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of mapping every point the stickers of {@code faceCount} faces draw from preview to view
+ * coordinates: with {@link GraphicOverlay.Graphic#translateX(float)} and friends, one call per
+ * coordinate, and with the draw pass's {@link PreviewTransform} mapping the whole buffer at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GraphicTransformBenchmark {
+  private static final int PREVIEW_WIDTH = 320;
+  private static final int PREVIEW_HEIGHT = 240;
+  private static final int VIEW_WIDTH = 1440;
+  private static final int VIEW_HEIGHT = 1080;
+
+  // The face centre and the twelve landmark types.
+  private static final int POINTS_PER_FACE = 13;
+
+  @Param({"1", "10", "30"})
+  public int faceCount;
+
+  @Param({"back", "front"})
+  public String facing;
+
+  private GraphicOverlay.Graphic mGraphic;
+  private PreviewTransform mTransform;
+
+  // Interleaved x and y in preview coordinates, and the half-extents of each face.
+  private float[] mPoints;
+  private float[] mMapped;
+  private float[] mExtents;
+
+  @Setup
+  public void setUp() {
+    GraphicOverlay overlay = new GraphicOverlay(null, null);
+    overlay.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+    overlay.setCameraInfo(PREVIEW_WIDTH, PREVIEW_HEIGHT, "front".equals(facing)
+        ? CameraSource.CAMERA_FACING_FRONT : CameraSource.CAMERA_FACING_BACK);
+    // A draw pass computes the scale factors from the canvas size.
+    overlay.drawGraphics(
+        new Canvas(Bitmap.createBitmap(VIEW_WIDTH, VIEW_HEIGHT, Bitmap.Config.ARGB_8888)), 0);
+
+    mGraphic = new GraphicOverlay.Graphic(overlay) {
+      @Override
+      public void draw(Canvas canvas) {
+        mTransform = getTransform();
+      }
+    };
+    overlay.add(mGraphic);
+    overlay.drawGraphics(
+        new Canvas(Bitmap.createBitmap(VIEW_WIDTH, VIEW_HEIGHT, Bitmap.Config.ARGB_8888)), 0);
+
+    Random random = new Random(42);
+    mPoints = new float[2 * POINTS_PER_FACE * faceCount];
+    for (int i = 0; i < mPoints.length; i += 2) {
+      mPoints[i] = random.nextFloat() * PREVIEW_WIDTH;
+      mPoints[i + 1] = random.nextFloat() * PREVIEW_HEIGHT;
+    }
+    mMapped = new float[mPoints.length];
+    mExtents = new float[2 * faceCount];
+    for (int i = 0; i < mExtents.length; ++i) {
+      mExtents[i] = 20 + random.nextFloat() * 60;
+    }
+  }
+
+  @Benchmark
+  public float translatePoints() {
+    float sum = 0;
+    for (int i = 0; i < mPoints.length; i += 2) {
+      sum += mGraphic.translateX(mPoints[i]) + mGraphic.translateY(mPoints[i + 1]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public float mapPointsBatched() {
+    mTransform.mapPoints(mPoints, 0, mMapped, 0, mPoints.length / 2);
+    return mMapped[mMapped.length - 1];
+  }
+
+  @Benchmark
+  public float scaleExtents() {
+    float sum = 0;
+    for (int i = 0; i < mExtents.length; i += 2) {
+      sum += mGraphic.scaleX(mExtents[i]) + mGraphic.scaleY(mExtents[i + 1]);
+    }
+    return sum;
+  }
+}
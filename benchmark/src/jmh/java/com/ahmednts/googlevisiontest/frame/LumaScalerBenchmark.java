@@ -0,0 +1,49 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of shrinking the largest preview frames by half and turning them upright before
+ * detection, into a pooled direct buffer as {@link DownscalingFaceDetector} does.  Rotation 1 is
+ * the usual portrait case; rotation 0 reads the plane in order and is the best case.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LumaScalerBenchmark {
+  private static final int WIDTH = 1280;
+  private static final int HEIGHT = 720;
+  private static final int FACTOR = 2;
+
+  @Param({"0", "1"})
+  public int rotation;
+
+  private ByteBuffer mFrame;
+  private FramePool mPool;
+
+  @Setup
+  public void setUp() {
+    byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+    new Random(42).nextBytes(nv21);
+    mFrame = ByteBuffer.wrap(nv21);
+    mPool = new FramePool(2);
+  }
+
+  @Benchmark
+  public ByteBuffer scale() {
+    FramePool.PooledFrame frame = mPool.obtain(WIDTH * HEIGHT / FACTOR / FACTOR * 3 / 2);
+    LumaScaler.scale(mFrame, WIDTH, HEIGHT, rotation, FACTOR, frame.getData());
+    mPool.recycle(frame);
+    return frame.getData();
+  }
+}
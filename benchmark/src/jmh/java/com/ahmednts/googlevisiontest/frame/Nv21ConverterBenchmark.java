@@ -0,0 +1,45 @@
+package com.ahmednts.googlevisiontest.frame;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of turning a whole camera frame into ARGB pixels, the first step of every snapshot, into
+ * a pixel array kept from one snapshot to the next.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Nv21ConverterBenchmark {
+  @Param({"640x480", "1280x720"})
+  public String size;
+
+  private int mWidth;
+  private int mHeight;
+  private byte[] mFrame;
+  private int[] mArgb;
+
+  @Setup
+  public void setUp() {
+    String[] dimensions = size.split("x");
+    mWidth = Integer.parseInt(dimensions[0]);
+    mHeight = Integer.parseInt(dimensions[1]);
+    mFrame = new byte[Nv21Converter.getFrameSize(mWidth, mHeight)];
+    new Random(42).nextBytes(mFrame);
+    mArgb = new int[mWidth * mHeight];
+  }
+
+  @Benchmark
+  public int[] toArgb() {
+    Nv21Converter.toArgb(mFrame, mWidth, mHeight, mArgb);
+    return mArgb;
+  }
+}
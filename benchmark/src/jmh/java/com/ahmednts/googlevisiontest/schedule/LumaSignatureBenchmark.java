@@ -0,0 +1,64 @@
+package com.ahmednts.googlevisiontest.schedule;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of the still-scene check that runs before every scheduled detection: computing the
+ * {@link LumaSignature} of an NV21 frame, and comparing it with the last detected frame's.  The
+ * camera hands frames over in heap buffers; {@code direct} measures the slower path for frames in
+ * direct buffers.  The cost should hardly depend on {@code size}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LumaSignatureBenchmark {
+  @Param({"320x240", "1280x720"})
+  public String size;
+
+  @Param({"heap", "direct"})
+  public String buffer;
+
+  private int mWidth;
+  private int mHeight;
+  private ByteBuffer mFrame;
+  private LumaSignature mSignature;
+  private LumaSignature mDetectedSignature;
+
+  @Setup
+  public void setUp() {
+    String[] dimensions = size.split("x");
+    mWidth = Integer.parseInt(dimensions[0]);
+    mHeight = Integer.parseInt(dimensions[1]);
+    byte[] nv21 = new byte[mWidth * mHeight * 3 / 2];
+    new Random(42).nextBytes(nv21);
+    if ("direct".equals(buffer)) {
+      mFrame = ByteBuffer.allocateDirect(nv21.length);
+      mFrame.put(nv21);
+      mFrame.position(0);
+    } else {
+      mFrame = ByteBuffer.wrap(nv21);
+    }
+    mSignature = new LumaSignature();
+    mDetectedSignature = new LumaSignature().compute(mFrame, mWidth, mHeight);
+  }
+
+  @Benchmark
+  public LumaSignature compute() {
+    return mSignature.compute(mFrame, mWidth, mHeight);
+  }
+
+  @Benchmark
+  public int computeAndCompare() {
+    return mSignature.compute(mFrame, mWidth, mHeight).distance(mDetectedSignature);
+  }
+}
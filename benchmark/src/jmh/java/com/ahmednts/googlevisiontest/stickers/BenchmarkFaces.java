@@ -0,0 +1,63 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.google.android.gms.vision.face.Landmark;
+
+/**
+ * Synthetic faces and sticker assets shared by the sticker benchmarks.
+ */
+final class BenchmarkFaces {
+  static final int PREVIEW_WIDTH = 320;
+  static final int PREVIEW_HEIGHT = 240;
+  static final int VIEW_WIDTH = 1440;
+  static final int VIEW_HEIGHT = 1080;
+
+  private BenchmarkFaces() {
+  }
+
+  /**
+   * Fills {@code out} with face {@code index} of {@code count}, laid out on a grid over the
+   * preview, with the eight landmarks of the fast detector mode, or without the eyes so that
+   * their positions have to be estimated.  {@code offset} shifts the face, to simulate movement.
+   */
+  static FaceRecord face(int index, int count, boolean withEyes, float offset, FaceRecord out) {
+    int columns = (int) Math.ceil(Math.sqrt(count));
+    int rows = (count + columns - 1) / columns;
+    float cellWidth = (float) PREVIEW_WIDTH / columns;
+    float cellHeight = (float) PREVIEW_HEIGHT / rows;
+    float width = 0.8f * Math.min(cellWidth, cellHeight);
+    float height = 1.2f * width;
+    float left = (index % columns) * cellWidth + offset;
+    float top = (index / columns) * cellHeight + offset;
+
+    out.set(index, left, top, width, height, 0, 0);
+    if (withEyes) {
+      out.addLandmark(Landmark.LEFT_EYE, left + 0.3f * width, top + 0.4f * height);
+      out.addLandmark(Landmark.RIGHT_EYE, left + 0.7f * width, top + 0.4f * height);
+    }
+    out.addLandmark(Landmark.NOSE_BASE, left + 0.5f * width, top + 0.6f * height);
+    out.addLandmark(Landmark.LEFT_CHEEK, left + 0.25f * width, top + 0.65f * height);
+    out.addLandmark(Landmark.RIGHT_CHEEK, left + 0.75f * width, top + 0.65f * height);
+    out.addLandmark(Landmark.LEFT_MOUTH, left + 0.35f * width, top + 0.8f * height);
+    out.addLandmark(Landmark.RIGHT_MOUTH, left + 0.65f * width, top + 0.8f * height);
+    out.addLandmark(Landmark.BOTTOM_MOUTH, left + 0.5f * width, top + 0.85f * height);
+    return out;
+  }
+
+  /**
+   * Returns assets with every size bucket loaded, so that no draw falls back to another bucket.
+   */
+  static StickerAssets loadedAssets() {
+    StickerAssets assets = new StickerAssets(Integer.MAX_VALUE);
+    for (int bucket = 0; bucket < StickerAssets.BUCKET_SIZES.length; ++bucket) {
+      int size = StickerAssets.BUCKET_SIZES[bucket];
+      Bitmap bitmap = Bitmap.createBitmap(2 * size, size, Bitmap.Config.ARGB_8888);
+      assets.putAtlas(bucket, new StickerAtlas(bitmap, new Rect[] {
+          new Rect(0, 0, size, size), new Rect(size, 0, 2 * size, size)
+      }, bitmap.getByteCount()));
+    }
+    return assets;
+  }
+}
@@ -0,0 +1,77 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.google.android.gms.vision.face.Landmark;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-detection {@link FaceGeometry} work for {@code faceCount} faces: remembering landmark
+ * proportions, estimating the eyes when a detection misses them, and optionally smoothing; and the
+ * per-draw copy and prediction each sticker makes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LandmarkProportionBenchmark {
+  private static final long FRAME_NANOS = 33000000L;
+
+  @Param({"1", "10", "30"})
+  public int faceCount;
+
+  @Param({"raw", "smoothed"})
+  public String filter;
+
+  // Two detections per face, with and without the eyes.
+  private FaceRecord[][] mFaces;
+  private FaceGeometry[] mGeometries;
+  private FaceGeometry mDrawGeometry;
+  private long mTimeNanos;
+  private int mFrame;
+
+  @Setup
+  public void setUp() {
+    mFaces = new FaceRecord[faceCount][2];
+    mGeometries = new FaceGeometry[faceCount];
+    for (int i = 0; i < faceCount; ++i) {
+      mFaces[i][0] = BenchmarkFaces.face(i, faceCount, true, 0, new FaceRecord());
+      mFaces[i][1] = BenchmarkFaces.face(i, faceCount, false, 2, new FaceRecord());
+      mGeometries[i] = "smoothed".equals(filter)
+          ? new FaceGeometry(FaceGeometry.DEFAULT_MIN_CUTOFF, FaceGeometry.DEFAULT_BETA)
+          : new FaceGeometry();
+    }
+    mDrawGeometry = new FaceGeometry();
+    mTimeNanos = 1000000000L;
+    update();
+  }
+
+  @Benchmark
+  public float update() {
+    mFrame++;
+    mTimeNanos += FRAME_NANOS;
+    float sum = 0;
+    for (int i = 0; i < faceCount; ++i) {
+      FaceGeometry geometry = mGeometries[i];
+      geometry.update(mFaces[i][(mFrame + i) & 1], mTimeNanos);
+      sum += geometry.getLandmarkX(Landmark.LEFT_EYE) + geometry.getLandmarkY(Landmark.RIGHT_EYE);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public float predict() {
+    float sum = 0;
+    for (int i = 0; i < faceCount; ++i) {
+      mDrawGeometry.predictFrom(mGeometries[i], mTimeNanos + FRAME_NANOS / 2);
+      sum += mDrawGeometry.getCenterX() + mDrawGeometry.getLandmarkX(Landmark.LEFT_EYE);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,109 @@
+package com.ahmednts.googlevisiontest.stickers;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import com.ahmednts.googlevisiontest.camera.GraphicOverlay;
+import com.ahmednts.googlevisiontest.face.FaceRecord;
+import com.google.android.gms.vision.CameraSource;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Sticker layout for {@code faceCount} faces, each with the face, hat and eyes stickers that
+ * {@code FaceTracker} shows: the overlay draw pass alone, and a detector update followed by a draw.
+ * The canvas is a stand-in, so this measures the layout math, atlas lookups and overlay
+ * bookkeeping, not rasterisation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StickerDrawBenchmark {
+  private static final long FRAME_NANOS = 33000000L;
+
+  // How far ahead of the detection the display frame is drawn.
+  private static final long DRAW_DELAY_NANOS = 8000000L;
+
+  @Param({"1", "10", "30"})
+  public int faceCount;
+
+  @Param({"back", "front"})
+  public String facing;
+
+  private GraphicOverlay mOverlay;
+  private Canvas mCanvas;
+  private FaceRecord[] mFaces;
+  private FaceGeometry[] mGeometries;
+  private StickerEyesGraphic[] mEyes;
+  private StickerFaceGraphic[] mFaceStickers;
+  private StickerHatGraphic[] mHats;
+  private long mTimeNanos;
+  private int mFrame;
+
+  @Setup
+  public void setUp() {
+    mOverlay = new GraphicOverlay(null, null);
+    mOverlay.layout(0, 0, BenchmarkFaces.VIEW_WIDTH, BenchmarkFaces.VIEW_HEIGHT);
+    mOverlay.setCameraInfo(BenchmarkFaces.PREVIEW_WIDTH, BenchmarkFaces.PREVIEW_HEIGHT,
+        "front".equals(facing)
+            ? CameraSource.CAMERA_FACING_FRONT : CameraSource.CAMERA_FACING_BACK);
+    mCanvas = new Canvas(Bitmap.createBitmap(BenchmarkFaces.VIEW_WIDTH,
+        BenchmarkFaces.VIEW_HEIGHT, Bitmap.Config.ARGB_8888));
+    StickerAssets assets = BenchmarkFaces.loadedAssets();
+
+    mFaces = new FaceRecord[faceCount];
+    mGeometries = new FaceGeometry[faceCount];
+    mEyes = new StickerEyesGraphic[faceCount];
+    mFaceStickers = new StickerFaceGraphic[faceCount];
+    mHats = new StickerHatGraphic[faceCount];
+    for (int i = 0; i < faceCount; ++i) {
+      mFaces[i] = new FaceRecord();
+      mGeometries[i] =
+          new FaceGeometry(FaceGeometry.DEFAULT_MIN_CUTOFF, FaceGeometry.DEFAULT_BETA);
+      mEyes[i] = new StickerEyesGraphic(mOverlay);
+      mFaceStickers[i] = new StickerFaceGraphic(mOverlay, assets);
+      mHats[i] = new StickerHatGraphic(mOverlay, assets);
+      mOverlay.add(mEyes[i]);
+      mOverlay.add(mFaceStickers[i]);
+      mOverlay.add(mHats[i]);
+    }
+    mTimeNanos = 1000000000L;
+    update();
+  }
+
+  @Benchmark
+  public void draw() {
+    mOverlay.drawGraphics(mCanvas, mTimeNanos + DRAW_DELAY_NANOS);
+  }
+
+  @Benchmark
+  public void updateAndDraw() {
+    mTimeNanos += FRAME_NANOS;
+    update();
+    mOverlay.drawGraphics(mCanvas, mTimeNanos + DRAW_DELAY_NANOS);
+  }
+
+  /**
+   * What the trackers do for one detector frame: move each face a little, alternately with and
+   * without eyes, and hand the new geometry to its stickers.
+   */
+  private void update() {
+    mFrame++;
+    float offset = (mFrame & 7) - 4;
+    mOverlay.beginFrame();
+    for (int i = 0; i < faceCount; ++i) {
+      BenchmarkFaces.face(i, faceCount, ((mFrame + i) & 1) == 0, offset, mFaces[i]);
+      mGeometries[i].update(mFaces[i], mTimeNanos);
+      mEyes[i].updateEyes(mGeometries[i]);
+      mFaceStickers[i].updateEyes(mGeometries[i]);
+      mHats[i].updateEyes(mGeometries[i]);
+    }
+    mOverlay.commitFrame();
+  }
+}
@@ -0,0 +1,14 @@
+package android.content.res;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  Every attribute has
+ * its default value.
+ */
+public class TypedArray {
+  public int getInt(int index, int defValue) {
+    return defValue;
+  }
+
+  public void recycle() {
+  }
+}
@@ -0,0 +1,35 @@
+package android.graphics;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  Holds a size but no
+ * pixels.
+ */
+public final class Bitmap {
+  public enum Config {
+    ALPHA_8, RGB_565, ARGB_8888
+  }
+
+  private final int mWidth;
+  private final int mHeight;
+
+  private Bitmap(int width, int height) {
+    mWidth = width;
+    mHeight = height;
+  }
+
+  public static Bitmap createBitmap(int width, int height, Config config) {
+    return new Bitmap(width, height);
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public int getByteCount() {
+    return mWidth * mHeight * 4;
+  }
+}
@@ -0,0 +1,33 @@
+package android.graphics;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  Drawing calls do
+ * nothing, so benchmarks measure the work done before them.
+ */
+public class Canvas {
+  private Bitmap mBitmap;
+
+  public Canvas() {
+  }
+
+  public Canvas(Bitmap bitmap) {
+    mBitmap = bitmap;
+  }
+
+  public int getWidth() {
+    return mBitmap != null ? mBitmap.getWidth() : 0;
+  }
+
+  public int getHeight() {
+    return mBitmap != null ? mBitmap.getHeight() : 0;
+  }
+
+  public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+  }
+
+  public void drawCircle(float cx, float cy, float radius, Paint paint) {
+  }
+
+  public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+  }
+}
@@ -0,0 +1,10 @@
+package android.graphics;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.
+ */
+public class Color {
+  public static final int BLACK = 0xFF000000;
+  public static final int RED = 0xFFFF0000;
+  public static final int WHITE = 0xFFFFFFFF;
+}
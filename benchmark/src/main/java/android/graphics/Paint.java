@@ -0,0 +1,52 @@
+package android.graphics;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.
+ */
+public class Paint {
+  public static final int FILTER_BITMAP_FLAG = 0x02;
+
+  public enum Style {
+    FILL, STROKE, FILL_AND_STROKE
+  }
+
+  private int mFlags;
+  private int mColor;
+  private Style mStyle = Style.FILL;
+  private float mStrokeWidth;
+
+  public Paint() {
+  }
+
+  public Paint(int flags) {
+    mFlags = flags;
+  }
+
+  public int getFlags() {
+    return mFlags;
+  }
+
+  public void setColor(int color) {
+    mColor = color;
+  }
+
+  public int getColor() {
+    return mColor;
+  }
+
+  public void setStyle(Style style) {
+    mStyle = style;
+  }
+
+  public Style getStyle() {
+    return mStyle;
+  }
+
+  public void setStrokeWidth(float width) {
+    mStrokeWidth = width;
+  }
+
+  public float getStrokeWidth() {
+    return mStrokeWidth;
+  }
+}
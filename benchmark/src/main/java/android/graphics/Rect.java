@@ -0,0 +1,38 @@
+package android.graphics;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  Behaves like the
+ * real one.
+ */
+public final class Rect {
+  public int left;
+  public int top;
+  public int right;
+  public int bottom;
+
+  public Rect() {
+  }
+
+  public Rect(int left, int top, int right, int bottom) {
+    set(left, top, right, bottom);
+  }
+
+  public void set(int left, int top, int right, int bottom) {
+    this.left = left;
+    this.top = top;
+    this.right = right;
+    this.bottom = bottom;
+  }
+
+  public void set(Rect src) {
+    set(src.left, src.top, src.right, src.bottom);
+  }
+
+  public int width() {
+    return right - left;
+  }
+
+  public int height() {
+    return bottom - top;
+  }
+}
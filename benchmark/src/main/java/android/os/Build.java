@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  Reports an API level
+ * below 18, so that trace sections are skipped.
+ */
+public class Build {
+  public static class VERSION {
+    public static final int SDK_INT = 17;
+  }
+
+  public static class VERSION_CODES {
+    public static final int JELLY_BEAN_MR2 = 18;
+  }
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  Benchmark threads
+ * have no looper.
+ */
+public final class Looper {
+  private Looper() {
+  }
+
+  public static Looper myLooper() {
+    return null;
+  }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.
+ */
+public final class Trace {
+  private Trace() {
+  }
+
+  public static void beginSection(String sectionName) {
+  }
+
+  public static void endSection() {
+  }
+}
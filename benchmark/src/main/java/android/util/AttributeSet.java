@@ -0,0 +1,7 @@
+package android.util;
+
+/**
+ * Stand-in for the Android interface, with only what the benchmarked code uses.
+ */
+public interface AttributeSet {
+}
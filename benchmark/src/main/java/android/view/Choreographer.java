@@ -0,0 +1,23 @@
+package android.view;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  There is no display,
+ * so callbacks never run.
+ */
+public final class Choreographer {
+  public interface FrameCallback {
+    void doFrame(long frameTimeNanos);
+  }
+
+  private static final Choreographer INSTANCE = new Choreographer();
+
+  private Choreographer() {
+  }
+
+  public static Choreographer getInstance() {
+    return INSTANCE;
+  }
+
+  public void postFrameCallback(FrameCallback callback) {
+  }
+}
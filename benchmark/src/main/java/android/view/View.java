@@ -0,0 +1,49 @@
+package android.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+
+/**
+ * Stand-in for the Android class, with only what the benchmarked code uses.  Invalidation is a
+ * no-op; the size is set with {@link #layout(int, int, int, int)}.
+ */
+public class View {
+  private int mLeft;
+  private int mTop;
+  private int mRight;
+  private int mBottom;
+
+  public View(Context context) {
+  }
+
+  public View(Context context, AttributeSet attrs) {
+  }
+
+  public void layout(int l, int t, int r, int b) {
+    mLeft = l;
+    mTop = t;
+    mRight = r;
+    mBottom = b;
+  }
+
+  public final int getWidth() {
+    return mRight - mLeft;
+  }
+
+  public final int getHeight() {
+    return mBottom - mTop;
+  }
+
+  public void invalidate() {
+  }
+
+  public void invalidate(int l, int t, int r, int b) {
+  }
+
+  public void postInvalidate() {
+  }
+
+  protected void onDraw(Canvas canvas) {
+  }
+}
@@ -0,0 +1,16 @@
+package com.ahmednts.googlevisiontest;
+
+/**
+ * Stand-in for the generated resource class, with only what the benchmarked code uses.
+ */
+public final class R {
+  public static final class raw {
+    public static final int image_hat = 0x7f060000;
+    public static final int image_lion = 0x7f060001;
+  }
+
+  public static final class styleable {
+    public static final int[] GraphicOverlay = { 0x7f010000 };
+    public static final int GraphicOverlay_renderMode = 0;
+  }
+}
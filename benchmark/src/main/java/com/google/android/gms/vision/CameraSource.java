@@ -0,0 +1,9 @@
+package com.google.android.gms.vision;
+
+/**
+ * Stand-in for the Play Services class, with only what the benchmarked code uses.
+ */
+public class CameraSource {
+  public static final int CAMERA_FACING_BACK = 0;
+  public static final int CAMERA_FACING_FRONT = 1;
+}
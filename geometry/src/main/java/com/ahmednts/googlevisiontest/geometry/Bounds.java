@@ -0,0 +1,155 @@
+package com.ahmednts.googlevisiontest.geometry;
+
+/**
+ * A mutable axis-aligned rectangle in view coordinates that grows by union, for tracking what a
+ * drawing covers and which part of a view needs to be redrawn.  Unlike
+ * {@code android.graphics.RectF} it works on the JVM, and an empty instance is a neutral element
+ * of {@link #union}.  Not thread-safe.
+ */
+public final class Bounds {
+  private float mLeft;
+  private float mTop;
+  private float mRight;
+  private float mBottom;
+  private boolean mEmpty = true;
+
+  public Bounds setEmpty() {
+    mEmpty = true;
+    mLeft = mTop = mRight = mBottom = 0;
+    return this;
+  }
+
+  public boolean isEmpty() {
+    return mEmpty;
+  }
+
+  /**
+   * Sets the rectangle, ordering the edges so that {@code left <= right} and
+   * {@code top <= bottom}.
+   */
+  public Bounds set(float left, float top, float right, float bottom) {
+    mLeft = Math.min(left, right);
+    mRight = Math.max(left, right);
+    mTop = Math.min(top, bottom);
+    mBottom = Math.max(top, bottom);
+    mEmpty = false;
+    return this;
+  }
+
+  public Bounds set(Bounds other) {
+    mLeft = other.mLeft;
+    mTop = other.mTop;
+    mRight = other.mRight;
+    mBottom = other.mBottom;
+    mEmpty = other.mEmpty;
+    return this;
+  }
+
+  /**
+   * Grows the rectangle to cover the given one as well.
+   */
+  public Bounds union(float left, float top, float right, float bottom) {
+    if (mEmpty) {
+      return set(left, top, right, bottom);
+    }
+    mLeft = Math.min(mLeft, Math.min(left, right));
+    mRight = Math.max(mRight, Math.max(left, right));
+    mTop = Math.min(mTop, Math.min(top, bottom));
+    mBottom = Math.max(mBottom, Math.max(top, bottom));
+    return this;
+  }
+
+  public Bounds union(Bounds other) {
+    if (other.mEmpty) {
+      return this;
+    }
+    return union(other.mLeft, other.mTop, other.mRight, other.mBottom);
+  }
+
+  /**
+   * Grows the rectangle by {@code margin} on every side.  Does nothing if it is empty.
+   */
+  public Bounds outset(float margin) {
+    if (!mEmpty) {
+      mLeft -= margin;
+      mTop -= margin;
+      mRight += margin;
+      mBottom += margin;
+    }
+    return this;
+  }
+
+  /**
+   * Shrinks the rectangle to its overlap with the given one, which may leave it empty.
+   */
+  public Bounds intersect(float left, float top, float right, float bottom) {
+    if (mEmpty) {
+      return this;
+    }
+    mLeft = Math.max(mLeft, left);
+    mTop = Math.max(mTop, top);
+    mRight = Math.min(mRight, right);
+    mBottom = Math.min(mBottom, bottom);
+    if (mLeft >= mRight || mTop >= mBottom) {
+      setEmpty();
+    }
+    return this;
+  }
+
+  public boolean intersects(Bounds other) {
+    return !mEmpty && !other.mEmpty && mLeft < other.mRight && other.mLeft < mRight
+        && mTop < other.mBottom && other.mTop < mBottom;
+  }
+
+  /**
+   * Returns whether the given rectangle lies within this one.  An empty rectangle lies within
+   * any other.
+   */
+  public boolean contains(Bounds other) {
+    return other.mEmpty || (!mEmpty && mLeft <= other.mLeft && mTop <= other.mTop
+        && other.mRight <= mRight && other.mBottom <= mBottom);
+  }
+
+  /**
+   * Returns the number of whole pixels covered once the edges are rounded outwards.
+   */
+  public long getPixelArea() {
+    if (mEmpty) {
+      return 0;
+    }
+    return (long) (getRight() - getLeft()) * (getBottom() - getTop());
+  }
+
+  /**
+   * Returns the left edge rounded down to a pixel.
+   */
+  public int getLeft() {
+    return (int) Math.floor(mLeft);
+  }
+
+  /**
+   * Returns the top edge rounded down to a pixel.
+   */
+  public int getTop() {
+    return (int) Math.floor(mTop);
+  }
+
+  /**
+   * Returns the right edge rounded up to a pixel.
+   */
+  public int getRight() {
+    return (int) Math.ceil(mRight);
+  }
+
+  /**
+   * Returns the bottom edge rounded up to a pixel.
+   */
+  public int getBottom() {
+    return (int) Math.ceil(mBottom);
+  }
+
+  @Override
+  public String toString() {
+    return mEmpty ? "[empty]" : "[" + mLeft + ", " + mTop + " - " + mRight + ", " + mBottom + "]";
+  }
+}
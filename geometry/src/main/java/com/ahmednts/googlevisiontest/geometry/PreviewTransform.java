@@ -0,0 +1,138 @@
+package com.ahmednts.googlevisiontest.geometry;
+
+/**
+ * Maps camera preview coordinates, in which faces are detected, to view coordinates, in which
+ * they are drawn: a scale from the preview size to the view size, mirrored horizontally for the
+ * front-facing camera.<p>
+ *
+ * Instances are immutable, so one transform can be taken per drawn frame and shared by everything
+ * drawn in it without locking.  Besides single values, whole buffers of interleaved {@code x, y}
+ * coordinates can be mapped in one pass with {@link #mapPoints(float[], int, float[], int, int)}.
+ */
+public final class PreviewTransform {
+  /**
+   * Leaves coordinates unchanged.
+   */
+  public static final PreviewTransform IDENTITY = new PreviewTransform(0, 0, 0, 0, false);
+
+  private final int mPreviewWidth;
+  private final int mPreviewHeight;
+  private final int mViewWidth;
+  private final int mViewHeight;
+  private final boolean mMirrored;
+
+  private final float mScaleX;
+  private final float mScaleY;
+
+  // x is mapped to x * mMapScaleX + mMapOffsetX, which mirrors without a branch.
+  private final float mMapScaleX;
+  private final float mMapOffsetX;
+
+  private PreviewTransform(int previewWidth, int previewHeight, int viewWidth, int viewHeight,
+      boolean mirrored) {
+    mPreviewWidth = previewWidth;
+    mPreviewHeight = previewHeight;
+    mViewWidth = viewWidth;
+    mViewHeight = viewHeight;
+    mMirrored = mirrored;
+
+    boolean known = previewWidth > 0 && previewHeight > 0;
+    mScaleX = known ? (float) viewWidth / previewWidth : 1.0f;
+    mScaleY = known ? (float) viewHeight / previewHeight : 1.0f;
+    mMapScaleX = mirrored ? -mScaleX : mScaleX;
+    mMapOffsetX = mirrored ? viewWidth : 0;
+  }
+
+  /**
+   * Creates the transform from a preview of the given size to a view of the given size.  If the
+   * preview size is not known yet, coordinates are not scaled.
+   *
+   * @param mirrored whether to flip horizontally, as for the front-facing camera
+   */
+  public static PreviewTransform create(int previewWidth, int previewHeight, int viewWidth,
+      int viewHeight, boolean mirrored) {
+    return new PreviewTransform(previewWidth, previewHeight, viewWidth, viewHeight, mirrored);
+  }
+
+  /**
+   * Returns this transform if it already maps between the given sizes, or a new one that does.
+   * Lets callers take a transform every frame without allocating while nothing changes.
+   */
+  public PreviewTransform update(int previewWidth, int previewHeight, int viewWidth,
+      int viewHeight, boolean mirrored) {
+    if (previewWidth == mPreviewWidth && previewHeight == mPreviewHeight
+        && viewWidth == mViewWidth && viewHeight == mViewHeight && mirrored == mMirrored) {
+      return this;
+    }
+    return create(previewWidth, previewHeight, viewWidth, viewHeight, mirrored);
+  }
+
+  /**
+   * Maps an x coordinate from the preview to the view.
+   */
+  public float mapX(float x) {
+    return x * mMapScaleX + mMapOffsetX;
+  }
+
+  /**
+   * Maps a y coordinate from the preview to the view.
+   */
+  public float mapY(float y) {
+    return y * mScaleY;
+  }
+
+  /**
+   * Scales a horizontal length, such as a width, from the preview to the view.
+   */
+  public float scaleX(float length) {
+    return length * mScaleX;
+  }
+
+  /**
+   * Scales a vertical length, such as a height, from the preview to the view.
+   */
+  public float scaleY(float length) {
+    return length * mScaleY;
+  }
+
+  /**
+   * Maps {@code pointCount} points, stored as interleaved {@code x, y} pairs, from the preview to
+   * the view.  {@code src} and {@code dst} may be the same array, to map in place.
+   */
+  public void mapPoints(float[] src, int srcOffset, float[] dst, int dstOffset, int pointCount) {
+    float scaleX = mMapScaleX;
+    float offsetX = mMapOffsetX;
+    float scaleY = mScaleY;
+    int end = srcOffset + 2 * pointCount;
+    for (int i = srcOffset, j = dstOffset; i < end; i += 2, j += 2) {
+      dst[j] = src[i] * scaleX + offsetX;
+      dst[j + 1] = src[i + 1] * scaleY;
+    }
+  }
+
+  public int getPreviewWidth() {
+    return mPreviewWidth;
+  }
+
+  public int getPreviewHeight() {
+    return mPreviewHeight;
+  }
+
+  public int getViewWidth() {
+    return mViewWidth;
+  }
+
+  public int getViewHeight() {
+    return mViewHeight;
+  }
+
+  public boolean isMirrored() {
+    return mMirrored;
+  }
+
+  @Override
+  public String toString() {
+    return mPreviewWidth + "x" + mPreviewHeight + " -> " + mViewWidth + "x" + mViewHeight
+        + (mMirrored ? " mirrored" : "");
+  }
+}
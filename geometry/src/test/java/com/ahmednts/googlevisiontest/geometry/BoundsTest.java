@@ -0,0 +1,79 @@
+package com.ahmednts.googlevisiontest.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoundsTest {
+  @Test
+  public void unionWithEmptyIsIdentity() {
+    Bounds bounds = new Bounds();
+    assertTrue(bounds.isEmpty());
+
+    bounds.union(10, 20, 30, 40);
+    bounds.union(new Bounds());
+
+    assertFalse(bounds.isEmpty());
+    assertEquals(10, bounds.getLeft());
+    assertEquals(40, bounds.getBottom());
+  }
+
+  @Test
+  public void unionCoversBoth() {
+    Bounds bounds = new Bounds().set(10, 10, 20, 20);
+    bounds.union(new Bounds().set(50, 5, 40, 15));
+
+    assertEquals(10, bounds.getLeft());
+    assertEquals(5, bounds.getTop());
+    assertEquals(50, bounds.getRight());
+    assertEquals(20, bounds.getBottom());
+  }
+
+  @Test
+  public void pixelAreaRoundsOutwards() {
+    Bounds bounds = new Bounds().set(0.5f, 0.5f, 9.5f, 1.5f);
+
+    assertEquals(20, bounds.getPixelArea());
+    assertEquals(0, new Bounds().getPixelArea());
+  }
+
+  @Test
+  public void intersectCanEmpty() {
+    Bounds bounds = new Bounds().set(-10, -10, 50, 50);
+    bounds.intersect(0, 0, 100, 100);
+    assertEquals(2500, bounds.getPixelArea());
+
+    bounds.intersect(60, 60, 100, 100);
+    assertTrue(bounds.isEmpty());
+  }
+
+  @Test
+  public void intersectsNeedsOverlap() {
+    Bounds a = new Bounds().set(0, 0, 10, 10);
+
+    assertTrue(a.intersects(new Bounds().set(5, 5, 15, 15)));
+    assertFalse(a.intersects(new Bounds().set(10, 0, 20, 10)));
+    assertFalse(a.intersects(new Bounds()));
+  }
+
+  @Test
+  public void containsIncludesEdges() {
+    Bounds a = new Bounds().set(0, 0, 10, 10);
+
+    assertTrue(a.contains(new Bounds().set(0, 0, 10, 10)));
+    assertTrue(a.contains(new Bounds()));
+    assertFalse(a.contains(new Bounds().set(5, 5, 11, 10)));
+    assertFalse(new Bounds().contains(a));
+  }
+
+  @Test
+  public void outsetGrowsEverySide() {
+    Bounds bounds = new Bounds().set(10, 10, 20, 20).outset(2);
+
+    assertEquals(8, bounds.getLeft());
+    assertEquals(22, bounds.getBottom());
+    assertTrue(new Bounds().outset(2).isEmpty());
+  }
+}
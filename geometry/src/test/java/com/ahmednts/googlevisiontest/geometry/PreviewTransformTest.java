@@ -0,0 +1,77 @@
+package com.ahmednts.googlevisiontest.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class PreviewTransformTest {
+  private static final float EPSILON = 1e-4f;
+
+  @Test
+  public void scalesPreviewToView() {
+    PreviewTransform transform = PreviewTransform.create(320, 240, 1440, 1080, false);
+
+    assertEquals(450, transform.mapX(100), EPSILON);
+    assertEquals(225, transform.mapY(50), EPSILON);
+    assertEquals(90, transform.scaleX(20), EPSILON);
+    assertEquals(90, transform.scaleY(20), EPSILON);
+  }
+
+  @Test
+  public void mirrorsForFrontCamera() {
+    PreviewTransform transform = PreviewTransform.create(320, 240, 1440, 1080, true);
+
+    assertEquals(1440 - 450, transform.mapX(100), EPSILON);
+    assertEquals(225, transform.mapY(50), EPSILON);
+    // Lengths stay positive.
+    assertEquals(90, transform.scaleX(20), EPSILON);
+  }
+
+  @Test
+  public void unknownPreviewSizeDoesNotScale() {
+    PreviewTransform transform = PreviewTransform.create(0, 0, 1440, 1080, false);
+
+    assertEquals(100, transform.mapX(100), EPSILON);
+    assertEquals(50, transform.mapY(50), EPSILON);
+    assertEquals(7, PreviewTransform.IDENTITY.mapX(7), EPSILON);
+  }
+
+  @Test
+  public void mapPointsMatchesSingleValues() {
+    PreviewTransform transform = PreviewTransform.create(320, 240, 1080, 1920, true);
+    float[] src = { 0, 0, 10, 20, 160, 120, 319.5f, 239.5f };
+    float[] dst = new float[src.length + 2];
+
+    transform.mapPoints(src, 2, dst, 2, 3);
+
+    assertEquals(0, dst[0], 0);
+    assertEquals(0, dst[1], 0);
+    for (int i = 2; i < src.length; i += 2) {
+      assertEquals(transform.mapX(src[i]), dst[i], EPSILON);
+      assertEquals(transform.mapY(src[i + 1]), dst[i + 1], EPSILON);
+    }
+  }
+
+  @Test
+  public void mapPointsInPlace() {
+    PreviewTransform transform = PreviewTransform.create(320, 240, 640, 480, false);
+    float[] points = { 10, 20, 30, 40 };
+
+    transform.mapPoints(points, 0, points, 0, 2);
+
+    assertArrayEquals(new float[] { 20, 40, 60, 80 }, points, EPSILON);
+  }
+
+  @Test
+  public void updateReusesUnchangedTransform() {
+    PreviewTransform transform = PreviewTransform.create(320, 240, 1440, 1080, false);
+
+    assertSame(transform, transform.update(320, 240, 1440, 1080, false));
+    PreviewTransform mirrored = transform.update(320, 240, 1440, 1080, true);
+    assertNotSame(transform, mirrored);
+    assertEquals(1440 - 450, mirrored.mapX(100), EPSILON);
+  }
+}